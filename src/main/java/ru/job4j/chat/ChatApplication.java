@@ -2,8 +2,7 @@ package ru.job4j.chat;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.context.annotation.Bean;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Основной класс для запуска приложения
@@ -12,6 +11,7 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
  * @version 1.0
  */
 @SpringBootApplication
+@EnableScheduling
 public class ChatApplication {
 
     /**
@@ -23,15 +23,4 @@ public class ChatApplication {
         SpringApplication.run(ChatApplication.class, args);
     }
 
-    /**
-     * Выполняет создание объекта PasswordEncoder для
-     * шифрования паролей пользователей.
-     *
-     * @return объект BCryptPasswordEncoder
-     */
-    @Bean
-    public BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
-    }
-
 }
@@ -0,0 +1,39 @@
+package ru.job4j.chat.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.job4j.chat.service.BoundedPasswordEncoder;
+
+/**
+ * Конфигурация шифрования паролей пользователей
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ */
+@Configuration
+public class PasswordEncoderConfig {
+
+    /**
+     * Выполняет создание объекта PasswordEncoder для
+     * шифрования паролей пользователей. Хэши паролей вычисляются
+     * объектом BCryptPasswordEncoder в ограниченном пуле потоков.
+     *
+     * @param threads       количество потоков или 0 для количества ядер процессора
+     * @param queueCapacity размер очереди задач
+     * @param registry      реестр метрик
+     * @return объект BoundedPasswordEncoder
+     */
+    @Bean
+    public PasswordEncoder passwordEncoder(
+            @Value("${chat.password.hash.threads:0}") int threads,
+            @Value("${chat.password.hash.queue-capacity:64}") int queueCapacity,
+            MeterRegistry registry) {
+        return new BoundedPasswordEncoder(
+                new BCryptPasswordEncoder(), threads, queueCapacity, registry
+        );
+    }
+}
@@ -0,0 +1,81 @@
+package ru.job4j.chat.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Настройки ограничения частоты запросов
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.filter.RateLimitFilter
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.rate-limit")
+public class RateLimitProperties {
+
+    /**
+     * Максимальное количество корзин, новые ключи сверх него ограничиваются
+     * общей корзиной маршрута
+     */
+    private int maxBuckets = 100_000;
+
+    /**
+     * Ограничения маршрутов
+     */
+    private List<Route> routes = new ArrayList<>();
+
+    /**
+     * Ограничение частоты запросов маршрута
+     */
+    @Data
+    public static class Route {
+
+        /**
+         * HTTP метод
+         */
+        private String method;
+
+        /**
+         * Шаблон пути
+         */
+        private String path;
+
+        /**
+         * Ключ корзины: ip - адрес клиента, user - имя аутентифицированного
+         * пользователя или адрес клиента, если пользователь не аутентифицирован
+         */
+        private Key key = Key.IP;
+
+        /**
+         * Количество маркеров в корзине
+         */
+        private int capacity;
+
+        /**
+         * Количество маркеров, добавляемых в секунду
+         */
+        private double refillPerSecond;
+    }
+
+    /**
+     * Ключ корзины
+     */
+    public enum Key {
+
+        /**
+         * Адрес клиента
+         */
+        IP,
+
+        /**
+         * Имя пользователя
+         */
+        USER
+    }
+}
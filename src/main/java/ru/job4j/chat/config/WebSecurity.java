@@ -8,14 +8,21 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import ru.job4j.chat.filter.JWTAuthenticationFilter;
 import ru.job4j.chat.filter.JWTAuthorizationFilter;
+import ru.job4j.chat.filter.RateLimitFilter;
+import ru.job4j.chat.service.RevokedTokenRegistry;
+import ru.job4j.chat.service.TokenService;
 import ru.job4j.chat.service.UserDetailsServiceImpl;
 
+import static ru.job4j.chat.config.WebSocketConfig.WS_ENDPOINT;
+import static ru.job4j.chat.controller.TokenController.REFRESH_URL;
+import static ru.job4j.chat.filter.JWTAuthenticationFilter.AVAILABLE_URL;
 import static ru.job4j.chat.filter.JWTAuthenticationFilter.SIGN_UP_URL;
 
 /**
@@ -28,6 +35,11 @@ import static ru.job4j.chat.filter.JWTAuthenticationFilter.SIGN_UP_URL;
 @EnableWebSecurity
 public class WebSecurity extends WebSecurityConfigurerAdapter {
 
+    /**
+     * Роль администратора
+     */
+    public static final String ADMIN = "ADMIN";
+
     /**
      * Объект для доступа к методам UserDetailsServiceImpl
      */
@@ -36,7 +48,22 @@ public class WebSecurity extends WebSecurityConfigurerAdapter {
     /**
      * Шифратор паролей
      */
-    private final BCryptPasswordEncoder bCryptPasswordEncoder;
+    private final PasswordEncoder passwordEncoder;
+
+    /**
+     * Настройки ограничения частоты запросов
+     */
+    private final RateLimitProperties rateLimitProperties;
+
+    /**
+     * Сервис выдачи токенов
+     */
+    private final TokenService tokenService;
+
+    /**
+     * Реестр отозванных токенов доступа
+     */
+    private final RevokedTokenRegistry revokedTokenRegistry;
 
     /**
      * Создает конфигурацию авторизации при работе с приложением.
@@ -47,10 +74,24 @@ public class WebSecurity extends WebSecurityConfigurerAdapter {
     protected void configure(HttpSecurity http) throws Exception {
         http.cors().and().csrf().disable().authorizeRequests()
                 .antMatchers(HttpMethod.POST, SIGN_UP_URL).permitAll()
+                .antMatchers(HttpMethod.GET, AVAILABLE_URL).permitAll()
+                .antMatchers(HttpMethod.POST, REFRESH_URL).permitAll()
+                /* STOMP sessions are authenticated by the CONNECT frame */
+                .antMatchers(WS_ENDPOINT + "/**").permitAll()
+                /* roles come from the JWT claim, no database lookup */
+                .antMatchers("/role/**", "/users/*/roles").hasRole(ADMIN)
+                /* leaving a room needs no admin role */
+                .antMatchers(HttpMethod.DELETE, "/room/*/members/me").authenticated()
+                .antMatchers(HttpMethod.DELETE, "/users/**", "/room/**").hasRole(ADMIN)
+                /* bulk delete of messages is a moderation task */
+                .antMatchers(HttpMethod.DELETE, "/message", "/message/").hasRole(ADMIN)
                 .anyRequest().authenticated()
                 .and()
-                .addFilter(new JWTAuthenticationFilter(authenticationManager()))
-                .addFilter(new JWTAuthorizationFilter(authenticationManager()))
+                .addFilterBefore(new RateLimitFilter(rateLimitProperties),
+                        UsernamePasswordAuthenticationFilter.class)
+                .addFilter(new JWTAuthenticationFilter(authenticationManager(), tokenService))
+                .addFilter(new JWTAuthorizationFilter(authenticationManager(),
+                        revokedTokenRegistry))
                 /* this disables session creation on Spring Security */
                 .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS);
     }
@@ -62,7 +103,7 @@ public class WebSecurity extends WebSecurityConfigurerAdapter {
      */
     @Override
     public void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.userDetailsService(userDetailsService).passwordEncoder(bCryptPasswordEncoder);
+        auth.userDetailsService(userDetailsService).passwordEncoder(passwordEncoder);
     }
 
     /**
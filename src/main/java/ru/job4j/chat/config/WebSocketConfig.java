@@ -0,0 +1,96 @@
+package ru.job4j.chat.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import ru.job4j.chat.filter.JWTChannelInterceptor;
+import ru.job4j.chat.service.RevokedTokenRegistry;
+
+import java.util.List;
+
+/**
+ * Конфигурация доставки сообщений по протоколу STOMP поверх WebSocket.
+ * Для каждой комнаты используется отдельная тема вида
+ * {@code /topic/room.{roomId}}.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ */
+@AllArgsConstructor
+@Configuration
+@EnableWebSocketMessageBroker
+public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+
+    /**
+     * Путь подключения по протоколу WebSocket
+     */
+    public static final String WS_ENDPOINT = "/ws";
+
+    /**
+     * Префикс темы комнаты
+     */
+    public static final String ROOM_TOPIC_PREFIX = "/topic/room.";
+
+    /**
+     * Объект для работы с JSON
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Реестр отозванных токенов доступа
+     */
+    private final RevokedTokenRegistry revokedTokenRegistry;
+
+    /**
+     * Регистрирует точку подключения STOMP клиентов.
+     *
+     * @param registry реестр точек подключения
+     */
+    @Override
+    public void registerStompEndpoints(StompEndpointRegistry registry) {
+        registry.addEndpoint(WS_ENDPOINT).setAllowedOriginPatterns("*");
+    }
+
+    /**
+     * Настраивает встроенный брокер сообщений для тем комнат.
+     *
+     * @param registry реестр настроек брокера
+     */
+    @Override
+    public void configureMessageBroker(MessageBrokerRegistry registry) {
+        registry.enableSimpleBroker("/topic");
+        registry.setApplicationDestinationPrefixes("/app");
+    }
+
+    /**
+     * Добавляет проверку JWT токена для входящих кадров.
+     *
+     * @param registration настройки входящего канала
+     */
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(new JWTChannelInterceptor(revokedTokenRegistry));
+    }
+
+    /**
+     * Добавляет конвертер сообщений, использующий общий объект для работы
+     * с JSON, чтобы формат сообщений совпадал с ответами REST сервиса.
+     *
+     * @param messageConverters список конвертеров сообщений
+     * @return true для добавления конвертеров по умолчанию
+     */
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        var converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        messageConverters.add(converter);
+        return true;
+    }
+}
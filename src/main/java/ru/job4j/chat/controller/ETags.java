@@ -0,0 +1,92 @@
+package ru.job4j.chat.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import ru.job4j.chat.model.Model;
+
+import java.util.Collection;
+import java.util.function.ToIntFunction;
+
+/**
+ * Строгие ETag моделей по столбцу версии. ETag модели равен ее версии,
+ * ETag списка вычисляется хешем FNV-1a по идентификаторам и версиям
+ * элементов списка, поэтому изменяется при добавлении, удалении и
+ * обновлении любого элемента. Проверку заголовка If-None-Match выполняет
+ * Spring MVC для ResponseEntity с заголовком ETag: на совпадающий ETag
+ * возвращается ответ 304 без сериализации тела.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ */
+public final class ETags {
+
+    /**
+     * Начальное значение хеша FNV-1a
+     */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    /**
+     * Множитель хеша FNV-1a
+     */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Закрытый конструктор
+     */
+    private ETags() {
+    }
+
+    /**
+     * Возвращает ETag по версии модели.
+     *
+     * @param version версия модели
+     * @return ETag в кавычках
+     */
+    public static String of(int version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Возвращает ETag списка моделей.
+     *
+     * @param models  модели
+     * @param version функция получения версии модели
+     * @param <T>     тип модели
+     * @return ETag в кавычках
+     */
+    public static <T extends Model> String of(Collection<T> models, ToIntFunction<T> version) {
+        long hash = FNV_OFFSET;
+        for (var model : models) {
+            hash = (hash ^ model.getId()) * FNV_PRIME;
+            hash = (hash ^ version.applyAsInt(model)) * FNV_PRIME;
+        }
+        return "\"" + Long.toHexString(hash) + "\"";
+    }
+
+    /**
+     * Возвращает версию модели из заголовка If-Match. Если заголовок не
+     * передан или равен *, то возвращается null и обновление выполняется
+     * без проверки версии. Если заголовок не является ETag модели, то
+     * выбрасывается исключение ResponseStatusException со статусом
+     * PRECONDITION_FAILED.
+     *
+     * @param ifMatch значение заголовка If-Match или null
+     * @return ожидаемая версия модели или null
+     */
+    public static Integer version(String ifMatch) {
+        if (ifMatch == null || "*".equals(ifMatch.trim())) {
+            return null;
+        }
+        var value = ifMatch.trim();
+        if (value.length() > 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            try {
+                return Integer.valueOf(value.substring(1, value.length() - 1));
+            } catch (NumberFormatException e) {
+                throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED,
+                        "If-Match is not an ETag of this resource", e);
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED,
+                "If-Match is not an ETag of this resource");
+    }
+}
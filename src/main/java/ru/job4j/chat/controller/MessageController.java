@@ -1,19 +1,39 @@
 package ru.job4j.chat.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.job4j.chat.model.Message;
+import ru.job4j.chat.projection.MessageSearchHit;
+import ru.job4j.chat.projection.MessageView;
+import ru.job4j.chat.service.Chunks;
 import ru.job4j.chat.service.MessageService;
+import ru.job4j.chat.service.MessageWriteBehind;
+import ru.job4j.chat.service.SseMessageNotifier;
 import ru.job4j.chat.validator.Operation;
 
 import javax.validation.Valid;
+import javax.validation.Validator;
+import javax.validation.groups.Default;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.InvocationTargetException;
+import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Контроллер для работы с сообщениями
@@ -27,40 +47,191 @@ import java.util.List;
 @RequestMapping("/message")
 public class MessageController {
 
+    /**
+     * Максимальное количество сообщений на странице истории комнаты
+     */
+    private static final int MAX_PAGE_SIZE = 500;
+
+    /**
+     * Максимальное количество сообщений в пакете
+     */
+    private static final int MAX_BATCH_SIZE = 1000;
+
     /**
      * Объект для доступа к методам MessageService
      */
     private final MessageService messageService;
 
     /**
-     * Обрабатывает GET запрос, возвращает список сообщений. Список
-     * получается через метод сервисного слоя {@link MessageService#findAll()}.
+     * Объект для работы с JSON
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Объект для рассылки сообщений подписчикам комнат
+     */
+    private final SseMessageNotifier sseMessageNotifier;
+
+    /**
+     * Объект для валидации моделей
+     */
+    private final Validator validator;
+
+    /**
+     * Объект для отложенной записи сообщений
+     */
+    private final MessageWriteBehind messageWriteBehind;
+
+    /**
+     * Обрабатывает GET запрос, возвращает список проекций сообщений. Список
+     * получается через метод сервисного слоя {@link MessageService#findAllViews()}.
      *
-     * @return список сообщений
+     * @return список проекций сообщений
      */
     @GetMapping("/")
-    public List<Message> findAll() {
-        return new ArrayList<>(this.messageService.findAll());
+    public List<MessageView> findAll() {
+        return this.messageService.findAllViews();
+    }
+
+    /**
+     * Обрабатывает GET запрос, открывает поток Server-Sent Events новых сообщений
+     * комнаты. Если передан заголовок Last-Event-ID, сначала отправляется
+     * одна страница сообщений комнаты, созданных после указанного сообщения,
+     * остальные пропущенные сообщения клиент получает через
+     * {@link #findByRoom(int, Integer, int)}. Подключение
+     * создается через {@link SseMessageNotifier#subscribe(int, Integer)}.
+     *
+     * @param roomId      идентификатор комнаты
+     * @param lastEventId идентификатор последнего полученного сообщения
+     * @return поток событий
+     */
+    @GetMapping(value = "/room/{roomId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@PathVariable int roomId,
+                             @RequestHeader(value = "Last-Event-ID", required = false)
+                                     Integer lastEventId) {
+        return this.sseMessageNotifier.subscribe(roomId, lastEventId);
+    }
+
+    /**
+     * Обрабатывает GET запрос, возвращает проекции всех сообщений в виде JSON массива,
+     * который записывается в ответ по мере чтения сообщений из базы данных. Проекции
+     * передаются через метод сервисного слоя {@link MessageService#streamAllViews(Consumer)}
+     * и сериализуются генератором JSON непосредственно в поток ответа, поэтому
+     * расход памяти не зависит от количества сообщений.
+     *
+     * @return ResponseEntity с телом, записываемым в поток ответа
+     */
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> stream() {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+                generator.writeStartArray();
+                this.messageService.streamAllViews(view -> {
+                    try {
+                        generator.writeObject(view);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
     }
 
     /**
-     * Обрабатывает GET запрос, возвращает ResponseEntity с сообщением по переданному
-     * идентификатору. Сообщение получается через метод сервисного слоя
-     * {@link MessageService#findById(int)}. Если от сервисного слоя возвращается
+     * Обрабатывает GET запрос, возвращает ResponseEntity с проекцией сообщения по
+     * переданному идентификатору. Проекция получается через метод сервисного слоя
+     * {@link MessageService#findViewById(int)}. Если от сервисного слоя возвращается
      * Optional.empty(), то выбрасывается исключение ResponseStatusException со
      * статусом NOT_FOUND.
+     * Ответ содержит заголовок ETag с версией сообщения, если он совпадает
+     * с заголовком If-None-Match, то возвращается ответ NOT_MODIFIED без тела.
      *
      * @param id идентификатор сообщения
-     * @return ResponseEntity с сообщением
+     * @return ResponseEntity с проекцией сообщения
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Message> findById(@PathVariable int id) {
-        var message = this.messageService.findById(id);
-        return new ResponseEntity<Message>(
-                message.orElseThrow(
-                        () -> new ResponseStatusException(HttpStatus.NOT_FOUND,
-                                "Message is not found. Please, check id.")
-                ), HttpStatus.OK
+    public ResponseEntity<MessageView> findById(@PathVariable int id) {
+        var message = this.messageService.findViewById(id).orElseThrow(
+                () -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Message is not found. Please, check id."));
+        return ResponseEntity.ok().eTag(ETags.of(message.getVersion())).body(message);
+    }
+
+    /**
+     * Обрабатывает GET запрос с параметром ids, возвращает проекции сообщений по переданным
+     * идентификаторам в порядке идентификаторов. Список получается через метод
+     * сервисного слоя {@link MessageService#findViewsByIds(Collection)}, отсутствующие
+     * идентификаторы пропускаются. Если передано больше {@link Chunks#MAX_IDS}
+     * идентификаторов, то выбрасывается исключение ResponseStatusException
+     * со статусом BAD_REQUEST.
+     *
+     * @param ids идентификаторы сообщений
+     * @return список проекций сообщений
+     */
+    @GetMapping(params = "ids")
+    public List<MessageView> findAllById(@RequestParam List<Integer> ids) {
+        if (ids.size() > Chunks.MAX_IDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Too many ids, at most " + Chunks.MAX_IDS + " per request");
+        }
+        return this.messageService.findViewsByIds(ids);
+    }
+
+    /**
+     * Обрабатывает GET запрос, возвращает страницу проекций истории сообщений
+     * комнаты, упорядоченную от новых к старым. Для получения следующей страницы в
+     * параметре before передается идентификатор последнего полученного
+     * сообщения. Размер страницы ограничивается значением {@code MAX_PAGE_SIZE}.
+     * Страница получается через метод сервисного слоя
+     * {@link MessageService#findByRoom(int, Integer, int)}.
+     *
+     * @param roomId идентификатор комнаты
+     * @param before идентификатор сообщения курсора
+     * @param limit  размер страницы
+     * @return список проекций сообщений
+     */
+    @GetMapping("/room/{roomId}")
+    public List<MessageView> findByRoom(@PathVariable int roomId,
+                                        @RequestParam(required = false) Integer before,
+                                        @RequestParam(defaultValue = "50") int limit) {
+        return this.messageService.findByRoom(
+                roomId, before, Math.max(1, Math.min(limit, MAX_PAGE_SIZE))
+        ).stream().map(MessageView::of).collect(Collectors.toList());
+    }
+
+    /**
+     * Обрабатывает GET запрос, возвращает страницу результатов поиска сообщений
+     * по содержанию, упорядоченную по убыванию ранга совпадения. Для получения
+     * следующей страницы в параметрах afterRank и afterId передаются ранг и
+     * идентификатор сообщения последнего полученного результата. Размер страницы
+     * ограничивается значением {@code MAX_PAGE_SIZE}. Если строка поиска пустая,
+     * то выбрасывается исключение ResponseStatusException со статусом BAD_REQUEST.
+     * Страница получается через метод сервисного слоя
+     * {@link MessageService#search(String, Integer, Float, Integer, int)}.
+     *
+     * @param q         строка поиска
+     * @param roomId    идентификатор комнаты
+     * @param afterRank ранг результата курсора
+     * @param afterId   идентификатор сообщения курсора
+     * @param limit     размер страницы
+     * @return список результатов поиска
+     */
+    @GetMapping("/search")
+    public List<MessageSearchHit> search(@RequestParam String q,
+                                         @RequestParam(required = false) Integer roomId,
+                                         @RequestParam(required = false) Float afterRank,
+                                         @RequestParam(required = false) Integer afterId,
+                                         @RequestParam(defaultValue = "50") int limit) {
+        if (q.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Search query must be not empty.");
+        }
+        return this.messageService.search(
+                q, roomId, afterRank, afterId, Math.max(1, Math.min(limit, MAX_PAGE_SIZE))
         );
     }
 
@@ -82,18 +253,99 @@ public class MessageController {
         );
     }
 
+    /**
+     * Обрабатывает POST запрос, принимает сообщение для отложенной записи через
+     * {@link MessageWriteBehind#offer(Message)}. При работе метода будет возвращен
+     * ResponseEntity со статусом ACCEPTED, идентификатором, назначенным сообщению,
+     * в теле и адресом сообщения в заголовке Location. Сообщение будет сохранено
+     * под этим идентификатором пакетом вместе с другими принятыми сообщениями,
+     * до сохранения запрос сообщения возвращает статус NOT_FOUND. Если очередь
+     * записи заполнена, то выбрасывается исключение
+     * ResponseStatusException со статусом TOO_MANY_REQUESTS. Если отложенная
+     * запись отключена, сообщение сохраняется так же, как в {@link #create(Message)}.
+     *
+     * @param message сообщение
+     * @return ResponseEntity с идентификатором или с сообщением
+     */
+    @PostMapping("/async")
+    @Validated(Operation.OnCreate.class)
+    public ResponseEntity<?> createAsync(@Valid @RequestBody Message message) {
+        if (!this.messageWriteBehind.isEnabled()) {
+            return create(message);
+        }
+        int id = this.messageWriteBehind.offer(message).orElseThrow(
+                () -> new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+                        "Message queue is full. Please, retry later."));
+        return ResponseEntity.accepted()
+                .location(URI.create("/message/" + id))
+                .body(Map.of("id", id));
+    }
+
+    /**
+     * Обрабатывает POST запрос, создает пакет сообщений в соответствии с переданным
+     * в качестве параметра списком. Каждое сообщение проверяется так же, как при
+     * создании одного сообщения, при ошибках валидации будет возвращен ResponseEntity
+     * со статусом BAD_REQUEST и списком ошибок, где имя поля предваряется индексом
+     * сообщения в пакете, а элемент null отклоняется с ошибкой по его индексу.
+     * Сохранение происходит в одной транзакции через метод
+     * сервисного слоя {@link MessageService#saveAll(List)}. При работе метода будет
+     * возвращен ResponseEntity со статусом CREATED и списком сохраненных сообщений.
+     *
+     * @param messages список сообщений
+     * @return ResponseEntity со списком сообщений или списком ошибок валидации
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> createBatch(@RequestBody List<Message> messages) {
+        if (messages.size() > MAX_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Batch size must not exceed " + MAX_BATCH_SIZE + " messages");
+        }
+        var errors = new ArrayList<Map<String, String>>();
+        for (int i = 0; i < messages.size(); i++) {
+            if (messages.get(i) == null) {
+                errors.add(Map.of(String.format("[%d]", i), "must not be null"));
+                continue;
+            }
+            for (var violation : validator.validate(
+                    messages.get(i), Default.class, Operation.OnCreate.class)) {
+                errors.add(Map.of(
+                        String.format("[%d].%s", i, violation.getPropertyPath()),
+                        String.format("%s. Actual value: %s",
+                                violation.getMessage(), violation.getInvalidValue())
+                ));
+            }
+        }
+        if (!errors.isEmpty()) {
+            return ResponseEntity.badRequest().body(errors);
+        }
+        return new ResponseEntity<List<Message>>(
+                this.messageService.saveAll(messages),
+                HttpStatus.CREATED
+        );
+    }
+
     /**
      * Обрабатывает PUT запрос, обновляет сообщение в соответствии с переданным
      * в качестве параметра объектом. Обновление происходит через метод сервисного
      * слоя {@link MessageService#save(Message)}. При работе метода будет возвращен
      * ResponseEntity со статусом OK.
+     * Если передан заголовок If-Match, то ожидаемая версия сообщения берется из
+     * него, иначе из тела запроса. Если версия в базе данных другая, то
+     * возвращается ответ PRECONDITION_FAILED.
      *
      * @param message сообщение
+     * @param ifMatch заголовок If-Match или null
      * @return ResponseEntity
      */
     @PutMapping("/")
     @Validated(Operation.OnUpdate.class)
-    public ResponseEntity<Void> update(@Valid @RequestBody Message message) {
+    public ResponseEntity<Void> update(
+            @Valid @RequestBody Message message,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        var version = ETags.version(ifMatch);
+        if (version != null) {
+            message.setVersion(version);
+        }
         this.messageService.save(message);
         return ResponseEntity.ok().build();
     }
@@ -115,24 +367,49 @@ public class MessageController {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Обрабатывает DELETE запрос с параметром ids, удаляет сообщения по переданным
+     * идентификаторам через метод сервисного слоя
+     * {@link MessageService#deleteAll(Collection)}. Если передано больше
+     * {@link Chunks#MAX_IDS} идентификаторов, то выбрасывается исключение
+     * ResponseStatusException со статусом BAD_REQUEST.
+     *
+     * @param ids идентификаторы сообщений
+     * @return количество удаленных сообщений
+     */
+    @DeleteMapping(params = "ids")
+    public Map<String, Integer> deleteAll(@RequestParam List<Integer> ids) {
+        if (ids.size() > Chunks.MAX_IDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Too many ids, at most " + Chunks.MAX_IDS + " per request");
+        }
+        return Map.of("deleted", messageService.deleteAll(ids));
+    }
+
     /**
      * Обрабатывает PATCH запрос, частично обновляет пользователя в соответствии с переданным
      * в качестве параметра объектом. Обновление происходит через метод сервисного
-     * слоя {@link MessageService#patchModel(Message)}. При работе метода будет возвращен
+     * слоя {@link MessageService#patchModel(Message, Integer)}. При работе метода будет возвращен
      * ResponseEntity с сообщением со статусом OK, если обновление прошло успешно или будет
      * выброшено исключение ResponseStatusException со статусом NOT_FOUND.
+     * Если передан заголовок If-Match, то сообщение обновляется только при
+     * совпадении версии, иначе возвращается ответ PRECONDITION_FAILED.
+     * Ответ содержит заголовок ETag с новой версией.
      *
      * @param message сообщение
+     * @param ifMatch заголовок If-Match или null
      * @return ResponseEntity с сообщением
      * @throws InvocationTargetException при выбросе исключения при работе с рефлексией
      * @throws IllegalAccessException    при невозможности вызвать метод объекта
      */
     @PatchMapping("/")
-    public ResponseEntity<Message> patch(@RequestBody Message message)
+    public ResponseEntity<Message> patch(
+            @RequestBody Message message,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
             throws InvocationTargetException, IllegalAccessException {
-        return ResponseEntity.status(HttpStatus.OK)
-                .body(messageService.patchModel(message).
-                        orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
-                                "Message is not found or invalid properties mapping")));
+        var patched = messageService.patchModel(message, ETags.version(ifMatch)).
+                orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Message is not found or invalid properties mapping"));
+        return ResponseEntity.ok().eTag(ETags.of(patched.getVersion())).body(patched);
     }
 }
@@ -3,13 +3,20 @@ package ru.job4j.chat.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import ru.job4j.chat.config.WebSecurity;
+import ru.job4j.chat.filter.RoleAuthorities;
 import ru.job4j.chat.model.Person;
+import ru.job4j.chat.projection.RoomUnread;
+import ru.job4j.chat.service.Chunks;
 import ru.job4j.chat.service.PersonService;
 import ru.job4j.chat.validator.Operation;
 
@@ -19,8 +26,10 @@ import javax.validation.Valid;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Контроллер для работы с пользователями
@@ -43,7 +52,7 @@ public class PersonController {
     /**
      * Объект шифратор паролей
      */
-    private final BCryptPasswordEncoder encoder;
+    private final PasswordEncoder encoder;
 
     /**
      * Объект для работы с JSON
@@ -67,27 +76,88 @@ public class PersonController {
      * {@link PersonService#findById(int)}. Если от сервисного слоя возвращается
      * Optional.empty(), то выбрасывается исключение ResponseStatusException со
      * статусом NOT_FOUND.
+     * Ответ содержит заголовок ETag с версией пользователя, если он совпадает
+     * с заголовком If-None-Match, то возвращается ответ NOT_MODIFIED без тела.
      *
      * @param id идентификатор пользователя
      * @return ResponseEntity с пользователем
      */
     @GetMapping("/{id}")
     public ResponseEntity<Person> findById(@PathVariable int id) {
-        var person = this.personService.findById(id);
-        return new ResponseEntity<Person>(
-                person.orElseThrow(
-                        () -> new ResponseStatusException(HttpStatus.NOT_FOUND,
-                                "Person is not found. Please, check id.")
-                ), HttpStatus.OK
+        var person = this.personService.findById(id).orElseThrow(
+                () -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Person is not found. Please, check id."));
+        return ResponseEntity.ok().eTag(ETags.of(person.getVersion())).body(person);
+    }
+
+    /**
+     * Обрабатывает GET запрос с параметром ids, возвращает пользователей по переданным
+     * идентификаторам в порядке идентификаторов. Список получается через метод
+     * сервисного слоя {@link PersonService#findAllById(Collection)}, отсутствующие
+     * идентификаторы пропускаются. Если передано больше {@link Chunks#MAX_IDS}
+     * идентификаторов, то выбрасывается исключение ResponseStatusException
+     * со статусом BAD_REQUEST.
+     *
+     * @param ids идентификаторы пользователей
+     * @return список пользователей
+     */
+    @GetMapping(params = "ids")
+    public List<Person> findAllById(@RequestParam List<Integer> ids) {
+        if (ids.size() > Chunks.MAX_IDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Too many ids, at most " + Chunks.MAX_IDS + " per request");
+        }
+        return this.personService.findAllById(ids);
+    }
+
+    /**
+     * Обрабатывает GET запрос, возвращает счетчики непрочитанных сообщений
+     * пользователя по комнатам, участником которых он является. Счетчики
+     * получаются через метод сервисного слоя {@link PersonService#findUnread(int)}.
+     * Счетчики другого пользователя доступны только администратору, иначе
+     * выбрасывается исключение ResponseStatusException со статусом FORBIDDEN.
+     *
+     * @param id             идентификатор пользователя
+     * @param authentication аутентификация текущего запроса
+     * @return список счетчиков
+     */
+    @GetMapping("/{id}/unread")
+    public List<RoomUnread> findUnread(@PathVariable int id, Authentication authentication) {
+        if (!RoleAuthorities.roles(authentication.getAuthorities()).contains(WebSecurity.ADMIN)
+                && !this.personService.findById(id)
+                .map(person -> person.getUsername().equals(authentication.getName()))
+                .orElse(false)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN,
+                    "Unread counters of another user are not available");
+        }
+        return this.personService.findUnread(id);
+    }
+
+    /**
+     * Обрабатывает GET запрос проверки доступности имени пользователя при
+     * регистрации. Проверка выполняется методом сервисного слоя
+     * {@link PersonService#isAvailable(String)}, который для большинства
+     * свободных имен не обращается к базе данных.
+     *
+     * @param username имя пользователя
+     * @return имя пользователя и признак доступности
+     */
+    @GetMapping("/available")
+    public Map<String, Object> isAvailable(@RequestParam String username) {
+        return Map.of(
+                "username", username,
+                "available", personService.isAvailable(username)
         );
     }
 
     /**
      * Обрабатывает POST запрос, создает пользователя в соответствии с переданным
      * в качестве параметра объектом. Сохранение происходит через метод сервисного
-     * слоя {@link PersonService#save(Person)}. Если пользователь с таким именем
-     * уже зарегистрировался, будет возвращен ResponseEntity со статусом BAD_REQUEST,
-     * иначе ResponseEntity со статусом CREATED и объектом зарегистрированного
+     * слоя {@link PersonService#save(Person)} одним запросом INSERT без
+     * предварительной проверки имени. Если пользователь с таким именем уже
+     * зарегистрировался, то нарушается уникальность имени в таблице person и
+     * будет возвращен ResponseEntity со статусом BAD_REQUEST, иначе
+     * ResponseEntity со статусом CREATED и объектом зарегистрированного
      * пользователя.
      *
      * @param person пользователь
@@ -96,18 +166,20 @@ public class PersonController {
     @PostMapping("/sign-up")
     @Validated(Operation.OnCreate.class)
     public ResponseEntity<Person> create(@Valid @RequestBody Person person) {
-        Person personFromDB = personService.findByUsername(person.getUsername());
-        if (personFromDB != null) {
+        String password = person.getPassword();
+        person.setPassword(encoder.encode(password));
+        try {
+            return new ResponseEntity<Person>(
+                    this.personService.save(person),
+                    HttpStatus.CREATED
+            );
+        } catch (DataIntegrityViolationException e) {
+            person.setPassword(password);
             return new ResponseEntity<Person>(
                     person,
                     HttpStatus.BAD_REQUEST
             );
         }
-        person.setPassword(encoder.encode(person.getPassword()));
-        return new ResponseEntity<Person>(
-                this.personService.save(person),
-                HttpStatus.CREATED
-        );
     }
 
     /**
@@ -115,17 +187,47 @@ public class PersonController {
      * в качестве параметра объектом. Обновление происходит через метод сервисного
      * слоя {@link PersonService#save(Person)}. При работе метода будет возвращен
      * ResponseEntity со статусом OK.
+     * Если передан заголовок If-Match, то ожидаемая версия пользователя берется из
+     * него, иначе из тела запроса. Если версия в базе данных другая, то
+     * возвращается ответ PRECONDITION_FAILED.
      *
-     * @param person пользователь
+     * @param person  пользователь
+     * @param ifMatch заголовок If-Match или null
      * @return ResponseEntity
      */
     @PutMapping("/")
     @Validated(Operation.OnUpdate.class)
-    public ResponseEntity<Void> update(@Valid @RequestBody Person person) {
+    public ResponseEntity<Void> update(
+            @Valid @RequestBody Person person,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        var version = ETags.version(ifMatch);
+        if (version != null) {
+            person.setVersion(version);
+        }
         this.personService.save(person);
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Обрабатывает PUT запрос, заменяет роли пользователя ролями с переданными
+     * идентификаторами через метод сервисного слоя
+     * {@link PersonService#updateRoles(int, Collection)}. Запрос доступен только
+     * администратору. Если пользователь не найден, то выбрасывается исключение
+     * ResponseStatusException со статусом NOT_FOUND, если не найдена роль, то
+     * возвращается ответ BAD_REQUEST.
+     *
+     * @param id      идентификатор пользователя
+     * @param roleIds идентификаторы ролей
+     * @return ResponseEntity с пользователем
+     */
+    @PutMapping("/{id}/roles")
+    public ResponseEntity<Person> updateRoles(@PathVariable int id,
+                                              @RequestBody List<Integer> roleIds) {
+        return ResponseEntity.ok(this.personService.updateRoles(id, roleIds).orElseThrow(
+                () -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Person is not found. Please, check id.")));
+    }
+
     /**
      * Обрабатывает DELETE запрос, удаляет пользователя в соответствии с переданным
      * в качестве параметра идентификатором. Удаление происходит через метод сервисного
@@ -143,25 +245,52 @@ public class PersonController {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Обрабатывает DELETE запрос с параметром ids, удаляет пользователей по переданным
+     * идентификаторам через метод сервисного слоя
+     * {@link PersonService#deleteAll(Collection)}. Если передано больше
+     * {@link Chunks#MAX_IDS} идентификаторов, то выбрасывается исключение
+     * ResponseStatusException со статусом BAD_REQUEST. Сообщения пользователей
+     * не удаляются каскадно, поэтому, если у них есть сообщения, удаление
+     * отклоняется базой данных и возвращается статус CONFLICT.
+     *
+     * @param ids идентификаторы пользователей
+     * @return количество удаленных пользователей
+     */
+    @DeleteMapping(params = "ids")
+    public Map<String, Integer> deleteAll(@RequestParam List<Integer> ids) {
+        if (ids.size() > Chunks.MAX_IDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Too many ids, at most " + Chunks.MAX_IDS + " per request");
+        }
+        return Map.of("deleted", personService.deleteAll(ids));
+    }
+
     /**
      * Обрабатывает PATCH запрос, частично обновляет пользователя в соответствии с переданным
      * в качестве параметра объектом. Обновление происходит через метод сервисного
-     * слоя {@link PersonService#patchModel(Person)}. При работе метода будет возвращен
+     * слоя {@link PersonService#patchModel(Person, Integer)}. При работе метода будет возвращен
      * ResponseEntity с пользователем со статусом OK, если обновление прошло успешно или будет
      * выброшено исключение ResponseStatusException со статусом NOT_FOUND.
+     * Если передан заголовок If-Match, то пользователь обновляется только при
+     * совпадении версии, иначе возвращается ответ PRECONDITION_FAILED.
+     * Ответ содержит заголовок ETag с новой версией.
      *
-     * @param person пользователь
+     * @param person  пользователь
+     * @param ifMatch заголовок If-Match или null
      * @return ResponseEntity с пользователем
      * @throws InvocationTargetException при выбросе исключения при работе с рефлексией
      * @throws IllegalAccessException    при невозможности вызвать метод объекта
      */
     @PatchMapping("/")
-    public ResponseEntity<Person> patch(@RequestBody Person person)
+    public ResponseEntity<Person> patch(
+            @RequestBody Person person,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
             throws InvocationTargetException, IllegalAccessException {
-        return ResponseEntity.status(HttpStatus.OK)
-                .body(personService.patchModel(person).
-                        orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
-                                "Person is not found or invalid properties mapping")));
+        var patched = personService.patchModel(person, ETags.version(ifMatch)).
+                orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Person is not found or invalid properties mapping"));
+        return ResponseEntity.ok().eTag(ETags.of(patched.getVersion())).body(patched);
     }
 
     /**
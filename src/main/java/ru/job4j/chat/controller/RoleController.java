@@ -1,19 +1,23 @@
 package ru.job4j.chat.controller;
 
 import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 import ru.job4j.chat.model.Role;
+import ru.job4j.chat.service.Chunks;
 import ru.job4j.chat.service.RoleService;
 import ru.job4j.chat.validator.Operation;
 
 import javax.validation.Valid;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Контроллер для работы с ролями
@@ -35,12 +39,16 @@ public class RoleController {
     /**
      * Обрабатывает GET запрос, возвращает список ролей. Список
      * получается через метод сервисного слоя {@link RoleService#findAll()}.
+     * Ответ содержит заголовок ETag, вычисленный по идентификаторам и версиям
+     * ролей, если он совпадает с заголовком If-None-Match, то возвращается
+     * ответ NOT_MODIFIED без тела.
      *
-     * @return список ролей
+     * @return ResponseEntity со списком ролей
      */
     @GetMapping("/")
-    public List<Role> findAll() {
-        return new ArrayList<>(this.roleService.findAll());
+    public ResponseEntity<List<Role>> findAll() {
+        var roles = new ArrayList<>(this.roleService.findAll());
+        return ResponseEntity.ok().eTag(ETags.of(roles, Role::getVersion)).body(roles);
     }
 
     /**
@@ -49,16 +57,18 @@ public class RoleController {
      * {@link RoleService#findById(int)}. Если от сервисного слоя возвращается
      * Optional.empty(), то выбрасывается исключение ResponseStatusException со
      * статусом NOT_FOUND.
+     * Ответ содержит заголовок ETag с версией роли, если он совпадает
+     * с заголовком If-None-Match, то возвращается ответ NOT_MODIFIED без тела.
      *
      * @param id идентификатор роли
      * @return ResponseEntity с ролью
      */
     @GetMapping("/{id}")
     public ResponseEntity<Role> findById(@PathVariable int id) {
-        var role = this.roleService.findById(id);
-        return ResponseEntity.status(HttpStatus.OK)
-                .body(role.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
-                        "Role is not found. Please, check id.")));
+        var role = this.roleService.findById(id).orElseThrow(
+                () -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Role is not found. Please, check id."));
+        return ResponseEntity.ok().eTag(ETags.of(role.getVersion())).body(role);
     }
 
     /**
@@ -83,13 +93,23 @@ public class RoleController {
      * в качестве параметра объектом. Обновление происходит через метод сервисного
      * слоя {@link RoleService#save(Role)}. При работе метода будет возвращен
      * ResponseEntity со статусом OK.
+     * Если передан заголовок If-Match, то ожидаемая версия роли берется из
+     * него, иначе из тела запроса. Если версия в базе данных другая, то
+     * возвращается ответ PRECONDITION_FAILED.
      *
-     * @param role роль
+     * @param role    роль
+     * @param ifMatch заголовок If-Match или null
      * @return ResponseEntity
      */
     @PutMapping("/")
     @Validated(Operation.OnUpdate.class)
-    public ResponseEntity<Void> update(@Valid @RequestBody Role role) {
+    public ResponseEntity<Void> update(
+            @Valid @RequestBody Role role,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        var version = ETags.version(ifMatch);
+        if (version != null) {
+            role.setVersion(version);
+        }
         this.roleService.save(role);
         return ResponseEntity.ok().build();
     }
@@ -111,24 +131,49 @@ public class RoleController {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Обрабатывает DELETE запрос с параметром ids, удаляет роли по переданным
+     * идентификаторам через метод сервисного слоя
+     * {@link RoleService#deleteAll(Collection)}. Если передано больше
+     * {@link Chunks#MAX_IDS} идентификаторов, то выбрасывается исключение
+     * ResponseStatusException со статусом BAD_REQUEST.
+     *
+     * @param ids идентификаторы ролей
+     * @return количество удаленных ролей
+     */
+    @DeleteMapping(params = "ids")
+    public Map<String, Integer> deleteAll(@RequestParam List<Integer> ids) {
+        if (ids.size() > Chunks.MAX_IDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Too many ids, at most " + Chunks.MAX_IDS + " per request");
+        }
+        return Map.of("deleted", roleService.deleteAll(ids));
+    }
+
     /**
      * Обрабатывает PATCH запрос, частично обновляет роль в соответствии с переданным
      * в качестве параметра объектом. Обновление происходит через метод сервисного
-     * слоя {@link RoleService#patchModel(Role)}. При работе метода будет возвращен
+     * слоя {@link RoleService#patchModel(Role, Integer)}. При работе метода будет возвращен
      * ResponseEntity с ролью со статусом OK, если обновление прошло успешно или будет
      * выброшено исключение ResponseStatusException со статусом NOT_FOUND.
+     * Если передан заголовок If-Match, то роль обновляется только при
+     * совпадении версии, иначе возвращается ответ PRECONDITION_FAILED.
+     * Ответ содержит заголовок ETag с новой версией.
      *
-     * @param role роль
+     * @param role    роль
+     * @param ifMatch заголовок If-Match или null
      * @return ResponseEntity с ролью
      * @throws InvocationTargetException при выбросе исключения при работе с рефлексией
      * @throws IllegalAccessException    при невозможности вызвать метод объекта
      */
     @PatchMapping("/")
-    public ResponseEntity<Role> patch(@RequestBody Role role)
+    public ResponseEntity<Role> patch(
+            @RequestBody Role role,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
             throws InvocationTargetException, IllegalAccessException {
-        return ResponseEntity.status(HttpStatus.OK)
-                .body(roleService.patchModel(role).
-                        orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
-                                "Role is not found or invalid properties mapping")));
+        var patched = roleService.patchModel(role, ETags.version(ifMatch)).
+                orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Role is not found or invalid properties mapping"));
+        return ResponseEntity.ok().eTag(ETags.of(patched.getVersion())).body(patched);
     }
 }
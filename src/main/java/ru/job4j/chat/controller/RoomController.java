@@ -1,19 +1,24 @@
 package ru.job4j.chat.controller;
 
 import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 import ru.job4j.chat.model.Room;
+import ru.job4j.chat.service.Chunks;
 import ru.job4j.chat.service.RoomService;
 import ru.job4j.chat.validator.Operation;
 
 import javax.validation.Valid;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Контроллер для работы с комнатами
@@ -27,6 +32,11 @@ import java.util.List;
 @RequestMapping("/room")
 public class RoomController {
 
+    /**
+     * Максимальный размер страницы участников комнаты
+     */
+    private static final int MAX_PAGE_SIZE = 1000;
+
     /**
      * Объект для доступа к методам RoomService
      */
@@ -35,12 +45,16 @@ public class RoomController {
     /**
      * Обрабатывает GET запрос, возвращает список комнат. Список
      * получается через метод сервисного слоя {@link RoomService#findAll()}.
+     * Ответ содержит заголовок ETag, вычисленный по идентификаторам и версиям
+     * комнат, если он совпадает с заголовком If-None-Match, то возвращается
+     * ответ NOT_MODIFIED без тела.
      *
-     * @return список комнат
+     * @return ResponseEntity со списком комнат
      */
     @GetMapping("/")
-    public List<Room> findAll() {
-        return new ArrayList<>(this.roomService.findAll());
+    public ResponseEntity<List<Room>> findAll() {
+        var rooms = new ArrayList<>(this.roomService.findAll());
+        return ResponseEntity.ok().eTag(ETags.of(rooms, Room::getVersion)).body(rooms);
     }
 
     /**
@@ -49,19 +63,38 @@ public class RoomController {
      * {@link RoomService#findById(int)}. Если от сервисного слоя возвращается
      * Optional.empty(), то выбрасывается исключение ResponseStatusException со
      * статусом NOT_FOUND.
+     * Ответ содержит заголовок ETag с версией комнаты, если он совпадает
+     * с заголовком If-None-Match, то возвращается ответ NOT_MODIFIED без тела.
      *
      * @param id идентификатор комнаты
      * @return ResponseEntity с комнатой
      */
     @GetMapping("/{id}")
     public ResponseEntity<Room> findById(@PathVariable int id) {
-        var room = this.roomService.findById(id);
-        return new ResponseEntity<Room>(
-                room.orElseThrow(
-                        () -> new ResponseStatusException(HttpStatus.NOT_FOUND,
-                                "Room is not found. Please, check id.")
-                ), HttpStatus.OK
-        );
+        var room = this.roomService.findById(id).orElseThrow(
+                () -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Room is not found. Please, check id."));
+        return ResponseEntity.ok().eTag(ETags.of(room.getVersion())).body(room);
+    }
+
+    /**
+     * Обрабатывает GET запрос с параметром ids, возвращает комнаты по переданным
+     * идентификаторам в порядке идентификаторов. Список получается через метод
+     * сервисного слоя {@link RoomService#findAllById(Collection)}, отсутствующие
+     * идентификаторы пропускаются. Если передано больше {@link Chunks#MAX_IDS}
+     * идентификаторов, то выбрасывается исключение ResponseStatusException
+     * со статусом BAD_REQUEST.
+     *
+     * @param ids идентификаторы комнат
+     * @return список комнат
+     */
+    @GetMapping(params = "ids")
+    public List<Room> findAllById(@RequestParam List<Integer> ids) {
+        if (ids.size() > Chunks.MAX_IDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Too many ids, at most " + Chunks.MAX_IDS + " per request");
+        }
+        return this.roomService.findAllById(ids);
     }
 
     /**
@@ -87,13 +120,23 @@ public class RoomController {
      * в качестве параметра объектом. Обновление происходит через метод сервисного
      * слоя {@link RoomService#save(Room)}. При работе метода будет возвращен
      * ResponseEntity со статусом OK.
+     * Если передан заголовок If-Match, то ожидаемая версия комнаты берется из
+     * него, иначе из тела запроса. Если версия в базе данных другая, то
+     * возвращается ответ PRECONDITION_FAILED.
      *
-     * @param room комната
+     * @param room    комната
+     * @param ifMatch заголовок If-Match или null
      * @return ResponseEntity
      */
     @PutMapping("/")
     @Validated(Operation.OnUpdate.class)
-    public ResponseEntity<Void> update(@Valid @RequestBody Room room) {
+    public ResponseEntity<Void> update(
+            @Valid @RequestBody Room room,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        var version = ETags.version(ifMatch);
+        if (version != null) {
+            room.setVersion(version);
+        }
         this.roomService.save(room);
         return ResponseEntity.ok().build();
     }
@@ -115,24 +158,144 @@ public class RoomController {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Обрабатывает DELETE запрос с параметром ids, удаляет комнаты по переданным
+     * идентификаторам через метод сервисного слоя
+     * {@link RoomService#deleteAll(Collection)}. Если передано больше
+     * {@link Chunks#MAX_IDS} идентификаторов, то выбрасывается исключение
+     * ResponseStatusException со статусом BAD_REQUEST. Сообщения комнат
+     * не удаляются каскадно, поэтому, если у них есть сообщения, удаление
+     * отклоняется базой данных и возвращается статус CONFLICT.
+     *
+     * @param ids идентификаторы комнат
+     * @return количество удаленных комнат
+     */
+    @DeleteMapping(params = "ids")
+    public Map<String, Integer> deleteAll(@RequestParam List<Integer> ids) {
+        if (ids.size() > Chunks.MAX_IDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Too many ids, at most " + Chunks.MAX_IDS + " per request");
+        }
+        return Map.of("deleted", roomService.deleteAll(ids));
+    }
+
+    /**
+     * Обрабатывает GET запрос, возвращает комнаты, участником которых является
+     * текущий пользователь. Комнаты получаются через метод сервисного слоя
+     * {@link RoomService#findJoined(String)}.
+     *
+     * @param authentication аутентификация текущего запроса
+     * @return список комнат
+     */
+    @GetMapping("/joined")
+    public List<Room> findJoined(Authentication authentication) {
+        return this.roomService.findJoined(authentication.getName());
+    }
+
+    /**
+     * Обрабатывает GET запрос, возвращает страницу идентификаторов участников
+     * комнаты, упорядоченную по возрастанию. Для получения следующей страницы
+     * в параметре after передается последний полученный идентификатор.
+     * Размер страницы ограничивается значением {@code MAX_PAGE_SIZE}.
+     * Страница получается через метод сервисного слоя
+     * {@link RoomService#findMemberIds(int, int, int)}.
+     *
+     * @param id    идентификатор комнаты
+     * @param after идентификатор участника курсора
+     * @param limit размер страницы
+     * @return список идентификаторов участников
+     */
+    @GetMapping("/{id}/members")
+    public List<Integer> findMemberIds(@PathVariable int id,
+                                       @RequestParam(defaultValue = "0") int after,
+                                       @RequestParam(defaultValue = "100") int limit) {
+        return this.roomService.findMemberIds(
+                id, after, Math.max(1, Math.min(limit, MAX_PAGE_SIZE))
+        );
+    }
+
+    /**
+     * Обрабатывает PUT запрос, добавляет текущего пользователя в участники
+     * комнаты через метод сервисного слоя {@link RoomService#join(int, String)}.
+     * Повторное добавление не изменяет участников. Если комнаты нет, то
+     * выбрасывается исключение ResponseStatusException со статусом NOT_FOUND.
+     *
+     * @param id             идентификатор комнаты
+     * @param authentication аутентификация текущего запроса
+     * @return ResponseEntity со статусом OK
+     */
+    @PutMapping("/{id}/members/me")
+    public ResponseEntity<Void> join(@PathVariable int id, Authentication authentication) {
+        if (!this.roomService.join(id, authentication.getName())
+                && this.roomService.findById(id).isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND,
+                    "Room is not found. Please, check id.");
+        }
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * Обрабатывает DELETE запрос, удаляет текущего пользователя из участников
+     * комнаты через метод сервисного слоя {@link RoomService#leave(int, String)}.
+     * Повторное удаление не изменяет участников.
+     *
+     * @param id             идентификатор комнаты
+     * @param authentication аутентификация текущего запроса
+     * @return ResponseEntity со статусом OK
+     */
+    @DeleteMapping("/{id}/members/me")
+    public ResponseEntity<Void> leave(@PathVariable int id, Authentication authentication) {
+        this.roomService.leave(id, authentication.getName());
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * Обрабатывает PUT запрос, отмечает сообщения комнаты до сообщения messageId
+     * включительно прочитанными текущим пользователем через метод сервисного
+     * слоя {@link RoomService#markRead(int, String, int)}. Отметка не сдвигается
+     * назад, повторная отметка не изменяет счетчик. Если сообщения нет в комнате,
+     * то выбрасывается исключение ResponseStatusException со статусом NOT_FOUND.
+     *
+     * @param id             идентификатор комнаты
+     * @param messageId      идентификатор последнего прочитанного сообщения
+     * @param authentication аутентификация текущего запроса
+     * @return ResponseEntity со статусом OK
+     */
+    @PutMapping("/{id}/members/me/read")
+    public ResponseEntity<Void> markRead(@PathVariable int id, @RequestParam int messageId,
+                                         Authentication authentication) {
+        if (!this.roomService.markRead(id, authentication.getName(), messageId)
+                && !this.roomService.hasMessage(id, messageId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND,
+                    "Message is not found in the room. Please, check messageId.");
+        }
+        return ResponseEntity.ok().build();
+    }
+
     /**
      * Обрабатывает PATCH запрос, частично обновляет комнату в соответствии с переданным
      * в качестве параметра объектом. Обновление происходит через метод сервисного
-     * слоя {@link RoomService#patchModel(Room)}. При работе метода будет возвращен
+     * слоя {@link RoomService#patchModel(Room, Integer)}. При работе метода будет возвращен
      * ResponseEntity с комнатой со статусом OK, если обновление прошло успешно или будет
      * выброшено исключение ResponseStatusException со статусом NOT_FOUND.
+     * Если передан заголовок If-Match, то комната обновляется только при
+     * совпадении версии, иначе возвращается ответ PRECONDITION_FAILED.
+     * Ответ содержит заголовок ETag с новой версией.
      *
-     * @param room комната
+     * @param room    комната
+     * @param ifMatch заголовок If-Match или null
      * @return ResponseEntity с комнатой
      * @throws InvocationTargetException при выбросе исключения при работе с рефлексией
      * @throws IllegalAccessException    при невозможности вызвать метод объекта
      */
     @PatchMapping("/")
-    public ResponseEntity<Room> patch(@RequestBody Room room)
+    public ResponseEntity<Room> patch(
+            @RequestBody Room room,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
             throws InvocationTargetException, IllegalAccessException {
-        return ResponseEntity.status(HttpStatus.OK)
-                .body(roomService.patchModel(room).
-                        orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
-                                "Room is not found or invalid properties mapping")));
+        var patched = roomService.patchModel(room, ETags.version(ifMatch)).
+                orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Room is not found or invalid properties mapping"));
+        return ResponseEntity.ok().eTag(ETags.of(patched.getVersion())).body(patched);
     }
 }
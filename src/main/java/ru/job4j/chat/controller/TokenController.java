@@ -0,0 +1,87 @@
+package ru.job4j.chat.controller;
+
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import ru.job4j.chat.service.TokenService;
+
+import java.util.Date;
+
+import static ru.job4j.chat.filter.JWTAuthenticationFilter.EXPIRATION_TIME;
+import static ru.job4j.chat.filter.JWTAuthenticationFilter.HEADER_STRING;
+import static ru.job4j.chat.filter.JWTAuthenticationFilter.REFRESH_HEADER_STRING;
+import static ru.job4j.chat.filter.JWTAuthenticationFilter.TOKEN_PREFIX;
+
+/**
+ * Контроллер для обновления и отзыва токенов
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.service.TokenService
+ */
+@AllArgsConstructor
+@RestController
+@RequestMapping("/token")
+public class TokenController {
+
+    /**
+     * Путь обновления токенов
+     */
+    public static final String REFRESH_URL = "/token/refresh";
+
+    /**
+     * Объект для доступа к методам TokenService
+     */
+    private final TokenService tokenService;
+
+    /**
+     * Обрабатывает POST запрос, обменивает токен обновления из заголовка
+     * Refresh-Token на новую пару токенов через метод сервисного слоя
+     * {@link TokenService#refresh(String)}. Новые токены возвращаются в тех же
+     * заголовках, что и при входе. Если токен обновления не найден, отозван
+     * или истек, то выбрасывается исключение ResponseStatusException со
+     * статусом UNAUTHORIZED.
+     *
+     * @param refreshToken токен обновления
+     * @return ResponseEntity с новыми токенами в заголовках
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<Void> refresh(
+            @RequestHeader(REFRESH_HEADER_STRING) String refreshToken) {
+        var tokens = tokenService.refresh(refreshToken).orElseThrow(
+                () -> new ResponseStatusException(HttpStatus.UNAUTHORIZED,
+                        "Refresh token is invalid, expired or revoked"));
+        return ResponseEntity.ok()
+                .header(HEADER_STRING, TOKEN_PREFIX + tokens.getAccessToken())
+                .header(REFRESH_HEADER_STRING, tokens.getRefreshToken())
+                .build();
+    }
+
+    /**
+     * Обрабатывает POST запрос, отзывает токен доступа текущего запроса и,
+     * если передан заголовок Refresh-Token, токен обновления через метод
+     * сервисного слоя {@link TokenService#revoke(String, Date, String)}.
+     * Токен доступа хранится в реестре отозванных токенов не дольше
+     * максимального времени действия токена доступа.
+     *
+     * @param authentication аутентификация текущего запроса
+     * @param refreshToken   токен обновления или null
+     * @return ResponseEntity со статусом NO_CONTENT
+     */
+    @PostMapping("/revoke")
+    public ResponseEntity<Void> revoke(
+            Authentication authentication,
+            @RequestHeader(value = REFRESH_HEADER_STRING, required = false) String refreshToken) {
+        String jti = authentication.getDetails() instanceof String
+                ? (String) authentication.getDetails() : null;
+        tokenService.revoke(jti, new Date(System.currentTimeMillis() + EXPIRATION_TIME),
+                refreshToken);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,23 @@
+package ru.job4j.chat.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.job4j.chat.model.Message;
+
+/**
+ * Событие создания сообщения. Публикуется сервисным слоем
+ * после сохранения нового сообщения в репозитории.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.service.MessageService#save(Message)
+ */
+@Getter
+@AllArgsConstructor
+public class MessageCreatedEvent {
+
+    /**
+     * Созданное сообщение
+     */
+    private final Message message;
+}
@@ -0,0 +1,45 @@
+package ru.job4j.chat.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.job4j.chat.model.Message;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Событие изменения кэша последних сообщений комнат.
+ * Публикуется сервисным слоем после сохранения новых сообщений комнат,
+ * буферы которых есть в кэше, и после изменения сообщений, при котором
+ * буферы их комнат устаревают.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.service.MessageTailCache
+ */
+@Getter
+@AllArgsConstructor
+public class MessageTailEvent {
+
+    /**
+     * Сохраненные сообщения с полными данными пользователя и комнаты
+     * в порядке возрастания идентификатора
+     */
+    private final List<Message> messages;
+
+    /**
+     * Идентификаторы комнат, буферы которых нужно удалить из кэша:
+     * комнаты измененных сообщений и комнаты новых сообщений, буферов
+     * которых не было в кэше при сохранении
+     */
+    private final Set<Integer> staleRooms;
+
+    /**
+     * Конструктор события добавления новых сообщений
+     *
+     * @param messages сохраненные сообщения
+     */
+    public MessageTailEvent(List<Message> messages) {
+        this(messages, Set.of());
+    }
+}
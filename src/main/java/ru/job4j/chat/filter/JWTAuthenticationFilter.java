@@ -1,15 +1,19 @@
 package ru.job4j.chat.filter;
 
-import com.auth0.jwt.JWT;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import ru.job4j.chat.model.Person;
+import ru.job4j.chat.service.PasswordHashingRejectedException;
+import ru.job4j.chat.service.TokenService;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -17,9 +21,8 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Date;
 
-import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+import static ru.job4j.chat.service.PasswordHashingRejectedException.RETRY_AFTER_SECONDS;
 
 /**
  * Фильтр пользователя
@@ -36,9 +39,14 @@ public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilte
     public static final String SECRET = "SecretKeyToGenJWTs";
 
     /**
-     * Время действия токена
+     * Время действия токена доступа
      */
-    public static final long EXPIRATION_TIME = 864_000_000; /* 10 days */
+    public static final long EXPIRATION_TIME = 900_000; /* 15 minutes */
+
+    /**
+     * Время действия токена обновления
+     */
+    public static final long REFRESH_EXPIRATION_TIME = 2_592_000_000L; /* 30 days */
 
     /**
      * Префикс токена
@@ -50,16 +58,36 @@ public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilte
      */
     public static final String HEADER_STRING = "Authorization";
 
+    /**
+     * Заголовок токена обновления
+     */
+    public static final String REFRESH_HEADER_STRING = "Refresh-Token";
+
+    /**
+     * Утверждение токена доступа со списком ролей пользователя
+     */
+    public static final String ROLES_CLAIM = "roles";
+
     /**
      * Путь регистрации
      */
     public static final String SIGN_UP_URL = "/users/sign-up";
 
+    /**
+     * Путь проверки доступности имени пользователя
+     */
+    public static final String AVAILABLE_URL = "/users/available";
+
     /**
      * Менеджер аутентификации
      */
     private final AuthenticationManager auth;
 
+    /**
+     * Сервис выдачи токенов
+     */
+    private final TokenService tokenService;
+
     /**
      * Создает пользовательский объект с данными сайта, который
      * пытается залогиниться, возвращает объект Authentication.
@@ -87,8 +115,10 @@ public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilte
     }
 
     /**
-     * Создает JWT токен и добавляет его в response.
-     * Вызов метода происходит, когда пользователь
+     * Создает токен доступа и токен обновления и добавляет их в response.
+     * Роли пользователя из полномочий аутентификации записываются в токен
+     * доступа, поэтому проверка ролей при последующих запросах не
+     * обращается к базе данных. Вызов метода происходит, когда пользователь
      * авторизовался.
      *
      * @param req   запрос пользователя
@@ -103,10 +133,33 @@ public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilte
                                             Authentication auth)
             throws IOException, ServletException {
 
-        String token = JWT.create()
-                .withSubject(((User) auth.getPrincipal()).getUsername())
-                .withExpiresAt(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
-                .sign(HMAC512(SECRET.getBytes()));
-        res.addHeader(HEADER_STRING, TOKEN_PREFIX + token);
+        var tokens = tokenService.issue(((User) auth.getPrincipal()).getUsername(),
+                RoleAuthorities.roles(auth.getAuthorities()));
+        res.addHeader(HEADER_STRING, TOKEN_PREFIX + tokens.getAccessToken());
+        res.addHeader(REFRESH_HEADER_STRING, tokens.getRefreshToken());
+    }
+
+    /**
+     * Возвращает ответ со статусом SERVICE_UNAVAILABLE и заголовком
+     * Retry-After, если проверка пароля отклонена из-за заполненной
+     * очереди пула вычисления хэшей паролей, иначе обрабатывает ошибку
+     * аутентификации стандартным образом.
+     *
+     * @param req    запрос пользователя
+     * @param res    ответ пользователю
+     * @param failed исключение аутентификации
+     */
+    @Override
+    protected void unsuccessfulAuthentication(HttpServletRequest req,
+                                              HttpServletResponse res,
+                                              AuthenticationException failed)
+            throws IOException, ServletException {
+        if (failed instanceof PasswordHashingRejectedException) {
+            SecurityContextHolder.clearContext();
+            res.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(RETRY_AFTER_SECONDS));
+            res.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), failed.getMessage());
+            return;
+        }
+        super.unsuccessfulAuthentication(req, res, failed);
     }
 }
@@ -1,18 +1,20 @@
 package ru.job4j.chat.filter;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+import ru.job4j.chat.service.RevokedTokenRegistry;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.ArrayList;
 
 import static ru.job4j.chat.filter.JWTAuthenticationFilter.*;
 
@@ -24,18 +26,47 @@ import static ru.job4j.chat.filter.JWTAuthenticationFilter.*;
  */
 public class JWTAuthorizationFilter extends BasicAuthenticationFilter {
 
+    /**
+     * Максимальное количество проверенных токенов в кэше
+     */
+    public static final int TOKEN_CACHE_SIZE = 10_000;
+
+    /**
+     * Объект проверки подписи токенов
+     */
+    private static final JWTVerifier VERIFIER = JWT.require(
+            Algorithm.HMAC512(SECRET.getBytes())
+    ).build();
+
+    /**
+     * Кэш проверенных токенов
+     */
+    private static final VerifiedTokenCache TOKEN_CACHE = new VerifiedTokenCache(
+            TOKEN_CACHE_SIZE, System::currentTimeMillis
+    );
+
+    /**
+     * Реестр отозванных токенов доступа
+     */
+    private final RevokedTokenRegistry revokedTokenRegistry;
+
     /**
      * Конструктор
      *
-     * @param authManager менеджер аутентификации
+     * @param authManager          менеджер аутентификации
+     * @param revokedTokenRegistry реестр отозванных токенов доступа
      */
-    public JWTAuthorizationFilter(AuthenticationManager authManager) {
+    public JWTAuthorizationFilter(AuthenticationManager authManager,
+                                  RevokedTokenRegistry revokedTokenRegistry) {
         super(authManager);
+        this.revokedTokenRegistry = revokedTokenRegistry;
     }
 
     /**
-     * Проверяет наличие JWT токена в хедерах запроса, если успешно,
-     * устанавливает аутентификацию в контекст безопасности.
+     * Проверяет наличие JWT токена в хедерах запроса, если успешно и
+     * токен не отозван, устанавливает аутентификацию в контекст безопасности.
+     * Проверка отзыва выполняется по реестру в памяти без обращения
+     * к базе данных.
      *
      * @param req   запрос пользователя
      * @param res   ответ пользователю
@@ -52,7 +83,12 @@ public class JWTAuthorizationFilter extends BasicAuthenticationFilter {
             return;
         }
 
-        UsernamePasswordAuthenticationToken authentication = getAuthentication(req);
+        UsernamePasswordAuthenticationToken authentication = getAuthentication(header);
+        if (authentication != null
+                && revokedTokenRegistry.isRevoked((String) authentication.getDetails())) {
+            chain.doFilter(req, res);
+            return;
+        }
 
         SecurityContextHolder.getContext().setAuthentication(authentication);
         chain.doFilter(req, res);
@@ -60,26 +96,47 @@ public class JWTAuthorizationFilter extends BasicAuthenticationFilter {
 
     /**
      * Создает пользовательский объект на основании JWT токена
-     * и возвращает его.
+     * и возвращает его. Метод используется также для аутентификации
+     * подключений по протоколу STOMP, где токен передается в заголовке
+     * кадра CONNECT. Подпись токена проверяется общим объектом
+     * {@code VERIFIER} только при первом запросе с токеном, после
+     * проверки токен хранится в {@code TOKEN_CACHE} до окончания срока
+     * его действия. Полномочия пользователя берутся из общего кэша
+     * {@link RoleAuthorities} по списку ролей токена. В детали аутентификации
+     * записывается идентификатор токена jti для проверки отзыва.
      *
-     * @param request запрос пользователя
+     * @param token значение заголовка с JWT токеном
      * @return объект аутентификации
      */
-    private UsernamePasswordAuthenticationToken getAuthentication(HttpServletRequest request) {
-        String token = request.getHeader(HEADER_STRING);
+    public static UsernamePasswordAuthenticationToken getAuthentication(String token) {
         if (token != null) {
-            /* parse the token. */
-            String user = JWT.require(Algorithm.HMAC512(SECRET.getBytes()))
-                    .build()
-                    .verify(token.replace(TOKEN_PREFIX, ""))
-                    .getSubject();
-
-            if (user != null) {
-                return new UsernamePasswordAuthenticationToken(user, null, new ArrayList<>());
+            String jwt = token.replace(TOKEN_PREFIX, "");
+            DecodedJWT decoded = TOKEN_CACHE.get(jwt).orElseGet(() -> verify(jwt));
+
+            if (decoded.getSubject() != null) {
+                var authentication = new UsernamePasswordAuthenticationToken(
+                        decoded.getSubject(), null,
+                        RoleAuthorities.of(decoded.getClaim(ROLES_CLAIM).asList(String.class)));
+                authentication.setDetails(decoded.getId());
+                return authentication;
             }
             return null;
         }
         return null;
     }
-}
 
+    /**
+     * Проверяет подпись и срок действия токена и добавляет проверенный
+     * токен в кэш.
+     *
+     * @param jwt токен
+     * @return расшифрованный токен
+     */
+    private static DecodedJWT verify(String jwt) {
+        DecodedJWT decoded = VERIFIER.verify(jwt);
+        if (decoded.getSubject() != null) {
+            TOKEN_CACHE.put(jwt, decoded);
+        }
+        return decoded;
+    }
+}
@@ -0,0 +1,79 @@
+package ru.job4j.chat.filter;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import ru.job4j.chat.service.RevokedTokenRegistry;
+
+import static ru.job4j.chat.filter.JWTAuthenticationFilter.HEADER_STRING;
+import static ru.job4j.chat.filter.JWTAuthenticationFilter.TOKEN_PREFIX;
+
+/**
+ * Перехватчик входящих STOMP кадров с JWT токеном
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ */
+public class JWTChannelInterceptor implements ChannelInterceptor {
+
+    /**
+     * Реестр отозванных токенов доступа
+     */
+    private final RevokedTokenRegistry revokedTokenRegistry;
+
+    /**
+     * Конструктор
+     *
+     * @param revokedTokenRegistry реестр отозванных токенов доступа
+     */
+    public JWTChannelInterceptor(RevokedTokenRegistry revokedTokenRegistry) {
+        this.revokedTokenRegistry = revokedTokenRegistry;
+    }
+
+    /**
+     * Проверяет JWT токен из заголовка кадра CONNECT тем же способом, что
+     * и {@link JWTAuthorizationFilter}, включая проверку отзыва токена,
+     * и связывает пользователя с сессией.
+     * Кадры SUBSCRIBE и SEND от сессии без пользователя отклоняются.
+     *
+     * @param message входящий кадр
+     * @param channel канал сообщений
+     * @return входящий кадр
+     */
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor =
+                MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+        if (StompCommand.CONNECT.equals(accessor.getCommand())) {
+            String header = accessor.getFirstNativeHeader(HEADER_STRING);
+            if (header == null || !header.startsWith(TOKEN_PREFIX)) {
+                throw new BadCredentialsException("JWT token is missing");
+            }
+            UsernamePasswordAuthenticationToken authentication;
+            try {
+                authentication = JWTAuthorizationFilter.getAuthentication(header);
+            } catch (JWTVerificationException e) {
+                throw new BadCredentialsException("JWT token is invalid", e);
+            }
+            if (authentication != null
+                    && revokedTokenRegistry.isRevoked((String) authentication.getDetails())) {
+                throw new BadCredentialsException("JWT token is revoked");
+            }
+            accessor.setUser(authentication);
+        } else if ((StompCommand.SUBSCRIBE.equals(accessor.getCommand())
+                || StompCommand.SEND.equals(accessor.getCommand()))
+                && accessor.getUser() == null) {
+            throw new BadCredentialsException("STOMP session is not authenticated");
+        }
+        return message;
+    }
+}
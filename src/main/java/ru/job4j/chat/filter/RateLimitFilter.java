@@ -0,0 +1,221 @@
+package ru.job4j.chat.filter;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+import ru.job4j.chat.config.RateLimitProperties;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+import static ru.job4j.chat.filter.JWTAuthenticationFilter.HEADER_STRING;
+import static ru.job4j.chat.filter.JWTAuthenticationFilter.TOKEN_PREFIX;
+
+/**
+ * Фильтр ограничения частоты запросов. Для маршрутов из настроек
+ * {@link RateLimitProperties} запрос забирает маркер из корзины
+ * {@link TokenBucket}, определяемой маршрутом и адресом клиента или
+ * именем пользователя из JWT токена. Если маркеров нет, возвращается
+ * ответ со статусом TOO_MANY_REQUESTS и заголовком Retry-After.
+ * Заполненные корзины не отличаются от новых, поэтому они удаляются раз
+ * в {@link #SWEEP_INTERVAL}. Количество корзин ограничено: если корзин уже
+ * {@link RateLimitProperties#getMaxBuckets()}, то запросы с новыми ключами
+ * забирают маркеры из одной общей корзины маршрута до ближайшего удаления
+ * заполненных корзин, поэтому поток запросов с разных адресов не
+ * увеличивает расход памяти.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    /**
+     * Период удаления заполненных корзин в наносекундах
+     */
+    private static final long SWEEP_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * Ограничения маршрутов
+     */
+    private final List<RateLimitProperties.Route> routes;
+
+    /**
+     * Максимальное количество корзин
+     */
+    private final int maxBuckets;
+
+    /**
+     * Источник текущего времени в наносекундах
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Корзины по маршрутам и ключам
+     */
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Общие корзины маршрутов для новых ключей при достижении
+     * максимального количества корзин
+     */
+    private final List<TokenBucket> overflow;
+
+    /**
+     * Время следующего удаления заполненных корзин в наносекундах
+     */
+    private final AtomicLong nextSweep;
+
+    /**
+     * Объект сравнения путей с шаблонами
+     */
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    /**
+     * Объект получения пути запроса
+     */
+    private final UrlPathHelper pathHelper = new UrlPathHelper();
+
+    /**
+     * Конструктор
+     *
+     * @param properties настройки ограничения частоты запросов
+     */
+    public RateLimitFilter(RateLimitProperties properties) {
+        this(properties, System::nanoTime);
+    }
+
+    /**
+     * Конструктор с источником текущего времени
+     *
+     * @param properties настройки ограничения частоты запросов
+     * @param clock      источник текущего времени в наносекундах
+     */
+    RateLimitFilter(RateLimitProperties properties, LongSupplier clock) {
+        this.routes = List.copyOf(properties.getRoutes());
+        this.maxBuckets = properties.getMaxBuckets();
+        this.clock = clock;
+        long now = clock.getAsLong();
+        this.overflow = routes.stream()
+                .map(route -> new TokenBucket(route.getCapacity(), route.getRefillPerSecond(), now))
+                .collect(Collectors.toList());
+        this.nextSweep = new AtomicLong(now + SWEEP_INTERVAL);
+    }
+
+    /**
+     * Забирает маркер из корзины маршрута запроса, если маркеров нет,
+     * возвращает ответ со статусом TOO_MANY_REQUESTS.
+     *
+     * @param req   запрос пользователя
+     * @param res   ответ пользователю
+     * @param chain цепь фильтров
+     */
+    @Override
+    protected void doFilterInternal(HttpServletRequest req,
+                                    HttpServletResponse res,
+                                    FilterChain chain) throws ServletException, IOException {
+        long now = clock.getAsLong();
+        String path = pathHelper.getPathWithinApplication(req);
+        for (int i = 0; i < routes.size(); i++) {
+            var route = routes.get(i);
+            if (!route.getMethod().equalsIgnoreCase(req.getMethod())
+                    || !pathMatcher.match(route.getPath(), path)) {
+                continue;
+            }
+            long wait = bucket(i, route, req, now).tryConsume(now);
+            if (wait > 0) {
+                long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + 999_999_999L));
+                res.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(seconds));
+                res.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Too many requests");
+                return;
+            }
+        }
+        sweep(now);
+        chain.doFilter(req, res);
+    }
+
+    /**
+     * Возвращает количество корзин.
+     *
+     * @return количество корзин
+     */
+    int size() {
+        return buckets.size();
+    }
+
+    /**
+     * Возвращает корзину маршрута для ключа запроса. Новая корзина
+     * создается, только если количество корзин меньше максимального,
+     * иначе возвращается общая корзина маршрута. Одновременные запросы
+     * могут превысить максимум не более чем на количество потоков.
+     *
+     * @param index номер маршрута
+     * @param route ограничение маршрута
+     * @param req   запрос пользователя
+     * @param now   текущее время в наносекундах
+     * @return корзина
+     */
+    private TokenBucket bucket(int index, RateLimitProperties.Route route,
+                               HttpServletRequest req, long now) {
+        String key = index + ":" + key(route, req);
+        var bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxBuckets) {
+            return overflow.get(index);
+        }
+        return buckets.computeIfAbsent(key,
+                k -> new TokenBucket(route.getCapacity(), route.getRefillPerSecond(), now));
+    }
+
+    /**
+     * Возвращает ключ корзины запроса: имя пользователя из JWT токена
+     * для маршрутов с ключом USER, если токен действителен, иначе адрес
+     * клиента.
+     *
+     * @param route ограничение маршрута
+     * @param req   запрос пользователя
+     * @return ключ корзины
+     */
+    private String key(RateLimitProperties.Route route, HttpServletRequest req) {
+        String header = req.getHeader(HEADER_STRING);
+        if (route.getKey() == RateLimitProperties.Key.USER
+                && header != null && header.startsWith(TOKEN_PREFIX)) {
+            try {
+                var authentication = JWTAuthorizationFilter.getAuthentication(header);
+                if (authentication != null) {
+                    return "user:" + authentication.getName();
+                }
+            } catch (JWTVerificationException e) {
+                /* an invalid token is rejected later, limit it by address */
+            }
+        }
+        return "ip:" + req.getRemoteAddr();
+    }
+
+    /**
+     * Удаляет заполненные корзины, если наступило время удаления.
+     * Удаление выполняет один поток не чаще раза в {@link #SWEEP_INTERVAL}.
+     *
+     * @param now текущее время в наносекундах
+     */
+    private void sweep(long now) {
+        long next = nextSweep.get();
+        if (now >= next && nextSweep.compareAndSet(next, now + SWEEP_INTERVAL)) {
+            buckets.values().removeIf(bucket -> bucket.isFull(now));
+        }
+    }
+}
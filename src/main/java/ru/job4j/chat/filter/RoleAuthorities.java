@@ -0,0 +1,99 @@
+package ru.job4j.chat.filter;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Общий кэш полномочий по ролям пользователей. Роли пользователя передаются
+ * в JWT токене списком наименований ролей, при каждом запросе список
+ * полномочий берется из кэша по списку наименований, поэтому одинаковые
+ * наборы ролей разных пользователей используют одни и те же неизменяемые
+ * объекты полномочий. Количество наборов ролей ограничено, так как роли
+ * хранятся в таблице role, а списки ролей берутся только из токенов
+ * с проверенной подписью.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ */
+public final class RoleAuthorities {
+
+    /**
+     * Префикс полномочия роли
+     */
+    public static final String ROLE_PREFIX = "ROLE_";
+
+    /**
+     * Полномочия по наименованиям ролей
+     */
+    private static final Map<String, GrantedAuthority> AUTHORITIES = new ConcurrentHashMap<>();
+
+    /**
+     * Списки полномочий по спискам наименований ролей
+     */
+    private static final Map<List<String>, List<GrantedAuthority>> LISTS =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Закрытый конструктор
+     */
+    private RoleAuthorities() {
+    }
+
+    /**
+     * Возвращает общий объект полномочия роли.
+     *
+     * @param role наименование роли
+     * @return полномочие роли
+     */
+    public static GrantedAuthority of(String role) {
+        return AUTHORITIES.computeIfAbsent(role,
+                name -> new SimpleGrantedAuthority(ROLE_PREFIX + name));
+    }
+
+    /**
+     * Возвращает общий неизменяемый список полномочий ролей.
+     *
+     * @param roles наименования ролей или null
+     * @return список полномочий
+     */
+    public static List<GrantedAuthority> of(List<String> roles) {
+        if (roles == null || roles.isEmpty()) {
+            return List.of();
+        }
+        var cached = LISTS.get(roles);
+        if (cached != null) {
+            return cached;
+        }
+        var authorities = new ArrayList<GrantedAuthority>(roles.size());
+        for (var role : roles) {
+            authorities.add(of(role));
+        }
+        var result = List.copyOf(authorities);
+        var previous = LISTS.putIfAbsent(List.copyOf(roles), result);
+        return previous != null ? previous : result;
+    }
+
+    /**
+     * Возвращает наименования ролей по полномочиям. Полномочия без
+     * префикса роли пропускаются.
+     *
+     * @param authorities полномочия
+     * @return наименования ролей
+     */
+    public static List<String> roles(Collection<? extends GrantedAuthority> authorities) {
+        var result = new ArrayList<String>(authorities.size());
+        for (var authority : authorities) {
+            var name = authority.getAuthority();
+            if (name != null && name.startsWith(ROLE_PREFIX)) {
+                result.add(name.substring(ROLE_PREFIX.length()));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,74 @@
+package ru.job4j.chat.filter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Корзина маркеров для ограничения частоты запросов. Состояние корзины
+ * хранится одним числом, теоретическим временем прихода следующего
+ * запроса (алгоритм GCRA), и изменяется операцией compare-and-set без
+ * блокировок. Корзина вмещает capacity маркеров и пополняется одним
+ * маркером за interval наносекунд.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ */
+public class TokenBucket {
+
+    /**
+     * Время пополнения одного маркера в наносекундах
+     */
+    private final long interval;
+
+    /**
+     * Допустимое опережение теоретического времени в наносекундах
+     */
+    private final long tolerance;
+
+    /**
+     * Теоретическое время прихода следующего запроса в наносекундах
+     */
+    private final AtomicLong arrival;
+
+    /**
+     * Конструктор
+     *
+     * @param capacity        количество маркеров в корзине
+     * @param refillPerSecond количество маркеров, добавляемых в секунду
+     * @param now             текущее время в наносекундах
+     */
+    public TokenBucket(int capacity, double refillPerSecond, long now) {
+        this.interval = (long) (1_000_000_000L / refillPerSecond);
+        this.tolerance = interval * (capacity - 1);
+        this.arrival = new AtomicLong(now);
+    }
+
+    /**
+     * Забирает маркер из корзины.
+     *
+     * @param now текущее время в наносекундах
+     * @return 0, если маркер получен, иначе время до появления маркера в наносекундах
+     */
+    public long tryConsume(long now) {
+        while (true) {
+            long current = arrival.get();
+            long wait = current - tolerance - now;
+            if (wait > 0) {
+                return wait;
+            }
+            if (arrival.compareAndSet(current, Math.max(current, now) + interval)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Проверяет, заполнена ли корзина полностью. Заполненная корзина
+     * не отличается от новой и может быть удалена.
+     *
+     * @param now текущее время в наносекундах
+     * @return true, если корзина заполнена
+     */
+    public boolean isFull(long now) {
+        return arrival.get() <= now;
+    }
+}
@@ -0,0 +1,148 @@
+package ru.job4j.chat.filter;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Кэш проверенных JWT токенов. Хранит расшифрованный токен до окончания
+ * срока действия токена, поэтому повторные запросы с тем же токеном не
+ * проверяют подпись. Чтение выполняется без блокировок, размер кэша
+ * ограничен: при заполнении удаляются просроченные токены, а если их нет,
+ * то произвольные токены до освобождения места.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ */
+public class VerifiedTokenCache {
+
+    /**
+     * Максимальное количество токенов
+     */
+    private final int maxSize;
+
+    /**
+     * Источник текущего времени в миллисекундах
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Проверенные токены
+     */
+    private final Map<String, Entry> tokens = new ConcurrentHashMap<>();
+
+    /**
+     * Конструктор
+     *
+     * @param maxSize максимальное количество токенов
+     * @param clock   источник текущего времени в миллисекундах
+     */
+    public VerifiedTokenCache(int maxSize, LongSupplier clock) {
+        this.maxSize = maxSize;
+        this.clock = clock;
+    }
+
+    /**
+     * Возвращает расшифрованный проверенный токен, если срок действия
+     * токена не истек.
+     *
+     * @param token токен
+     * @return расшифрованный токен или Optional.empty(), если токена нет в кэше
+     */
+    public Optional<DecodedJWT> get(String token) {
+        var entry = tokens.get(token);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (entry.expiresAt <= clock.getAsLong()) {
+            tokens.remove(token, entry);
+            return Optional.empty();
+        }
+        return Optional.of(entry.decoded);
+    }
+
+    /**
+     * Добавляет проверенный токен до окончания срока его действия.
+     * Токены без срока действия не добавляются.
+     *
+     * @param token   токен
+     * @param decoded расшифрованный токен
+     */
+    public void put(String token, DecodedJWT decoded) {
+        if (decoded.getExpiresAt() == null) {
+            return;
+        }
+        long expiresAt = decoded.getExpiresAt().getTime();
+        long now = clock.getAsLong();
+        if (expiresAt <= now) {
+            return;
+        }
+        if (tokens.size() >= maxSize) {
+            evict(now);
+        }
+        tokens.put(token, new Entry(decoded, expiresAt));
+    }
+
+    /**
+     * Удаляет токен из кэша.
+     *
+     * @param token токен
+     */
+    public void remove(String token) {
+        tokens.remove(token);
+    }
+
+    /**
+     * Возвращает количество токенов в кэше.
+     *
+     * @return количество токенов
+     */
+    public int size() {
+        return tokens.size();
+    }
+
+    /**
+     * Удаляет просроченные токены, если после этого кэш заполнен,
+     * удаляет произвольные токены до освобождения места.
+     *
+     * @param now текущее время в миллисекундах
+     */
+    private void evict(long now) {
+        tokens.values().removeIf(entry -> entry.expiresAt <= now);
+        var iterator = tokens.keySet().iterator();
+        while (tokens.size() >= maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Запись кэша
+     */
+    private static final class Entry {
+
+        /**
+         * Расшифрованный токен
+         */
+        private final DecodedJWT decoded;
+
+        /**
+         * Время окончания срока действия токена в миллисекундах
+         */
+        private final long expiresAt;
+
+        /**
+         * Конструктор
+         *
+         * @param decoded   расшифрованный токен
+         * @param expiresAt время окончания срока действия токена в миллисекундах
+         */
+        private Entry(DecodedJWT decoded, long expiresAt) {
+            this.decoded = decoded;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -3,11 +3,15 @@ package ru.job4j.chat.handler;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import ru.job4j.chat.service.PasswordHashingRejectedException;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -16,6 +20,8 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import static ru.job4j.chat.service.PasswordHashingRejectedException.RETRY_AFTER_SECONDS;
+
 /**
  * Глобальный обработчик исключений
  *
@@ -77,4 +83,51 @@ public class GlobalExceptionHandler {
         );
     }
 
-}
\ No newline at end of file
+    /**
+     * Выполняет глобальный (уровня приложения) перехват исключений
+     * PasswordHashingRejectedException, в случае перехвата, возвращает объект
+     * ResponseEntity со статусом SERVICE_UNAVAILABLE и заголовком Retry-After.
+     *
+     * @param e перехваченное исключение
+     * @return объект ResponseEntity
+     */
+    @ExceptionHandler(PasswordHashingRejectedException.class)
+    public ResponseEntity<?> handle(PasswordHashingRejectedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(RETRY_AFTER_SECONDS))
+                .body(Map.of("message", e.getMessage()));
+    }
+
+    /**
+     * Выполняет глобальный (уровня приложения) перехват исключений
+     * OptimisticLockingFailureException, которые выбрасываются при обновлении
+     * модели, если ее версия в базе данных не совпадает с ожидаемой версией
+     * из заголовка If-Match или из тела запроса. В случае перехвата
+     * возвращает объект ResponseEntity со статусом PRECONDITION_FAILED.
+     *
+     * @param e перехваченное исключение
+     * @return объект ResponseEntity
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<?> handle(OptimisticLockingFailureException e) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                .body(Map.of("message", "Resource has been modified, reload it and retry"));
+    }
+
+    /**
+     * Выполняет глобальный (уровня приложения) перехват исключений
+     * DataIntegrityViolationException, которые выбрасываются, если изменение
+     * нарушает ограничение целостности базы данных, например при удалении
+     * комнаты или пользователя, на которых ссылаются сообщения. В случае
+     * перехвата возвращает объект ResponseEntity со статусом CONFLICT.
+     *
+     * @param e перехваченное исключение
+     * @return объект ResponseEntity
+     */
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<?> handle(DataIntegrityViolationException e) {
+        log.debug(e.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("message", "Resource is referenced by other resources"));
+    }
+}
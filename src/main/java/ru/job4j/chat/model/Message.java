@@ -26,11 +26,19 @@ import java.util.Date;
 @Table(name = "message")
 public class Message extends Model {
 
+    /**
+     * Количество идентификаторов, выделяемых одним обращением к
+     * последовательности message_id_seq, равно ее шагу
+     */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     /**
      * Идентификатор сообщения
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "message_id_seq")
+    @SequenceGenerator(name = "message_id_seq", sequenceName = "message_id_seq",
+            allocationSize = ID_ALLOCATION_SIZE)
     @NotNull(message = "Id must be non null", groups = {
             Operation.OnUpdate.class, Operation.OnDelete.class
     })
@@ -43,10 +51,11 @@ public class Message extends Model {
     private String content;
 
     /**
-     * Дата и время создания сообщения
+     * Дата и время создания сообщения, после создания не изменяются
      */
     @PastOrPresent(message = "Created time must be past or present")
     @Temporal(value = TemporalType.TIMESTAMP)
+    @Column(updatable = false)
     private Date created = new Date();
 
     /**
@@ -62,4 +71,11 @@ public class Message extends Model {
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "room_id")
     private Room room;
-}
\ No newline at end of file
+
+    /**
+     * Версия сообщения, увеличивается при каждом обновлении.
+     * Используется для оптимистической блокировки и как ETag
+     */
+    @Version
+    private int version;
+}
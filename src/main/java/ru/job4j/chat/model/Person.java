@@ -1,5 +1,6 @@
 package ru.job4j.chat.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -45,15 +46,25 @@ public class Person extends Model {
     private String username;
 
     /**
-     * Пароль пользователя
+     * Пароль пользователя. Читается из тела запроса, но не записывается в ответ
      */
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     @Size(min = 6, message = "Password's length must be more than 5 characters")
     @NotBlank(message = "Title must be not empty")
     private String password;
 
     /**
-     * Список ролей пользователя
+     * Список ролей пользователя. Из тела запроса не читается, роли
+     * назначаются только администратором
      */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
     @ManyToMany
     private final List<Role> roles = new ArrayList<>();
-}
\ No newline at end of file
+
+    /**
+     * Версия пользователя, увеличивается при каждом обновлении.
+     * Используется для оптимистической блокировки и как ETag
+     */
+    @Version
+    private int version;
+}
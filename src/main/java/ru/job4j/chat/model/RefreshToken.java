@@ -0,0 +1,55 @@
+package ru.job4j.chat.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * Модель данных токен обновления. Хранится только хэш токена,
+ * сам токен передается пользователю при входе и обновлении.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+@Entity
+@Table(name = "refresh_token")
+public class RefreshToken extends Model {
+
+    /**
+     * Идентификатор токена обновления
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    /**
+     * Хэш SHA-256 токена обновления
+     */
+    private String tokenHash;
+
+    /**
+     * Пользователь токена обновления
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "person_id")
+    private Person person;
+
+    /**
+     * Дата и время окончания действия токена обновления
+     */
+    @Temporal(value = TemporalType.TIMESTAMP)
+    private Date expires;
+
+    /**
+     * Признак отзыва токена обновления
+     */
+    private boolean revoked;
+}
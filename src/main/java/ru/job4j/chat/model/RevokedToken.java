@@ -0,0 +1,43 @@
+package ru.job4j.chat.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * Модель данных отозванный токен доступа. Запись хранится до окончания
+ * действия токена, идентификаторы записей возрастают в порядке отзыва.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+@Entity
+@Table(name = "revoked_token")
+public class RevokedToken extends Model {
+
+    /**
+     * Идентификатор записи
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    /**
+     * Идентификатор отозванного токена доступа
+     */
+    private String jti;
+
+    /**
+     * Дата и время окончания действия отозванного токена доступа
+     */
+    @Temporal(value = TemporalType.TIMESTAMP)
+    private Date expires;
+}
@@ -41,4 +41,11 @@ public class Role extends Model {
     @Size(min = 4, message = "Name's length must be more than 4 characters.")
     @NotBlank(message = "Title must be not empty")
     private String name;
-}
\ No newline at end of file
+
+    /**
+     * Версия роли, увеличивается при каждом обновлении.
+     * Используется для оптимистической блокировки и как ETag
+     */
+    @Version
+    private int version;
+}
@@ -39,4 +39,11 @@ public class Room extends Model {
      */
     @NotBlank(message = "Title must be not empty")
     private String name;
-}
\ No newline at end of file
+
+    /**
+     * Версия комнаты, увеличивается при каждом обновлении.
+     * Используется для оптимистической блокировки и как ETag
+     */
+    @Version
+    private int version;
+}
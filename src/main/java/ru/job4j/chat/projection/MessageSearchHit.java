@@ -0,0 +1,26 @@
+package ru.job4j.chat.projection;
+
+import lombok.Value;
+
+/**
+ * Результат поиска сообщений. Содержит проекцию найденного сообщения и
+ * ранг совпадения, пара (rank, message.id) является курсором следующей
+ * страницы результатов поиска.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.repository.MessageSearchRepository
+ */
+@Value
+public class MessageSearchHit {
+
+    /**
+     * Проекция найденного сообщения
+     */
+    MessageView message;
+
+    /**
+     * Ранг совпадения
+     */
+    float rank;
+}
@@ -0,0 +1,79 @@
+package ru.job4j.chat.projection;
+
+import lombok.Value;
+import ru.job4j.chat.model.Message;
+
+import java.util.Date;
+
+/**
+ * Проекция сообщения для чтения. Содержит только поля сообщения,
+ * идентификатор и имя пользователя, идентификатор и название комнаты,
+ * поэтому при выборке не загружаются пароль и роли пользователя.
+ * Создается выражением конструктора в запросе JPQL, без прокси и
+ * без контекста постоянства.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.model.Message
+ */
+@Value
+public class MessageView {
+
+    /**
+     * Идентификатор сообщения
+     */
+    int id;
+
+    /**
+     * Содержание сообщения
+     */
+    String content;
+
+    /**
+     * Дата и время создания сообщения
+     */
+    Date created;
+
+    /**
+     * Идентификатор пользователя сообщения
+     */
+    Integer personId;
+
+    /**
+     * Имя пользователя сообщения
+     */
+    String personUsername;
+
+    /**
+     * Идентификатор комнаты сообщения
+     */
+    Integer roomId;
+
+    /**
+     * Название комнаты сообщения
+     */
+    String roomName;
+
+    /**
+     * Версия сообщения
+     */
+    int version;
+
+    /**
+     * Создает проекцию по загруженному сообщению. Пользователь и комната
+     * сообщения должны быть загружены или содержать только идентификатор.
+     *
+     * @param message сообщение
+     * @return проекция сообщения
+     */
+    public static MessageView of(Message message) {
+        var person = message.getPerson();
+        var room = message.getRoom();
+        return new MessageView(message.getId(), message.getContent(), message.getCreated(),
+                person == null ? null : person.getId(),
+                person == null ? null : person.getUsername(),
+                room == null ? null : room.getId(),
+                room == null ? null : room.getName(),
+                message.getVersion());
+    }
+}
@@ -0,0 +1,29 @@
+package ru.job4j.chat.projection;
+
+import lombok.Value;
+
+/**
+ * Счетчик непрочитанных сообщений пользователя в комнате.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.service.UnreadCounters
+ */
+@Value
+public class RoomUnread {
+
+    /**
+     * Идентификатор комнаты
+     */
+    int roomId;
+
+    /**
+     * Идентификатор последнего прочитанного сообщения
+     */
+    int lastReadId;
+
+    /**
+     * Количество непрочитанных сообщений
+     */
+    long unread;
+}
@@ -1,11 +1,19 @@
 package ru.job4j.chat.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import ru.job4j.chat.model.Message;
+import ru.job4j.chat.projection.MessageView;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Хранилище сообщений
@@ -14,7 +22,15 @@ import java.util.Optional;
  * @version 1.0
  * @see ru.job4j.chat.model.Message
  */
-public interface MessageRepository extends CrudRepository<Message, Integer> {
+public interface MessageRepository extends CrudRepository<Message, Integer>,
+        MessageSearchRepository {
+
+    /**
+     * Выборка полей проекции {@link MessageView}
+     */
+    String VIEW_SELECT = "select new ru.job4j.chat.projection.MessageView("
+            + "m.id, m.content, m.created, p.id, p.username, r.id, r.name, m.version)"
+            + " from Message m left join m.person p left join m.room r";
 
     /**
      * Возвращает список сообщений.
@@ -32,4 +48,141 @@ public interface MessageRepository extends CrudRepository<Message, Integer> {
      */
     @EntityGraph(attributePaths = {"person", "room"})
     Optional<Message> findById(int id);
+
+    /**
+     * Возвращает список проекций сообщений. Выбираются только поля
+     * проекции одним запросом с соединением пользователей и комнат.
+     *
+     * @return список проекций сообщений
+     */
+    @Query(VIEW_SELECT)
+    List<MessageView> findAllViews();
+
+    /**
+     * Возвращает проекцию сообщения по идентификатору.
+     *
+     * @param id идентификатор сообщения
+     * @return проекция сообщения
+     */
+    @Query(VIEW_SELECT + " where m.id = :id")
+    Optional<MessageView> findViewById(@Param("id") int id);
+
+    /**
+     * Возвращает проекции сообщений по идентификаторам одним запросом
+     * с соединением пользователей и комнат.
+     *
+     * @param ids идентификаторы сообщений
+     * @return список проекций сообщений в произвольном порядке
+     */
+    @Query(VIEW_SELECT + " where m.id in :ids")
+    List<MessageView> findViewsByIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Возвращает список сообщений по идентификаторам.
+     *
+     * @param ids идентификаторы сообщений
+     * @return список сообщений
+     */
+    @EntityGraph(attributePaths = {"person", "room"})
+    List<Message> findAllById(Iterable<Integer> ids);
+
+    /**
+     * Возвращает последние сообщения комнаты, упорядоченные
+     * от новых к старым по паре (created, id). Размер выборки
+     * ограничивается параметром pageable.
+     *
+     * @param roomId   идентификатор комнаты
+     * @param pageable ограничение размера выборки
+     * @return список сообщений
+     */
+    @EntityGraph(attributePaths = {"person", "room"})
+    @Query("select m from Message m where m.room.id = :roomId"
+            + " order by m.created desc, m.id desc")
+    List<Message> findLatestByRoom(@Param("roomId") int roomId, Pageable pageable);
+
+    /**
+     * Возвращает сообщения комнаты, предшествующие сообщению с
+     * идентификатором before, упорядоченные от новых к старым по
+     * паре (created, id). Выборка выполняется по ключу (keyset),
+     * поэтому время ответа не зависит от глубины прокрутки истории.
+     * Отдельное условие на created позволяет PostgreSQL исключить
+     * секции таблицы, созданные позже сообщения курсора.
+     *
+     * @param roomId   идентификатор комнаты
+     * @param before   идентификатор сообщения курсора
+     * @param pageable ограничение размера выборки
+     * @return список сообщений
+     */
+    @EntityGraph(attributePaths = {"person", "room"})
+    @Query("select m from Message m where m.room.id = :roomId"
+            + " and m.created <= (select b.created from Message b where b.id = :before)"
+            + " and (m.created < (select b.created from Message b where b.id = :before)"
+            + " or (m.created = (select b.created from Message b where b.id = :before)"
+            + " and m.id < :before))"
+            + " order by m.created desc, m.id desc")
+    List<Message> findByRoomBefore(@Param("roomId") int roomId,
+                                   @Param("before") int before,
+                                   Pageable pageable);
+
+    /**
+     * Возвращает сообщения комнаты, следующие за сообщением с
+     * идентификатором after, упорядоченные от старых к новым по
+     * паре (created, id). Выборка выполняется по ключу тем же
+     * индексом, что и выборка истории комнаты, секции таблицы,
+     * созданные раньше сообщения курсора, исключаются.
+     *
+     * @param roomId   идентификатор комнаты
+     * @param after    идентификатор сообщения курсора
+     * @param pageable ограничение размера выборки
+     * @return список сообщений
+     */
+    @EntityGraph(attributePaths = {"person", "room"})
+    @Query("select m from Message m where m.room.id = :roomId"
+            + " and m.created >= (select a.created from Message a where a.id = :after)"
+            + " and (m.created > (select a.created from Message a where a.id = :after)"
+            + " or (m.created = (select a.created from Message a where a.id = :after)"
+            + " and m.id > :after))"
+            + " order by m.created asc, m.id asc")
+    List<Message> findByRoomAfter(@Param("roomId") int roomId,
+                                  @Param("after") int after,
+                                  Pageable pageable);
+
+    /**
+     * Возвращает поток проекций всех сообщений. Строки читаются из курсора
+     * порциями размера hibernate.jdbc.fetch_size по мере потребления
+     * потока, поэтому список сообщений целиком в памяти не создается.
+     * Проекции выбираются одним запросом с соединением пользователей и
+     * комнат, без загрузки ролей пользователей и без контекста постоянства.
+     * Поток должен потребляться внутри транзакции и закрываться
+     * после использования.
+     *
+     * @return поток проекций сообщений
+     */
+    @Query(VIEW_SELECT)
+    Stream<MessageView> streamAllViews();
+
+    /**
+     * Выделяет блок из {@link Message#ID_ALLOCATION_SIZE} идентификаторов
+     * сообщений следующим значением последовательности message_id_seq.
+     * Блок начинается с возвращенного значения, так же как у оптимизатора
+     * pooled-lo, которым Hibernate выделяет идентификаторы сохраняемых
+     * сообщений, поэтому блоки не пересекаются.
+     *
+     * @return первый идентификатор блока
+     */
+    @Transactional
+    @Query(value = "select nextval('message_id_seq')", nativeQuery = true)
+    int nextIdBlock();
+
+    /**
+     * Удаляет сообщения по идентификаторам одним запросом DELETE без
+     * предварительной загрузки моделей.
+     *
+     * @param ids идентификаторы сообщений
+     * @return количество удаленных сообщений
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from Message m where m.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Integer> ids);
 }
@@ -0,0 +1,30 @@
+package ru.job4j.chat.repository;
+
+import ru.job4j.chat.projection.MessageSearchHit;
+
+import java.util.List;
+
+/**
+ * Хранилище для поиска сообщений по содержанию
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.model.Message
+ */
+public interface MessageSearchRepository {
+
+    /**
+     * Возвращает страницу результатов поиска сообщений, упорядоченную по
+     * убыванию пары (rank, id). Выборка выполняется по ключу: возвращаются
+     * результаты, пара (rank, id) которых меньше переданной пары курсора.
+     *
+     * @param query     строка поиска
+     * @param roomId    идентификатор комнаты или 0 для поиска по всем комнатам
+     * @param afterRank ранг результата курсора
+     * @param afterId   идентификатор сообщения курсора
+     * @param limit     максимальное количество результатов
+     * @return список результатов поиска
+     */
+    List<MessageSearchHit> search(String query, int roomId,
+                                  float afterRank, int afterId, int limit);
+}
@@ -0,0 +1,150 @@
+package ru.job4j.chat.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import ru.job4j.chat.projection.MessageSearchHit;
+import ru.job4j.chat.projection.MessageView;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Реализация хранилища для поиска сообщений по содержанию. В PostgreSQL
+ * поиск выполняется по поисковому вектору message.content_tsv с индексом
+ * GIN, результаты ранжируются функцией ts_rank. Если полнотекстовый поиск
+ * отключен свойством chat.message.search.full-text (база данных H2 в
+ * тестах), выполняется поиск подстроки без учета регистра, все результаты
+ * имеют ранг 0 и упорядочиваются по идентификатору.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.model.Message
+ */
+public class MessageSearchRepositoryImpl implements MessageSearchRepository {
+
+    /**
+     * Запрос полнотекстового поиска
+     */
+    private static final String FULL_TEXT_QUERY = "select * from ("
+            + "select m.id, m.content, m.created, p.id as person_id, p.username,"
+            + " r.id as room_id, r.name, m.version, ts_rank(m.content_tsv, q) as rank"
+            + " from message m cross join plainto_tsquery('simple', :query) q"
+            + " left join person p on p.id = m.person_id"
+            + " left join room r on r.id = m.room_id"
+            + " where m.content_tsv @@ q and (:roomId = 0 or m.room_id = :roomId)"
+            + ") s where (s.rank, s.id) < (cast(:afterRank as real), :afterId)"
+            + " order by s.rank desc, s.id desc limit :limit";
+
+    /**
+     * Запрос поиска подстроки
+     */
+    private static final String SUBSTRING_QUERY = MessageRepository.VIEW_SELECT
+            + " where lower(m.content) like :pattern escape '\\'"
+            + " and (:roomId = 0 or r.id = :roomId) and m.id < :afterId"
+            + " order by m.id desc";
+
+    /**
+     * Объект для работы с контекстом постоянства
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Признак полнотекстового поиска
+     */
+    private final boolean fullText;
+
+    /**
+     * Конструктор
+     *
+     * @param fullText признак полнотекстового поиска
+     */
+    public MessageSearchRepositoryImpl(
+            @Value("${chat.message.search.full-text:true}") boolean fullText) {
+        this.fullText = fullText;
+    }
+
+    /**
+     * Возвращает страницу результатов поиска сообщений, упорядоченную по
+     * убыванию пары (rank, id).
+     *
+     * @param query     строка поиска
+     * @param roomId    идентификатор комнаты или 0 для поиска по всем комнатам
+     * @param afterRank ранг результата курсора
+     * @param afterId   идентификатор сообщения курсора
+     * @param limit     максимальное количество результатов
+     * @return список результатов поиска
+     */
+    @Override
+    public List<MessageSearchHit> search(String query, int roomId,
+                                         float afterRank, int afterId, int limit) {
+        return fullText
+                ? searchFullText(query, roomId, afterRank, afterId, limit)
+                : searchSubstring(query, roomId, afterRank, afterId, limit);
+    }
+
+    /**
+     * Выполняет полнотекстовый поиск.
+     *
+     * @param query     строка поиска
+     * @param roomId    идентификатор комнаты или 0
+     * @param afterRank ранг результата курсора
+     * @param afterId   идентификатор сообщения курсора
+     * @param limit     максимальное количество результатов
+     * @return список результатов поиска
+     */
+    @SuppressWarnings("unchecked")
+    private List<MessageSearchHit> searchFullText(String query, int roomId,
+                                                  float afterRank, int afterId, int limit) {
+        List<Object[]> rows = entityManager.createNativeQuery(FULL_TEXT_QUERY)
+                .setParameter("query", query)
+                .setParameter("roomId", roomId)
+                .setParameter("afterRank", afterRank)
+                .setParameter("afterId", afterId)
+                .setParameter("limit", limit)
+                .getResultList();
+        return rows.stream()
+                .map(row -> new MessageSearchHit(new MessageView(
+                        ((Number) row[0]).intValue(),
+                        (String) row[1],
+                        (Date) row[2],
+                        row[3] == null ? null : ((Number) row[3]).intValue(),
+                        (String) row[4],
+                        row[5] == null ? null : ((Number) row[5]).intValue(),
+                        (String) row[6],
+                        ((Number) row[7]).intValue()
+                ), ((Number) row[8]).floatValue()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Выполняет поиск подстроки без учета регистра. Ранг результатов
+     * равен 0, поэтому курсор сравнивается только по идентификатору,
+     * если ранг курсора больше 0, то курсор указывает на первую страницу.
+     *
+     * @param query     строка поиска
+     * @param roomId    идентификатор комнаты или 0
+     * @param afterRank ранг результата курсора
+     * @param afterId   идентификатор сообщения курсора
+     * @param limit     максимальное количество результатов
+     * @return список результатов поиска
+     */
+    private List<MessageSearchHit> searchSubstring(String query, int roomId,
+                                                   float afterRank, int afterId, int limit) {
+        var pattern = "%" + query.toLowerCase()
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+        return entityManager.createQuery(SUBSTRING_QUERY, MessageView.class)
+                .setParameter("pattern", pattern)
+                .setParameter("roomId", roomId)
+                .setParameter("afterId", afterRank > 0 ? Integer.MAX_VALUE : afterId)
+                .setMaxResults(limit)
+                .getResultList()
+                .stream()
+                .map(view -> new MessageSearchHit(view, 0))
+                .collect(Collectors.toList());
+    }
+}
@@ -1,8 +1,17 @@
 package ru.job4j.chat.repository;
 
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import ru.job4j.chat.model.Person;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
 /**
  * Хранилище пользователей
  *
@@ -13,10 +22,63 @@ import ru.job4j.chat.model.Person;
 public interface PersonRepository extends CrudRepository<Person, Integer> {
 
     /**
-     * Возвращает пользователя по имени.
+     * Возвращает пользователя по имени вместе с ролями пользователя.
      *
      * @param username имя пользователя
      * @return пользователь
      */
+    @EntityGraph(attributePaths = "roles")
     Person findByUsername(String username);
+
+    /**
+     * Проверяет, существует ли пользователь с именем username.
+     *
+     * @param username имя пользователя
+     * @return true, если пользователь существует
+     */
+    boolean existsByUsername(String username);
+
+    /**
+     * Возвращает пользователей по идентификаторам вместе с ролями
+     * пользователей одним запросом.
+     *
+     * @param ids идентификаторы пользователей
+     * @return список пользователей в произвольном порядке
+     */
+    @EntityGraph(attributePaths = "roles")
+    List<Person> findDistinctByIdIn(Collection<Integer> ids);
+
+    /**
+     * Возвращает поток имен всех пользователей. Строки читаются из курсора
+     * порциями размера hibernate.jdbc.fetch_size по мере потребления потока.
+     * Поток должен потребляться внутри транзакции и закрываться после
+     * использования.
+     *
+     * @return поток имен пользователей
+     */
+    @Query("select p.username from Person p")
+    Stream<String> streamUsernames();
+
+    /**
+     * Удаляет связи пользователей с ролями по идентификаторам пользователей.
+     *
+     * @param ids идентификаторы пользователей
+     * @return количество удаленных связей
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "delete from person_roles where person_id in :ids", nativeQuery = true)
+    int deletePersonRolesByIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Удаляет пользователей по идентификаторам одним запросом DELETE без
+     * предварительной загрузки моделей.
+     *
+     * @param ids идентификаторы пользователей
+     * @return количество удаленных пользователей
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from Person p where p.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Integer> ids);
 }
@@ -0,0 +1,66 @@
+package ru.job4j.chat.repository;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import ru.job4j.chat.model.RefreshToken;
+
+import java.util.Date;
+import java.util.Optional;
+
+/**
+ * Хранилище токенов обновления
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.model.RefreshToken
+ */
+public interface RefreshTokenRepository extends CrudRepository<RefreshToken, Integer> {
+
+    /**
+     * Возвращает токен обновления по хэшу токена.
+     *
+     * @param tokenHash хэш токена
+     * @return токен обновления
+     */
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+    /**
+     * Отзывает токен обновления, если он еще не отозван. Запрос атомарен,
+     * поэтому из одновременных запросов с одним токеном токен отзывает
+     * только один.
+     *
+     * @param tokenHash хэш токена
+     * @return количество отозванных токенов, 0, если токен уже отозван или не найден
+     */
+    @Transactional
+    @Modifying
+    @Query("update RefreshToken t set t.revoked = true"
+            + " where t.tokenHash = :tokenHash and t.revoked = false")
+    int revokeByTokenHash(@Param("tokenHash") String tokenHash);
+
+    /**
+     * Отзывает все токены обновления пользователя.
+     *
+     * @param personId идентификатор пользователя
+     * @return количество отозванных токенов
+     */
+    @Transactional
+    @Modifying
+    @Query("update RefreshToken t set t.revoked = true"
+            + " where t.person.id = :personId and t.revoked = false")
+    int revokeAllByPerson(@Param("personId") int personId);
+
+    /**
+     * Удаляет токены обновления, срок действия которых истек.
+     *
+     * @param now текущие дата и время
+     * @return количество удаленных токенов
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from RefreshToken t where t.expires < :now")
+    int deleteExpired(@Param("now") Date now);
+}
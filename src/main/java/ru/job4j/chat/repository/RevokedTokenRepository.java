@@ -0,0 +1,41 @@
+package ru.job4j.chat.repository;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import ru.job4j.chat.model.RevokedToken;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Хранилище отозванных токенов доступа
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.model.RevokedToken
+ */
+public interface RevokedTokenRepository extends CrudRepository<RevokedToken, Integer> {
+
+    /**
+     * Возвращает отозванные токены, добавленные после записи с
+     * идентификатором id, в порядке добавления.
+     *
+     * @param id идентификатор последней прочитанной записи
+     * @return список отозванных токенов
+     */
+    List<RevokedToken> findByIdGreaterThanOrderByIdAsc(int id);
+
+    /**
+     * Удаляет отозванные токены, срок действия которых истек.
+     *
+     * @param now текущие дата и время
+     * @return количество удаленных записей
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from RevokedToken t where t.expires < :now")
+    int deleteExpired(@Param("now") Date now);
+}
@@ -1,8 +1,14 @@
 package ru.job4j.chat.repository;
 
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import ru.job4j.chat.model.Role;
 
+import java.util.Collection;
+
 /**
  * Хранилище ролей
  *
@@ -11,4 +17,27 @@ import ru.job4j.chat.model.Role;
  * @see ru.job4j.chat.model.Role
  */
 public interface RoleRepository extends CrudRepository<Role, Integer> {
+
+    /**
+     * Удаляет связи пользователей с ролями по идентификаторам ролей.
+     *
+     * @param ids идентификаторы ролей
+     * @return количество удаленных связей
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "delete from person_roles where roles_id in :ids", nativeQuery = true)
+    int deletePersonRolesByIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Удаляет роли по идентификаторам одним запросом DELETE без
+     * предварительной загрузки моделей.
+     *
+     * @param ids идентификаторы ролей
+     * @return количество удаленных ролей
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from Role r where r.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Integer> ids);
 }
@@ -1,8 +1,15 @@
 package ru.job4j.chat.repository;
 
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import ru.job4j.chat.model.Room;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Хранилище комнат
  *
@@ -11,4 +18,89 @@ import ru.job4j.chat.model.Room;
  * @see ru.job4j.chat.model.Room
  */
 public interface RoomRepository extends CrudRepository<Room, Integer> {
+
+    /**
+     * Удаляет комнаты по идентификаторам одним запросом DELETE без
+     * предварительной загрузки моделей.
+     *
+     * @param ids идентификаторы комнат
+     * @return количество удаленных комнат
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from Room r where r.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Добавляет пользователя в участники комнаты одним запросом INSERT.
+     * Строка не добавляется, если комнаты или пользователя нет или
+     * пользователь уже является участником комнаты. Все сообщения комнаты
+     * на момент вступления считаются прочитанными.
+     *
+     * @param roomId   идентификатор комнаты
+     * @param username имя пользователя
+     * @param pending  незаписанное приращение количества сообщений комнаты
+     * @return количество добавленных участников
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "insert into room_member (room_id, person_id, read_count)"
+            + " select r.id, p.id, r.message_count + :pending from room r, person p"
+            + " where r.id = :roomId and p.username = :username"
+            + " and not exists (select 1 from room_member m"
+            + " where m.room_id = r.id and m.person_id = p.id)", nativeQuery = true)
+    int insertMember(@Param("roomId") int roomId, @Param("username") String username,
+                     @Param("pending") long pending);
+
+    /**
+     * Удаляет пользователя из участников комнаты.
+     *
+     * @param roomId   идентификатор комнаты
+     * @param username имя пользователя
+     * @return количество удаленных участников
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "delete from room_member where room_id = :roomId"
+            + " and person_id = (select p.id from person p where p.username = :username)",
+            nativeQuery = true)
+    int deleteMember(@Param("roomId") int roomId, @Param("username") String username);
+
+    /**
+     * Проверяет, что сообщение принадлежит комнате.
+     *
+     * @param roomId    идентификатор комнаты
+     * @param messageId идентификатор сообщения
+     * @return true, если сообщение есть в комнате
+     */
+    @Query(value = "select count(*) > 0 from message m"
+            + " where m.id = :messageId and m.room_id = :roomId", nativeQuery = true)
+    boolean existsMessage(@Param("roomId") int roomId, @Param("messageId") int messageId);
+
+    /**
+     * Возвращает страницу идентификаторов участников комнаты, упорядоченную
+     * по возрастанию. Страница выбирается по ключу первичного индекса
+     * таблицы участников.
+     *
+     * @param roomId идентификатор комнаты
+     * @param after  идентификатор участника курсора
+     * @param limit  размер страницы
+     * @return список идентификаторов участников
+     */
+    @Query(value = "select person_id from room_member where room_id = :roomId"
+            + " and person_id > :after order by person_id limit :limit", nativeQuery = true)
+    List<Integer> findMemberIds(@Param("roomId") int roomId, @Param("after") int after,
+                                @Param("limit") int limit);
+
+    /**
+     * Возвращает комнаты, участником которых является пользователь.
+     *
+     * @param username имя пользователя
+     * @return список комнат
+     */
+    @Query(value = "select r.* from room r"
+            + " join room_member m on m.room_id = r.id"
+            + " join person p on p.id = m.person_id"
+            + " where p.username = :username order by r.id", nativeQuery = true)
+    List<Room> findJoined(@Param("username") String username);
 }
@@ -0,0 +1,140 @@
+package ru.job4j.chat.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Фильтр Блума для строковых ключей. Отвечает на вопрос, мог ли ключ быть
+ * добавлен в фильтр: отрицательный ответ точный, положительный ответ
+ * ложен с вероятностью, заданной при создании фильтра для ожидаемого
+ * количества ключей. Биты фильтра хранятся в {@link AtomicLongArray},
+ * поэтому добавление и проверка ключей выполняются без блокировок.
+ * Позиции битов ключа вычисляются двойным хэшированием от 64-битного
+ * хэша ключа.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ */
+public class BloomFilter {
+
+    /**
+     * Биты фильтра
+     */
+    private final AtomicLongArray bits;
+
+    /**
+     * Количество битов фильтра
+     */
+    private final long bitSize;
+
+    /**
+     * Количество хэш функций
+     */
+    private final int hashes;
+
+    /**
+     * Ожидаемое количество ключей
+     */
+    private final int expectedInsertions;
+
+    /**
+     * Конструктор
+     *
+     * @param expectedInsertions ожидаемое количество ключей
+     * @param fpp                вероятность ложноположительного ответа
+     */
+    public BloomFilter(int expectedInsertions, double fpp) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("Expected insertions must be positive");
+        }
+        if (fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("False positive probability must be in (0, 1)");
+        }
+        long size = (long) Math.ceil(-expectedInsertions * Math.log(fpp)
+                / (Math.log(2) * Math.log(2)));
+        this.bits = new AtomicLongArray((int) Math.max(1, (size + 63) >>> 6));
+        this.bitSize = (long) bits.length() << 6;
+        this.hashes = Math.max(1, (int) Math.round(
+                (double) bitSize / expectedInsertions * Math.log(2)));
+        this.expectedInsertions = expectedInsertions;
+    }
+
+    /**
+     * Возвращает ожидаемое количество ключей фильтра.
+     *
+     * @return ожидаемое количество ключей
+     */
+    public int getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    /**
+     * Добавляет ключ в фильтр.
+     *
+     * @param key ключ
+     */
+    public void put(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashes; i++) {
+            long index = index(h1 + i * h2);
+            long mask = 1L << index;
+            int word = (int) (index >>> 6);
+            long current = bits.get(word);
+            while ((current & mask) == 0
+                    && !bits.compareAndSet(word, current, current | mask)) {
+                current = bits.get(word);
+            }
+        }
+    }
+
+    /**
+     * Проверяет, мог ли ключ быть добавлен в фильтр.
+     *
+     * @param key ключ
+     * @return false, если ключ точно не добавлялся
+     */
+    public boolean mightContain(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashes; i++) {
+            long index = index(h1 + i * h2);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Возвращает позицию бита по значению хэш функции.
+     *
+     * @param combined значение хэш функции
+     * @return позиция бита
+     */
+    private long index(int combined) {
+        return (combined < 0 ? ~combined : combined) % bitSize;
+    }
+
+    /**
+     * Вычисляет 64-битный хэш ключа: FNV-1a по символам ключа
+     * с финальным перемешиванием MurmurHash3.
+     *
+     * @param key ключ
+     * @return хэш ключа
+     */
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,144 @@
+package ru.job4j.chat.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Шифратор паролей с вычислением хэшей в отдельном ограниченном пуле
+ * потоков. Вычисление хэша пароля при регистрации и проверка пароля при
+ * входе выполняются делегирующим шифратором в потоках пула, количество
+ * потоков равно количеству ядер процессора, очередь задач ограничена.
+ * Если очередь заполнена, выбрасывается исключение
+ * {@link PasswordHashingRejectedException}, поэтому всплеск входов или
+ * регистраций не занимает потоки обработки остальных запросов.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+    /**
+     * Делегирующий шифратор паролей
+     */
+    private final PasswordEncoder delegate;
+
+    /**
+     * Пул потоков вычисления хэшей
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Таймер вычисления хэша пароля
+     */
+    private final Timer encodeTimer;
+
+    /**
+     * Таймер проверки пароля
+     */
+    private final Timer matchesTimer;
+
+    /**
+     * Конструктор
+     *
+     * @param delegate      делегирующий шифратор паролей
+     * @param threads       количество потоков или 0 для количества ядер процессора
+     * @param queueCapacity размер очереди задач
+     * @param registry      реестр метрик
+     */
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity,
+                                  MeterRegistry registry) {
+        this.delegate = delegate;
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        var counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), task -> {
+                    var thread = new Thread(task, "password-hash-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.encodeTimer = registry.timer("chat.password.hash", "operation", "encode");
+        this.matchesTimer = registry.timer("chat.password.hash", "operation", "matches");
+        Gauge.builder("chat.password.hash.queue", executor, e -> e.getQueue().size())
+                .register(registry);
+        Gauge.builder("chat.password.hash.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(registry);
+    }
+
+    /**
+     * Вычисляет хэш пароля в пуле потоков.
+     *
+     * @param rawPassword пароль
+     * @return хэш пароля
+     */
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> encodeTimer.recordCallable(() -> delegate.encode(rawPassword)));
+    }
+
+    /**
+     * Проверяет соответствие пароля хэшу в пуле потоков.
+     *
+     * @param rawPassword     пароль
+     * @param encodedPassword хэш пароля
+     * @return true, если пароль соответствует хэшу
+     */
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> matchesTimer.recordCallable(
+                () -> delegate.matches(rawPassword, encodedPassword)
+        ));
+    }
+
+    /**
+     * Проверяет необходимость повторного вычисления хэша пароля.
+     *
+     * @param encodedPassword хэш пароля
+     * @return true, если хэш пароля нужно вычислить повторно
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * Останавливает пул потоков.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Выполняет задачу в пуле потоков и ожидает результата.
+     *
+     * @param task задача
+     * @param <T>  тип результата
+     * @return результат задачи
+     */
+    private <T> T execute(Callable<T> task) {
+        try {
+            return executor.submit(task).get();
+        } catch (RejectedExecutionException e) {
+            throw new PasswordHashingRejectedException("Password hashing queue is full");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthenticationServiceException("Password hashing is interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new AuthenticationServiceException("Password hashing is failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package ru.job4j.chat.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Разбиение списков идентификаторов на части для запросов с условием
+ * {@code id IN (...)}. Количество параметров одного запроса ограничено
+ * размером части, поэтому план запроса и размер пакета протокола не
+ * зависят от количества переданных идентификаторов.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ */
+public final class Chunks {
+
+    /**
+     * Количество идентификаторов в одном запросе
+     */
+    public static final int SIZE = 500;
+
+    /**
+     * Максимальное количество идентификаторов в одном HTTP запросе
+     */
+    public static final int MAX_IDS = 10_000;
+
+    /**
+     * Закрытый конструктор
+     */
+    private Chunks() {
+    }
+
+    /**
+     * Разбивает идентификаторы на части без повторов с сохранением порядка.
+     *
+     * @param ids  идентификаторы
+     * @param size количество идентификаторов в части
+     * @return части списка идентификаторов
+     */
+    public static List<List<Integer>> of(Collection<Integer> ids, int size) {
+        var distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        var result = new ArrayList<List<Integer>>((distinct.size() + size - 1) / size);
+        for (int from = 0; from < distinct.size(); from += size) {
+            result.add(distinct.subList(from, Math.min(from + size, distinct.size())));
+        }
+        return result;
+    }
+
+    /**
+     * Загружает модели по идентификаторам частями размера {@link #SIZE}
+     * и возвращает их в порядке переданных идентификаторов. Повторы
+     * идентификаторов не учитываются, отсутствующие модели пропускаются.
+     *
+     * @param ids    идентификаторы
+     * @param finder функция загрузки моделей по части идентификаторов
+     * @param id     функция получения идентификатора модели
+     * @param <T>    тип модели
+     * @return модели в порядке идентификаторов
+     */
+    public static <T> List<T> load(Collection<Integer> ids,
+                                   Function<List<Integer>, ? extends Iterable<T>> finder,
+                                   ToIntFunction<T> id) {
+        var chunks = of(ids, SIZE);
+        var found = new HashMap<Integer, T>();
+        for (var chunk : chunks) {
+            finder.apply(chunk).forEach(model -> found.put(id.applyAsInt(model), model));
+        }
+        var result = new ArrayList<T>(found.size());
+        for (var chunk : chunks) {
+            for (var key : chunk) {
+                var model = found.get(key);
+                if (model != null) {
+                    result.add(model);
+                }
+            }
+        }
+        return result;
+    }
+}
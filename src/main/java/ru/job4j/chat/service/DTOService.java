@@ -3,24 +3,47 @@ package ru.job4j.chat.service;
 import org.springframework.data.repository.CrudRepository;
 import ru.job4j.chat.model.Model;
 
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
- * Утилитный типизированный класс для обновления моделей
+ * Утилитный типизированный класс для обновления моделей. Для каждого
+ * класса модели один раз вычисляются свойства, у которых есть и метод
+ * чтения, и метод записи, методы свойств вызываются через созданные
+ * {@link LambdaMetafactory} функции. Свойства класса хранятся в
+ * {@link ClassValue}, поэтому при обновлении не используются рефлексия
+ * и поиск методов по именам.
  *
  * @author Alexander Emelyanov
  * @version 1.0
  */
 public class DTOService {
 
+    /**
+     * Свойства классов моделей
+     */
+    private static final ClassValue<Property[]> PROPERTIES = new ClassValue<>() {
+        @Override
+        protected Property[] computeValue(Class<?> type) {
+            return properties(type);
+        }
+    };
+
     /**
      * Обновляет объект модели и сохраняет в репозитории.
-     * Для обновления объекта используется рефлексия.
-     * Для сохранения в репозитории используется метод
-     * save конкретного репозитория. После обновления в
+     * Из переданного объекта в объект из репозитория копируются значения
+     * свойств, отличные от null. Для сохранения в репозитории используется
+     * метод save конкретного репозитория. После обновления в
      * репозитории возвращается обновленный объект модели
      * обернутый в Optional.
      *
@@ -39,28 +62,120 @@ public class DTOService {
             return Optional.empty();
         }
         var current = currentOpt.get();
-        var methods = current.getClass().getDeclaredMethods();
-        var namePerMethod = new HashMap<String, Method>();
-        for (var method : methods) {
-            var name = method.getName();
-            if (name.startsWith("get") || name.startsWith("set")) {
-                namePerMethod.put(name, method);
+        copyProperties(t, current);
+        repository.save(current);
+        return Optional.of(current);
+    }
+
+    /**
+     * Копирует значения свойств объекта source, отличные от null,
+     * в объект target.
+     *
+     * @param source объект с новыми значениями
+     * @param target обновляемый объект
+     * @param <T>    тип объекта модели
+     */
+    static <T> void copyProperties(T source, T target) {
+        for (var property : PROPERTIES.get(source.getClass())) {
+            var value = property.getter.apply(source);
+            if (value != null) {
+                property.setter.accept(target, value);
             }
         }
-        for (var name : namePerMethod.keySet()) {
-            if (name.startsWith("get")) {
-                var getMethod = namePerMethod.get(name);
-                var setMethod = namePerMethod.get(name.replace("get", "set"));
-                if (setMethod == null) {
-                    return Optional.empty();
-                }
-                var newValue = getMethod.invoke(t);
-                if (newValue != null) {
-                    setMethod.invoke(current, newValue);
+    }
+
+    /**
+     * Вычисляет свойства класса модели. Учитываются свойства, у которых
+     * есть и метод чтения, и метод записи. Свойства примитивных типов
+     * пропускаются, так как их значение не может быть null и частичное
+     * обновление не может отличить отсутствующее значение от переданного.
+     *
+     * @param type класс модели
+     * @return свойства класса
+     */
+    private static Property[] properties(Class<?> type) {
+        try {
+            var lookup = MethodHandles.lookup();
+            var result = new ArrayList<Property>();
+            for (var descriptor : Introspector.getBeanInfo(type, Object.class)
+                    .getPropertyDescriptors()) {
+                var read = descriptor.getReadMethod();
+                var write = descriptor.getWriteMethod();
+                if (read == null || write == null || descriptor.getPropertyType().isPrimitive()) {
+                    continue;
                 }
+                result.add(new Property(getter(lookup, read), setter(lookup, write)));
             }
+            return result.toArray(new Property[0]);
+        } catch (IntrospectionException e) {
+            throw new IllegalStateException("Cannot introspect " + type.getName(), e);
+        }
+    }
+
+    /**
+     * Создает функцию чтения свойства по методу чтения.
+     *
+     * @param lookup объект поиска методов
+     * @param method метод чтения
+     * @return функция чтения свойства
+     */
+    @SuppressWarnings("unchecked")
+    static Function<Object, Object> getter(MethodHandles.Lookup lookup, Method method) {
+        try {
+            MethodHandle handle = lookup.unreflect(method);
+            return (Function<Object, Object>) LambdaMetafactory.metafactory(lookup, "apply",
+                    MethodType.methodType(Function.class),
+                    MethodType.methodType(Object.class, Object.class),
+                    handle, handle.type()).getTarget().invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot access " + method, e);
+        }
+    }
+
+    /**
+     * Создает функцию записи свойства по методу записи.
+     *
+     * @param lookup объект поиска методов
+     * @param method метод записи
+     * @return функция записи свойства
+     */
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> setter(MethodHandles.Lookup lookup, Method method) {
+        try {
+            MethodHandle handle = lookup.unreflect(method);
+            return (BiConsumer<Object, Object>) LambdaMetafactory.metafactory(lookup, "accept",
+                    MethodType.methodType(BiConsumer.class),
+                    MethodType.methodType(void.class, Object.class, Object.class),
+                    handle, handle.type().changeReturnType(void.class)).getTarget().invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot access " + method, e);
+        }
+    }
+
+    /**
+     * Свойство класса модели
+     */
+    private static final class Property {
+
+        /**
+         * Функция чтения свойства
+         */
+        private final Function<Object, Object> getter;
+
+        /**
+         * Функция записи свойства
+         */
+        private final BiConsumer<Object, Object> setter;
+
+        /**
+         * Конструктор
+         *
+         * @param getter функция чтения свойства
+         * @param setter функция записи свойства
+         */
+        private Property(Function<Object, Object> getter, BiConsumer<Object, Object> setter) {
+            this.getter = getter;
+            this.setter = setter;
         }
-        repository.save(t);
-        return Optional.of(current);
     }
 }
@@ -1,17 +1,33 @@
 package ru.job4j.chat.service;
 
 import lombok.AllArgsConstructor;
-import org.springframework.data.repository.CrudRepository;
+import org.hibernate.Hibernate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.job4j.chat.event.MessageCreatedEvent;
+import ru.job4j.chat.event.MessageTailEvent;
 import ru.job4j.chat.model.Message;
 import ru.job4j.chat.model.Model;
+import ru.job4j.chat.projection.MessageSearchHit;
+import ru.job4j.chat.projection.MessageView;
 import ru.job4j.chat.repository.MessageRepository;
 import ru.job4j.chat.repository.RoomRepository;
 
+import javax.persistence.EntityManager;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Реализация сервиса по работе с сообщениями
@@ -24,11 +40,47 @@ import java.util.stream.Collectors;
 @Service
 public class ImplMessageService implements MessageService {
 
+    /**
+     * Запрос вставки сообщения с выделенным заранее идентификатором
+     */
+    private static final String INSERT_RESERVED_QUERY = "INSERT INTO message"
+            + " (id, content, created, person_id, room_id) VALUES (?, ?, ?, ?, ?)";
+
     /**
      * Объект для доступа к методам MessageRepository
      */
     private final MessageRepository messageRepository;
 
+    /**
+     * Менеджер сущностей для управления контекстом постоянства
+     */
+    private final EntityManager entityManager;
+
+    /**
+     * Объект для публикации событий приложения
+     */
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Кэш последних сообщений комнат
+     */
+    private final MessageTailCache messageTailCache;
+
+    /**
+     * Объект для частичного обновления моделей
+     */
+    private final PatchEngine patchEngine;
+
+    /**
+     * Счетчики непрочитанных сообщений
+     */
+    private final UnreadCounters unreadCounters;
+
+    /**
+     * Объект для выполнения запросов к базе данных
+     */
+    private final JdbcTemplate jdbcTemplate;
+
     /**
      * Возвращает список сообщений. Выполняет вызов метода
      * {@link MessageRepository#findAll()} для получения списка
@@ -41,10 +93,38 @@ public class ImplMessageService implements MessageService {
         return this.messageRepository.findAll().stream().collect(Collectors.toList());
     }
 
+    /**
+     * Возвращает список проекций сообщений. Выполняет вызов метода
+     * {@link MessageRepository#findAllViews()}.
+     *
+     * @return список проекций сообщений
+     */
+    @Override
+    public List<MessageView> findAllViews() {
+        return messageRepository.findAllViews();
+    }
+
+    /**
+     * Передает проекции всех сообщений в обработчик consumer по одной, по
+     * мере чтения из базы данных. Для чтения используется поток метода
+     * репозитория {@link MessageRepository#streamAllViews()}, проекции не
+     * попадают в контекст постоянства, поэтому расход памяти не зависит
+     * от количества сообщений.
+     *
+     * @param consumer обработчик проекций сообщений
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllViews(Consumer<MessageView> consumer) {
+        try (Stream<MessageView> views = messageRepository.streamAllViews()) {
+            views.forEach(consumer);
+        }
+    }
+
     /**
      * Возвращает Optional от сообщения по аргументу id.
-     * Для получения сообщения вызывается метод репозитория
-     * {@link RoomRepository#findById(Object)}.
+     * Для поиска сообщения вызывается метод репозитория
+     * {@link MessageRepository#findById(Object)}.
      *
      * @param id идентификатор сообщения
      * @return найденное сообщение
@@ -54,44 +134,326 @@ public class ImplMessageService implements MessageService {
         return messageRepository.findById(id);
     }
 
+    /**
+     * Возвращает Optional от проекции сообщения по аргументу id.
+     * Для получения проекции вызывается метод репозитория
+     * {@link MessageRepository#findViewById(int)}.
+     *
+     * @param id идентификатор сообщения
+     * @return найденная проекция сообщения
+     */
+    @Override
+    public Optional<MessageView> findViewById(int id) {
+        return messageRepository.findViewById(id);
+    }
+
+    /**
+     * Возвращает проекции сообщений по идентификаторам в порядке
+     * переданных идентификаторов. Идентификаторы разбиваются на части
+     * размера {@link Chunks#SIZE}, для каждой части выполняется один запрос
+     * {@link MessageRepository#findViewsByIds(Collection)}.
+     *
+     * @param ids идентификаторы сообщений
+     * @return список найденных проекций сообщений
+     */
+    @Override
+    public List<MessageView> findViewsByIds(Collection<Integer> ids) {
+        return Chunks.load(ids, messageRepository::findViewsByIds, MessageView::getId);
+    }
+
+    /**
+     * Возвращает страницу истории сообщений комнаты, упорядоченную
+     * от новых к старым. Если курсор before не передан, возвращаются
+     * последние сообщения комнаты, иначе сообщения, предшествующие
+     * сообщению с идентификатором before. Для получения сообщений
+     * вызываются методы репозитория
+     * {@link MessageRepository#findLatestByRoom(int, Pageable)} и
+     * {@link MessageRepository#findByRoomBefore(int, int, Pageable)}.
+     * Последние сообщения комнаты возвращаются из кэша последних сообщений
+     * комнат, при промахе кэша буфер комнаты регистрируется в кэше до чтения
+     * из репозитория и затем заполняется результатом чтения.
+     *
+     * @param roomId идентификатор комнаты
+     * @param before идентификатор сообщения курсора, может быть null
+     * @param limit  максимальное количество сообщений
+     * @return список сообщений
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Message> findByRoom(int roomId, Integer before, int limit) {
+        if (before != null) {
+            return messageRepository.findByRoomBefore(roomId, before, PageRequest.of(0, limit));
+        }
+        var cached = messageTailCache.latest(roomId, limit);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        int size = Math.max(limit, messageTailCache.getRoomCapacity());
+        long generation = messageTailCache.load(roomId);
+        var latest = messageRepository.findLatestByRoom(roomId, PageRequest.of(0, size));
+        latest.forEach(this::initialize);
+        messageTailCache.fill(roomId, generation, latest, latest.size() < size);
+        return latest.size() > limit ? latest.subList(0, limit) : latest;
+    }
+
+    /**
+     * Возвращает сообщения комнаты, следующие за сообщением с
+     * идентификатором after, упорядоченные от старых к новым.
+     * Для получения сообщений вызывается метод репозитория
+     * {@link MessageRepository#findByRoomAfter(int, int, Pageable)}.
+     *
+     * @param roomId идентификатор комнаты
+     * @param after  идентификатор сообщения курсора
+     * @param limit  максимальное количество сообщений
+     * @return список сообщений
+     */
+    @Override
+    public List<Message> findByRoomAfter(int roomId, int after, int limit) {
+        return messageRepository.findByRoomAfter(roomId, after, PageRequest.of(0, limit));
+    }
+
+    /**
+     * Возвращает страницу результатов поиска сообщений по содержанию,
+     * упорядоченную по убыванию ранга совпадения. Для следующей страницы
+     * передаются ранг и идентификатор сообщения последнего полученного
+     * результата. Для поиска вызывается метод репозитория
+     * {@link MessageRepository#search(String, int, float, int, int)}.
+     *
+     * @param query     строка поиска
+     * @param roomId    идентификатор комнаты, может быть null
+     * @param afterRank ранг результата курсора, может быть null
+     * @param afterId   идентификатор сообщения курсора, может быть null
+     * @param limit     максимальное количество результатов
+     * @return список результатов поиска
+     */
+    @Override
+    public List<MessageSearchHit> search(String query, Integer roomId, Float afterRank,
+                                         Integer afterId, int limit) {
+        if (afterId == null) {
+            return messageRepository.search(query, roomId == null ? 0 : roomId,
+                    Float.MAX_VALUE, Integer.MAX_VALUE, limit);
+        }
+        return messageRepository.search(query, roomId == null ? 0 : roomId,
+                afterRank == null ? 0 : afterRank, afterId, limit);
+    }
+
     /**
      * Сохраняет сообщение в репозитории.
      * Для сохранения сообщения вызывается метод репозитория
-     * {@link RoomRepository#save(Object)}.
+     * {@link RoomRepository#save(Object)}. Если сообщение новое, после
+     * сохранения оно добавляется в кэш последних сообщений комнаты и
+     * публикуется событие {@link MessageCreatedEvent}, иначе после фиксации
+     * транзакции из кэша удаляются буферы прежней и новой комнат сообщения.
      *
      * @param message сообщение
      * @return сохраненное сообщение
      */
     @Override
+    @Transactional
     public Message save(Message message) {
-        return messageRepository.save(message);
+        boolean created = message.getId() == 0;
+        var saved = messageRepository.save(message);
+        if (created) {
+            cache(List.of(saved));
+            eventPublisher.publishEvent(new MessageCreatedEvent(saved));
+        } else {
+            invalidate(saved);
+        }
+        return saved;
+    }
+
+    /**
+     * Сохраняет список новых сообщений в репозитории в одной транзакции.
+     * Для сохранения сообщений вызывается метод репозитория
+     * {@link MessageRepository#saveAll(Iterable)}, вставка выполняется
+     * пакетами JDBC. После сохранения сообщения добавляются в кэш последних
+     * сообщений комнат и для каждого сообщения публикуется событие
+     * {@link MessageCreatedEvent}.
+     *
+     * @param messages список сообщений
+     * @return список сохраненных сообщений
+     */
+    @Override
+    @Transactional
+    public List<Message> saveAll(List<Message> messages) {
+        var saved = new ArrayList<Message>(messages.size());
+        messageRepository.saveAll(messages).forEach(saved::add);
+        cache(saved);
+        saved.forEach(message -> eventPublisher.publishEvent(new MessageCreatedEvent(message)));
+        return saved;
+    }
+
+    /**
+     * Выделяет блок идентификаторов сообщений методом репозитория
+     * {@link MessageRepository#nextIdBlock()}.
+     *
+     * @return первый идентификатор блока
+     */
+    @Override
+    public int reserveIds() {
+        return messageRepository.nextIdBlock();
+    }
+
+    /**
+     * Сохраняет список новых сообщений с выделенными заранее идентификаторами
+     * в одной транзакции. Сохранение через контекст постоянства не подходит,
+     * так как сообщение с идентификатором считается отсоединенным, поэтому
+     * сообщения вставляются пакетом запросов JDBC. После сохранения сообщения
+     * добавляются в кэш последних сообщений комнат и для каждого сообщения
+     * публикуется событие {@link MessageCreatedEvent}.
+     *
+     * @param messages список сообщений с выделенными идентификаторами
+     */
+    @Override
+    @Transactional
+    public void saveAllReserved(List<Message> messages) {
+        jdbcTemplate.batchUpdate(INSERT_RESERVED_QUERY, messages.stream()
+                .map(message -> new Object[]{
+                        message.getId(),
+                        message.getContent(),
+                        message.getCreated(),
+                        message.getPerson() == null ? null : message.getPerson().getId(),
+                        message.getRoom() == null ? null : message.getRoom().getId()
+                })
+                .collect(Collectors.toList()));
+        cache(messages);
+        messages.forEach(message -> eventPublisher.publishEvent(new MessageCreatedEvent(message)));
     }
 
     /**
      * Удаляет сообщение в репозитории.
      * Для удаления сообщения вызывается метод репозитория
-     * {@link MessageRepository#delete(Object)}.
+     * {@link MessageRepository#delete(Object)}, затем сообщение
+     * удаляется из кэша последних сообщений комнат. Перед удалением
+     * сообщение вычитается из счетчиков непрочитанных сообщений методом
+     * {@link UnreadCounters#subtractMessages(Collection)}.
      *
      * @param message сообщение
      */
     @Override
+    @Transactional
     public void delete(Message message) {
+        unreadCounters.subtractMessages(List.of(message.getId()));
         messageRepository.delete(message);
+        messageTailCache.remove(message.getId());
+    }
+
+    /**
+     * Удаляет сообщения по идентификаторам. Идентификаторы разбиваются на части
+     * размера {@link Chunks#SIZE}, для каждой части выполняется один запрос
+     * DELETE, все части удаляются в одной транзакции.
+     * Удаленные сообщения удаляются из кэша последних сообщений комнат.
+     * Перед удалением части ее сообщения вычитаются из счетчиков
+     * непрочитанных сообщений методом
+     * {@link UnreadCounters#subtractMessages(Collection)}.
+     *
+     * @param ids идентификаторы сообщений
+     * @return количество удаленных сообщений
+     */
+    @Override
+    @Transactional
+    public int deleteAll(Collection<Integer> ids) {
+        int deleted = 0;
+        for (var chunk : Chunks.of(ids, Chunks.SIZE)) {
+            unreadCounters.subtractMessages(chunk);
+            deleted += messageRepository.deleteByIds(chunk);
+            chunk.forEach(messageTailCache::remove);
+        }
+        return deleted;
     }
 
     /**
      * Обновляет сообщение в репозитории.
      * Для обновления сообщения вызывается метод сервиса
-     * {@link DTOService#patchModel(CrudRepository, Model)}.
+     * {@link PatchEngine#patch(Class, Model, Integer)}, затем из кэша
+     * последних сообщений комнат удаляются буферы прежней и новой комнат
+     * обновленного сообщения.
      *
      * @param message сообщение
+     * @param version ожидаемая версия или null для обновления без проверки
      * @return обновленное сообщение
      * @throws InvocationTargetException при выбросе исключения при работе с рефлексией
      * @throws IllegalAccessException    при невозможности вызвать метод объекта
      */
     @Override
-    public Optional<Message> patchModel(Message message)
+    public Optional<Message> patchModel(Message message, Integer version)
             throws InvocationTargetException, IllegalAccessException {
-        return DTOService.patchModel(messageRepository, message);
+        var result = patchEngine.patch(Message.class, message, version);
+        result.ifPresent(this::invalidate);
+        return result;
+    }
+
+    /**
+     * Добавляет новые сообщения в кэш последних сообщений комнат, если
+     * буферы их комнат есть в кэше. Сообщения перечитываются из репозитория
+     * одним запросом, чтобы кэш содержал полные данные пользователя и комнаты,
+     * а не ссылки из тела запроса. Перечитанные сообщения публикуются
+     * событием {@link MessageTailEvent}, кэш добавляет их после фиксации
+     * транзакции. Буфер комнаты остальных сообщений может быть
+     * зарегистрирован до фиксации транзакции, а история прочитана без них,
+     * поэтому такие комнаты передаются в событии как устаревшие.
+     *
+     * @param saved сохраненные сообщения
+     */
+    private void cache(List<Message> saved) {
+        var ids = new ArrayList<Integer>();
+        var stale = new HashSet<Integer>();
+        for (var message : saved) {
+            if (message.getRoom() == null) {
+                continue;
+            }
+            int roomId = message.getRoom().getId();
+            if (messageTailCache.contains(roomId)) {
+                ids.add(message.getId());
+            } else {
+                stale.add(roomId);
+            }
+        }
+        if (ids.isEmpty() && stale.isEmpty()) {
+            return;
+        }
+        var loaded = List.<Message>of();
+        if (!ids.isEmpty()) {
+            entityManager.flush();
+            saved.forEach(entityManager::detach);
+            loaded = messageRepository.findAllById(ids).stream()
+                    .sorted(Comparator.comparingInt(Message::getId))
+                    .collect(Collectors.toList());
+            loaded.forEach(this::initialize);
+        }
+        eventPublisher.publishEvent(new MessageTailEvent(loaded, stale));
+    }
+
+    /**
+     * Публикует событие {@link MessageTailEvent} удаления буферов прежней
+     * и новой комнат измененного сообщения. Буферы удаляются целиком, а не
+     * только измененное сообщение, так как иначе буфер продолжал бы отдавать
+     * последние сообщения комнаты без него. Кэш обрабатывает событие после
+     * фиксации транзакции, поэтому чтение истории до фиксации не заполнит
+     * буфер прежним содержанием сообщения.
+     *
+     * @param changed измененное сообщение
+     */
+    private void invalidate(Message changed) {
+        var rooms = new HashSet<Integer>();
+        messageTailCache.roomOf(changed.getId()).ifPresent(rooms::add);
+        if (changed.getRoom() != null) {
+            rooms.add(changed.getRoom().getId());
+        }
+        if (!rooms.isEmpty()) {
+            eventPublisher.publishEvent(new MessageTailEvent(List.of(), rooms));
+        }
+    }
+
+    /**
+     * Загружает роли пользователя сообщения, чтобы сообщение из кэша
+     * сериализовалось вне контекста постоянства.
+     *
+     * @param message сообщение
+     */
+    private void initialize(Message message) {
+        if (message.getPerson() != null) {
+            Hibernate.initialize(message.getPerson().getRoles());
+        }
     }
 }
@@ -1,14 +1,20 @@
 package ru.job4j.chat.service;
 
 import lombok.AllArgsConstructor;
-import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.job4j.chat.model.Model;
 import ru.job4j.chat.model.Person;
+import ru.job4j.chat.model.Role;
+import ru.job4j.chat.projection.RoomUnread;
 import ru.job4j.chat.repository.PersonRepository;
+import ru.job4j.chat.repository.RoleRepository;
 import ru.job4j.chat.repository.RoomRepository;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -30,6 +36,31 @@ public class ImplPersonService implements PersonService {
      */
     private final PersonRepository personRepository;
 
+    /**
+     * Объект для доступа к методам RoleRepository
+     */
+    private final RoleRepository roleRepository;
+
+    /**
+     * Кэш данных пользователей
+     */
+    private final UserDetailsCache userDetailsCache;
+
+    /**
+     * Фильтр Блума имен пользователей
+     */
+    private final UsernameBloomFilter usernameBloomFilter;
+
+    /**
+     * Объект для частичного обновления моделей
+     */
+    private final PatchEngine patchEngine;
+
+    /**
+     * Счетчики непрочитанных сообщений
+     */
+    private final UnreadCounters unreadCounters;
+
     /**
      * Возвращает список пользователей. Выполняет вызов метода
      * {@link PersonRepository#findAll()} для получения списка
@@ -57,45 +88,136 @@ public class ImplPersonService implements PersonService {
         return personRepository.findById(id);
     }
 
+    /**
+     * Возвращает пользователей по идентификаторам в порядке переданных
+     * идентификаторов. Идентификаторы разбиваются на части размера
+     * {@link Chunks#SIZE}, для каждой части выполняется один запрос
+     * {@link PersonRepository#findDistinctByIdIn(Collection)}.
+     *
+     * @param ids идентификаторы пользователей
+     * @return список найденных пользователей
+     */
+    @Override
+    public List<Person> findAllById(Collection<Integer> ids) {
+        return Chunks.load(ids, personRepository::findDistinctByIdIn, Person::getId);
+    }
+
     /**
      * Сохраняет пользователя в репозитории.
      * Для сохранения пользователя вызывается метод репозитория
-     * {@link RoomRepository#save(Object)}.
+     * {@link RoomRepository#save(Object)}. Роли из переданного объекта не
+     * сохраняются: существующему пользователю возвращаются роли из
+     * репозитория, новый пользователь создается без ролей, поэтому запрос
+     * регистрации по-прежнему выполняет один INSERT. После сохранения запись
+     * пользователя удаляется из кэша данных пользователей, а имя
+     * пользователя добавляется в фильтр Блума имен пользователей.
      *
      * @param person пользователь
      * @return сохраненный пользователь
      */
     @Override
+    @Transactional
     public Person save(Person person) {
-        return personRepository.save(person);
+        person.getRoles().clear();
+        if (person.getId() != 0) {
+            personRepository.findById(person.getId())
+                    .ifPresent(current -> person.getRoles().addAll(current.getRoles()));
+        }
+        var saved = personRepository.save(person);
+        userDetailsCache.invalidate(saved.getId());
+        userDetailsCache.invalidate(saved.getUsername());
+        usernameBloomFilter.put(saved.getUsername());
+        return saved;
+    }
+
+    /**
+     * Заменяет роли пользователя ролями с переданными идентификаторами.
+     * Роли загружаются методом {@link RoleRepository#findAllById(Iterable)},
+     * если какая-либо роль не найдена, то выбрасывается исключение
+     * IllegalArgumentException. После замены запись пользователя удаляется
+     * из кэша данных пользователей, новые роли попадают в токены доступа,
+     * выпущенные после замены.
+     *
+     * @param id      идентификатор пользователя
+     * @param roleIds идентификаторы ролей
+     * @return пользователь с новыми ролями или Optional.empty(), если
+     * пользователь не найден
+     */
+    @Override
+    @Transactional
+    public Optional<Person> updateRoles(int id, Collection<Integer> roleIds) {
+        var roles = new ArrayList<Role>();
+        roleRepository.findAllById(roleIds).forEach(roles::add);
+        if (roles.size() != new HashSet<>(roleIds).size()) {
+            throw new IllegalArgumentException("Role is not found. Please, check ids.");
+        }
+        return personRepository.findById(id).map(person -> {
+            person.getRoles().clear();
+            person.getRoles().addAll(roles);
+            userDetailsCache.invalidate(person.getId());
+            userDetailsCache.invalidate(person.getUsername());
+            return person;
+        });
     }
 
     /**
      * Удаляет пользователя в репозитории.
      * Для удаления пользователя вызывается метод репозитория
-     * {@link PersonRepository#delete(Object)}.
+     * {@link PersonRepository#delete(Object)}. После удаления запись
+     * пользователя удаляется из кэша данных пользователей.
      *
      * @param person пользователь
      */
     @Override
     public void delete(Person person) {
         personRepository.delete(person);
+        userDetailsCache.invalidate(person.getId());
+        userDetailsCache.invalidate(person.getUsername());
+    }
+
+    /**
+     * Удаляет пользователей по идентификаторам. Идентификаторы разбиваются на части
+     * размера {@link Chunks#SIZE}, для каждой части выполняется один запрос
+     * DELETE, все части удаляются в одной транзакции.
+     * Перед удалением пользователей удаляются их связи с ролями, после
+     * удаления записи пользователей удаляются из кэша данных пользователей.
+     *
+     * @param ids идентификаторы пользователей
+     * @return количество удаленных пользователей
+     */
+    @Override
+    @Transactional
+    public int deleteAll(Collection<Integer> ids) {
+        int deleted = 0;
+        for (var chunk : Chunks.of(ids, Chunks.SIZE)) {
+            personRepository.deletePersonRolesByIds(chunk);
+            deleted += personRepository.deleteByIds(chunk);
+        }
+        userDetailsCache.invalidateAll(ids);
+        return deleted;
     }
 
     /**
      * Обновляет пользователя в репозитории.
      * Для обновления пользователя вызывается метод сервиса
-     * {@link DTOService#patchModel(CrudRepository, Model)}.
+     * {@link PatchEngine#patch(Class, Model, Integer)}. После обновления
+     * запись пользователя удаляется из кэша данных пользователей, а имя
+     * пользователя добавляется в фильтр Блума имен пользователей.
      *
-     * @param person пользователь
+     * @param person  пользователь
+     * @param version ожидаемая версия или null для обновления без проверки
      * @return обновленный пользователь
      * @throws InvocationTargetException при выбросе исключения при работе с рефлексией
      * @throws IllegalAccessException    при невозможности вызвать метод объекта
      */
     @Override
-    public Optional<Person> patchModel(Person person)
+    public Optional<Person> patchModel(Person person, Integer version)
             throws InvocationTargetException, IllegalAccessException {
-        return DTOService.patchModel(personRepository, person);
+        var patched = patchEngine.patch(Person.class, person, version);
+        userDetailsCache.invalidate(person.getId());
+        userDetailsCache.invalidate(person.getUsername());
+        patched.ifPresent(result -> usernameBloomFilter.put(result.getUsername()));
+        return patched;
     }
 
     /**
@@ -110,4 +232,32 @@ public class ImplPersonService implements PersonService {
     public Person findByUsername(String username) {
         return personRepository.findByUsername(username);
     }
+
+    /**
+     * Проверяет, свободно ли имя пользователя. Если фильтр Блума имен
+     * пользователей отвечает, что имени нет, то имя свободно без обращения
+     * к репозиторию, иначе выполняется точная проверка методом
+     * {@link PersonRepository#existsByUsername(String)}.
+     *
+     * @param username имя пользователя
+     * @return true, если имя свободно
+     */
+    @Override
+    public boolean isAvailable(String username) {
+        return !usernameBloomFilter.mightContain(username)
+                || !personRepository.existsByUsername(username);
+    }
+
+    /**
+     * Возвращает счетчики непрочитанных сообщений пользователя по комнатам,
+     * участником которых он является. Счетчики получаются методом
+     * {@link UnreadCounters#findByPerson(int)} без просмотра сообщений.
+     *
+     * @param id идентификатор пользователя
+     * @return список счетчиков
+     */
+    @Override
+    public List<RoomUnread> findUnread(int id) {
+        return unreadCounters.findByPerson(id);
+    }
 }
\ No newline at end of file
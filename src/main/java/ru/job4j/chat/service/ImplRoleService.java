@@ -1,14 +1,15 @@
 package ru.job4j.chat.service;
 
 import lombok.AllArgsConstructor;
-import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.job4j.chat.model.Model;
 import ru.job4j.chat.model.Role;
 import ru.job4j.chat.repository.RoleRepository;
 import ru.job4j.chat.repository.RoomRepository;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -30,6 +31,11 @@ public class ImplRoleService implements RoleService {
      */
     private final RoleRepository roleRepository;
 
+    /**
+     * Объект для частичного обновления моделей
+     */
+    private final PatchEngine patchEngine;
+
     /**
      * Возвращает список ролей. Выполняет вызов метода
      * {@link RoleRepository#findAll()} для получения списка
@@ -82,19 +88,40 @@ public class ImplRoleService implements RoleService {
         roleRepository.delete(role);
     }
 
+    /**
+     * Удаляет роли по идентификаторам. Идентификаторы разбиваются на части
+     * размера {@link Chunks#SIZE}, для каждой части выполняется один запрос
+     * DELETE, все части удаляются в одной транзакции.
+     * Перед удалением ролей удаляются связи пользователей с этими ролями.
+     *
+     * @param ids идентификаторы ролей
+     * @return количество удаленных ролей
+     */
+    @Override
+    @Transactional
+    public int deleteAll(Collection<Integer> ids) {
+        int deleted = 0;
+        for (var chunk : Chunks.of(ids, Chunks.SIZE)) {
+            roleRepository.deletePersonRolesByIds(chunk);
+            deleted += roleRepository.deleteByIds(chunk);
+        }
+        return deleted;
+    }
+
     /**
      * Обновляет роль в репозитории.
      * Для обновления роли вызывается метод сервиса
-     * {@link DTOService#patchModel(CrudRepository, Model)}.
+     * {@link PatchEngine#patch(Class, Model, Integer)}.
      *
-     * @param role роль
+     * @param role    роль
+     * @param version ожидаемая версия или null для обновления без проверки
      * @return обновленная роль
      * @throws InvocationTargetException при выбросе исключения при работе с рефлексией
      * @throws IllegalAccessException    при невозможности вызвать метод объекта
      */
     @Override
-    public Optional<Role> patchModel(Role role)
+    public Optional<Role> patchModel(Role role, Integer version)
             throws InvocationTargetException, IllegalAccessException {
-        return DTOService.patchModel(roleRepository, role);
+        return patchEngine.patch(Role.class, role, version);
     }
 }
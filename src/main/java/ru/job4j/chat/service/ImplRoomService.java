@@ -1,15 +1,17 @@
 package ru.job4j.chat.service;
 
 import lombok.AllArgsConstructor;
-import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.job4j.chat.model.Model;
 import ru.job4j.chat.model.Room;
 import ru.job4j.chat.repository.RoomRepository;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.LongFunction;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -29,6 +31,16 @@ public class ImplRoomService implements RoomService {
      */
     private final RoomRepository roomRepository;
 
+    /**
+     * Объект для частичного обновления моделей
+     */
+    private final PatchEngine patchEngine;
+
+    /**
+     * Счетчики непрочитанных сообщений
+     */
+    private final UnreadCounters unreadCounters;
+
     /**
      * Возвращает список комнат. Выполняет вызов метода
      * {@link RoomRepository#findAll()} для получения списка
@@ -56,6 +68,20 @@ public class ImplRoomService implements RoomService {
         return roomRepository.findById(id);
     }
 
+    /**
+     * Возвращает комнат по идентификаторам в порядке переданных
+     * идентификаторов. Идентификаторы разбиваются на части размера
+     * {@link Chunks#SIZE}, для каждой части выполняется один запрос
+     * {@link RoomRepository#findAllById(Iterable)}.
+     *
+     * @param ids идентификаторы комнат
+     * @return список найденных комнат
+     */
+    @Override
+    public List<Room> findAllById(Collection<Integer> ids) {
+        return Chunks.load(ids, roomRepository::findAllById, Room::getId);
+    }
+
     /**
      * Сохраняет комнату в репозитории.
      * Для сохранения комнаты вызывается метод репозитория
@@ -81,19 +107,127 @@ public class ImplRoomService implements RoomService {
         roomRepository.delete(room);
     }
 
+    /**
+     * Удаляет комнаты по идентификаторам. Идентификаторы разбиваются на части
+     * размера {@link Chunks#SIZE}, для каждой части выполняется один запрос
+     * DELETE, все части удаляются в одной транзакции.
+     *
+     * @param ids идентификаторы комнат
+     * @return количество удаленных комнат
+     */
+    @Override
+    @Transactional
+    public int deleteAll(Collection<Integer> ids) {
+        int deleted = 0;
+        for (var chunk : Chunks.of(ids, Chunks.SIZE)) {
+            deleted += roomRepository.deleteByIds(chunk);
+        }
+        return deleted;
+    }
+
+    /**
+     * Добавляет пользователя в участники комнаты.
+     * Для добавления вызывается метод репозитория
+     * {@link RoomRepository#insertMember(int, String, long)}, сообщения
+     * комнаты, включая незаписанные в счетчик комнаты, считаются прочитанными.
+     * Запрос выполняется методом {@link UnreadCounters#withPending(int, LongFunction)}
+     * под блокировкой записи счетчиков комнат.
+     *
+     * @param roomId   идентификатор комнаты
+     * @param username имя пользователя
+     * @return true, если пользователь добавлен, false, если пользователь уже
+     * является участником или комнаты нет
+     */
+    @Override
+    public boolean join(int roomId, String username) {
+        return unreadCounters.withPending(roomId,
+                pending -> roomRepository.insertMember(roomId, username, pending)) > 0;
+    }
+
+    /**
+     * Удаляет пользователя из участников комнаты.
+     * Для удаления вызывается метод репозитория
+     * {@link RoomRepository#deleteMember(int, String)}.
+     *
+     * @param roomId   идентификатор комнаты
+     * @param username имя пользователя
+     * @return true, если пользователь был участником комнаты
+     */
+    @Override
+    public boolean leave(int roomId, String username) {
+        return roomRepository.deleteMember(roomId, username) > 0;
+    }
+
+    /**
+     * Отмечает сообщения комнаты до сообщения messageId включительно
+     * прочитанными пользователем. Для отметки вызывается метод
+     * {@link UnreadCounters#markRead(int, String, int)}.
+     *
+     * @param roomId    идентификатор комнаты
+     * @param username  имя пользователя
+     * @param messageId идентификатор последнего прочитанного сообщения
+     * @return true, если отметка сдвинута
+     */
+    @Override
+    public boolean markRead(int roomId, String username, int messageId) {
+        return unreadCounters.markRead(roomId, username, messageId);
+    }
+
+    /**
+     * Проверяет, что сообщение принадлежит комнате. Для проверки вызывается
+     * метод репозитория {@link RoomRepository#existsMessage(int, int)}.
+     *
+     * @param roomId    идентификатор комнаты
+     * @param messageId идентификатор сообщения
+     * @return true, если сообщение есть в комнате
+     */
+    @Override
+    public boolean hasMessage(int roomId, int messageId) {
+        return roomRepository.existsMessage(roomId, messageId);
+    }
+
+    /**
+     * Возвращает страницу идентификаторов участников комнаты,
+     * упорядоченную по возрастанию. Для получения страницы вызывается
+     * метод репозитория {@link RoomRepository#findMemberIds(int, int, int)}.
+     *
+     * @param roomId идентификатор комнаты
+     * @param after  идентификатор участника курсора
+     * @param limit  размер страницы
+     * @return список идентификаторов участников
+     */
+    @Override
+    public List<Integer> findMemberIds(int roomId, int after, int limit) {
+        return roomRepository.findMemberIds(roomId, after, limit);
+    }
+
+    /**
+     * Возвращает комнаты, участником которых является пользователь.
+     * Для получения комнат вызывается метод репозитория
+     * {@link RoomRepository#findJoined(String)}.
+     *
+     * @param username имя пользователя
+     * @return список комнат
+     */
+    @Override
+    public List<Room> findJoined(String username) {
+        return roomRepository.findJoined(username);
+    }
+
     /**
      * Обновляет комнату в репозитории.
      * Для обновления комнаты вызывается метод сервиса
-     * {@link DTOService#patchModel(CrudRepository, Model)}.
+     * {@link PatchEngine#patch(Class, Model, Integer)}.
      *
-     * @param room комната
+     * @param room    комната
+     * @param version ожидаемая версия или null для обновления без проверки
      * @return обновленная комната
      * @throws InvocationTargetException при выбросе исключения при работе с рефлексией
      * @throws IllegalAccessException    при невозможности вызвать метод объекта
      */
     @Override
-    public Optional<Room> patchModel(Room room)
+    public Optional<Room> patchModel(Room room, Integer version)
             throws InvocationTargetException, IllegalAccessException {
-        return DTOService.patchModel(roomRepository, room);
+        return patchEngine.patch(Room.class, room, version);
     }
 }
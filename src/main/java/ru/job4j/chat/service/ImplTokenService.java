@@ -0,0 +1,172 @@
+package ru.job4j.chat.service;
+
+import com.auth0.jwt.JWT;
+import lombok.AllArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.job4j.chat.model.RefreshToken;
+import ru.job4j.chat.model.Role;
+import ru.job4j.chat.repository.PersonRepository;
+import ru.job4j.chat.repository.RefreshTokenRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+import static ru.job4j.chat.filter.JWTAuthenticationFilter.EXPIRATION_TIME;
+import static ru.job4j.chat.filter.JWTAuthenticationFilter.REFRESH_EXPIRATION_TIME;
+import static ru.job4j.chat.filter.JWTAuthenticationFilter.ROLES_CLAIM;
+import static ru.job4j.chat.filter.JWTAuthenticationFilter.SECRET;
+
+/**
+ * Реализация сервиса выдачи, обновления и отзыва токенов
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.service.TokenService
+ */
+@AllArgsConstructor
+@Service
+public class ImplTokenService implements TokenService {
+
+    /**
+     * Генератор случайных токенов обновления
+     */
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Количество случайных байтов токена обновления
+     */
+    private static final int REFRESH_TOKEN_BYTES = 32;
+
+    /**
+     * Объект для доступа к методам RefreshTokenRepository
+     */
+    private final RefreshTokenRepository refreshTokenRepository;
+
+    /**
+     * Объект для доступа к методам PersonRepository
+     */
+    private final PersonRepository personRepository;
+
+    /**
+     * Реестр отозванных токенов доступа
+     */
+    private final RevokedTokenRegistry revokedTokenRegistry;
+
+    /**
+     * Создает токен доступа с новым идентификатором и токен обновления,
+     * хэш токена обновления сохраняется в репозитории. Роли пользователя
+     * записываются в утверждение roles токена доступа.
+     *
+     * @param username имя пользователя
+     * @param roles    наименования ролей пользователя
+     * @return пара токенов
+     */
+    @Override
+    public TokenPair issue(String username, List<String> roles) {
+        long now = System.currentTimeMillis();
+        String accessToken = JWT.create()
+                .withSubject(username)
+                .withJWTId(UUID.randomUUID().toString())
+                .withArrayClaim(ROLES_CLAIM, roles.toArray(new String[0]))
+                .withExpiresAt(new Date(now + EXPIRATION_TIME))
+                .sign(HMAC512(SECRET.getBytes()));
+        byte[] bytes = new byte[REFRESH_TOKEN_BYTES];
+        RANDOM.nextBytes(bytes);
+        String refreshToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        refreshTokenRepository.save(RefreshToken.builder()
+                .tokenHash(hash(refreshToken))
+                .person(personRepository.findByUsername(username))
+                .expires(new Date(now + REFRESH_EXPIRATION_TIME))
+                .build());
+        return new TokenPair(accessToken, refreshToken);
+    }
+
+    /**
+     * Обменивает токен обновления на новую пару токенов с отзывом
+     * переданного токена обновления. Токен отзывается условным запросом
+     * {@link RefreshTokenRepository#revokeByTokenHash(String)}, поэтому из
+     * одновременных обменов одного токена новую пару получает только один,
+     * а остальные считаются повторным использованием.
+     *
+     * @param refreshToken токен обновления
+     * @return новая пара токенов или Optional.empty()
+     */
+    @Override
+    @Transactional
+    public Optional<TokenPair> refresh(String refreshToken) {
+        String tokenHash = hash(refreshToken);
+        var stored = refreshTokenRepository.findByTokenHash(tokenHash);
+        if (stored.isEmpty() || stored.get().getExpires().getTime() <= System.currentTimeMillis()) {
+            return Optional.empty();
+        }
+        var token = stored.get();
+        if (refreshTokenRepository.revokeByTokenHash(tokenHash) == 0) {
+            refreshTokenRepository.revokeAllByPerson(token.getPerson().getId());
+            return Optional.empty();
+        }
+        var person = token.getPerson();
+        return Optional.of(issue(person.getUsername(), person.getRoles().stream()
+                .map(Role::getName)
+                .collect(Collectors.toList())));
+    }
+
+    /**
+     * Отзывает токен доступа через реестр отозванных токенов
+     * и отмечает отозванным токен обновления.
+     *
+     * @param jti          идентификатор токена доступа
+     * @param expiresAt    время окончания действия токена доступа
+     * @param refreshToken токен обновления или null
+     */
+    @Override
+    @Transactional
+    public void revoke(String jti, Date expiresAt, String refreshToken) {
+        if (jti != null) {
+            revokedTokenRegistry.revoke(jti, expiresAt);
+        }
+        if (refreshToken != null) {
+            refreshTokenRepository.revokeByTokenHash(hash(refreshToken));
+        }
+    }
+
+    /**
+     * Удаляет токены обновления, срок действия которых истек.
+     * Выполняется по расписанию chat.token.refresh.cleanup-ms.
+     */
+    @Scheduled(fixedDelayString = "${chat.token.refresh.cleanup-ms:3600000}")
+    public void deleteExpired() {
+        refreshTokenRepository.deleteExpired(new Date());
+    }
+
+    /**
+     * Вычисляет хэш SHA-256 токена обновления в шестнадцатеричном виде.
+     *
+     * @param token токен обновления
+     * @return хэш токена
+     */
+    static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.UTF_8));
+            var result = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                result.append(Character.forDigit((b >> 4) & 0xF, 16))
+                        .append(Character.forDigit(b & 0xF, 16));
+            }
+            return result.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package ru.job4j.chat.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Clock;
+import java.time.YearMonth;
+import java.util.regex.Pattern;
+
+/**
+ * Обслуживание секций таблицы сообщений в PostgreSQL. Таблица message
+ * секционирована по месяцам даты создания, секция месяца называется
+ * message_yYYYYmMM. При запуске приложения и по расписанию создаются
+ * секции текущего и следующих месяцев и отсоединяются или удаляются
+ * секции месяцев старше срока хранения. Сообщения с датой создания вне
+ * созданных секций, например перенесенные из архива, попадают в секцию
+ * по умолчанию message_default, а не отклоняются базой данных. Секция
+ * по умолчанию не подпадает под срок хранения. Секция месяца не создается,
+ * если в секции по умолчанию уже есть сообщения этого месяца, тогда
+ * сообщения нужно перенести вручную. Включается свойством
+ * chat.message.partition.enabled.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "chat.message.partition.enabled", havingValue = "true")
+public class MessagePartitionMaintenance {
+
+    /**
+     * Шаблон имени секции месяца
+     */
+    private static final Pattern PARTITION_NAME = Pattern.compile("message_y(\\d{4})m(\\d{2})");
+
+    /**
+     * Запрос имен секций таблицы сообщений
+     */
+    private static final String PARTITIONS_QUERY = "SELECT c.relname FROM pg_inherits i"
+            + " JOIN pg_class c ON c.oid = i.inhrelid"
+            + " WHERE i.inhparent = 'message'::regclass";
+
+    /**
+     * Объект для выполнения запросов к базе данных
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Счетчики непрочитанных сообщений
+     */
+    private final UnreadCounters unreadCounters;
+
+    /**
+     * Объект для выполнения действий в транзакции
+     */
+    private final TransactionOperations transactions;
+
+    /**
+     * Количество месяцев, секции которых создаются заранее
+     */
+    private final int monthsAhead;
+
+    /**
+     * Срок хранения сообщений в месяцах
+     */
+    private final int retentionMonths;
+
+    /**
+     * Признак удаления секций старше срока хранения, иначе секции отсоединяются
+     */
+    private final boolean drop;
+
+    /**
+     * Часы для определения текущего месяца
+     */
+    private final Clock clock;
+
+    /**
+     * Конструктор
+     *
+     * @param jdbcTemplate    объект для выполнения запросов к базе данных
+     * @param unreadCounters  счетчики непрочитанных сообщений
+     * @param transactions    объект для выполнения действий в транзакции
+     * @param monthsAhead     количество месяцев, секции которых создаются заранее
+     * @param retentionMonths срок хранения сообщений в месяцах
+     * @param drop            признак удаления секций старше срока хранения
+     */
+    @Autowired
+    public MessagePartitionMaintenance(
+            JdbcTemplate jdbcTemplate,
+            UnreadCounters unreadCounters,
+            TransactionOperations transactions,
+            @Value("${chat.message.partition.months-ahead:3}") int monthsAhead,
+            @Value("${chat.message.partition.retention-months:12}") int retentionMonths,
+            @Value("${chat.message.partition.drop:false}") boolean drop) {
+        this(jdbcTemplate, unreadCounters, transactions, monthsAhead, retentionMonths, drop,
+                Clock.systemDefaultZone());
+    }
+
+    /**
+     * Конструктор с часами для определения текущего месяца
+     *
+     * @param jdbcTemplate    объект для выполнения запросов к базе данных
+     * @param unreadCounters  счетчики непрочитанных сообщений
+     * @param transactions    объект для выполнения действий в транзакции
+     * @param monthsAhead     количество месяцев, секции которых создаются заранее
+     * @param retentionMonths срок хранения сообщений в месяцах
+     * @param drop            признак удаления секций старше срока хранения
+     * @param clock           часы
+     */
+    MessagePartitionMaintenance(JdbcTemplate jdbcTemplate, UnreadCounters unreadCounters,
+                                TransactionOperations transactions, int monthsAhead,
+                                int retentionMonths, boolean drop, Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.unreadCounters = unreadCounters;
+        this.transactions = transactions;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.drop = drop;
+        this.clock = clock;
+    }
+
+    /**
+     * Создает секции текущего и следующих месяцев и применяет срок хранения
+     * к секциям прошедших месяцев. Выполняется при запуске приложения и
+     * по расписанию chat.message.partition.cron.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${chat.message.partition.cron:0 0 3 * * *}")
+    public void maintain() {
+        var current = YearMonth.now(clock);
+        for (int i = 0; i <= monthsAhead; i++) {
+            createPartition(current.plusMonths(i));
+        }
+        var oldest = current.minusMonths(retentionMonths);
+        for (var name : jdbcTemplate.queryForList(PARTITIONS_QUERY, String.class)) {
+            var matcher = PARTITION_NAME.matcher(name);
+            if (matcher.matches() && YearMonth.of(Integer.parseInt(matcher.group(1)),
+                    Integer.parseInt(matcher.group(2))).isBefore(oldest)) {
+                expirePartition(name);
+            }
+        }
+    }
+
+    /**
+     * Создает секцию месяца, если она не существует. Ошибка создания,
+     * например из-за сообщений месяца в секции по умолчанию, не прерывает
+     * обслуживание остальных секций.
+     *
+     * @param month месяц
+     */
+    private void createPartition(YearMonth month) {
+        try {
+            jdbcTemplate.execute(String.format(
+                    "CREATE TABLE IF NOT EXISTS message_y%04dm%02d PARTITION OF message"
+                            + " FOR VALUES FROM ('%s') TO ('%s')",
+                    month.getYear(), month.getMonthValue(),
+                    month.atDay(1), month.plusMonths(1).atDay(1)
+            ));
+        } catch (DataAccessException e) {
+            log.warn("Message partition of {} is not created: {}", month, e.getMessage());
+        }
+    }
+
+    /**
+     * Удаляет или отсоединяет секцию старше срока хранения. Отсоединенная
+     * секция остается отдельной таблицей и может быть выгружена в архив.
+     * Перед этим сообщения секции вычитаются из счетчиков непрочитанных
+     * сообщений методом {@link UnreadCounters#subtractPartition(String)}.
+     *
+     * @param name имя секции
+     */
+    private void expirePartition(String name) {
+        transactions.executeWithoutResult(status -> {
+            unreadCounters.subtractPartition(name);
+            if (drop) {
+                jdbcTemplate.execute("DROP TABLE " + name);
+            } else {
+                jdbcTemplate.execute("ALTER TABLE message DETACH PARTITION " + name);
+            }
+        });
+        log.info("Message partition {} is {}", name, drop ? "dropped" : "detached");
+    }
+}
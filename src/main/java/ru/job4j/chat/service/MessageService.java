@@ -1,14 +1,18 @@
 package ru.job4j.chat.service;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Pageable;
 import ru.job4j.chat.model.Message;
 import ru.job4j.chat.model.Model;
+import ru.job4j.chat.projection.MessageSearchHit;
+import ru.job4j.chat.projection.MessageView;
 import ru.job4j.chat.repository.MessageRepository;
 import ru.job4j.chat.repository.RoomRepository;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Сервис по работе с сообщениями
@@ -28,6 +32,25 @@ public interface MessageService {
      */
     List<Message> findAll();
 
+    /**
+     * Возвращает список проекций сообщений. Выполняет вызов метода
+     * {@link MessageRepository#findAllViews()}.
+     *
+     * @return список проекций сообщений
+     */
+    List<MessageView> findAllViews();
+
+    /**
+     * Передает проекции всех сообщений в обработчик consumer по одной, по
+     * мере чтения из базы данных. Для чтения используется поток метода
+     * репозитория {@link MessageRepository#streamAllViews()}, проекции не
+     * попадают в контекст постоянства, поэтому расход памяти не зависит
+     * от количества сообщений.
+     *
+     * @param consumer обработчик проекций сообщений
+     */
+    void streamAllViews(Consumer<MessageView> consumer);
+
     /**
      * Возвращает Optional от сообщения по аргументу id.
      * Для получения сообщения вызывается метод репозитория
@@ -38,16 +61,115 @@ public interface MessageService {
      */
     Optional<Message> findById(int id);
 
+    /**
+     * Возвращает Optional от проекции сообщения по аргументу id.
+     * Для получения проекции вызывается метод репозитория
+     * {@link MessageRepository#findViewById(int)}.
+     *
+     * @param id идентификатор сообщения
+     * @return найденная проекция сообщения
+     */
+    Optional<MessageView> findViewById(int id);
+
+    /**
+     * Возвращает проекции сообщений по идентификаторам в порядке
+     * переданных идентификаторов. Идентификаторы разбиваются на части
+     * размера {@link Chunks#SIZE}, для каждой части выполняется один запрос
+     * {@link MessageRepository#findViewsByIds(Collection)}.
+     *
+     * @param ids идентификаторы сообщений
+     * @return список найденных проекций сообщений
+     */
+    List<MessageView> findViewsByIds(Collection<Integer> ids);
+
+    /**
+     * Возвращает страницу истории сообщений комнаты, упорядоченную
+     * от новых к старым. Если курсор before не передан, возвращаются
+     * последние сообщения комнаты, иначе сообщения, предшествующие
+     * сообщению с идентификатором before. Для получения сообщений
+     * вызываются методы репозитория
+     * {@link MessageRepository#findLatestByRoom(int, Pageable)} и
+     * {@link MessageRepository#findByRoomBefore(int, int, Pageable)}.
+     *
+     * @param roomId идентификатор комнаты
+     * @param before идентификатор сообщения курсора, может быть null
+     * @param limit  максимальное количество сообщений
+     * @return список сообщений
+     */
+    List<Message> findByRoom(int roomId, Integer before, int limit);
+
+    /**
+     * Возвращает сообщения комнаты, следующие за сообщением с
+     * идентификатором after, упорядоченные от старых к новым.
+     * Для получения сообщений вызывается метод репозитория
+     * {@link MessageRepository#findByRoomAfter(int, int, Pageable)}.
+     *
+     * @param roomId идентификатор комнаты
+     * @param after  идентификатор сообщения курсора
+     * @param limit  максимальное количество сообщений
+     * @return список сообщений
+     */
+    List<Message> findByRoomAfter(int roomId, int after, int limit);
+
+    /**
+     * Возвращает страницу результатов поиска сообщений по содержанию,
+     * упорядоченную по убыванию ранга совпадения. Для следующей страницы
+     * передаются ранг и идентификатор сообщения последнего полученного
+     * результата. Для поиска вызывается метод репозитория
+     * {@link MessageRepository#search(String, int, float, int, int)}.
+     *
+     * @param query     строка поиска
+     * @param roomId    идентификатор комнаты, может быть null
+     * @param afterRank ранг результата курсора, может быть null
+     * @param afterId   идентификатор сообщения курсора, может быть null
+     * @param limit     максимальное количество результатов
+     * @return список результатов поиска
+     */
+    List<MessageSearchHit> search(String query, Integer roomId, Float afterRank,
+                                  Integer afterId, int limit);
+
     /**
      * Сохраняет сообщение в репозитории.
      * Для сохранения сообщения вызывается метод репозитория
-     * {@link RoomRepository#save(Object)}.
+     * {@link RoomRepository#save(Object)}. Если сообщение новое, после
+     * сохранения публикуется событие создания сообщения.
      *
      * @param message сообщение
      * @return сохраненное сообщение
      */
     Message save(Message message);
 
+    /**
+     * Сохраняет список новых сообщений в репозитории в одной транзакции.
+     * Для сохранения сообщений вызывается метод репозитория
+     * {@link MessageRepository#saveAll(Iterable)}, вставка выполняется
+     * пакетами JDBC. После сохранения для каждого сообщения публикуется
+     * событие создания сообщения.
+     *
+     * @param messages список сообщений
+     * @return список сохраненных сообщений
+     */
+    List<Message> saveAll(List<Message> messages);
+
+    /**
+     * Выделяет блок из {@link Message#ID_ALLOCATION_SIZE} идентификаторов
+     * для сообщений, которые будут сохранены позже методом
+     * {@link #saveAllReserved(List)}. Для выделения вызывается метод
+     * репозитория {@link MessageRepository#nextIdBlock()}.
+     *
+     * @return первый идентификатор блока
+     */
+    int reserveIds();
+
+    /**
+     * Сохраняет список новых сообщений с выделенными заранее идентификаторами
+     * в одной транзакции. Сообщения вставляются пакетом JDBC, после
+     * сохранения для каждого сообщения публикуется событие создания сообщения.
+     *
+     * @param messages список сообщений с выделенными идентификаторами
+     */
+    void saveAllReserved(List<Message> messages);
+
     /**
      * Удаляет сообщение в репозитории.
      * Для удаления сообщения вызывается метод репозитория
@@ -57,16 +179,28 @@ public interface MessageService {
      */
     void delete(Message message);
 
+    /**
+     * Удаляет сообщения по идентификаторам. Идентификаторы разбиваются на части
+     * размера {@link Chunks#SIZE}, для каждой части выполняется один запрос
+     * DELETE, все части удаляются в одной транзакции.
+     * Удаленные сообщения удаляются из кэша последних сообщений комнат.
+     *
+     * @param ids идентификаторы сообщений
+     * @return количество удаленных сообщений
+     */
+    int deleteAll(Collection<Integer> ids);
+
     /**
      * Обновляет сообщение в репозитории.
      * Для обновления сообщения вызывается метод сервиса
-     * {@link DTOService#patchModel(CrudRepository, Model)}.
+     * {@link PatchEngine#patch(Class, Model, Integer)}.
      *
      * @param message сообщение
+     * @param version ожидаемая версия или null для обновления без проверки
      * @return обновленное сообщение
      * @throws InvocationTargetException при выбросе исключения при работе с рефлексией
      * @throws IllegalAccessException    при невозможности вызвать метод объекта
      */
-    Optional<Message> patchModel(Message message)
+    Optional<Message> patchModel(Message message, Integer version)
             throws InvocationTargetException, IllegalAccessException;
 }
@@ -0,0 +1,570 @@
+package ru.job4j.chat.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.job4j.chat.event.MessageTailEvent;
+import ru.job4j.chat.model.Message;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш последних сообщений комнат. Для каждой комнаты хранится кольцевой
+ * буфер последних сообщений ограниченного размера, общее количество
+ * сообщений в кэше ограничено, при превышении ограничения из кэша
+ * удаляются комнаты, к которым дольше всего не было обращений.
+ * Буфер комнаты регистрируется методом {@link #load(int)} перед первым
+ * чтением истории комнаты, заполняется результатом чтения методом
+ * {@link #fill(int, long, List, boolean)} и далее пополняется новыми
+ * сообщениями, поэтому запрос последних сообщений горячей комнаты не
+ * обращается к базе данных. Новые сообщения добавляются только после
+ * фиксации транзакции их сохранения, сообщения, зафиксированные во время
+ * чтения истории, попадают в зарегистрированный буфер и объединяются с
+ * результатом чтения. Сообщения буфера упорядочены так же, как история
+ * комнаты в базе данных, по времени создания и идентификатору.
+ * При изменении сообщения буфер его комнаты удаляется целиком и
+ * заполняется заново при следующем чтении истории комнаты.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ */
+@Component
+public class MessageTailCache {
+
+    /**
+     * Размер буфера комнаты
+     */
+    private final int roomCapacity;
+
+    /**
+     * Максимальное количество сообщений в кэше
+     */
+    private final int maxMessages;
+
+    /**
+     * Буферы комнат по идентификаторам комнат
+     */
+    private final Map<Integer, RoomTail> rooms = new ConcurrentHashMap<>();
+
+    /**
+     * Сообщения кэша по идентификаторам сообщений
+     */
+    private final Map<Integer, Message> messages = new ConcurrentHashMap<>();
+
+    /**
+     * Количество сообщений в кэше
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Счетчик попаданий в кэш
+     */
+    private final Counter hits;
+
+    /**
+     * Счетчик промахов кэша
+     */
+    private final Counter misses;
+
+    /**
+     * Конструктор
+     *
+     * @param roomCapacity размер буфера комнаты
+     * @param maxMessages  максимальное количество сообщений в кэше
+     * @param registry     реестр метрик
+     */
+    public MessageTailCache(@Value("${chat.message.tail-cache.room-capacity:200}")
+                                    int roomCapacity,
+                            @Value("${chat.message.tail-cache.max-messages:100000}")
+                                    int maxMessages,
+                            MeterRegistry registry) {
+        this.roomCapacity = roomCapacity;
+        this.maxMessages = maxMessages;
+        this.hits = registry.counter("chat.message.tail.cache.hits");
+        this.misses = registry.counter("chat.message.tail.cache.misses");
+        Gauge.builder("chat.message.tail.cache.size", size, AtomicInteger::get)
+                .register(registry);
+        Gauge.builder("chat.message.tail.cache.rooms", rooms, Map::size)
+                .register(registry);
+    }
+
+    /**
+     * Возвращает размер буфера комнаты.
+     *
+     * @return размер буфера комнаты
+     */
+    public int getRoomCapacity() {
+        return roomCapacity;
+    }
+
+    /**
+     * Возвращает последние limit сообщений комнаты от новых к старым,
+     * если буфер комнаты их содержит.
+     *
+     * @param roomId идентификатор комнаты
+     * @param limit  количество сообщений
+     * @return Optional от списка сообщений
+     */
+    public Optional<List<Message>> latest(int roomId, int limit) {
+        var tail = rooms.get(roomId);
+        var result = tail == null ? null : tail.latest(limit);
+        if (result == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(result);
+    }
+
+    /**
+     * Возвращает сообщение по идентификатору, если оно есть в кэше.
+     *
+     * @param id идентификатор сообщения
+     * @return Optional от сообщения
+     */
+    public Optional<Message> get(int id) {
+        var message = messages.get(id);
+        if (message == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        rooms.computeIfPresent(message.getRoom().getId(), (roomId, tail) -> tail.touch());
+        return Optional.of(message);
+    }
+
+    /**
+     * Проверяет, есть ли в кэше буфер комнаты.
+     *
+     * @param roomId идентификатор комнаты
+     * @return true, если буфер комнаты есть в кэше
+     */
+    public boolean contains(int roomId) {
+        return rooms.containsKey(roomId);
+    }
+
+    /**
+     * Возвращает идентификатор комнаты сообщения, если сообщение есть в кэше.
+     * Обращение не учитывается в метриках попаданий и промахов.
+     *
+     * @param id идентификатор сообщения
+     * @return OptionalInt от идентификатора комнаты
+     */
+    public OptionalInt roomOf(int id) {
+        var message = messages.get(id);
+        return message == null ? OptionalInt.empty() : OptionalInt.of(message.getRoom().getId());
+    }
+
+    /**
+     * Регистрирует буфер комнаты перед чтением истории комнаты из базы
+     * данных, если буфера комнаты еще нет в кэше. Зарегистрированный буфер
+     * не отдает сообщения до заполнения, но принимает новые сообщения,
+     * поэтому сообщение, зафиксированное во время чтения истории, не теряется.
+     *
+     * @param roomId идентификатор комнаты
+     * @return поколение буфера, передаваемое в {@link #fill(int, long, List, boolean)}
+     */
+    public long load(int roomId) {
+        return rooms.computeIfAbsent(roomId, key -> new RoomTail(roomCapacity)).generation();
+    }
+
+    /**
+     * Объединяет буфер комнаты с последними сообщениями комнаты, прочитанными
+     * из базы данных. Если после регистрации буфер был удален из кэша или из
+     * него было удалено сообщение, то поколение буфера не совпадает с
+     * переданным, результат чтения может быть устаревшим и не сохраняется.
+     *
+     * @param roomId     идентификатор комнаты
+     * @param generation поколение буфера, полученное от {@link #load(int)}
+     *                   до чтения из базы данных
+     * @param latest     последние сообщения комнаты от новых к старым
+     * @param complete   true, если в комнате нет сообщений старше переданных
+     */
+    public void fill(int roomId, long generation, List<Message> latest, boolean complete) {
+        var tail = rooms.get(roomId);
+        var previous = tail == null ? null : tail.merge(generation, latest, complete);
+        if (previous == null) {
+            return;
+        }
+        var current = tail.snapshot();
+        for (var message : previous) {
+            messages.remove(message.getId(), message);
+        }
+        for (var message : current) {
+            messages.put(message.getId(), message);
+        }
+        size.addAndGet(current.size() - previous.size());
+        evictColdRooms();
+    }
+
+    /**
+     * Удаляет устаревшие буферы комнат и добавляет новые сообщения в буферы
+     * их комнат. Выполняется после фиксации транзакции сохранения сообщений,
+     * поэтому кэш не отдает сообщения, сохранение которых откатилось,
+     * а буфер, удаленный из-за изменения сообщения, не заполняется заново
+     * прежним содержанием сообщения.
+     *
+     * @param event событие изменения кэша
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageTail(MessageTailEvent event) {
+        event.getStaleRooms().forEach(this::invalidate);
+        event.getMessages().forEach(this::append);
+    }
+
+    /**
+     * Добавляет новое сообщение в буфер его комнаты, если буфер
+     * комнаты есть в кэше.
+     *
+     * @param message новое сообщение
+     */
+    public void append(Message message) {
+        var tail = rooms.get(message.getRoom().getId());
+        if (tail == null) {
+            return;
+        }
+        var result = tail.add(message);
+        if (result == RoomTail.REJECTED) {
+            return;
+        }
+        messages.put(message.getId(), message);
+        if (result == null) {
+            size.incrementAndGet();
+        } else {
+            messages.remove(result.getId(), result);
+        }
+        evictColdRooms();
+    }
+
+    /**
+     * Удаляет сообщение из кэша.
+     *
+     * @param id идентификатор сообщения
+     */
+    public void remove(int id) {
+        var cached = messages.remove(id);
+        if (cached == null) {
+            return;
+        }
+        var tail = rooms.get(cached.getRoom().getId());
+        if (tail != null && tail.remove(id)) {
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * Удаляет из кэша буфер комнаты со всеми его сообщениями.
+     *
+     * @param roomId идентификатор комнаты
+     */
+    public void invalidate(int roomId) {
+        var tail = rooms.remove(roomId);
+        if (tail != null) {
+            release(tail);
+        }
+    }
+
+    /**
+     * Удаляет из кэша буферы комнат, к которым дольше всего не было
+     * обращений, пока количество сообщений превышает ограничение.
+     */
+    private void evictColdRooms() {
+        if (size.get() <= maxMessages) {
+            return;
+        }
+        synchronized (this) {
+            while (size.get() > maxMessages && !rooms.isEmpty()) {
+                Map.Entry<Integer, RoomTail> coldest = null;
+                for (var entry : rooms.entrySet()) {
+                    if (coldest == null
+                            || entry.getValue().lastAccess < coldest.getValue().lastAccess) {
+                        coldest = entry;
+                    }
+                }
+                if (rooms.remove(coldest.getKey(), coldest.getValue())) {
+                    release(coldest.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Закрывает удаленный из кэша буфер комнаты и удаляет его сообщения.
+     *
+     * @param tail буфер комнаты
+     */
+    private void release(RoomTail tail) {
+        var released = tail.close();
+        for (var message : released) {
+            messages.remove(message.getId(), message);
+        }
+        size.addAndGet(-released.size());
+    }
+
+    /**
+     * Кольцевой буфер последних сообщений комнаты
+     */
+    private static final class RoomTail {
+
+        /**
+         * Признак отказа в добавлении сообщения в закрытый буфер
+         */
+        private static final Message REJECTED = new Message();
+
+        /**
+         * Порядок сообщений от новых к старым, совпадающий с порядком
+         * истории комнаты в базе данных
+         */
+        private static final Comparator<Message> NEWEST_FIRST = Comparator
+                .comparing(Message::getCreated, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparingInt(Message::getId)
+                .reversed();
+
+        /**
+         * Источник поколений буферов
+         */
+        private static final AtomicLong GENERATIONS = new AtomicLong();
+
+        /**
+         * Сообщения буфера
+         */
+        private final Message[] ring;
+
+        /**
+         * Позиция записи следующего сообщения
+         */
+        private int head;
+
+        /**
+         * Количество сообщений в буфере
+         */
+        private int count;
+
+        /**
+         * Признак отсутствия в комнате сообщений старше сообщений буфера
+         */
+        private boolean complete;
+
+        /**
+         * Признак удаления буфера из кэша
+         */
+        private boolean closed;
+
+        /**
+         * Признак ожидания заполнения буфера результатом чтения истории
+         */
+        private boolean loading = true;
+
+        /**
+         * Поколение буфера, меняется при удалении сообщения из буфера
+         */
+        private long generation = GENERATIONS.incrementAndGet();
+
+        /**
+         * Время последнего обращения к буферу
+         */
+        private volatile long lastAccess = System.nanoTime();
+
+        /**
+         * Конструктор
+         *
+         * @param capacity размер буфера
+         */
+        private RoomTail(int capacity) {
+            this.ring = new Message[capacity];
+        }
+
+        /**
+         * Обновляет время последнего обращения к буферу.
+         *
+         * @return буфер комнаты
+         */
+        private RoomTail touch() {
+            lastAccess = System.nanoTime();
+            return this;
+        }
+
+        /**
+         * Возвращает поколение буфера.
+         *
+         * @return поколение буфера
+         */
+        private synchronized long generation() {
+            return generation;
+        }
+
+        /**
+         * Возвращает последние limit сообщений от новых к старым
+         * или null, если буфер не содержит нужного количества сообщений.
+         *
+         * @param limit количество сообщений
+         * @return список сообщений или null
+         */
+        private synchronized List<Message> latest(int limit) {
+            if (closed || loading || (limit > count && !complete)) {
+                return null;
+            }
+            touch();
+            var result = snapshot();
+            return limit < count ? result.subList(0, limit) : result;
+        }
+
+        /**
+         * Возвращает все сообщения буфера от новых к старым.
+         *
+         * @return список сообщений
+         */
+        private synchronized List<Message> snapshot() {
+            var result = new ArrayList<Message>(count);
+            for (int i = 1; i <= count; i++) {
+                result.add(ring[Math.floorMod(head - i, ring.length)]);
+            }
+            return result;
+        }
+
+        /**
+         * Заполняет буфер сообщениями.
+         *
+         * @param latest   сообщения от новых к старым
+         * @param complete признак отсутствия более старых сообщений
+         */
+        private synchronized void fill(List<Message> latest, boolean complete) {
+            Arrays.fill(ring, null);
+            head = 0;
+            int n = Math.min(latest.size(), ring.length);
+            for (int i = n - 1; i >= 0; i--) {
+                ring[head] = latest.get(i);
+                head = (head + 1) % ring.length;
+            }
+            count = n;
+            this.complete = complete && latest.size() <= ring.length;
+        }
+
+        /**
+         * Объединяет сообщения буфера с результатом чтения истории комнаты
+         * без повторов идентификаторов.
+         *
+         * @param generation поколение буфера на момент начала чтения
+         * @param latest     прочитанные сообщения от новых к старым
+         * @param complete   признак отсутствия более старых сообщений
+         * @return сообщения буфера до объединения или null, если буфер
+         * закрыт или поколение буфера изменилось
+         */
+        private synchronized List<Message> merge(long generation, List<Message> latest,
+                                                 boolean complete) {
+            if (closed || this.generation != generation) {
+                return null;
+            }
+            var previous = snapshot();
+            var merged = new LinkedHashMap<Integer, Message>();
+            latest.forEach(message -> merged.put(message.getId(), message));
+            previous.forEach(message -> merged.put(message.getId(), message));
+            var sorted = new ArrayList<>(merged.values());
+            sorted.sort(NEWEST_FIRST);
+            fill(sorted, complete);
+            loading = false;
+            touch();
+            return previous;
+        }
+
+        /**
+         * Добавляет сообщение в буфер. Сообщение новее всех сообщений буфера
+         * записывается в голову кольца, иначе, например при переданном
+         * клиентом времени создания в прошлом, вставляется на свое место в
+         * порядке истории комнаты, сообщение с тем же идентификатором
+         * заменяется.
+         *
+         * @param message сообщение
+         * @return вытесненное или замененное сообщение, null если вытеснения
+         * не было или {@link #REJECTED}, если буфер закрыт
+         */
+        private synchronized Message add(Message message) {
+            if (closed) {
+                return REJECTED;
+            }
+            if (count > 0 && NEWEST_FIRST.compare(message,
+                    ring[Math.floorMod(head - 1, ring.length)]) >= 0) {
+                return insert(message);
+            }
+            var evicted = ring[head];
+            ring[head] = message;
+            head = (head + 1) % ring.length;
+            if (count < ring.length) {
+                count++;
+                return null;
+            }
+            complete = false;
+            return evicted;
+        }
+
+        /**
+         * Вставляет сообщение на его место в порядке истории комнаты.
+         *
+         * @param message сообщение не новее самого нового сообщения буфера
+         * @return вытесненное или замененное сообщение, null если вытеснения не было
+         */
+        private Message insert(Message message) {
+            var kept = snapshot();
+            Message result = null;
+            for (var iterator = kept.iterator(); iterator.hasNext();) {
+                var cached = iterator.next();
+                if (cached.getId() == message.getId()) {
+                    iterator.remove();
+                    result = cached;
+                }
+            }
+            int index = Collections.binarySearch(kept, message, NEWEST_FIRST);
+            kept.add(index < 0 ? -index - 1 : index, message);
+            if (result == null && kept.size() > ring.length) {
+                result = kept.remove(kept.size() - 1);
+                complete = false;
+            }
+            fill(kept, complete);
+            return result;
+        }
+
+        /**
+         * Удаляет сообщение из буфера со сдвигом более старых сообщений.
+         *
+         * @param id идентификатор сообщения
+         * @return true, если сообщение найдено в буфере
+         */
+        private synchronized boolean remove(int id) {
+            if (closed) {
+                return false;
+            }
+            var kept = snapshot();
+            if (!kept.removeIf(message -> message.getId() == id)) {
+                return false;
+            }
+            fill(kept, complete);
+            generation = GENERATIONS.incrementAndGet();
+            return true;
+        }
+
+        /**
+         * Закрывает буфер и возвращает его сообщения.
+         *
+         * @return сообщения буфера
+         */
+        private synchronized List<Message> close() {
+            var result = closed ? List.<Message>of() : snapshot();
+            closed = true;
+            return result;
+        }
+    }
+}
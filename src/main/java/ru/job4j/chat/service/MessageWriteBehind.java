@@ -0,0 +1,259 @@
+package ru.job4j.chat.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.job4j.chat.model.Message;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Отложенная запись сообщений. Принятые сообщения помещаются в ограниченную
+ * очередь в памяти, единственный поток записи выбирает их из очереди пакетами
+ * и сохраняет каждый пакет в одной транзакции (групповая фиксация). Пакет
+ * ограничен количеством сообщений и временем ожидания первого сообщения
+ * пакета. Режим включается свойством chat.message.write-behind.enabled,
+ * при остановке приложения очередь записывается полностью. Прием сообщения
+ * и остановка записи выполняются под общей блокировкой, поэтому сообщение,
+ * принятое до остановки, попадает в очередь до того, как поток записи
+ * увидит остановку, а после остановки сообщения не принимаются.
+ * Принятому сообщению сразу назначается идентификатор из блока, выделенного
+ * в последовательности message_id_seq методом {@link MessageService#reserveIds()},
+ * и под этим идентификатором сообщение затем сохраняется, поэтому клиент
+ * получает идентификатор до записи сообщения.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class MessageWriteBehind {
+
+    /**
+     * Объект для доступа к методам MessageService
+     */
+    private final MessageService messageService;
+
+    /**
+     * Признак включения отложенной записи
+     */
+    private final boolean enabled;
+
+    /**
+     * Максимальное количество сообщений в пакете
+     */
+    private final int batchSize;
+
+    /**
+     * Максимальное время накопления пакета в наносекундах
+     */
+    private final long maxDelayNanos;
+
+    /**
+     * Очередь принятых сообщений
+     */
+    private final BlockingQueue<Message> queue;
+
+    /**
+     * Блокировка приема сообщений (чтение) и остановки записи (запись)
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Признак работы потока записи
+     */
+    private volatile boolean running;
+
+    /**
+     * Поток записи
+     */
+    private Thread writer;
+
+    /**
+     * Следующий свободный идентификатор выделенного блока
+     */
+    private int nextId;
+
+    /**
+     * Идентификатор, следующий за последним идентификатором выделенного блока
+     */
+    private int blockEnd;
+
+    /**
+     * Конструктор
+     *
+     * @param messageService сервис сообщений
+     * @param enabled        признак включения отложенной записи
+     * @param queueCapacity  размер очереди
+     * @param batchSize      максимальное количество сообщений в пакете
+     * @param maxDelayMillis максимальное время накопления пакета в миллисекундах
+     */
+    public MessageWriteBehind(MessageService messageService,
+                              @Value("${chat.message.write-behind.enabled:false}")
+                                      boolean enabled,
+                              @Value("${chat.message.write-behind.queue-capacity:10000}")
+                                      int queueCapacity,
+                              @Value("${chat.message.write-behind.batch-size:500}")
+                                      int batchSize,
+                              @Value("${chat.message.write-behind.max-delay-ms:50}")
+                                      long maxDelayMillis) {
+        this.messageService = messageService;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Возвращает признак включения отложенной записи.
+     *
+     * @return true, если отложенная запись включена
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Возвращает количество сообщений, ожидающих записи.
+     *
+     * @return количество сообщений в очереди
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Назначает сообщению идентификатор и помещает его в очередь записи без
+     * ожидания. Одновременные вызовы не блокируют друг друга, кроме выделения
+     * нового блока идентификаторов.
+     *
+     * @param message сообщение
+     * @return Optional от идентификатора принятого сообщения, пустой, если
+     * очередь заполнена или запись остановлена
+     */
+    public OptionalInt offer(Message message) {
+        lock.readLock().lock();
+        try {
+            if (!running || queue.remainingCapacity() == 0) {
+                return OptionalInt.empty();
+            }
+            message.setId(reserveId());
+            return queue.offer(message) ? OptionalInt.of(message.getId()) : OptionalInt.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает следующий идентификатор выделенного блока, если блок
+     * исчерпан, выделяет новый блок.
+     *
+     * @return идентификатор сообщения
+     */
+    private synchronized int reserveId() {
+        if (nextId == blockEnd) {
+            nextId = messageService.reserveIds();
+            blockEnd = nextId + Message.ID_ALLOCATION_SIZE;
+        }
+        return nextId++;
+    }
+
+    /**
+     * Запускает поток записи, если отложенная запись включена.
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::drain, "message-write-behind");
+        writer.start();
+    }
+
+    /**
+     * Останавливает прием сообщений и ожидает записи всех сообщений очереди.
+     *
+     * @throws InterruptedException при прерывании ожидания
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        lock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (writer != null) {
+            writer.join();
+        }
+    }
+
+    /**
+     * Выбирает сообщения из очереди пакетами и записывает их, пока запись
+     * не остановлена и очередь не пуста.
+     */
+    private void drain() {
+        var batch = new ArrayList<Message>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                var first = queue.poll(maxDelayNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    var next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Message writer interrupted, {} messages are not written",
+                        batch.size() + queue.size());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Записывает пакет сообщений в одной транзакции. Если пакет не записан,
+     * сообщения записываются по одному с теми же идентификаторами, чтобы
+     * потерять только сообщения, которые не могут быть сохранены.
+     *
+     * @param batch пакет сообщений
+     */
+    private void write(List<Message> batch) {
+        try {
+            messageService.saveAllReserved(new ArrayList<>(batch));
+        } catch (RuntimeException e) {
+            log.error("Message batch of {} is not written, retrying one by one", batch.size(), e);
+            for (var message : batch) {
+                try {
+                    messageService.saveAllReserved(List.of(message));
+                } catch (RuntimeException ex) {
+                    log.error("Message is not written: {}", message.getContent(), ex);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package ru.job4j.chat.service;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+/**
+ * Исключение отказа в вычислении хэша пароля, если очередь пула
+ * вычисления хэшей паролей заполнена.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.service.BoundedPasswordEncoder
+ */
+public class PasswordHashingRejectedException extends AuthenticationServiceException {
+
+    /**
+     * Рекомендуемое время до повторного запроса в секундах
+     */
+    public static final int RETRY_AFTER_SECONDS = 1;
+
+    /**
+     * Конструктор
+     *
+     * @param msg сообщение
+     */
+    public PasswordHashingRejectedException(String msg) {
+        super(msg);
+    }
+}
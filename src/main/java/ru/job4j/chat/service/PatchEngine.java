@@ -0,0 +1,346 @@
+package ru.job4j.chat.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.job4j.chat.model.Model;
+
+import javax.persistence.Column;
+import javax.persistence.EntityManager;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToMany;
+import javax.persistence.OneToMany;
+import javax.persistence.Table;
+import javax.persistence.TemporalType;
+import javax.persistence.Transient;
+import javax.persistence.Version;
+import javax.sql.DataSource;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Частичное обновление моделей одним запросом UPDATE без предварительной
+ * загрузки модели. В запрос попадают только столбцы свойств, значения
+ * которых в переданном объекте отличны от null, для связей многие к одному
+ * записывается идентификатор связанной модели. В PostgreSQL обновленная
+ * строка возвращается тем же запросом через RETURNING, в остальных базах
+ * данных, например в H2 в тестах, обновленная модель читается отдельным
+ * запросом после UPDATE. Столбец версии модели увеличивается при каждом
+ * обновлении, если передана ожидаемая версия, то строка обновляется только
+ * при совпадении версии. Таблица и столбцы класса модели вычисляются один
+ * раз и хранятся в {@link ClassValue}.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.service.DTOService
+ */
+@Component
+public class PatchEngine {
+
+    /**
+     * Таблицы и столбцы классов моделей
+     */
+    private static final ClassValue<Metadata> METADATA = new ClassValue<>() {
+        @Override
+        protected Metadata computeValue(Class<?> type) {
+            return metadata(type);
+        }
+    };
+
+    /**
+     * Объект для работы с контекстом постоянства
+     */
+    private final EntityManager entityManager;
+
+    /**
+     * Признак поддержки RETURNING базой данных
+     */
+    private final boolean returning;
+
+    /**
+     * Конструктор. Поддержка RETURNING определяется по названию базы данных.
+     *
+     * @param entityManager объект для работы с контекстом постоянства
+     * @param dataSource    источник соединений с базой данных
+     * @throws SQLException при ошибке получения сведений о базе данных
+     */
+    @Autowired
+    public PatchEngine(EntityManager entityManager, DataSource dataSource) throws SQLException {
+        this(entityManager, isPostgreSql(dataSource));
+    }
+
+    /**
+     * Конструктор
+     *
+     * @param entityManager объект для работы с контекстом постоянства
+     * @param returning     признак поддержки RETURNING базой данных
+     */
+    PatchEngine(EntityManager entityManager, boolean returning) {
+        this.entityManager = entityManager;
+        this.returning = returning;
+    }
+
+    /**
+     * Обновляет в базе данных столбцы модели, значения свойств которых
+     * в переданном объекте отличны от null, и возвращает обновленную модель.
+     * Свойства примитивных типов и коллекции не обновляются. Если передана
+     * ожидаемая версия, а версия модели в базе данных другая, то
+     * выбрасывается исключение OptimisticLockingFailureException.
+     *
+     * @param type    класс модели
+     * @param patch   объект модели с идентификатором и новыми значениями
+     * @param version ожидаемая версия модели или null
+     * @param <T>     тип модели
+     * @return обновленная модель или Optional.empty(), если модели
+     * с таким идентификатором нет
+     */
+    @Transactional
+    public <T extends Model> Optional<T> patch(Class<T> type, T patch, Integer version) {
+        var metadata = METADATA.get(type);
+        var sql = new StringBuilder("UPDATE ").append(metadata.table).append(" SET ");
+        var values = new ArrayList<>();
+        for (var column : metadata.columns) {
+            var value = column.getter.apply(patch);
+            if (value != null) {
+                sql.append(values.isEmpty() ? "" : ", ").append(column.name)
+                        .append(" = ?").append(values.size() + 1);
+                values.add(column.association ? ((Model) value).getId() : value);
+            }
+        }
+        if (values.isEmpty()) {
+            var current = Optional.ofNullable(entityManager.find(type, patch.getId()));
+            if (version != null && metadata.version != null && current.isPresent()
+                    && !version.equals(metadata.version.getter.apply(current.get()))) {
+                throw conflict(type, patch);
+            }
+            return current;
+        }
+        if (metadata.version != null) {
+            sql.append(", ").append(metadata.version.name)
+                    .append(" = ").append(metadata.version.name).append(" + 1");
+        }
+        sql.append(" WHERE id = ?").append(values.size() + 1);
+        values.add(patch.getId());
+        if (version != null && metadata.version != null) {
+            sql.append(" AND ").append(metadata.version.name)
+                    .append(" = ?").append(values.size() + 1);
+            values.add(version);
+        }
+        Optional<T> result;
+        if (returning) {
+            sql.append(" RETURNING *");
+            var query = entityManager.createNativeQuery(sql.toString(), type);
+            bind(query, values);
+            @SuppressWarnings("unchecked")
+            List<T> rows = query.getResultList();
+            result = rows.stream().findFirst();
+        } else {
+            var query = entityManager.createNativeQuery(sql.toString());
+            bind(query, values);
+            result = query.executeUpdate() == 0
+                    ? Optional.empty()
+                    : Optional.ofNullable(entityManager.find(type, patch.getId()));
+        }
+        if (result.isEmpty() && version != null && metadata.version != null
+                && entityManager.find(type, patch.getId()) != null) {
+            throw conflict(type, patch);
+        }
+        return result;
+    }
+
+    /**
+     * Создает исключение несовпадения версии модели.
+     *
+     * @param type  класс модели
+     * @param patch объект модели с идентификатором
+     * @return исключение OptimisticLockingFailureException
+     */
+    private static OptimisticLockingFailureException conflict(Class<?> type, Model patch) {
+        return new OptimisticLockingFailureException(
+                type.getSimpleName() + " " + patch.getId() + " has been modified");
+    }
+
+    /**
+     * Устанавливает параметры запроса по порядку.
+     *
+     * @param query  запрос
+     * @param values значения параметров
+     */
+    private static void bind(javax.persistence.Query query, List<Object> values) {
+        for (int i = 0; i < values.size(); i++) {
+            var value = values.get(i);
+            if (value instanceof Date) {
+                query.setParameter(i + 1, (Date) value, TemporalType.TIMESTAMP);
+            } else {
+                query.setParameter(i + 1, value);
+            }
+        }
+    }
+
+    /**
+     * Проверяет, является ли база данных источника соединений PostgreSQL.
+     *
+     * @param dataSource источник соединений с базой данных
+     * @return true для PostgreSQL
+     * @throws SQLException при ошибке получения сведений о базе данных
+     */
+    private static boolean isPostgreSql(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName());
+        }
+    }
+
+    /**
+     * Вычисляет таблицу и обновляемые столбцы класса модели. Имя столбца
+     * берется из аннотаций {@link JoinColumn} и {@link Column}, иначе
+     * получается из имени поля так же, как в стратегии именования Spring.
+     * Столбцы, отмеченные в этих аннотациях как необновляемые, пропускаются.
+     *
+     * @param type класс модели
+     * @return таблица и столбцы класса
+     */
+    private static Metadata metadata(Class<?> type) {
+        var table = type.getAnnotation(Table.class);
+        var readers = new HashMap<String, PropertyDescriptor>();
+        try {
+            for (var descriptor : Introspector.getBeanInfo(type, Object.class)
+                    .getPropertyDescriptors()) {
+                readers.put(descriptor.getName(), descriptor);
+            }
+        } catch (IntrospectionException e) {
+            throw new IllegalStateException("Cannot introspect " + type.getName(), e);
+        }
+        var lookup = MethodHandles.lookup();
+        var columns = new ArrayList<ColumnMetadata>();
+        ColumnMetadata version = null;
+        for (Field field : type.getDeclaredFields()) {
+            var descriptor = readers.get(field.getName());
+            if (field.isAnnotationPresent(Version.class) && descriptor != null) {
+                version = new ColumnMetadata(snakeCase(field.getName()),
+                        DTOService.getter(lookup, descriptor.getReadMethod()), false);
+                continue;
+            }
+            if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()
+                    || field.isAnnotationPresent(Id.class)
+                    || field.isAnnotationPresent(Transient.class)
+                    || field.isAnnotationPresent(ManyToMany.class)
+                    || field.isAnnotationPresent(OneToMany.class)
+                    || descriptor == null || descriptor.getReadMethod() == null) {
+                continue;
+            }
+            var joinColumn = field.getAnnotation(JoinColumn.class);
+            var column = field.getAnnotation(Column.class);
+            if (joinColumn != null && !joinColumn.updatable()
+                    || column != null && !column.updatable()) {
+                continue;
+            }
+            String name;
+            if (joinColumn != null && !joinColumn.name().isEmpty()) {
+                name = joinColumn.name();
+            } else if (column != null && !column.name().isEmpty()) {
+                name = column.name();
+            } else {
+                name = snakeCase(field.getName());
+            }
+            columns.add(new ColumnMetadata(name,
+                    DTOService.getter(lookup, descriptor.getReadMethod()),
+                    Model.class.isAssignableFrom(field.getType())));
+        }
+        return new Metadata(table != null ? table.name() : snakeCase(type.getSimpleName()),
+                columns.toArray(new ColumnMetadata[0]), version);
+    }
+
+    /**
+     * Переводит имя в нижний регистр с разделением слов подчеркиванием.
+     *
+     * @param name имя в camelCase
+     * @return имя в snake_case
+     */
+    private static String snakeCase(String name) {
+        return name.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase();
+    }
+
+    /**
+     * Таблица и столбцы класса модели
+     */
+    private static final class Metadata {
+
+        /**
+         * Имя таблицы
+         */
+        private final String table;
+
+        /**
+         * Обновляемые столбцы
+         */
+        private final ColumnMetadata[] columns;
+
+        /**
+         * Столбец версии или null
+         */
+        private final ColumnMetadata version;
+
+        /**
+         * Конструктор
+         *
+         * @param table   имя таблицы
+         * @param columns обновляемые столбцы
+         * @param version столбец версии или null
+         */
+        private Metadata(String table, ColumnMetadata[] columns, ColumnMetadata version) {
+            this.table = table;
+            this.columns = columns;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Обновляемый столбец
+     */
+    private static final class ColumnMetadata {
+
+        /**
+         * Имя столбца
+         */
+        private final String name;
+
+        /**
+         * Функция чтения значения свойства
+         */
+        private final Function<Object, Object> getter;
+
+        /**
+         * Признак связи многие к одному, для которой записывается
+         * идентификатор связанной модели
+         */
+        private final boolean association;
+
+        /**
+         * Конструктор
+         *
+         * @param name        имя столбца
+         * @param getter      функция чтения значения свойства
+         * @param association признак связи многие к одному
+         */
+        private ColumnMetadata(String name, Function<Object, Object> getter,
+                               boolean association) {
+            this.name = name;
+            this.getter = getter;
+            this.association = association;
+        }
+    }
+}
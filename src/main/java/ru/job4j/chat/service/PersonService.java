@@ -1,12 +1,13 @@
 package ru.job4j.chat.service;
 
-import org.springframework.data.repository.CrudRepository;
 import ru.job4j.chat.model.Model;
 import ru.job4j.chat.model.Person;
+import ru.job4j.chat.projection.RoomUnread;
 import ru.job4j.chat.repository.PersonRepository;
 import ru.job4j.chat.repository.RoomRepository;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -38,16 +39,40 @@ public interface PersonService {
      */
     Optional<Person> findById(int id);
 
+    /**
+     * Возвращает пользователей по идентификаторам в порядке переданных
+     * идентификаторов. Идентификаторы разбиваются на части размера
+     * {@link Chunks#SIZE}, для каждой части выполняется один запрос
+     * {@link PersonRepository#findDistinctByIdIn(Collection)}.
+     *
+     * @param ids идентификаторы пользователей
+     * @return список найденных пользователей
+     */
+    List<Person> findAllById(Collection<Integer> ids);
+
     /**
      * Сохраняет пользователя в репозитории.
      * Для сохранения пользователя вызывается метод репозитория
-     * {@link RoomRepository#save(Object)}.
+     * {@link RoomRepository#save(Object)}. Роли существующего пользователя
+     * сохраняются без изменений, новый пользователь создается без ролей.
      *
      * @param person пользователь
      * @return сохраненный пользователь
      */
     Person save(Person person);
 
+    /**
+     * Заменяет роли пользователя ролями с переданными идентификаторами.
+     * Если какая-либо роль не найдена, то выбрасывается исключение
+     * IllegalArgumentException.
+     *
+     * @param id      идентификатор пользователя
+     * @param roleIds идентификаторы ролей
+     * @return пользователь с новыми ролями или Optional.empty(), если
+     * пользователь не найден
+     */
+    Optional<Person> updateRoles(int id, Collection<Integer> roleIds);
+
     /**
      * Удаляет пользователя в репозитории.
      * Для удаления пользователя вызывается метод репозитория
@@ -57,17 +82,30 @@ public interface PersonService {
      */
     void delete(Person person);
 
+    /**
+     * Удаляет пользователей по идентификаторам. Идентификаторы разбиваются на части
+     * размера {@link Chunks#SIZE}, для каждой части выполняется один запрос
+     * DELETE, все части удаляются в одной транзакции.
+     * Перед удалением пользователей удаляются их связи с ролями, после
+     * удаления записи пользователей удаляются из кэша данных пользователей.
+     *
+     * @param ids идентификаторы пользователей
+     * @return количество удаленных пользователей
+     */
+    int deleteAll(Collection<Integer> ids);
+
     /**
      * Обновляет пользователя в репозитории.
      * Для обновления пользователя вызывается метод сервиса
-     * {@link DTOService#patchModel(CrudRepository, Model)}.
+     * {@link PatchEngine#patch(Class, Model, Integer)}.
      *
-     * @param person пользователь
+     * @param person  пользователь
+     * @param version ожидаемая версия или null для обновления без проверки
      * @return обновленный пользователь
      * @throws InvocationTargetException при выбросе исключения при работе с рефлексией
      * @throws IllegalAccessException    при невозможности вызвать метод объекта
      */
-    Optional<Person> patchModel(Person person)
+    Optional<Person> patchModel(Person person, Integer version)
             throws InvocationTargetException, IllegalAccessException;
 
     /**
@@ -79,4 +117,25 @@ public interface PersonService {
      * @return пользователь
      */
     Person findByUsername(String username);
+
+    /**
+     * Проверяет, свободно ли имя пользователя. Имя проверяется фильтром
+     * Блума имен пользователей, к репозиторию методом
+     * {@link PersonRepository#existsByUsername(String)} выполняется запрос
+     * только если фильтр не исключает, что имя занято.
+     *
+     * @param username имя пользователя
+     * @return true, если имя свободно
+     */
+    boolean isAvailable(String username);
+
+    /**
+     * Возвращает счетчики непрочитанных сообщений пользователя по комнатам,
+     * участником которых он является. Счетчики получаются методом
+     * {@link UnreadCounters#findByPerson(int)} без просмотра сообщений.
+     *
+     * @param id идентификатор пользователя
+     * @return список счетчиков
+     */
+    List<RoomUnread> findUnread(int id);
 }
\ No newline at end of file
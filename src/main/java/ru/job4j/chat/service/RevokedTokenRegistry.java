@@ -0,0 +1,256 @@
+package ru.job4j.chat.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.job4j.chat.model.RevokedToken;
+import ru.job4j.chat.repository.RevokedTokenRepository;
+
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Реестр отозванных токенов доступа. Идентификаторы отозванных токенов
+ * хранятся в памяти в фильтре Блума и в точном множестве, поэтому проверка
+ * токена при каждом запросе не обращается к базе данных: для неотозванного
+ * токена проверка почти всегда заканчивается на фильтре Блума, точное
+ * множество исключает ложноположительные ответы фильтра. Реестр по
+ * расписанию chat.token.revocation.sync-ms дочитывает из таблицы
+ * revoked_token записи, добавленные другими экземплярами приложения,
+ * и удаляет токены, срок действия которых истек; при удалении фильтр
+ * Блума перестраивается по оставшимся токенам. Идентификаторы записей
+ * выдаются до фиксации транзакций, поэтому запись с меньшим идентификатором
+ * может стать видна позже записи с большим: записи, прочитанные в течение
+ * последних {@link #SYNC_LOOKBACK} миллисекунд, перечитываются.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class RevokedTokenRegistry {
+
+    /**
+     * Время в миллисекундах, в течение которого прочитанные записи таблицы
+     * revoked_token перечитываются при синхронизации
+     */
+    static final long SYNC_LOOKBACK = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Объект для доступа к методам RevokedTokenRepository
+     */
+    private final RevokedTokenRepository revokedTokenRepository;
+
+    /**
+     * Объект для сохранения отозванного токена в отдельной транзакции
+     */
+    private final TransactionOperations requiresNew;
+
+    /**
+     * Ожидаемое количество отозванных токенов
+     */
+    private final int expectedSize;
+
+    /**
+     * Вероятность ложноположительного ответа фильтра Блума
+     */
+    private final double fpp;
+
+    /**
+     * Часы для определения истекших токенов
+     */
+    private final Clock clock;
+
+    /**
+     * Время окончания действия отозванных токенов по идентификаторам токенов
+     */
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    /**
+     * Фильтр Блума идентификаторов отозванных токенов
+     */
+    private volatile BloomFilter bloom;
+
+    /**
+     * Идентификатор записи таблицы revoked_token, до которой включительно
+     * записи прочитаны более {@link #SYNC_LOOKBACK} миллисекунд назад и
+     * больше не перечитываются
+     */
+    private int stableId;
+
+    /**
+     * Время синхронизации и идентификатор последней прочитанной при ней
+     * записи для синхронизаций за последние {@link #SYNC_LOOKBACK} миллисекунд
+     */
+    private final Deque<long[]> syncMarks = new ArrayDeque<>();
+
+    /**
+     * Конструктор
+     *
+     * @param revokedTokenRepository хранилище отозванных токенов
+     * @param transactionManager     менеджер транзакций
+     * @param expectedSize           ожидаемое количество отозванных токенов
+     * @param fpp                    вероятность ложноположительного ответа фильтра Блума
+     */
+    @Autowired
+    public RevokedTokenRegistry(
+            RevokedTokenRepository revokedTokenRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${chat.token.revocation.expected-size:10000}") int expectedSize,
+            @Value("${chat.token.revocation.fpp:0.01}") double fpp) {
+        this(revokedTokenRepository, requiresNew(transactionManager), expectedSize, fpp,
+                Clock.systemUTC());
+    }
+
+    /**
+     * Конструктор с часами для определения истекших токенов
+     *
+     * @param revokedTokenRepository хранилище отозванных токенов
+     * @param requiresNew            объект для выполнения действий в отдельной транзакции
+     * @param expectedSize           ожидаемое количество отозванных токенов
+     * @param fpp                    вероятность ложноположительного ответа фильтра Блума
+     * @param clock                  часы
+     */
+    RevokedTokenRegistry(RevokedTokenRepository revokedTokenRepository,
+                         TransactionOperations requiresNew,
+                         int expectedSize, double fpp, Clock clock) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.requiresNew = requiresNew;
+        this.expectedSize = expectedSize;
+        this.fpp = fpp;
+        this.clock = clock;
+        this.bloom = new BloomFilter(expectedSize, fpp);
+    }
+
+    /**
+     * Проверяет, отозван ли токен доступа. Метод не обращается
+     * к базе данных и не использует блокировки.
+     *
+     * @param jti идентификатор токена
+     * @return true, если токен отозван
+     */
+    public boolean isRevoked(String jti) {
+        return jti != null && bloom.mightContain(jti) && revoked.containsKey(jti);
+    }
+
+    /**
+     * Отзывает токен доступа: сохраняет идентификатор токена в таблице
+     * revoked_token для других экземпляров приложения и добавляет его
+     * в реестр. Запись сохраняется в отдельной транзакции, поэтому повторный
+     * отзыв, нарушающий уникальность идентификатора токена, не помечает
+     * для отката транзакцию вызывающего метода.
+     *
+     * @param jti       идентификатор токена
+     * @param expiresAt время окончания действия токена
+     */
+    public void revoke(String jti, Date expiresAt) {
+        if (isRevoked(jti)) {
+            return;
+        }
+        try {
+            requiresNew.executeWithoutResult(status -> revokedTokenRepository.save(
+                    RevokedToken.builder()
+                            .jti(jti)
+                            .expires(expiresAt)
+                            .build()));
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Token {} is already revoked", jti);
+        }
+        add(jti, expiresAt.getTime());
+    }
+
+    /**
+     * Возвращает количество отозванных токенов в реестре.
+     *
+     * @return количество отозванных токенов
+     */
+    public int size() {
+        return revoked.size();
+    }
+
+    /**
+     * Дочитывает отозванные токены, добавленные в таблицу после записей,
+     * прочитанных более {@link #SYNC_LOOKBACK} миллисекунд назад, и удаляет
+     * из реестра и таблицы токены, срок действия которых истек. Выполняется
+     * при запуске приложения и по расписанию.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${chat.token.revocation.sync-ms:5000}")
+    public synchronized void sync() {
+        long now = clock.millis();
+        while (!syncMarks.isEmpty() && syncMarks.peekFirst()[0] <= now - SYNC_LOOKBACK) {
+            stableId = (int) syncMarks.pollFirst()[1];
+        }
+        int lastId = stableId;
+        for (var token : revokedTokenRepository.findByIdGreaterThanOrderByIdAsc(stableId)) {
+            lastId = token.getId();
+            if (token.getExpires().getTime() > now && !revoked.containsKey(token.getJti())) {
+                add(token.getJti(), token.getExpires().getTime());
+            }
+        }
+        syncMarks.addLast(new long[]{now, lastId});
+        if (revoked.values().removeIf(expiresAt -> expiresAt <= now)) {
+            bloom = rebuild(expectedSize);
+            revokedTokenRepository.deleteExpired(new Date(now));
+        }
+    }
+
+    /**
+     * Добавляет токен в точное множество и фильтр Блума. Если количество
+     * токенов превысило ожидаемое количество ключей фильтра, фильтр
+     * перестраивается с удвоенным размером, чтобы не росла вероятность
+     * ложноположительного ответа.
+     *
+     * @param jti       идентификатор токена
+     * @param expiresAt время окончания действия токена в миллисекундах
+     */
+    private synchronized void add(String jti, long expiresAt) {
+        revoked.put(jti, expiresAt);
+        var current = bloom;
+        if (revoked.size() > current.getExpectedInsertions()) {
+            bloom = rebuild(current.getExpectedInsertions() * 2);
+        } else {
+            current.put(jti);
+        }
+    }
+
+    /**
+     * Создает объект для выполнения действий в новой транзакции,
+     * приостанавливающей текущую.
+     *
+     * @param transactionManager менеджер транзакций
+     * @return объект для выполнения действий в транзакции
+     */
+    private static TransactionOperations requiresNew(
+            PlatformTransactionManager transactionManager) {
+        var template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return template;
+    }
+
+    /**
+     * Создает фильтр Блума по токенам точного множества.
+     *
+     * @param capacity минимальное ожидаемое количество ключей фильтра
+     * @return фильтр Блума
+     */
+    private BloomFilter rebuild(int capacity) {
+        var filter = new BloomFilter(Math.max(capacity, revoked.size()), fpp);
+        revoked.keySet().forEach(filter::put);
+        return filter;
+    }
+}
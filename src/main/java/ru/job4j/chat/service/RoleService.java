@@ -1,12 +1,12 @@
 package ru.job4j.chat.service;
 
-import org.springframework.data.repository.CrudRepository;
 import ru.job4j.chat.model.Model;
 import ru.job4j.chat.model.Role;
 import ru.job4j.chat.repository.RoleRepository;
 import ru.job4j.chat.repository.RoomRepository;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -57,16 +57,28 @@ public interface RoleService {
      */
     void delete(Role role);
 
+    /**
+     * Удаляет роли по идентификаторам. Идентификаторы разбиваются на части
+     * размера {@link Chunks#SIZE}, для каждой части выполняется один запрос
+     * DELETE, все части удаляются в одной транзакции.
+     * Перед удалением ролей удаляются связи пользователей с этими ролями.
+     *
+     * @param ids идентификаторы ролей
+     * @return количество удаленных ролей
+     */
+    int deleteAll(Collection<Integer> ids);
+
     /**
      * Обновляет роль в репозитории.
      * Для обновления роли вызывается метод сервиса
-     * {@link DTOService#patchModel(CrudRepository, Model)}.
+     * {@link PatchEngine#patch(Class, Model, Integer)}.
      *
-     * @param role роль
+     * @param role    роль
+     * @param version ожидаемая версия или null для обновления без проверки
      * @return обновленная роль
      * @throws InvocationTargetException при выбросе исключения при работе с рефлексией
      * @throws IllegalAccessException    при невозможности вызвать метод объекта
      */
-    Optional<Role> patchModel(Role role)
+    Optional<Role> patchModel(Role role, Integer version)
             throws InvocationTargetException, IllegalAccessException;
 }
@@ -1,11 +1,11 @@
 package ru.job4j.chat.service;
 
-import org.springframework.data.repository.CrudRepository;
 import ru.job4j.chat.model.Model;
 import ru.job4j.chat.model.Room;
 import ru.job4j.chat.repository.RoomRepository;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -37,6 +37,17 @@ public interface RoomService {
      */
     Optional<Room> findById(int id);
 
+    /**
+     * Возвращает комнаты по идентификаторам в порядке переданных
+     * идентификаторов. Идентификаторы разбиваются на части размера
+     * {@link Chunks#SIZE}, для каждой части выполняется один запрос
+     * {@link RoomRepository#findAllById(Iterable)}.
+     *
+     * @param ids идентификаторы комнат
+     * @return список найденных комнат
+     */
+    List<Room> findAllById(Collection<Integer> ids);
+
     /**
      * Сохраняет комнату в репозитории.
      * Для сохранения комнаты вызывается метод репозитория
@@ -56,16 +67,85 @@ public interface RoomService {
      */
     void delete(Room room);
 
+    /**
+     * Удаляет комнаты по идентификаторам. Идентификаторы разбиваются на части
+     * размера {@link Chunks#SIZE}, для каждой части выполняется один запрос
+     * DELETE, все части удаляются в одной транзакции.
+     *
+     * @param ids идентификаторы комнат
+     * @return количество удаленных комнат
+     */
+    int deleteAll(Collection<Integer> ids);
+
+    /**
+     * Добавляет пользователя в участники комнаты.
+     *
+     * @param roomId   идентификатор комнаты
+     * @param username имя пользователя
+     * @return true, если пользователь добавлен, false, если пользователь уже
+     * является участником или комнаты нет
+     */
+    boolean join(int roomId, String username);
+
+    /**
+     * Удаляет пользователя из участников комнаты.
+     *
+     * @param roomId   идентификатор комнаты
+     * @param username имя пользователя
+     * @return true, если пользователь был участником комнаты
+     */
+    boolean leave(int roomId, String username);
+
+    /**
+     * Отмечает сообщения комнаты до сообщения messageId включительно
+     * прочитанными пользователем.
+     *
+     * @param roomId    идентификатор комнаты
+     * @param username  имя пользователя
+     * @param messageId идентификатор последнего прочитанного сообщения
+     * @return true, если отметка сдвинута
+     */
+    boolean markRead(int roomId, String username, int messageId);
+
+    /**
+     * Проверяет, что сообщение принадлежит комнате.
+     *
+     * @param roomId    идентификатор комнаты
+     * @param messageId идентификатор сообщения
+     * @return true, если сообщение есть в комнате
+     */
+    boolean hasMessage(int roomId, int messageId);
+
+    /**
+     * Возвращает страницу идентификаторов участников комнаты,
+     * упорядоченную по возрастанию.
+     *
+     * @param roomId идентификатор комнаты
+     * @param after  идентификатор участника курсора
+     * @param limit  размер страницы
+     * @return список идентификаторов участников
+     */
+    List<Integer> findMemberIds(int roomId, int after, int limit);
+
+    /**
+     * Возвращает комнаты, участником которых является пользователь.
+     *
+     * @param username имя пользователя
+     * @return список комнат
+     */
+    List<Room> findJoined(String username);
+
     /**
      * Обновляет комнату в репозитории.
      * Для обновления комнаты вызывается метод сервиса
-     * {@link DTOService#patchModel(CrudRepository, Model)}.
+     * {@link PatchEngine#patch(Class, Model, Integer)}.
      *
-     * @param room комната
+     * @param room    комната
+     * @param version ожидаемая версия или null для обновления без проверки
      * @return обновленная комната
      * @throws InvocationTargetException при выбросе исключения при работе с рефлексией
      * @throws IllegalAccessException    при невозможности вызвать метод объекта
      */
-    Optional<Room> patchModel(Room room)
+    Optional<Room> patchModel(Room room, Integer version)
             throws InvocationTargetException, IllegalAccessException;
 }
@@ -0,0 +1,208 @@
+package ru.job4j.chat.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Реестр активных подписчиков комнат. Подписчики комнаты распределены
+ * по {@link #STRIPES} полосам по хешу подписчика, каждая полоса хранится
+ * массивом, который при подписке и отписке копируется с изменением.
+ * Рассылка читает массивы полос без блокировок, поэтому не ждет подписок
+ * и отписок, а подписка копирует только одну полосу, то есть примерно
+ * 1/{@link #STRIPES} подписчиков комнаты. Изменения одной комнаты
+ * выполняются под блокировкой ее ячейки в {@link ConcurrentHashMap}.
+ * Подписчик занимает одну ссылку в массиве полосы без запаса емкости,
+ * количество подписчиков комнаты ограничено, комната без подписчиков
+ * удаляется из реестра.
+ *
+ * @param <T> тип подписчика
+ * @author Alexander Emelyanov
+ * @version 1.0
+ */
+public final class RoomSubscribers<T> {
+
+    /**
+     * Количество бит номера полосы
+     */
+    private static final int STRIPE_BITS = 5;
+
+    /**
+     * Количество полос комнаты
+     */
+    static final int STRIPES = 1 << STRIPE_BITS;
+
+    /**
+     * Общий пустой массив полосы
+     */
+    private static final Object[] EMPTY = new Object[0];
+
+    /**
+     * Максимальное количество подписчиков комнаты
+     */
+    private final int maxPerRoom;
+
+    /**
+     * Полосы подписчиков по идентификаторам комнат
+     */
+    private final Map<Integer, Stripes> rooms = new ConcurrentHashMap<>();
+
+    /**
+     * Конструктор
+     *
+     * @param maxPerRoom максимальное количество подписчиков комнаты
+     */
+    public RoomSubscribers(int maxPerRoom) {
+        this.maxPerRoom = maxPerRoom;
+    }
+
+    /**
+     * Добавляет подписчика комнаты.
+     *
+     * @param roomId     идентификатор комнаты
+     * @param subscriber подписчик
+     * @return true, если подписчик добавлен, false, если подписчик уже
+     * есть в комнате или количество подписчиков комнаты достигло ограничения
+     */
+    public boolean add(int roomId, T subscriber) {
+        var added = new boolean[1];
+        rooms.compute(roomId, (id, stripes) -> {
+            var result = stripes == null ? new Stripes() : stripes;
+            if (result.size < maxPerRoom) {
+                added[0] = result.add(subscriber);
+            }
+            return result.size == 0 ? null : result;
+        });
+        return added[0];
+    }
+
+    /**
+     * Удаляет подписчика комнаты.
+     *
+     * @param roomId     идентификатор комнаты
+     * @param subscriber подписчик
+     * @return true, если подписчик был в комнате
+     */
+    public boolean remove(int roomId, T subscriber) {
+        var removed = new boolean[1];
+        rooms.computeIfPresent(roomId, (id, stripes) -> {
+            removed[0] = stripes.remove(subscriber);
+            return stripes.size == 0 ? null : stripes;
+        });
+        return removed[0];
+    }
+
+    /**
+     * Выполняет действие для каждого подписчика комнаты без блокировок.
+     * Подписчики, добавленные во время обхода, могут быть не обойдены,
+     * удаление подписчика из действия допускается.
+     *
+     * @param roomId идентификатор комнаты
+     * @param action действие
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(int roomId, Consumer<? super T> action) {
+        var stripes = rooms.get(roomId);
+        if (stripes == null) {
+            return;
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            for (var subscriber : stripes.arrays.get(i)) {
+                action.accept((T) subscriber);
+            }
+        }
+    }
+
+    /**
+     * Возвращает количество подписчиков комнаты.
+     *
+     * @param roomId идентификатор комнаты
+     * @return количество подписчиков
+     */
+    public int size(int roomId) {
+        var stripes = rooms.get(roomId);
+        return stripes == null ? 0 : stripes.size;
+    }
+
+    /**
+     * Возвращает номер полосы подписчика по старшим битам
+     * перемешанного хеша.
+     *
+     * @param subscriber подписчик
+     * @return номер полосы
+     */
+    private static int stripe(Object subscriber) {
+        return (subscriber.hashCode() * 0x9E3779B9) >>> (Integer.SIZE - STRIPE_BITS);
+    }
+
+    /**
+     * Полосы подписчиков комнаты. Изменяются только внутри вычисления
+     * значения {@link ConcurrentHashMap}, читаются без блокировок.
+     */
+    private static final class Stripes {
+
+        /**
+         * Массивы подписчиков полос
+         */
+        private final AtomicReferenceArray<Object[]> arrays = new AtomicReferenceArray<>(STRIPES);
+
+        /**
+         * Количество подписчиков комнаты
+         */
+        private volatile int size;
+
+        /**
+         * Конструктор
+         */
+        private Stripes() {
+            for (int i = 0; i < STRIPES; i++) {
+                arrays.set(i, EMPTY);
+            }
+        }
+
+        /**
+         * Добавляет подписчика в копию массива его полосы.
+         *
+         * @param subscriber подписчик
+         * @return true, если подписчика не было в полосе
+         */
+        private boolean add(Object subscriber) {
+            int index = stripe(subscriber);
+            var current = arrays.get(index);
+            for (var item : current) {
+                if (item.equals(subscriber)) {
+                    return false;
+                }
+            }
+            var next = new Object[current.length + 1];
+            System.arraycopy(current, 0, next, 0, current.length);
+            next[current.length] = subscriber;
+            arrays.set(index, next);
+            size++;
+            return true;
+        }
+
+        /**
+         * Удаляет подписчика из копии массива его полосы.
+         *
+         * @param subscriber подписчик
+         * @return true, если подписчик был в полосе
+         */
+        private boolean remove(Object subscriber) {
+            int index = stripe(subscriber);
+            var current = arrays.get(index);
+            for (int i = 0; i < current.length; i++) {
+                if (current[i].equals(subscriber)) {
+                    var next = current.length == 1 ? EMPTY : new Object[current.length - 1];
+                    System.arraycopy(current, 0, next, 0, i);
+                    System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                    arrays.set(index, next);
+                    size--;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
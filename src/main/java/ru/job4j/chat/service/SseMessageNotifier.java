@@ -0,0 +1,176 @@
+package ru.job4j.chat.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.job4j.chat.event.MessageCreatedEvent;
+import ru.job4j.chat.model.Message;
+import ru.job4j.chat.projection.MessageView;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Рассыльщик новых сообщений подписчикам комнат по протоколу
+ * Server-Sent Events. Идентификатором события служит идентификатор
+ * сообщения, поэтому при переподключении клиент передает заголовок
+ * Last-Event-ID и получает пропущенные сообщения. Данными события
+ * служит проекция {@link MessageView}, без пароля и ролей пользователя.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class SseMessageNotifier {
+
+    /**
+     * Максимальное количество пропущенных сообщений, отправляемых при подключении
+     */
+    static final int REPLAY_PAGE_SIZE = 500;
+
+    /**
+     * Имя события неполной повторной отправки пропущенных сообщений
+     */
+    static final String TRUNCATED_EVENT_NAME = "replay-truncated";
+
+    /**
+     * Время жизни подключения в миллисекундах
+     */
+    private static final long TIMEOUT = 30 * 60 * 1000L;
+
+    /**
+     * Имя события нового сообщения
+     */
+    private static final String EVENT_NAME = "message";
+
+    /**
+     * Максимальное количество подключений к одной комнате
+     */
+    private static final int MAX_ROOM_SUBSCRIBERS = 100_000;
+
+    /**
+     * Объект для доступа к методам MessageService
+     */
+    private final MessageService messageService;
+
+    /**
+     * Подключения подписчиков по идентификаторам комнат
+     */
+    private final RoomSubscribers<SseEmitter> emitters =
+            new RoomSubscribers<>(MAX_ROOM_SUBSCRIBERS);
+
+    /**
+     * Создает подключение подписчика комнаты. Подключение регистрируется
+     * до отправки пропущенных сообщений, поэтому сообщение, созданное во время
+     * повторной отправки, может прийти дважды, клиент отбрасывает повторы по
+     * идентификатору события. Пропущенные сообщения выбираются одной
+     * страницей размера {@link #REPLAY_PAGE_SIZE} методом
+     * {@link MessageService#findByRoomAfter(int, int, int)}, поэтому подключение
+     * после долгого отсутствия не занимает поток запроса на время отправки
+     * всей истории. Если страница заполнена, то после нее отправляется событие
+     * {@link #TRUNCATED_EVENT_NAME} с идентификатором последнего отправленного
+     * сообщения, и клиент догружает остальное постранично через историю комнаты.
+     * Если количество подключений к комнате достигло ограничения, то
+     * подключение сразу завершается и клиент переподключается позже.
+     *
+     * @param roomId      идентификатор комнаты
+     * @param lastEventId идентификатор последнего полученного сообщения, может быть null
+     * @return подключение подписчика
+     */
+    public SseEmitter subscribe(int roomId, Integer lastEventId) {
+        var emitter = new SseEmitter(TIMEOUT);
+        if (!emitters.add(roomId, emitter)) {
+            log.warn("SSE subscribers limit of room {} is reached", roomId);
+            emitter.complete();
+            return emitter;
+        }
+        emitter.onCompletion(() -> remove(roomId, emitter));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> remove(roomId, emitter));
+        if (lastEventId != null) {
+            var missed = messageService.findByRoomAfter(roomId, lastEventId, REPLAY_PAGE_SIZE);
+            if (send(roomId, emitter, missed) && missed.size() == REPLAY_PAGE_SIZE) {
+                truncated(roomId, emitter, missed.get(missed.size() - 1).getId());
+            }
+        }
+        return emitter;
+    }
+
+    /**
+     * Отправляет созданное сообщение подписчикам его комнаты. Отправка
+     * выполняется после фиксации транзакции сохранения сообщения.
+     *
+     * @param event событие создания сообщения
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageCreated(MessageCreatedEvent event) {
+        var message = event.getMessage();
+        if (message.getRoom() == null) {
+            return;
+        }
+        int roomId = message.getRoom().getId();
+        var messages = List.of(message);
+        emitters.forEach(roomId, emitter -> send(roomId, emitter, messages));
+    }
+
+    /**
+     * Отправляет сообщения в подключение, при ошибке отправки
+     * подключение закрывается и удаляется.
+     *
+     * @param roomId   идентификатор комнаты
+     * @param emitter  подключение подписчика
+     * @param messages сообщения
+     * @return true, если отправка прошла успешно
+     */
+    private boolean send(int roomId, SseEmitter emitter, Iterable<Message> messages) {
+        try {
+            for (var message : messages) {
+                emitter.send(SseEmitter.event()
+                        .id(String.valueOf(message.getId()))
+                        .name(EVENT_NAME)
+                        .data(MessageView.of(message), MediaType.APPLICATION_JSON));
+            }
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            log.debug("SSE subscriber of room {} is gone: {}", roomId, e.getMessage());
+            remove(roomId, emitter);
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    /**
+     * Отправляет в подключение событие неполной повторной отправки, при
+     * ошибке отправки подключение закрывается и удаляется.
+     *
+     * @param roomId  идентификатор комнаты
+     * @param emitter подключение подписчика
+     * @param lastId  идентификатор последнего отправленного сообщения
+     */
+    private void truncated(int roomId, SseEmitter emitter, int lastId) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name(TRUNCATED_EVENT_NAME)
+                    .data(lastId));
+        } catch (IOException | IllegalStateException e) {
+            log.debug("SSE subscriber of room {} is gone: {}", roomId, e.getMessage());
+            remove(roomId, emitter);
+            emitter.completeWithError(e);
+        }
+    }
+
+    /**
+     * Удаляет подключение подписчика комнаты.
+     *
+     * @param roomId  идентификатор комнаты
+     * @param emitter подключение подписчика
+     */
+    private void remove(int roomId, SseEmitter emitter) {
+        emitters.remove(roomId, emitter);
+    }
+}
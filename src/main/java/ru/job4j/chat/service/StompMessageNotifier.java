@@ -0,0 +1,43 @@
+package ru.job4j.chat.service;
+
+import lombok.AllArgsConstructor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.job4j.chat.event.MessageCreatedEvent;
+import ru.job4j.chat.projection.MessageView;
+
+import static ru.job4j.chat.config.WebSocketConfig.ROOM_TOPIC_PREFIX;
+
+/**
+ * Рассыльщик новых сообщений подписчикам тем комнат по протоколу STOMP
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.config.WebSocketConfig
+ */
+@AllArgsConstructor
+@Component
+public class StompMessageNotifier {
+
+    /**
+     * Объект для отправки сообщений брокеру
+     */
+    private final SimpMessagingTemplate messagingTemplate;
+
+    /**
+     * Отправляет проекцию {@link MessageView} созданного сообщения в тему
+     * его комнаты, без пароля и ролей пользователя. Отправка
+     * выполняется после фиксации транзакции сохранения сообщения.
+     *
+     * @param event событие создания сообщения
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageCreated(MessageCreatedEvent event) {
+        var message = event.getMessage();
+        if (message.getRoom() != null) {
+            messagingTemplate.convertAndSend(
+                    ROOM_TOPIC_PREFIX + message.getRoom().getId(), MessageView.of(message));
+        }
+    }
+}
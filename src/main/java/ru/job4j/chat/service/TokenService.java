@@ -0,0 +1,67 @@
+package ru.job4j.chat.service;
+
+import lombok.Value;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Сервис выдачи, обновления и отзыва токенов. Токен доступа - короткоживущий
+ * JWT токен с идентификатором jti, токен обновления - случайная строка,
+ * хэш которой хранится в таблице refresh_token.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.model.RefreshToken
+ * @see ru.job4j.chat.model.RevokedToken
+ */
+public interface TokenService {
+
+    /**
+     * Выдает пользователю токен доступа и токен обновления.
+     *
+     * @param username имя пользователя
+     * @param roles    наименования ролей пользователя
+     * @return пара токенов
+     */
+    TokenPair issue(String username, List<String> roles);
+
+    /**
+     * Обменивает токен обновления на новую пару токенов, переданный токен
+     * обновления отзывается. Если передан уже отозванный токен обновления,
+     * то токен считается украденным и отзываются все токены обновления
+     * пользователя.
+     *
+     * @param refreshToken токен обновления
+     * @return новая пара токенов или Optional.empty(), если токен
+     * обновления не найден, отозван или истек
+     */
+    Optional<TokenPair> refresh(String refreshToken);
+
+    /**
+     * Отзывает токен доступа и, если передан, токен обновления.
+     *
+     * @param jti          идентификатор токена доступа
+     * @param expiresAt    время окончания действия токена доступа
+     * @param refreshToken токен обновления или null
+     */
+    void revoke(String jti, Date expiresAt, String refreshToken);
+
+    /**
+     * Пара токенов
+     */
+    @Value
+    class TokenPair {
+
+        /**
+         * Токен доступа
+         */
+        String accessToken;
+
+        /**
+         * Токен обновления
+         */
+        String refreshToken;
+    }
+}
@@ -0,0 +1,267 @@
+package ru.job4j.chat.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.job4j.chat.event.MessageCreatedEvent;
+import ru.job4j.chat.projection.RoomUnread;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongFunction;
+
+/**
+ * Счетчики непрочитанных сообщений пользователей по комнатам. Для комнаты
+ * хранится количество сообщений, для участника комнаты - идентификатор
+ * последнего прочитанного сообщения и количество сообщений комнаты на
+ * момент прочтения, количество непрочитанных сообщений равно их разности.
+ * При сохранении сообщения увеличивается только счетчик комнаты в памяти,
+ * накопленные приращения записываются в таблицу room одним пакетом
+ * по расписанию chat.unread.flush-ms и при остановке приложения. Поэтому
+ * сохранение сообщения не обращается к базе данных и не зависит от
+ * количества участников комнаты, а счетчики пользователя читаются одним
+ * запросом по комнатам, участником которых он является, без просмотра
+ * сообщений.
+ * Запросы, которые складывают количество сообщений комнаты в таблице
+ * с незаписанным приращением, выполняются под той же блокировкой, что и
+ * запись приращений, иначе записанное приращение может быть учтено дважды.
+ * Перед удалением сообщений из количества сообщений комнаты и количества
+ * прочитанных сообщений участников вычитаются удаляемые сообщения.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class UnreadCounters {
+
+    /**
+     * Запрос записи приращения количества сообщений комнаты
+     */
+    private static final String FLUSH_QUERY =
+            "UPDATE room SET message_count = message_count + ? WHERE id = ?";
+
+    /**
+     * Запрос счетчиков пользователя по комнатам, участником которых он является
+     */
+    private static final String UNREAD_QUERY = "SELECT m.room_id, m.last_read_id,"
+            + " r.message_count - m.read_count FROM room_member m"
+            + " JOIN room r ON r.id = m.room_id WHERE m.person_id = ? ORDER BY m.room_id";
+
+    /**
+     * Запрос отметки прочтения. Количество прочитанных сообщений равно
+     * количеству сообщений комнаты без сообщений, созданных позже
+     * прочитанного, которые выбираются диапазоном индекса истории комнаты.
+     * Отметка не сдвигается назад в том же порядке (created, id), в котором
+     * считаются сообщения, и выполняется только для сообщения этой комнаты.
+     */
+    private static final String MARK_READ_QUERY = "UPDATE room_member SET last_read_id = ?,"
+            + " read_count = (SELECT r.message_count FROM room r WHERE r.id = room_member.room_id)"
+            + " + ? - (SELECT COUNT(*) FROM message n WHERE n.room_id = room_member.room_id"
+            + " AND (n.created > (SELECT a.created FROM message a WHERE a.id = ?)"
+            + " OR (n.created = (SELECT a.created FROM message a WHERE a.id = ?) AND n.id > ?)))"
+            + " WHERE room_id = ? AND NOT EXISTS (SELECT 1 FROM message c, message a"
+            + " WHERE c.id = room_member.last_read_id AND a.id = ?"
+            + " AND (c.created > a.created OR (c.created = a.created AND c.id >= a.id)))"
+            + " AND EXISTS (SELECT 1 FROM message a WHERE a.id = ? AND a.room_id = ?)"
+            + " AND person_id = (SELECT p.id FROM person p WHERE p.username = ?)";
+
+    /**
+     * Шаблон запроса вычитания удаляемых сообщений из количества сообщений
+     * комнат. Параметры шаблона - источник удаляемых сообщений d и условие
+     * их выбора
+     */
+    private static final String SUBTRACT_ROOM_QUERY = "UPDATE room SET message_count ="
+            + " message_count - (SELECT COUNT(*) FROM %1$s d WHERE d.room_id = room.id AND %2$s)"
+            + " WHERE id IN (SELECT d.room_id FROM %1$s d WHERE %2$s)";
+
+    /**
+     * Шаблон запроса вычитания удаляемых сообщений из количества прочитанных
+     * сообщений участников. Прочитанными считаются сообщения до последнего
+     * прочитанного сообщения в порядке (created, id), а без отметки прочтения -
+     * сообщения, созданные до вступления в комнату. Параметры шаблона - те же,
+     * что у {@link #SUBTRACT_ROOM_QUERY}
+     */
+    private static final String SUBTRACT_READ_QUERY = "UPDATE room_member SET read_count ="
+            + " read_count - (SELECT COUNT(*) FROM %1$s d"
+            + " WHERE d.room_id = room_member.room_id AND %2$s"
+            + " AND (room_member.last_read_id = 0 AND d.created <= room_member.joined"
+            + " OR EXISTS (SELECT 1 FROM message c WHERE c.id = room_member.last_read_id"
+            + " AND (d.created < c.created OR (d.created = c.created AND d.id <= c.id)))))"
+            + " WHERE room_id IN (SELECT d.room_id FROM %1$s d WHERE %2$s)";
+
+    /**
+     * Объект для выполнения запросов к базе данных
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Незаписанные приращения количества сообщений по идентификаторам комнат
+     */
+    private final Map<Integer, Long> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Конструктор
+     *
+     * @param jdbcTemplate объект для выполнения запросов к базе данных
+     */
+    public UnreadCounters(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Увеличивает счетчик сообщений комнаты созданного сообщения.
+     * Выполняется после фиксации транзакции сохранения сообщения.
+     *
+     * @param event событие создания сообщения
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageCreated(MessageCreatedEvent event) {
+        var room = event.getMessage().getRoom();
+        if (room != null) {
+            pending.merge(room.getId(), 1L, Long::sum);
+        }
+    }
+
+    /**
+     * Возвращает незаписанное приращение количества сообщений комнаты.
+     *
+     * @param roomId идентификатор комнаты
+     * @return незаписанное приращение
+     */
+    public long pending(int roomId) {
+        return pending.getOrDefault(roomId, 0L);
+    }
+
+    /**
+     * Выполняет действие с незаписанным приращением количества сообщений
+     * комнаты под блокировкой записи приращений. Пока действие выполняется,
+     * приращение не записывается в таблицу room, поэтому запрос действия
+     * видит согласованные количество сообщений комнаты и приращение.
+     *
+     * @param roomId идентификатор комнаты
+     * @param action действие, получающее незаписанное приращение
+     * @param <T>    тип результата действия
+     * @return результат действия
+     */
+    public synchronized <T> T withPending(int roomId, LongFunction<T> action) {
+        return action.apply(pending(roomId));
+    }
+
+    /**
+     * Возвращает счетчики непрочитанных сообщений пользователя по комнатам,
+     * участником которых он является, упорядоченные по идентификатору
+     * комнаты. К записанному количеству сообщений комнаты добавляется
+     * незаписанное приращение.
+     *
+     * @param personId идентификатор пользователя
+     * @return список счетчиков
+     */
+    public List<RoomUnread> findByPerson(int personId) {
+        return jdbcTemplate.query(UNREAD_QUERY, (rs, row) -> {
+            int roomId = rs.getInt(1);
+            return new RoomUnread(roomId, rs.getInt(2),
+                    Math.max(0, rs.getLong(3) + pending(roomId)));
+        }, personId);
+    }
+
+    /**
+     * Отмечает сообщения комнаты до сообщения messageId включительно
+     * прочитанными пользователем. Выполняется под блокировкой записи
+     * приращений.
+     *
+     * @param roomId    идентификатор комнаты
+     * @param username  имя пользователя
+     * @param messageId идентификатор последнего прочитанного сообщения
+     * @return true, если отметка сдвинута, false, если пользователь не является
+     * участником комнаты, уже прочитал это сообщение или сообщения нет в комнате
+     */
+    public synchronized boolean markRead(int roomId, String username, int messageId) {
+        return jdbcTemplate.update(MARK_READ_QUERY, messageId, pending(roomId),
+                messageId, messageId, messageId, roomId, messageId, messageId, roomId,
+                username) > 0;
+    }
+
+    /**
+     * Вычитает сообщения из счетчиков комнат и участников. Вызывается перед
+     * удалением сообщений в той же транзакции.
+     *
+     * @param ids идентификаторы удаляемых сообщений
+     */
+    public void subtractMessages(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        var placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        var args = new ArrayList<Object>(ids);
+        args.addAll(ids);
+        subtract("message", "d.id IN (" + placeholders + ")", args.toArray());
+    }
+
+    /**
+     * Вычитает сообщения секции таблицы message из счетчиков комнат и
+     * участников. Вызывается перед отсоединением или удалением секции.
+     *
+     * @param partition имя секции
+     */
+    public void subtractPartition(String partition) {
+        subtract(partition, "d.room_id IS NOT NULL");
+    }
+
+    /**
+     * Выполняет запросы вычитания удаляемых сообщений: сначала из количества
+     * прочитанных сообщений участников, затем из количества сообщений комнат.
+     *
+     * @param source источник удаляемых сообщений
+     * @param filter условие выбора удаляемых сообщений
+     * @param args   параметры запросов
+     */
+    private void subtract(String source, String filter, Object... args) {
+        jdbcTemplate.update(String.format(SUBTRACT_READ_QUERY, source, filter), args);
+        jdbcTemplate.update(String.format(SUBTRACT_ROOM_QUERY, source, filter), args);
+    }
+
+    /**
+     * Записывает накопленные приращения количества сообщений комнат одним
+     * пакетом запросов. Записанное приращение вычитается из приращения
+     * в памяти, приращения, полученные во время записи, остаются до
+     * следующей записи. При ошибке записи приращения сохраняются. Между
+     * записью и вычитанием счетчики пользователей могут кратковременно
+     * завышаться на записываемое приращение.
+     */
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${chat.unread.flush-ms:1000}")
+    public synchronized void flush() {
+        var rooms = new ArrayList<Integer>();
+        var args = new ArrayList<Object[]>();
+        pending.forEach((roomId, delta) -> {
+            if (delta > 0) {
+                rooms.add(roomId);
+                args.add(new Object[]{delta, roomId});
+            }
+        });
+        if (args.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(FLUSH_QUERY, args);
+        } catch (DataAccessException e) {
+            log.warn("Unread counters of {} rooms are not flushed: {}",
+                    rooms.size(), e.getMessage());
+            return;
+        }
+        for (int i = 0; i < rooms.size(); i++) {
+            long delta = (long) args.get(i)[0];
+            pending.computeIfPresent(rooms.get(i),
+                    (id, value) -> value == delta ? null : value - delta);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package ru.job4j.chat.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import ru.job4j.chat.filter.RoleAuthorities;
+import ru.job4j.chat.model.Person;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш данных пользователей для аутентификации по имени пользователя.
+ * Запись кэша хранится ограниченное время, количество записей ограничено:
+ * при заполнении удаляются просроченные записи, а если их нет, то
+ * произвольные записи до освобождения места. При каждом вызове
+ * {@link #get(String)} создается новый объект пользователя, так как после
+ * аутентификации пароль в объекте пользователя стирается. Записи удаляются
+ * сервисом пользователей при изменении пользователя, а чтобы запись,
+ * загруженная до изменения, не попала в кэш после удаления, запись
+ * добавляется только если с начала загрузки не было удалений.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ */
+@Component
+public class UserDetailsCache {
+
+    /**
+     * Время хранения записи в миллисекундах
+     */
+    private final long ttlMillis;
+
+    /**
+     * Максимальное количество записей
+     */
+    private final int maxSize;
+
+    /**
+     * Часы для определения срока хранения записей
+     */
+    private final Clock clock;
+
+    /**
+     * Записи по именам пользователей
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Версия кэша, увеличивается при каждом удалении записей
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Счетчик попаданий в кэш
+     */
+    private final Counter hits;
+
+    /**
+     * Счетчик промахов кэша
+     */
+    private final Counter misses;
+
+    /**
+     * Конструктор
+     *
+     * @param ttlSeconds время хранения записи в секундах
+     * @param maxSize    максимальное количество записей
+     * @param registry   реестр метрик
+     */
+    @Autowired
+    public UserDetailsCache(@Value("${chat.user-details.cache.ttl-seconds:300}") long ttlSeconds,
+                            @Value("${chat.user-details.cache.max-size:10000}") int maxSize,
+                            MeterRegistry registry) {
+        this(ttlSeconds, maxSize, registry, Clock.systemUTC());
+    }
+
+    /**
+     * Конструктор с часами для определения срока хранения записей
+     *
+     * @param ttlSeconds время хранения записи в секундах
+     * @param maxSize    максимальное количество записей
+     * @param registry   реестр метрик
+     * @param clock      часы
+     */
+    UserDetailsCache(long ttlSeconds, int maxSize, MeterRegistry registry, Clock clock) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.maxSize = maxSize;
+        this.clock = clock;
+        this.hits = registry.counter("chat.user.details.cache.hits");
+        this.misses = registry.counter("chat.user.details.cache.misses");
+        Gauge.builder("chat.user.details.cache.size", entries, Map::size)
+                .register(registry);
+    }
+
+    /**
+     * Возвращает данные пользователя, если запись есть в кэше и срок ее
+     * хранения не истек.
+     *
+     * @param username имя пользователя
+     * @return Optional от данных пользователя
+     */
+    public Optional<UserDetails> get(String username) {
+        var entry = entries.get(username);
+        if (entry == null || entry.expiresAt <= clock.millis()) {
+            if (entry != null) {
+                entries.remove(username, entry);
+            }
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(new User(entry.username, entry.password, entry.authorities));
+    }
+
+    /**
+     * Возвращает текущую версию кэша. Версия запоминается перед загрузкой
+     * пользователя из базы данных и передается в {@link #put(long, Person)}.
+     *
+     * @return версия кэша
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Добавляет запись пользователя, если с момента получения версии
+     * loadVersion записи кэша не удалялись.
+     *
+     * @param loadVersion версия кэша перед загрузкой пользователя
+     * @param person      пользователь
+     */
+    public void put(long loadVersion, Person person) {
+        long now = clock.millis();
+        if (entries.size() >= maxSize) {
+            evict(now);
+        }
+        var entry = new Entry(person.getId(), person.getUsername(), person.getPassword(),
+                RoleAuthorities.of(roleNames(person)), now + ttlMillis);
+        entries.put(person.getUsername(), entry);
+        if (version.get() != loadVersion) {
+            entries.remove(person.getUsername(), entry);
+        }
+    }
+
+    /**
+     * Возвращает наименования ролей пользователя.
+     *
+     * @param person пользователь
+     * @return наименования ролей
+     */
+    static List<String> roleNames(Person person) {
+        var roles = new ArrayList<String>(person.getRoles().size());
+        for (var role : person.getRoles()) {
+            roles.add(role.getName());
+        }
+        return roles;
+    }
+
+    /**
+     * Удаляет запись пользователя по имени пользователя.
+     *
+     * @param username имя пользователя
+     */
+    public void invalidate(String username) {
+        version.incrementAndGet();
+        if (username != null) {
+            entries.remove(username);
+        }
+    }
+
+    /**
+     * Удаляет записи пользователя по идентификатору пользователя,
+     * в том числе записи с прежним именем пользователя.
+     *
+     * @param id идентификатор пользователя
+     */
+    public void invalidate(int id) {
+        version.incrementAndGet();
+        entries.values().removeIf(entry -> entry.id == id);
+    }
+
+    /**
+     * Удаляет записи пользователей по идентификаторам пользователей
+     * за один проход по кэшу.
+     *
+     * @param ids идентификаторы пользователей
+     */
+    public void invalidateAll(Collection<Integer> ids) {
+        version.incrementAndGet();
+        var removed = new HashSet<>(ids);
+        entries.values().removeIf(entry -> removed.contains(entry.id));
+    }
+
+    /**
+     * Возвращает количество записей в кэше.
+     *
+     * @return количество записей
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Удаляет просроченные записи, если после этого кэш заполнен,
+     * удаляет произвольные записи до освобождения места.
+     *
+     * @param now текущее время в миллисекундах
+     */
+    private void evict(long now) {
+        entries.values().removeIf(entry -> entry.expiresAt <= now);
+        var iterator = entries.keySet().iterator();
+        while (entries.size() >= maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Запись кэша
+     */
+    private static final class Entry {
+
+        /**
+         * Идентификатор пользователя
+         */
+        private final int id;
+
+        /**
+         * Имя пользователя
+         */
+        private final String username;
+
+        /**
+         * Хэш пароля пользователя
+         */
+        private final String password;
+
+        /**
+         * Полномочия ролей пользователя
+         */
+        private final List<GrantedAuthority> authorities;
+
+        /**
+         * Время окончания хранения записи в миллисекундах
+         */
+        private final long expiresAt;
+
+        /**
+         * Конструктор
+         *
+         * @param id        идентификатор пользователя
+         * @param username  имя пользователя
+         * @param password    хэш пароля пользователя
+         * @param authorities полномочия ролей пользователя
+         * @param expiresAt   время окончания хранения записи в миллисекундах
+         */
+        private Entry(int id, String username, String password,
+                      List<GrantedAuthority> authorities, long expiresAt) {
+            this.id = id;
+            this.username = username;
+            this.password = password;
+            this.authorities = authorities;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -6,11 +6,10 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import ru.job4j.chat.filter.RoleAuthorities;
 import ru.job4j.chat.model.Person;
 import ru.job4j.chat.repository.PersonRepository;
 
-import static java.util.Collections.emptyList;
-
 /**
  * Реализация сервиса по работе с данными пользователя
  *
@@ -28,20 +27,33 @@ public class UserDetailsServiceImpl implements UserDetailsService {
     private final PersonRepository personRepository;
 
     /**
-     * Выполняет загрузку и возврат пользователя из репозитория.
-     * Для загрузки пользователя вызывается метод репозитория
-     * {@link PersonRepository#findByUsername(String)}.
+     * Кэш данных пользователей
+     */
+    private final UserDetailsCache userDetailsCache;
+
+    /**
+     * Выполняет загрузку и возврат пользователя из кэша данных пользователей,
+     * при отсутствии в кэше пользователь загружается из репозитория методом
+     * {@link PersonRepository#findByUsername(String)} вместе с ролями
+     * и добавляется в кэш. Роли пользователя возвращаются полномочиями.
      *
      * @param username имя пользователя
      * @return пользователь
      */
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        var cached = userDetailsCache.get(username);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        long version = userDetailsCache.version();
         Person user = personRepository.findByUsername(username);
         if (user == null) {
             throw new UsernameNotFoundException(username);
         }
-        return new User(user.getUsername(), user.getPassword(), emptyList());
+        userDetailsCache.put(version, user);
+        return new User(user.getUsername(), user.getPassword(),
+                RoleAuthorities.of(UserDetailsCache.roleNames(user)));
     }
 }
 
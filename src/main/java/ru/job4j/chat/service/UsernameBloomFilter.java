@@ -0,0 +1,125 @@
+package ru.job4j.chat.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.job4j.chat.repository.PersonRepository;
+
+import java.util.stream.Stream;
+
+/**
+ * Фильтр Блума имен зарегистрированных пользователей для проверки
+ * доступности имени при регистрации. Если фильтр отвечает, что имени нет,
+ * то имя свободно и база данных не используется, точная проверка в базе
+ * данных нужна только при положительном ответе фильтра. Фильтр строится
+ * при запуске приложения потоковым чтением имен из таблицы person,
+ * пополняется при сохранении пользователей и перестраивается по
+ * расписанию chat.user.available.rebuild-cron, чтобы удалить имена
+ * удаленных пользователей и не превысить ожидаемое количество имен.
+ * До построения фильтра все имена считаются возможно занятыми.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class UsernameBloomFilter {
+
+    /**
+     * Объект для доступа к методам PersonRepository
+     */
+    private final PersonRepository personRepository;
+
+    /**
+     * Минимальное ожидаемое количество имен фильтра
+     */
+    private final int expectedSize;
+
+    /**
+     * Вероятность ложноположительного ответа фильтра
+     */
+    private final double fpp;
+
+    /**
+     * Текущий фильтр, null до построения фильтра
+     */
+    private volatile BloomFilter current;
+
+    /**
+     * Строящийся фильтр, null если фильтр не строится
+     */
+    private volatile BloomFilter pending;
+
+    /**
+     * Конструктор
+     *
+     * @param personRepository хранилище пользователей
+     * @param expectedSize     минимальное ожидаемое количество имен фильтра
+     * @param fpp              вероятность ложноположительного ответа фильтра
+     */
+    public UsernameBloomFilter(PersonRepository personRepository,
+                               @Value("${chat.user.available.expected-size:100000}")
+                                       int expectedSize,
+                               @Value("${chat.user.available.fpp:0.01}") double fpp) {
+        this.personRepository = personRepository;
+        this.expectedSize = expectedSize;
+        this.fpp = fpp;
+    }
+
+    /**
+     * Строит фильтр по именам всех пользователей. Размер фильтра
+     * рассчитывается на удвоенное текущее количество пользователей.
+     * Имена, сохраненные во время построения, добавляются и в строящийся
+     * фильтр. Выполняется при запуске приложения и по расписанию.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${chat.user.available.rebuild-cron:0 30 4 * * *}")
+    @Transactional(readOnly = true)
+    public synchronized void rebuild() {
+        long count = personRepository.count();
+        var filter = new BloomFilter((int) Math.min(Integer.MAX_VALUE / 2,
+                Math.max(expectedSize, count * 2)), fpp);
+        pending = filter;
+        try (Stream<String> usernames = personRepository.streamUsernames()) {
+            usernames.forEach(filter::put);
+            current = filter;
+        } finally {
+            pending = null;
+        }
+        log.debug("Username bloom filter is built for {} users", count);
+    }
+
+    /**
+     * Добавляет имя пользователя в фильтр.
+     *
+     * @param username имя пользователя
+     */
+    public void put(String username) {
+        if (username == null) {
+            return;
+        }
+        var building = pending;
+        if (building != null) {
+            building.put(username);
+        }
+        var filter = current;
+        if (filter != null) {
+            filter.put(username);
+        }
+    }
+
+    /**
+     * Проверяет, может ли имя пользователя быть занято.
+     *
+     * @param username имя пользователя
+     * @return false, если имя точно свободно
+     */
+    public boolean mightContain(String username) {
+        var filter = current;
+        return filter == null || filter.mightContain(username);
+    }
+}
@@ -0,0 +1,3 @@
+CREATE INDEX message_room_created_id_idx ON message (room_id, created DESC, id DESC);
+
+COMMENT ON INDEX message_room_created_id_idx IS 'Индекс постраничной выборки истории сообщений комнаты';
@@ -0,0 +1,4 @@
+CREATE SEQUENCE IF NOT EXISTS message_id_seq;
+ALTER SEQUENCE message_id_seq INCREMENT BY 50;
+
+COMMENT ON SEQUENCE message_id_seq IS 'Последовательность идентификаторов сообщений, выделяемых блоками по 50';
@@ -0,0 +1,7 @@
+ALTER TABLE message ADD COLUMN content_tsv TSVECTOR
+    GENERATED ALWAYS AS (to_tsvector('simple', coalesce(content, ''))) STORED;
+
+CREATE INDEX message_content_tsv_idx ON message USING GIN (content_tsv);
+
+COMMENT ON COLUMN message.content_tsv IS 'Поисковый вектор содержания сообщения';
+COMMENT ON INDEX message_content_tsv_idx IS 'Индекс полнотекстового поиска по содержанию сообщений';
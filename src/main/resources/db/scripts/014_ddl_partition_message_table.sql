@@ -0,0 +1,56 @@
+--liquibase formatted sql
+
+--changeset chat:014_ddl_partition_message_table splitStatements:false
+ALTER TABLE message RENAME TO message_unpartitioned;
+ALTER INDEX message_pkey RENAME TO message_unpartitioned_pkey;
+ALTER INDEX message_room_created_id_idx RENAME TO message_unpartitioned_room_created_id_idx;
+ALTER INDEX message_content_tsv_idx RENAME TO message_unpartitioned_content_tsv_idx;
+ALTER SEQUENCE message_id_seq OWNED BY NONE;
+
+CREATE TABLE message (
+    id INT NOT NULL DEFAULT nextval('message_id_seq'),
+    content TEXT,
+    created TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT NOW(),
+    person_id INT REFERENCES person(id),
+    room_id INT REFERENCES room(id),
+    content_tsv TSVECTOR
+        GENERATED ALWAYS AS (to_tsvector('simple', coalesce(content, ''))) STORED,
+    PRIMARY KEY (id, created)
+) PARTITION BY RANGE (created);
+
+ALTER SEQUENCE message_id_seq OWNED BY message.id;
+
+DO $$
+DECLARE
+    partition_month DATE;
+BEGIN
+    FOR partition_month IN
+        SELECT generate_series(
+            date_trunc('month', least(coalesce(min(created), now()), now())),
+            date_trunc('month', greatest(coalesce(max(created), now()), now())) + INTERVAL '3 month',
+            INTERVAL '1 month')::date
+        FROM message_unpartitioned
+    LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF message FOR VALUES FROM (%L) TO (%L)',
+            'message_' || to_char(partition_month, '"y"YYYY"m"MM'),
+            partition_month, partition_month + INTERVAL '1 month');
+    END LOOP;
+END $$;
+
+INSERT INTO message (id, content, created, person_id, room_id)
+SELECT id, content, coalesce(created, now()), person_id, room_id FROM message_unpartitioned;
+
+DROP TABLE message_unpartitioned;
+
+CREATE INDEX message_room_created_id_idx ON message (room_id, created DESC, id DESC);
+CREATE INDEX message_content_tsv_idx ON message USING GIN (content_tsv);
+
+COMMENT ON TABLE message IS 'Сообщения, секционированные по месяцам даты создания';
+COMMENT ON COLUMN message.id IS 'Идентификатор сообщения';
+COMMENT ON COLUMN message.content IS 'Содержание сообщения';
+COMMENT ON COLUMN message.created IS 'Дата и время создания сообщения, ключ секционирования';
+COMMENT ON COLUMN message.person_id IS 'Идентификатор персоны';
+COMMENT ON COLUMN message.room_id IS 'Идентификатор комнаты';
+COMMENT ON COLUMN message.content_tsv IS 'Поисковый вектор содержания сообщения';
+COMMENT ON INDEX message_room_created_id_idx IS 'Индекс постраничной выборки истории сообщений комнаты';
+COMMENT ON INDEX message_content_tsv_idx IS 'Индекс полнотекстового поиска по содержанию сообщений';
@@ -0,0 +1,16 @@
+CREATE TABLE refresh_token (
+    id SERIAL PRIMARY KEY,
+    token_hash VARCHAR(64) NOT NULL UNIQUE,
+    person_id INT NOT NULL REFERENCES person(id) ON DELETE CASCADE,
+    expires TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    revoked BOOLEAN NOT NULL DEFAULT FALSE
+);
+
+CREATE INDEX refresh_token_person_id_idx ON refresh_token (person_id);
+
+COMMENT ON TABLE refresh_token IS 'Токены обновления';
+COMMENT ON COLUMN refresh_token.id IS 'Идентификатор токена обновления';
+COMMENT ON COLUMN refresh_token.token_hash IS 'Хэш SHA-256 токена обновления';
+COMMENT ON COLUMN refresh_token.person_id IS 'Идентификатор персоны';
+COMMENT ON COLUMN refresh_token.expires IS 'Дата и время окончания действия токена обновления';
+COMMENT ON COLUMN refresh_token.revoked IS 'Признак отзыва токена обновления';
@@ -0,0 +1,10 @@
+CREATE TABLE revoked_token (
+    id SERIAL PRIMARY KEY,
+    jti VARCHAR(36) NOT NULL UNIQUE,
+    expires TIMESTAMP WITHOUT TIME ZONE NOT NULL
+);
+
+COMMENT ON TABLE revoked_token IS 'Отозванные токены доступа';
+COMMENT ON COLUMN revoked_token.id IS 'Идентификатор записи, порядок добавления записей';
+COMMENT ON COLUMN revoked_token.jti IS 'Идентификатор отозванного токена доступа';
+COMMENT ON COLUMN revoked_token.expires IS 'Дата и время окончания действия отозванного токена доступа';
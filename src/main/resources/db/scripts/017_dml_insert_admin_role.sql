@@ -0,0 +1,2 @@
+INSERT INTO role (name) VALUES ('ADMIN');
+INSERT INTO person_roles (person_id, roles_id) SELECT 1, id FROM role WHERE name = 'ADMIN';
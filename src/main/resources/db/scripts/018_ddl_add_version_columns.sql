@@ -0,0 +1,9 @@
+ALTER TABLE role ADD COLUMN version INT NOT NULL DEFAULT 0;
+ALTER TABLE person ADD COLUMN version INT NOT NULL DEFAULT 0;
+ALTER TABLE room ADD COLUMN version INT NOT NULL DEFAULT 0;
+ALTER TABLE message ADD COLUMN version INT NOT NULL DEFAULT 0;
+
+COMMENT ON COLUMN role.version IS 'Версия роли для оптимистической блокировки';
+COMMENT ON COLUMN person.version IS 'Версия персоны для оптимистической блокировки';
+COMMENT ON COLUMN room.version IS 'Версия комнаты для оптимистической блокировки';
+COMMENT ON COLUMN message.version IS 'Версия сообщения для оптимистической блокировки';
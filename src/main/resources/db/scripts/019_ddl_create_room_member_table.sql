@@ -0,0 +1,13 @@
+CREATE TABLE room_member (
+    room_id INT NOT NULL REFERENCES room(id) ON DELETE CASCADE,
+    person_id INT NOT NULL REFERENCES person(id) ON DELETE CASCADE,
+    joined TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (room_id, person_id)
+);
+
+CREATE INDEX room_member_person_id_idx ON room_member (person_id);
+
+COMMENT ON TABLE room_member IS 'Участники комнат';
+COMMENT ON COLUMN room_member.room_id IS 'Идентификатор комнаты';
+COMMENT ON COLUMN room_member.person_id IS 'Идентификатор персоны';
+COMMENT ON COLUMN room_member.joined IS 'Дата и время вступления в комнату';
@@ -0,0 +1,10 @@
+ALTER TABLE room ADD COLUMN message_count BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE room_member ADD COLUMN last_read_id INT NOT NULL DEFAULT 0;
+ALTER TABLE room_member ADD COLUMN read_count BIGINT NOT NULL DEFAULT 0;
+
+UPDATE room SET message_count = (SELECT COUNT(*) FROM message m WHERE m.room_id = room.id);
+UPDATE room_member SET read_count = (SELECT r.message_count FROM room r WHERE r.id = room_member.room_id);
+
+COMMENT ON COLUMN room.message_count IS 'Количество сообщений комнаты для счетчиков непрочитанных сообщений';
+COMMENT ON COLUMN room_member.last_read_id IS 'Идентификатор последнего прочитанного сообщения';
+COMMENT ON COLUMN room_member.read_count IS 'Количество сообщений комнаты на момент прочтения';
@@ -0,0 +1,6 @@
+--liquibase formatted sql
+
+--changeset chat:021_ddl_create_message_default_partition
+CREATE TABLE IF NOT EXISTS message_default PARTITION OF message DEFAULT;
+
+COMMENT ON TABLE message_default IS 'Сообщения с датой создания вне диапазонов секций месяцев';
@@ -8,14 +8,38 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import ru.job4j.chat.ChatApplication;
 import ru.job4j.chat.model.Message;
+import ru.job4j.chat.model.Person;
+import ru.job4j.chat.model.Room;
+import ru.job4j.chat.projection.MessageView;
+import ru.job4j.chat.service.Chunks;
 import ru.job4j.chat.service.ImplMessageService;
+import ru.job4j.chat.service.MessageWriteBehind;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
@@ -42,10 +66,13 @@ class MessageControllerTest {
     @MockBean
     private ImplMessageService messageService;
 
+    @MockBean
+    private MessageWriteBehind messageWriteBehind;
+
     /**
      * Выполняется проверка выполнения GET запроса для возвращения
      * списка всех сообщений и проверка вызова метода сервисного
-     * слоя {@link ImplMessageService#findAll()}.
+     * слоя {@link ImplMessageService#findAllViews()}.
      */
     @Test
     public void shouldReturnAllMessages() throws Exception {
@@ -53,13 +80,66 @@ class MessageControllerTest {
                 .andDo(print())
                 .andExpect(status().isOk());
 
-        verify(messageService).findAll();
+        verify(messageService).findAllViews();
+    }
+
+    /**
+     * Выполняется проверка выполнения GET запроса для поиска сообщения по id,
+     * если сообщение найдено, и проверка, что ответ содержит только поля проекции
+     * {@link MessageView} без данных пользователя, кроме идентификатора и имени.
+     */
+    @Test
+    public void shouldReturnMessageView() throws Exception {
+        var view = new MessageView(1, "message", new Date(), 2, "user", 3, "room", 0);
+        when(messageService.findViewById(1)).thenReturn(Optional.of(view));
+
+        this.mockMvc.perform(get("/message/1"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.personUsername").value("user"))
+                .andExpect(jsonPath("$.roomName").value("room"))
+                .andExpect(jsonPath("$.person").doesNotExist());
+    }
+
+    /**
+     * Выполняется проверка выполнения GET запроса для подписки на события комнаты
+     * с заголовком Last-Event-ID и проверка вызова метода сервисного слоя
+     * {@link ImplMessageService#findByRoomAfter(int, int, int)} для повторной
+     * отправки пропущенных сообщений.
+     */
+    @Test
+    public void shouldReplayMissedMessagesOnSubscribe() throws Exception {
+        this.mockMvc.perform(get("/message/room/1/events")
+                        .header("Last-Event-ID", "5"))
+                .andDo(print())
+                .andExpect(request().asyncStarted());
+
+        verify(messageService).findByRoomAfter(1, 5, 500);
+    }
+
+    /**
+     * Выполняется проверка выполнения GET запроса для потоковой выгрузки
+     * сообщений и проверка вызова метода сервисного слоя
+     * {@link ImplMessageService#streamAllViews(java.util.function.Consumer)}.
+     */
+    @Test
+    public void shouldStreamAllMessages() throws Exception {
+        MvcResult result = this.mockMvc.perform(get("/message/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(result))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().json("[]"));
+
+        verify(messageService).streamAllViews(any());
     }
 
     /**
      * Выполняется проверка выполнения GET запроса для поиска сообщения по id,
      * если сообщение не найдено и проверка вызова метода сервисного слоя
-     * {@link ImplMessageService#findById(int)} с аргументом запроса.
+     * {@link ImplMessageService#findViewById(int)} с аргументом запроса.
      */
     @Test
     public void shouldReturnMessage() throws Exception {
@@ -69,10 +149,50 @@ class MessageControllerTest {
 
         ArgumentCaptor<Integer> argument = ArgumentCaptor.forClass(Integer.class);
 
-        verify(messageService).findById(argument.capture());
+        verify(messageService).findViewById(argument.capture());
         assertThat(argument.getValue()).isEqualTo(1);
     }
 
+    /**
+     * Выполняется проверка выполнения GET запроса для получения страницы
+     * истории комнаты и проверка вызова метода сервисного слоя
+     * {@link ImplMessageService#findByRoom(int, Integer, int)} с аргументами
+     * запроса, размер страницы ограничивается максимальным значением.
+     */
+    @Test
+    public void shouldReturnRoomHistoryPage() throws Exception {
+        this.mockMvc.perform(get("/message/room/1")
+                        .param("before", "10")
+                        .param("limit", "100000"))
+                .andDo(print())
+                .andExpect(status().isOk());
+
+        verify(messageService).findByRoom(1, 10, 500);
+    }
+
+    /**
+     * Выполняется проверка, что страница истории комнаты возвращается
+     * проекциями сообщений без пароля и ролей пользователя.
+     */
+    @Test
+    public void shouldReturnRoomHistoryWithoutPersonPassword() throws Exception {
+        var person = Person.builder().id(2).username("user").password("secret").build();
+        when(messageService.findByRoom(1, null, 50)).thenReturn(List.of(Message.builder()
+                .id(5)
+                .content("message")
+                .created(new Date())
+                .person(person)
+                .room(Room.builder().id(1).name("room").build())
+                .build()));
+
+        this.mockMvc.perform(get("/message/room/1"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].personUsername").value("user"))
+                .andExpect(jsonPath("$[0].person").doesNotExist())
+                .andExpect(content().string(not(containsString("secret"))));
+    }
+
     /**
      * Выполняется проверка выполнения POST запроса с телом запроса содержащим
      * данные нового сообщения для его создания и проверка вызова метода
@@ -97,6 +217,130 @@ class MessageControllerTest {
         assertThat(argument.getValue().getRoom().getId()).isEqualTo(1);
     }
 
+    /**
+     * Выполняется проверка выполнения GET запроса поиска сообщений и проверка
+     * вызова метода сервисного слоя
+     * {@link ImplMessageService#search(String, Integer, Float, Integer, int)}
+     * с аргументами запроса.
+     */
+    @Test
+    public void shouldSearchMessages() throws Exception {
+        this.mockMvc.perform(get("/message/search")
+                        .param("q", "hello")
+                        .param("roomId", "1")
+                        .param("afterRank", "0.5")
+                        .param("afterId", "10"))
+                .andDo(print())
+                .andExpect(status().isOk());
+
+        verify(messageService).search("hello", 1, 0.5F, 10, 50);
+    }
+
+    /**
+     * Выполняется проверка выполнения GET запроса поиска сообщений
+     * с пустой строкой поиска.
+     */
+    @Test
+    public void shouldRejectBlankSearchQuery() throws Exception {
+        this.mockMvc.perform(get("/message/search").param("q", " "))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+
+        verify(messageService, never()).search(any(), any(), any(), any(), anyInt());
+    }
+
+    /**
+     * Выполняется проверка выполнения POST запроса отложенной записи сообщения,
+     * передачи сообщения в {@link MessageWriteBehind#offer(Message)} и возврата
+     * назначенного сообщению идентификатора.
+     */
+    @Test
+    public void shouldAcceptMessageForWriteBehind() throws Exception {
+        when(messageWriteBehind.isEnabled()).thenReturn(true);
+        when(messageWriteBehind.offer(any())).thenReturn(OptionalInt.of(51));
+
+        this.mockMvc.perform(post("/message/async")
+                        .contentType("application/json")
+                        .content("{\"content\":\"message\",\"room\":{\"id\":1}}"))
+                .andDo(print())
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/message/51"))
+                .andExpect(jsonPath("$.id").value(51));
+
+        verify(messageService, never()).save(any());
+    }
+
+    /**
+     * Выполняется проверка выполнения POST запроса отложенной записи сообщения,
+     * если очередь записи заполнена.
+     */
+    @Test
+    public void shouldRejectMessageWhenWriteBehindQueueIsFull() throws Exception {
+        when(messageWriteBehind.isEnabled()).thenReturn(true);
+        when(messageWriteBehind.offer(any())).thenReturn(OptionalInt.empty());
+
+        this.mockMvc.perform(post("/message/async")
+                        .contentType("application/json")
+                        .content("{\"content\":\"message\",\"room\":{\"id\":1}}"))
+                .andDo(print())
+                .andExpect(status().isTooManyRequests());
+    }
+
+    /**
+     * Выполняется проверка выполнения POST запроса с телом запроса содержащим
+     * пакет новых сообщений и проверка вызова метода сервисного слоя
+     * {@link ImplMessageService#saveAll(java.util.List)} с переданными сообщениями.
+     */
+    @Test
+    public void shouldPostMessageBatch() throws Exception {
+        this.mockMvc.perform(post("/message/batch")
+                        .contentType("application/json")
+                        .content("[{\"content\":\"first\",\"room\":{\"id\":1}},"
+                                + "{\"content\":\"second\",\"room\":{\"id\":1}}]"))
+                .andDo(print())
+                .andExpect(status().isCreated());
+
+        ArgumentCaptor<List<Message>> argument = ArgumentCaptor.forClass(List.class);
+
+        verify(messageService).saveAll(argument.capture());
+        assertThat(argument.getValue()).extracting(Message::getContent)
+                .containsExactly("first", "second");
+    }
+
+    /**
+     * Выполняется проверка выполнения POST запроса с пакетом сообщений,
+     * если одно из сообщений не проходит валидацию, и отсутствия вызова
+     * метода сервисного слоя {@link ImplMessageService#saveAll(java.util.List)}.
+     */
+    @Test
+    public void shouldRejectInvalidMessageBatch() throws Exception {
+        this.mockMvc.perform(post("/message/batch")
+                        .contentType("application/json")
+                        .content("[{\"content\":\"first\"},{\"content\":\" \"}]"))
+                .andDo(print())
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$[0]['[1].content']").exists());
+
+        verify(messageService, never()).saveAll(any());
+    }
+
+    /**
+     * Выполняется проверка выполнения POST запроса с пакетом сообщений,
+     * если один из элементов пакета равен null, и отсутствия вызова
+     * метода сервисного слоя {@link ImplMessageService#saveAll(java.util.List)}.
+     */
+    @Test
+    public void shouldRejectNullMessageInBatch() throws Exception {
+        this.mockMvc.perform(post("/message/batch")
+                        .contentType("application/json")
+                        .content("[{\"content\":\"first\",\"room\":{\"id\":1}},null]"))
+                .andDo(print())
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$[0]['[1]']").value("must not be null"));
+
+        verify(messageService, never()).saveAll(any());
+    }
+
     /**
      * Выполняется проверка выполнения PUT запроса с телом запроса содержащим
      * данные сообщения для его обновления и проверка вызова метода сервисного
@@ -141,7 +385,7 @@ class MessageControllerTest {
     /**
      * Выполняется проверка выполнения PATCH запроса для частичного обновления
      * сообщения, если сообщение не найдено и проверка вызова метода сервисного слоя
-     * {@link ImplMessageService#patchModel(Message)} с аргументом запроса.
+     * {@link ImplMessageService#patchModel(Message, Integer)} с аргументом запроса.
      */
     @Test
     public void shouldPatchMessage() throws Exception {
@@ -154,10 +398,73 @@ class MessageControllerTest {
 
         ArgumentCaptor<Message> argument = ArgumentCaptor.forClass(Message.class);
 
-        verify(messageService).patchModel(argument.capture());
+        verify(messageService).patchModel(argument.capture(), isNull());
         assertThat(argument.getValue().getId()).isEqualTo(0);
         assertThat(argument.getValue().getContent()).isEqualTo("message");
         assertThat(argument.getValue().getPerson().getId()).isEqualTo(1);
         assertThat(argument.getValue().getRoom().getId()).isEqualTo(1);
     }
-}
\ No newline at end of file
+
+    /**
+     * Выполняется проверка выполнения DELETE запроса с параметром ids для
+     * удаления сообщений администратором и проверка вызова метода сервисного
+     * слоя {@link ImplMessageService#deleteAll(java.util.Collection)} с
+     * переданными идентификаторами.
+     */
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    public void shouldDeleteAllMessagesByIds() throws Exception {
+        when(messageService.deleteAll(List.of(1, 2, 3))).thenReturn(2);
+
+        this.mockMvc.perform(delete("/message").param("ids", "1,2,3"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted").value(2));
+    }
+
+    /**
+     * Выполняется проверка отказа в удалении сообщений по списку
+     * идентификаторов пользователю без роли администратора.
+     */
+    @Test
+    public void shouldForbidDeleteAllWhenNotAdmin() throws Exception {
+        this.mockMvc.perform(delete("/message").param("ids", "1,2,3"))
+                .andDo(print())
+                .andExpect(status().isForbidden());
+
+        verify(messageService, never()).deleteAll(any());
+    }
+
+    /**
+     * Выполняется проверка выполнения GET запроса с параметром ids для
+     * возвращения проекций сообщений в порядке переданных идентификаторов
+     * и проверка вызова метода сервисного слоя
+     * {@link ImplMessageService#findViewsByIds(java.util.Collection)}.
+     */
+    @Test
+    public void shouldReturnMessageViewsInIdsOrder() throws Exception {
+        when(messageService.findViewsByIds(List.of(3, 1, 2))).thenReturn(List.of(
+                new MessageView(3, "third", new Date(), 1, "user", 1, "room", 0),
+                new MessageView(1, "first", new Date(), 1, "user", 1, "room", 0),
+                new MessageView(2, "second", new Date(), 1, "user", 1, "room", 0)));
+
+        this.mockMvc.perform(get("/message").param("ids", "3,1,2"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id").value(contains(3, 1, 2)));
+    }
+
+    /**
+     * Выполняется проверка отказа в выполнении GET запроса, если передано
+     * больше {@link Chunks#MAX_IDS} идентификаторов.
+     */
+    @Test
+    public void shouldRejectFindAllByIdWhenTooManyIds() throws Exception {
+        this.mockMvc.perform(get("/message")
+                        .param("ids", String.join(",",
+                                Collections.nCopies(Chunks.MAX_IDS + 1, "1"))))
+                .andExpect(status().isBadRequest());
+
+        verify(messageService, never()).findViewsByIds(any());
+    }
+}
@@ -6,16 +6,32 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.test.context.support.WithAnonymousUser;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 import ru.job4j.chat.ChatApplication;
 import ru.job4j.chat.model.Person;
+import ru.job4j.chat.projection.RoomUnread;
+import ru.job4j.chat.service.Chunks;
 import ru.job4j.chat.service.ImplPersonService;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
@@ -73,6 +89,24 @@ class PersonControllerTest {
         assertThat(argument.getValue()).isEqualTo(1);
     }
 
+    /**
+     * Выполняется проверка выполнения GET запроса проверки доступности имени
+     * пользователя без аутентификации и проверка вызова метода сервисного
+     * слоя {@link ImplPersonService#isAvailable(String)}.
+     */
+    @Test
+    @WithAnonymousUser
+    public void shouldReturnUsernameAvailability() throws Exception {
+        doReturn(true).when(personService).isAvailable("user");
+
+        this.mockMvc.perform(get("/users/available").param("username", "user"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.available").value(true));
+
+        verify(personService).isAvailable("user");
+    }
+
     /**
      * Выполняется проверка выполнения POST запроса с телом запроса содержащим
      * данные нового пользователя для его создания и проверка вызова метода
@@ -91,10 +125,83 @@ class PersonControllerTest {
         ArgumentCaptor<Person> argument = ArgumentCaptor.forClass(Person.class);
 
         verify(personService).save(argument.capture());
+        verify(personService, never()).findByUsername(any());
         assertThat(argument.getValue().getId()).isEqualTo(0);
         assertThat(argument.getValue().getUsername()).isEqualTo("user");
     }
 
+    /**
+     * Выполняется проверка, что роли из тела запроса регистрации
+     * не передаются в метод сервисного слоя {@link ImplPersonService#save(Person)}.
+     */
+    @Test
+    public void shouldIgnoreRolesInSignUpBody() throws Exception {
+        this.mockMvc.perform(post("/users/sign-up")
+                        .contentType("application/json")
+                        .content("{\"username\":\"user\",\"password\":\"password\","
+                                + "\"roles\":[{\"id\":1,\"name\":\"ADMIN\"}]}"
+                        ))
+                .andDo(print())
+                .andExpect(status().isCreated());
+
+        ArgumentCaptor<Person> argument = ArgumentCaptor.forClass(Person.class);
+
+        verify(personService).save(argument.capture());
+        assertThat(argument.getValue().getRoles()).isEmpty();
+    }
+
+    /**
+     * Выполняется проверка выполнения PUT запроса замены ролей пользователя
+     * администратором и проверка вызова метода сервисного слоя
+     * {@link ImplPersonService#updateRoles(int, java.util.Collection)}.
+     */
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    public void shouldUpdateRolesWhenAdmin() throws Exception {
+        doReturn(Optional.of(Person.builder().id(1).username("user").password("secret").build()))
+                .when(personService).updateRoles(1, List.of(2));
+
+        this.mockMvc.perform(put("/users/1/roles")
+                        .contentType("application/json")
+                        .content("[2]"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1))
+                .andExpect(jsonPath("$.password").doesNotExist());
+    }
+
+    /**
+     * Выполняется проверка отказа в замене ролей пользователю
+     * без роли администратора.
+     */
+    @Test
+    public void shouldForbidUpdateRolesWhenNotAdmin() throws Exception {
+        this.mockMvc.perform(put("/users/1/roles")
+                        .contentType("application/json")
+                        .content("[2]"))
+                .andExpect(status().isForbidden());
+
+        verify(personService, never()).updateRoles(anyInt(), any());
+    }
+
+    /**
+     * Выполняется проверка выполнения POST запроса регистрации пользователя
+     * с уже занятым именем: нарушение уникальности имени при сохранении
+     * возвращается ответом со статусом BAD_REQUEST.
+     */
+    @Test
+    public void shouldReturnBadRequestWhenUsernameTaken() throws Exception {
+        doThrow(new DataIntegrityViolationException("person_username_key"))
+                .when(personService).save(any());
+
+        this.mockMvc.perform(post("/users/sign-up")
+                        .contentType("application/json")
+                        .content("{\"username\":\"user\",\"password\":\"password\"}"
+                        ))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+    }
+
     /**
      * Выполняется проверка выполнения PUT запроса с телом запроса содержащим
      * данные пользователя для его обновления и проверка вызова метода сервисного
@@ -124,6 +231,7 @@ class PersonControllerTest {
      * {@link ImplPersonService#delete(Person)} с аргументом запроса.
      */
     @Test
+    @WithMockUser(roles = "ADMIN")
     public void shouldDeletePerson() throws Exception {
         this.mockMvc.perform(delete("/users/1"))
                 .andDo(print())
@@ -135,10 +243,23 @@ class PersonControllerTest {
         assertThat(argument.getValue().getId()).isEqualTo(1);
     }
 
+    /**
+     * Выполняется проверка отказа в выполнении DELETE запроса пользователю
+     * без роли администратора.
+     */
+    @Test
+    public void shouldForbidDeleteWhenNotAdmin() throws Exception {
+        this.mockMvc.perform(delete("/users/1"))
+                .andDo(print())
+                .andExpect(status().isForbidden());
+
+        verify(personService, never()).delete(any());
+    }
+
     /**
      * Выполняется проверка выполнения PATCH запроса для частичного обновления
      * пользователя, если пользователь не найден и проверка вызова метода сервисного слоя
-     * {@link ImplPersonService#patchModel(Person)} с аргументом запроса.
+     * {@link ImplPersonService#patchModel(Person, Integer)} с аргументом запроса.
      */
     @Test
     public void shouldPatchPerson() throws Exception {
@@ -151,9 +272,76 @@ class PersonControllerTest {
 
         ArgumentCaptor<Person> argument = ArgumentCaptor.forClass(Person.class);
 
-        verify(personService).patchModel(argument.capture());
+        verify(personService).patchModel(argument.capture(), isNull());
         assertThat(argument.getValue().getId()).isEqualTo(0);
         assertThat(argument.getValue().getUsername()).isEqualTo("user");
         assertThat(argument.getValue().getPassword()).isEqualTo("pass");
     }
-}
\ No newline at end of file
+
+    /**
+     * Выполняется проверка возвращения счетчиков непрочитанных сообщений
+     * текущего пользователя методом сервисного слоя
+     * {@link ImplPersonService#findUnread(int)}.
+     */
+    @Test
+    public void shouldReturnOwnUnreadCounters() throws Exception {
+        doReturn(Optional.of(Person.builder().id(1).username("user").build()))
+                .when(personService).findById(1);
+        doReturn(List.of(new RoomUnread(2, 10, 3))).when(personService).findUnread(1);
+
+        this.mockMvc.perform(get("/users/1/unread"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].roomId").value(2))
+                .andExpect(jsonPath("$[0].lastReadId").value(10))
+                .andExpect(jsonPath("$[0].unread").value(3));
+    }
+
+    /**
+     * Выполняется проверка ответа FORBIDDEN на запрос счетчиков
+     * непрочитанных сообщений другого пользователя.
+     */
+    @Test
+    public void shouldForbidUnreadCountersOfAnotherUser() throws Exception {
+        doReturn(Optional.of(Person.builder().id(1).username("other").build()))
+                .when(personService).findById(1);
+
+        this.mockMvc.perform(get("/users/1/unread"))
+                .andExpect(status().isForbidden());
+        verify(personService, never()).findUnread(1);
+    }
+
+    /**
+     * Выполняется проверка выполнения GET запроса с параметром ids для
+     * возвращения пользователей в порядке переданных идентификаторов
+     * и проверка вызова метода сервисного слоя
+     * {@link ImplPersonService#findAllById(java.util.Collection)}.
+     */
+    @Test
+    public void shouldReturnPersonsInIdsOrder() throws Exception {
+        doReturn(List.of(
+                Person.builder().id(3).username("third").build(),
+                Person.builder().id(1).username("first").build(),
+                Person.builder().id(2).username("second").build()))
+                .when(personService).findAllById(List.of(3, 1, 2));
+
+        this.mockMvc.perform(get("/users").param("ids", "3,1,2"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id").value(contains(3, 1, 2)));
+    }
+
+    /**
+     * Выполняется проверка отказа в выполнении GET запроса, если передано
+     * больше {@link Chunks#MAX_IDS} идентификаторов.
+     */
+    @Test
+    public void shouldRejectFindAllByIdWhenTooManyIds() throws Exception {
+        this.mockMvc.perform(get("/users")
+                        .param("ids", String.join(",",
+                                Collections.nCopies(Chunks.MAX_IDS + 1, "1"))))
+                .andExpect(status().isBadRequest());
+
+        verify(personService, never()).findAllById(any());
+    }
+}
@@ -13,6 +13,8 @@ import ru.job4j.chat.model.Role;
 import ru.job4j.chat.service.ImplRoleService;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
@@ -27,7 +29,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  */
 @SpringBootTest(classes = ChatApplication.class)
 @AutoConfigureMockMvc
-@WithMockUser
+@WithMockUser(roles = "ADMIN")
 class RoleControllerTest {
 
     /**
@@ -56,6 +58,20 @@ class RoleControllerTest {
         verify(roleService).findAll();
     }
 
+    /**
+     * Выполняется проверка отказа в доступе к ролям пользователю
+     * без роли администратора.
+     */
+    @Test
+    @WithMockUser
+    public void shouldForbidRolesWhenNotAdmin() throws Exception {
+        this.mockMvc.perform(get("/role/"))
+                .andDo(print())
+                .andExpect(status().isForbidden());
+
+        verify(roleService, never()).findAll();
+    }
+
     /**
      * Выполняется проверка выполнения GET запроса для поиска роли по id,
      * если роль не найдена и проверка вызова метода сервисного слоя
@@ -136,7 +152,7 @@ class RoleControllerTest {
     /**
      * Выполняется проверка выполнения PATCH запроса для частичного обновления
      * роли, если роль не найдена и проверка вызова метода сервисного слоя
-     * {@link ImplRoleService#patchModel(Role)} с аргументом запроса.
+     * {@link ImplRoleService#patchModel(Role, Integer)} с аргументом запроса.
      */
     @Test
     public void shouldPatchRole() throws Exception {
@@ -149,7 +165,7 @@ class RoleControllerTest {
 
         ArgumentCaptor<Role> argument = ArgumentCaptor.forClass(Role.class);
 
-        verify(roleService).patchModel(argument.capture());
+        verify(roleService).patchModel(argument.capture(), isNull());
         assertThat(argument.getValue().getId()).isEqualTo(0);
         assertThat(argument.getValue().getName()).isEqualTo("role");
     }
@@ -6,16 +6,31 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 import ru.job4j.chat.ChatApplication;
 import ru.job4j.chat.model.Room;
+import ru.job4j.chat.service.Chunks;
 import ru.job4j.chat.service.ImplRoomService;
 
+import java.util.List;
+import java.util.Optional;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
@@ -122,6 +137,7 @@ class RoomControllerTest {
      * {@link ImplRoomService#delete(Room)} с аргументом запроса.
      */
     @Test
+    @WithMockUser(roles = "ADMIN")
     public void shouldDeleteRole() throws Exception {
         this.mockMvc.perform(delete("/room/1"))
                 .andDo(print())
@@ -133,10 +149,23 @@ class RoomControllerTest {
         assertThat(argument.getValue().getId()).isEqualTo(1);
     }
 
+    /**
+     * Выполняется проверка отказа в выполнении DELETE запроса пользователю
+     * без роли администратора.
+     */
+    @Test
+    public void shouldForbidDeleteWhenNotAdmin() throws Exception {
+        this.mockMvc.perform(delete("/room/1"))
+                .andDo(print())
+                .andExpect(status().isForbidden());
+
+        verify(roomService, never()).delete(any());
+    }
+
     /**
      * Выполняется проверка выполнения PATCH запроса для частичного обновления
      * комнаты, если комната не найдена и проверка вызова метода сервисного слоя
-     * {@link ImplRoomService#patchModel(Room)} с аргументом запроса.
+     * {@link ImplRoomService#patchModel(Room, Integer)} с аргументом запроса.
      */
     @Test
     public void shouldPatchRole() throws Exception {
@@ -149,8 +178,155 @@ class RoomControllerTest {
 
         ArgumentCaptor<Room> argument = ArgumentCaptor.forClass(Room.class);
 
-        verify(roomService).patchModel(argument.capture());
+        verify(roomService).patchModel(argument.capture(), isNull());
         assertThat(argument.getValue().getId()).isEqualTo(0);
         assertThat(argument.getValue().getName()).isEqualTo("room");
     }
-}
\ No newline at end of file
+
+    /**
+     * Выполняется проверка ответа NOT_MODIFIED без тела на GET запрос комнаты
+     * с заголовком If-None-Match, равным ETag версии комнаты.
+     */
+    @Test
+    public void shouldReturnNotModifiedWhenETagMatches() throws Exception {
+        var room = Room.builder().id(1).name("room").version(3).build();
+        doReturn(Optional.of(room)).when(roomService).findById(1);
+
+        this.mockMvc.perform(get("/room/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\""));
+        this.mockMvc.perform(get("/room/1").header("If-None-Match", "\"3\""))
+                .andDo(print())
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    /**
+     * Выполняется проверка ответа NOT_MODIFIED на GET запрос списка комнат
+     * с ETag списка и ответа OK после изменения версии комнаты.
+     */
+    @Test
+    public void shouldReturnNotModifiedWhenListETagMatches() throws Exception {
+        var room = Room.builder().id(1).name("room").version(3).build();
+        doReturn(List.of(room)).when(roomService).findAll();
+        var etag = this.mockMvc.perform(get("/room/"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        this.mockMvc.perform(get("/room/").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        room.setVersion(4);
+        this.mockMvc.perform(get("/room/").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
+
+    /**
+     * Выполняется проверка передачи версии из заголовка If-Match в метод
+     * сервисного слоя {@link ImplRoomService#patchModel(Room, Integer)} и
+     * ответа PRECONDITION_FAILED, если версия комнаты изменилась.
+     */
+    @Test
+    public void shouldReturnPreconditionFailedWhenVersionChanged() throws Exception {
+        doThrow(new OptimisticLockingFailureException("Room 1 has been modified"))
+                .when(roomService).patchModel(any(Room.class), eq(2));
+
+        this.mockMvc.perform(patch("/room/")
+                        .header("If-Match", "\"2\"")
+                        .contentType("application/json")
+                        .content("{\"id\":1,\"name\":\"room\"}"))
+                .andDo(print())
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    /**
+     * Выполняется проверка возвращения комнат по списку идентификаторов
+     * в порядке, полученном от метода сервисного слоя
+     * {@link ImplRoomService#findAllById(java.util.Collection)}.
+     */
+    @Test
+    public void shouldReturnRoomsByIds() throws Exception {
+        doReturn(List.of(Room.builder().id(3).name("third").build(),
+                Room.builder().id(1).name("first").build()))
+                .when(roomService).findAllById(List.of(3, 1));
+
+        this.mockMvc.perform(get("/room").param("ids", "3,1"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(3))
+                .andExpect(jsonPath("$[1].id").value(1));
+    }
+
+    /**
+     * Выполняется проверка ответа BAD_REQUEST, если передано больше
+     * {@link Chunks#MAX_IDS} идентификаторов.
+     */
+    @Test
+    public void shouldReturnBadRequestWhenTooManyIds() throws Exception {
+        var ids = new StringBuilder("0");
+        for (int i = 1; i <= Chunks.MAX_IDS; i++) {
+            ids.append(',').append(i);
+        }
+
+        this.mockMvc.perform(get("/room").param("ids", ids.toString()))
+                .andExpect(status().isBadRequest());
+        verify(roomService, never()).findAllById(any());
+    }
+
+    /**
+     * Выполняется проверка добавления текущего пользователя в участники
+     * комнаты и ответа NOT_FOUND, если комнаты нет.
+     */
+    @Test
+    public void shouldJoinRoomOrReturnNotFound() throws Exception {
+        doReturn(true).when(roomService).join(1, "user");
+        doReturn(false).when(roomService).join(2, "user");
+        doReturn(Optional.empty()).when(roomService).findById(2);
+
+        this.mockMvc.perform(put("/room/1/members/me"))
+                .andExpect(status().isOk());
+        this.mockMvc.perform(put("/room/2/members/me"))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * Выполняется проверка выхода из комнаты пользователя без роли
+     * администратора.
+     */
+    @Test
+    public void shouldLeaveRoomWithoutAdminRole() throws Exception {
+        this.mockMvc.perform(delete("/room/1/members/me"))
+                .andExpect(status().isOk());
+        verify(roomService).leave(1, "user");
+    }
+
+    /**
+     * Выполняется проверка ответа NOT_FOUND на отметку прочтения сообщения,
+     * которого нет в комнате.
+     */
+    @Test
+    public void shouldReturnNotFoundWhenMarkReadMessageOfAnotherRoom() throws Exception {
+        doReturn(true).when(roomService).markRead(1, "user", 5);
+        doReturn(false).when(roomService).markRead(1, "user", 6);
+        doReturn(false).when(roomService).hasMessage(1, 6);
+
+        this.mockMvc.perform(put("/room/1/members/me/read").param("messageId", "5"))
+                .andExpect(status().isOk());
+        this.mockMvc.perform(put("/room/1/members/me/read").param("messageId", "6"))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * Выполняется проверка выполнения DELETE запроса с параметром ids,
+     * если у комнат есть сообщения и база данных отклоняет удаление.
+     */
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    public void shouldReturnConflictWhenDeleteAllRoomsWithMessages() throws Exception {
+        doThrow(new DataIntegrityViolationException("message_room_id_fkey"))
+                .when(roomService).deleteAll(List.of(1, 2));
+
+        this.mockMvc.perform(delete("/room").param("ids", "1,2"))
+                .andDo(print())
+                .andExpect(status().isConflict());
+    }
+}
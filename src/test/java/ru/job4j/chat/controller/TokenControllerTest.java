@@ -0,0 +1,91 @@
+package ru.job4j.chat.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.job4j.chat.ChatApplication;
+import ru.job4j.chat.service.ImplTokenService;
+import ru.job4j.chat.service.TokenService;
+
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Тест класс реализации контроллеров
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.controller.TokenController
+ */
+@SpringBootTest(classes = ChatApplication.class)
+@AutoConfigureMockMvc
+class TokenControllerTest {
+
+    /**
+     * Объект заглушка направления запросов
+     */
+    @Autowired
+    private MockMvc mockMvc;
+
+    /**
+     * Объект заглушка для ImplTokenService
+     */
+    @MockBean
+    private ImplTokenService tokenService;
+
+    /**
+     * Выполняется проверка выполнения POST запроса обновления токенов
+     * без аутентификации и возврата новых токенов в заголовках.
+     */
+    @Test
+    public void shouldRefreshTokens() throws Exception {
+        doReturn(Optional.of(new TokenService.TokenPair("access", "next")))
+                .when(tokenService).refresh("refresh");
+
+        this.mockMvc.perform(post("/token/refresh").header("Refresh-Token", "refresh"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().string("Authorization", "Bearer access"))
+                .andExpect(header().string("Refresh-Token", "next"));
+    }
+
+    /**
+     * Выполняется проверка выполнения POST запроса обновления токенов,
+     * если токен обновления недействителен.
+     */
+    @Test
+    public void shouldReturnUnauthorizedWhenRefreshTokenInvalid() throws Exception {
+        doReturn(Optional.empty()).when(tokenService).refresh("refresh");
+
+        this.mockMvc.perform(post("/token/refresh").header("Refresh-Token", "refresh"))
+                .andDo(print())
+                .andExpect(status().isUnauthorized());
+    }
+
+    /**
+     * Выполняется проверка выполнения POST запроса отзыва токенов
+     * и вызова метода сервисного слоя
+     * {@link ImplTokenService#revoke(String, java.util.Date, String)}.
+     */
+    @Test
+    @WithMockUser
+    public void shouldRevokeTokens() throws Exception {
+        this.mockMvc.perform(post("/token/revoke").header("Refresh-Token", "refresh"))
+                .andDo(print())
+                .andExpect(status().isNoContent());
+
+        verify(tokenService).revoke(any(), any(), eq("refresh"));
+    }
+}
@@ -0,0 +1,97 @@
+package ru.job4j.chat.filter;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static ru.job4j.chat.filter.JWTAuthenticationFilter.*;
+
+/**
+ * Сравнение получения аутентификации по JWT токену: с созданием объекта
+ * проверки подписи при каждом запросе, как было раньше, и через
+ * {@link JWTAuthorizationFilter#getAuthentication(String)} с общим объектом
+ * проверки и кэшем проверенных токенов. Запускается методом main после
+ * компиляции тестов: mvn test-compile.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.filter.JWTAuthorizationFilter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JWTAuthorizationBenchmark {
+
+    /**
+     * Значение заголовка с JWT токеном
+     */
+    private String header;
+
+    /**
+     * Создает токен пользователя.
+     */
+    @Setup
+    public void setUp() {
+        header = TOKEN_PREFIX + JWT.create()
+                .withSubject("user")
+                .withExpiresAt(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
+                .sign(Algorithm.HMAC512(SECRET.getBytes()));
+    }
+
+    /**
+     * Получение аутентификации с созданием объекта проверки подписи
+     * и проверкой подписи при каждом запросе.
+     *
+     * @return объект аутентификации
+     */
+    @Benchmark
+    public UsernamePasswordAuthenticationToken verifyEveryRequest() {
+        String user = JWT.require(Algorithm.HMAC512(SECRET.getBytes()))
+                .build()
+                .verify(header.replace(TOKEN_PREFIX, ""))
+                .getSubject();
+        return new UsernamePasswordAuthenticationToken(user, null, new ArrayList<>());
+    }
+
+    /**
+     * Получение аутентификации через кэш проверенных токенов.
+     *
+     * @return объект аутентификации
+     */
+    @Benchmark
+    public UsernamePasswordAuthenticationToken cachedVerification() {
+        return JWTAuthorizationFilter.getAuthentication(header);
+    }
+
+    /**
+     * Запускает сравнение.
+     *
+     * @param args аргументы командной строки
+     * @throws RunnerException при ошибке выполнения
+     */
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JWTAuthorizationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
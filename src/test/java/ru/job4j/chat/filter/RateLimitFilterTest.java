@@ -0,0 +1,123 @@
+package ru.job4j.chat.filter;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.job4j.chat.config.RateLimitProperties;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Тест класс фильтра ограничения частоты запросов
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.filter.RateLimitFilter
+ */
+class RateLimitFilterTest {
+
+    /**
+     * Текущее время в наносекундах
+     */
+    private final AtomicLong now = new AtomicLong();
+
+    /**
+     * Фильтр ограничения частоты запросов
+     */
+    private RateLimitFilter filter;
+
+    /**
+     * Создает фильтр с ограничением входа двумя запросами
+     * и пополнением одного маркера в секунду.
+     */
+    @BeforeEach
+    void setUp() {
+        var route = new RateLimitProperties.Route();
+        route.setMethod("POST");
+        route.setPath("/login");
+        route.setCapacity(2);
+        route.setRefillPerSecond(1);
+        var properties = new RateLimitProperties();
+        properties.setMaxBuckets(2);
+        properties.setRoutes(List.of(route));
+        filter = new RateLimitFilter(properties, now::get);
+    }
+
+    /**
+     * Выполняется проверка отказа в запросе со статусом TOO_MANY_REQUESTS
+     * и заголовком Retry-After после исчерпания маркеров адреса клиента,
+     * при этом запросы с другого адреса и к другим маршрутам не ограничиваются.
+     */
+    @Test
+    public void shouldRejectRequestWhenBucketIsEmpty() throws Exception {
+        assertThat(perform("POST", "/login", "10.0.0.1").getStatus()).isEqualTo(200);
+        assertThat(perform("POST", "/login", "10.0.0.1").getStatus()).isEqualTo(200);
+
+        var rejected = perform("POST", "/login", "10.0.0.1");
+
+        assertThat(rejected.getStatus()).isEqualTo(429);
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("1");
+        assertThat(perform("POST", "/login", "10.0.0.2").getStatus()).isEqualTo(200);
+        assertThat(perform("GET", "/login", "10.0.0.1").getStatus()).isEqualTo(200);
+    }
+
+    /**
+     * Выполняется проверка удаления заполненных корзин.
+     */
+    @Test
+    public void shouldEvictFullBuckets() throws Exception {
+        perform("POST", "/login", "10.0.0.1");
+        assertThat(filter.size()).isEqualTo(1);
+
+        now.set(120_000_000_000L);
+        perform("POST", "/room/", "10.0.0.1");
+
+        assertThat(filter.size()).isZero();
+    }
+
+    /**
+     * Выполняется проверка, что при достижении максимального количества
+     * корзин новые адреса ограничиваются общей корзиной маршрута без
+     * создания корзин, а после удаления заполненных корзин снова получают
+     * собственные корзины.
+     */
+    @Test
+    public void shouldShareOverflowBucketWhenMaxBucketsReached() throws Exception {
+        perform("POST", "/login", "10.0.0.1");
+        perform("POST", "/login", "10.0.0.2");
+
+        assertThat(perform("POST", "/login", "10.0.0.3").getStatus()).isEqualTo(200);
+        assertThat(perform("POST", "/login", "10.0.0.4").getStatus()).isEqualTo(200);
+        assertThat(perform("POST", "/login", "10.0.0.5").getStatus()).isEqualTo(429);
+        assertThat(filter.size()).isEqualTo(2);
+
+        now.set(120_000_000_000L);
+        perform("GET", "/", "10.0.0.1");
+        assertThat(filter.size()).isZero();
+        assertThat(perform("POST", "/login", "10.0.0.5").getStatus()).isEqualTo(200);
+        assertThat(filter.size()).isEqualTo(1);
+    }
+
+    /**
+     * Выполняет запрос через фильтр.
+     *
+     * @param method HTTP метод
+     * @param path   путь
+     * @param ip     адрес клиента
+     * @return ответ
+     * @throws Exception при ошибке обработки запроса
+     */
+    private MockHttpServletResponse perform(String method, String path, String ip)
+            throws Exception {
+        var request = new MockHttpServletRequest(method, path);
+        request.setRemoteAddr(ip);
+        var response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
@@ -0,0 +1,53 @@
+package ru.job4j.chat.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Тест класс общего кэша полномочий по ролям
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.filter.RoleAuthorities
+ */
+class RoleAuthoritiesTest {
+
+    /**
+     * Выполняется проверка возврата одного и того же списка полномочий
+     * для равных списков ролей.
+     */
+    @Test
+    public void ofShouldReturnSharedListForEqualRoles() {
+        var first = RoleAuthorities.of(new ArrayList<>(List.of("USER", "ADMIN")));
+        var second = RoleAuthorities.of(List.of("USER", "ADMIN"));
+
+        assertThat(second).isSameAs(first);
+        assertThat(first.get(0)).isSameAs(RoleAuthorities.of("USER"));
+        assertThat(first).extracting(GrantedAuthority::getAuthority)
+                .containsExactly("ROLE_USER", "ROLE_ADMIN");
+    }
+
+    /**
+     * Выполняется проверка возврата пустого списка полномочий,
+     * если в токене нет ролей.
+     */
+    @Test
+    public void ofShouldReturnEmptyListWhenNoRoles() {
+        assertThat(RoleAuthorities.of((List<String>) null)).isEmpty();
+        assertThat(RoleAuthorities.of(List.of())).isEmpty();
+    }
+
+    /**
+     * Выполняется проверка получения наименований ролей по полномочиям.
+     */
+    @Test
+    public void rolesShouldStripRolePrefix() {
+        assertThat(RoleAuthorities.roles(RoleAuthorities.of(List.of("USER", "ADMIN"))))
+                .containsExactly("USER", "ADMIN");
+    }
+}
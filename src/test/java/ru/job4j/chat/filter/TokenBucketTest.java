@@ -0,0 +1,39 @@
+package ru.job4j.chat.filter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Тест класс корзины маркеров
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.filter.TokenBucket
+ */
+class TokenBucketTest {
+
+    /**
+     * Секунда в наносекундах
+     */
+    private static final long SECOND = 1_000_000_000L;
+
+    /**
+     * Выполняется проверка выдачи всех маркеров корзины подряд, отказа
+     * при пустой корзине со временем до появления маркера и пополнения
+     * корзины со временем.
+     */
+    @Test
+    public void tryConsumeShouldAllowBurstThenRefill() {
+        var bucket = new TokenBucket(3, 1, 0);
+
+        assertThat(bucket.tryConsume(0)).isZero();
+        assertThat(bucket.tryConsume(0)).isZero();
+        assertThat(bucket.tryConsume(0)).isZero();
+        assertThat(bucket.tryConsume(0)).isEqualTo(SECOND);
+        assertThat(bucket.tryConsume(SECOND)).isZero();
+        assertThat(bucket.tryConsume(SECOND)).isEqualTo(SECOND);
+        assertThat(bucket.isFull(2 * SECOND)).isFalse();
+        assertThat(bucket.isFull(4 * SECOND)).isTrue();
+    }
+}
@@ -0,0 +1,86 @@
+package ru.job4j.chat.filter;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Тест класс кэша проверенных JWT токенов
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.filter.VerifiedTokenCache
+ */
+class VerifiedTokenCacheTest {
+
+    /**
+     * Текущее время в миллисекундах
+     */
+    private final AtomicLong now = new AtomicLong(1_000);
+
+    /**
+     * Создает расшифрованный токен пользователя user.
+     *
+     * @param expiresAt время окончания срока действия токена в миллисекундах
+     * @return расшифрованный токен
+     */
+    private static DecodedJWT token(long expiresAt) {
+        return JWT.decode(JWT.create()
+                .withSubject("user")
+                .withExpiresAt(new Date(expiresAt))
+                .sign(HMAC512("secret".getBytes())));
+    }
+
+    /**
+     * Выполняется проверка возврата имени пользователя токена до окончания
+     * срока действия токена и удаления токена после окончания срока.
+     */
+    @Test
+    public void getShouldReturnSubjectUntilTokenExpires() {
+        var cache = new VerifiedTokenCache(10, now::get);
+        cache.put("token", token(2_000));
+
+        assertThat(cache.get("token")).map(DecodedJWT::getSubject).contains("user");
+        now.set(2_000);
+        assertThat(cache.get("token")).isEmpty();
+        assertThat(cache.size()).isZero();
+    }
+
+    /**
+     * Выполняется проверка отказа в добавлении просроченного токена.
+     */
+    @Test
+    public void putShouldSkipExpiredToken() {
+        var cache = new VerifiedTokenCache(10, now::get);
+        cache.put("token", token(1_000));
+
+        assertThat(cache.get("token")).isEmpty();
+    }
+
+    /**
+     * Выполняется проверка ограничения размера кэша: при заполнении сначала
+     * удаляются просроченные токены, затем произвольные.
+     */
+    @Test
+    public void putShouldEvictWhenCacheIsFull() {
+        var cache = new VerifiedTokenCache(2, now::get);
+        cache.put("expiring", token(2_000));
+        cache.put("first", token(5_000));
+        now.set(2_000);
+        cache.put("second", token(5_000));
+
+        assertThat(cache.get("first")).map(DecodedJWT::getSubject).contains("user");
+        assertThat(cache.get("second")).map(DecodedJWT::getSubject).contains("user");
+
+        cache.put("third", token(5_000));
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get("third")).map(DecodedJWT::getSubject).contains("user");
+    }
+}
@@ -0,0 +1,137 @@
+package ru.job4j.chat.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import ru.job4j.chat.model.Message;
+import ru.job4j.chat.model.Person;
+import ru.job4j.chat.model.Room;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сравнение выборки списка сообщений сущностями с графом
+ * {@link MessageRepository#findAll()} и проекциями
+ * {@link MessageRepository#findAllViews()} по размеру ответа в JSON
+ * и времени выборки с сериализацией. Не выполняется при обычной сборке,
+ * запускается профилем benchmark: mvn test -P benchmark.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.projection.MessageView
+ */
+@Tag("benchmark")
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class MessageProjectionBenchmarkTest {
+
+    /**
+     * Количество сообщений
+     */
+    private static final int MESSAGES = 5_000;
+
+    /**
+     * Количество пользователей
+     */
+    private static final int PERSONS = 100;
+
+    /**
+     * Количество прогревочных замеров
+     */
+    private static final int WARMUP = 5;
+
+    /**
+     * Количество замеров
+     */
+    private static final int ROUNDS = 20;
+
+    /**
+     * Объект для доступа к методам MessageRepository
+     */
+    @Autowired
+    private MessageRepository messageRepository;
+
+    /**
+     * Объект для работы с контекстом постоянства
+     */
+    @Autowired
+    private TestEntityManager entityManager;
+
+    /**
+     * Объект для сериализации в JSON
+     */
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Сравнивает размер ответа и время выборки с сериализацией списка
+     * сообщений для сущностей и проекций.
+     *
+     * @throws Exception при ошибке сериализации
+     */
+    @Test
+    public void compareEntityGraphWithProjection() throws Exception {
+        populate();
+
+        long entityBytes = objectMapper.writeValueAsBytes(messageRepository.findAll()).length;
+        entityManager.clear();
+        long viewBytes = objectMapper.writeValueAsBytes(messageRepository.findAllViews()).length;
+        double entityMillis = measure(messageRepository::findAll);
+        double viewMillis = measure(messageRepository::findAllViews);
+
+        System.out.printf("entity graph: %d bytes, %.2f ms%n", entityBytes, entityMillis);
+        System.out.printf("projection:   %d bytes, %.2f ms%n", viewBytes, viewMillis);
+        assertThat(viewBytes).isLessThan(entityBytes);
+    }
+
+    /**
+     * Сохраняет пользователей, комнату и сообщения.
+     */
+    private void populate() {
+        var room = entityManager.persist(Room.builder().name("benchmark").build());
+        var persons = new ArrayList<Person>(PERSONS);
+        for (int i = 0; i < PERSONS; i++) {
+            persons.add(entityManager.persist(Person.builder()
+                    .username("person" + i)
+                    .password("$2a$10$abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ012")
+                    .build()));
+        }
+        for (int i = 0; i < MESSAGES; i++) {
+            entityManager.persist(Message.builder()
+                    .content("message " + i)
+                    .person(persons.get(i % PERSONS))
+                    .room(room)
+                    .build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    /**
+     * Возвращает среднее время выборки и сериализации списка после прогрева.
+     * Перед каждым замером контекст постоянства очищается.
+     *
+     * @param query выборка списка
+     * @return среднее время в миллисекундах
+     * @throws Exception при ошибке сериализации
+     */
+    private double measure(Supplier<List<?>> query) throws Exception {
+        long total = 0;
+        for (int i = 0; i < WARMUP + ROUNDS; i++) {
+            entityManager.clear();
+            long start = System.nanoTime();
+            objectMapper.writeValueAsBytes(query.get());
+            if (i >= WARMUP) {
+                total += System.nanoTime() - start;
+            }
+        }
+        return total / (ROUNDS * 1_000_000.0);
+    }
+}
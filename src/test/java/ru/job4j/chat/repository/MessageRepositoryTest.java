@@ -5,10 +5,18 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
 import ru.job4j.chat.model.Message;
+import ru.job4j.chat.model.Person;
+import ru.job4j.chat.model.Room;
+import ru.job4j.chat.projection.MessageSearchHit;
+import ru.job4j.chat.projection.MessageView;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -29,6 +37,18 @@ class MessageRepositoryTest {
     @Autowired
     private MessageRepository messageRepository;
 
+    /**
+     * Объект для доступа к методам RoomRepository
+     */
+    @Autowired
+    private RoomRepository roomRepository;
+
+    /**
+     * Объект для доступа к методам PersonRepository
+     */
+    @Autowired
+    private PersonRepository personRepository;
+
     /**
      * Сообщение
      */
@@ -59,6 +79,32 @@ class MessageRepositoryTest {
         assertThat(messagesFromDB.get(0).getContent()).isEqualTo(message.getContent());
     }
 
+    /**
+     * Выполняется проверка чтения проекций сообщений потоком,
+     * если сообщения сохранены в репозитории.
+     */
+    @Test
+    public void streamAllViewsShouldReturnViewsWhenExists() {
+        messageRepository.save(message);
+
+        try (Stream<MessageView> views = messageRepository.streamAllViews()) {
+            assertThat(views.map(MessageView::getContent).collect(Collectors.toList()))
+                    .containsExactly(message.getContent());
+        }
+    }
+
+    /**
+     * Выполняется проверка, что последовательные блоки идентификаторов
+     * сообщений не пересекаются.
+     */
+    @Test
+    public void nextIdBlockShouldReturnDisjointBlocks() {
+        int first = messageRepository.nextIdBlock();
+        int second = messageRepository.nextIdBlock();
+
+        assertThat(second - first).isEqualTo(Message.ID_ALLOCATION_SIZE);
+    }
+
     /**
      * Выполняется проверка нахождения в репозитории сообщения по id,
      * если сообщение сохранено в репозитории.
@@ -83,6 +129,89 @@ class MessageRepositoryTest {
         assertThat(messageFromDB).isEqualTo(Optional.empty());
     }
 
+    /**
+     * Выполняется проверка нахождения в репозитории проекции сообщения по id
+     * с именем пользователя и названием комнаты.
+     */
+    @Test
+    public void findViewByIdShouldReturnProjectionWhenExists() {
+        Room room = roomRepository.save(Room.builder().name("projection").build());
+        Person person = personRepository.save(Person.builder()
+                .username("projection").password("password").build());
+        message.setRoom(room);
+        message.setPerson(person);
+        int id = messageRepository.save(message).getId();
+
+        MessageView view = messageRepository.findViewById(id).get();
+
+        assertThat(view.getContent()).isEqualTo(message.getContent());
+        assertThat(view.getPersonId()).isEqualTo(person.getId());
+        assertThat(view.getPersonUsername()).isEqualTo("projection");
+        assertThat(view.getRoomId()).isEqualTo(room.getId());
+        assertThat(view.getRoomName()).isEqualTo("projection");
+    }
+
+    /**
+     * Выполняется проверка нахождения в репозитории списка проекций сообщений,
+     * если у сообщения нет пользователя и комнаты.
+     */
+    @Test
+    public void findAllViewsShouldReturnProjectionsWithoutPersonAndRoom() {
+        messageRepository.save(message);
+
+        List<MessageView> views = messageRepository.findAllViews();
+
+        assertThat(views).hasSize(1);
+        assertThat(views.get(0).getContent()).isEqualTo(message.getContent());
+        assertThat(views.get(0).getPersonId()).isNull();
+        assertThat(views.get(0).getRoomName()).isNull();
+    }
+
+    /**
+     * Выполняется проверка поиска сообщений комнаты по содержанию без учета
+     * регистра с переходом на следующую страницу по курсору последнего результата.
+     */
+    @Test
+    public void searchShouldReturnNextPageWhenCursorPassed() {
+        Room room = roomRepository.save(Room.builder().name("search").build());
+        Room other = roomRepository.save(Room.builder().name("other").build());
+        for (int i = 0; i < 3; i++) {
+            messageRepository.save(Message.builder().content("Hello " + i).room(room).build());
+        }
+        messageRepository.save(Message.builder().content("bye").room(room).build());
+        messageRepository.save(Message.builder().content("hello").room(other).build());
+
+        List<MessageSearchHit> first = messageRepository.search(
+                "HELLO", room.getId(), Float.MAX_VALUE, Integer.MAX_VALUE, 2);
+        MessageSearchHit last = first.get(first.size() - 1);
+        List<MessageSearchHit> second = messageRepository.search(
+                "HELLO", room.getId(), last.getRank(), last.getMessage().getId(), 2);
+
+        assertThat(first).extracting(hit -> hit.getMessage().getContent())
+                .containsExactly("Hello 2", "Hello 1");
+        assertThat(second).extracting(hit -> hit.getMessage().getContent())
+                .containsExactly("Hello 0");
+    }
+
+    /**
+     * Выполняется проверка сохранения пакета сообщений в репозитории
+     * с выделением идентификаторов из последовательности.
+     */
+    @Test
+    public void saveAllShouldAssignDistinctIdsWhenSuccess() {
+        List<Message> messages = List.of(
+                Message.builder().content("first").build(),
+                Message.builder().content("second").build()
+        );
+
+        messageRepository.saveAll(messages);
+
+        assertThat(messages.get(0).getId()).isPositive();
+        assertThat(messages.get(1).getId()).isNotEqualTo(messages.get(0).getId());
+        assertThat(messageRepository.findAllById(List.of(
+                messages.get(0).getId(), messages.get(1).getId()))).hasSize(2);
+    }
+
     /**
      * Выполняется проверка сохранения сообщения в репозитории.
      */
@@ -94,4 +223,42 @@ class MessageRepositoryTest {
 
         assertThat(messageFromDB.get().getContent()).isEqualTo(message.getContent());
     }
-}
\ No newline at end of file
+
+    /**
+     * Выполняется проверка выборки истории комнаты по курсору: первая страница
+     * содержит последние сообщения комнаты, следующая страница начинается с
+     * сообщения, предшествующего курсору, выборка после курсора возвращает
+     * более новые сообщения от старых к новым.
+     */
+    @Test
+    public void findByRoomBeforeShouldReturnNextPageWhenCursorPassed() {
+        Room room = roomRepository.save(Room.builder().name("history").build());
+        Room other = roomRepository.save(Room.builder().name("other").build());
+        for (int i = 0; i < 5; i++) {
+            messageRepository.save(Message.builder()
+                    .content("message" + i)
+                    .created(new Date(1_000L * i))
+                    .room(room)
+                    .build());
+        }
+        messageRepository.save(Message.builder()
+                .content("foreign")
+                .created(new Date(10_000L))
+                .room(other)
+                .build());
+
+        List<Message> first = messageRepository.findLatestByRoom(
+                room.getId(), PageRequest.of(0, 2));
+        List<Message> second = messageRepository.findByRoomBefore(
+                room.getId(), first.get(1).getId(), PageRequest.of(0, 2));
+        List<Message> missed = messageRepository.findByRoomAfter(
+                room.getId(), second.get(0).getId(), PageRequest.of(0, 10));
+
+        assertThat(first.stream().map(Message::getContent).collect(Collectors.toList()))
+                .containsExactly("message4", "message3");
+        assertThat(second.stream().map(Message::getContent).collect(Collectors.toList()))
+                .containsExactly("message2", "message1");
+        assertThat(missed.stream().map(Message::getContent).collect(Collectors.toList()))
+                .containsExactly("message3", "message4");
+    }
+}
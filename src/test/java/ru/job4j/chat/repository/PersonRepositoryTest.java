@@ -5,7 +5,9 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
 import ru.job4j.chat.model.Person;
+import ru.job4j.chat.model.Role;
 
 import java.util.List;
 import java.util.Optional;
@@ -13,6 +15,7 @@ import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  * Тест класс реализации хранилища персон
@@ -31,6 +34,12 @@ class PersonRepositoryTest {
     @Autowired
     private PersonRepository personRepository;
 
+    /**
+     * Объект для доступа к методам RoleRepository
+     */
+    @Autowired
+    private RoleRepository roleRepository;
+
     /**
      * Пользователь
      */
@@ -48,6 +57,22 @@ class PersonRepositoryTest {
                 .build();
     }
 
+    /**
+     * Выполняется проверка отказа в сохранении персоны с уже занятым
+     * именем за счет ограничения уникальности имени.
+     */
+    @Test
+    public void saveShouldThrowWhenUsernameTaken() {
+        personRepository.save(person);
+        Person duplicate = Person.builder()
+                .username(person.getUsername())
+                .password("password")
+                .build();
+
+        assertThatThrownBy(() -> personRepository.save(duplicate))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
     /**
      * Выполняется проверка нахождения в репозитории списка персон,
      * если персоны сохранены в репозитории.
@@ -99,4 +124,26 @@ class PersonRepositoryTest {
 
         assertThat(personFromDB.get().getUsername()).isEqualTo(person.getUsername());
     }
-}
\ No newline at end of file
+
+    /**
+     * Выполняется проверка удаления персон по идентификаторам одним
+     * запросом после удаления связей персон с ролями.
+     */
+    @Test
+    public void deleteByIdsShouldDeletePersonsWithRoles() {
+        var role = roleRepository.save(Role.builder().name("USER").build());
+        person.getRoles().add(role);
+        int id = personRepository.save(person).getId();
+        int other = personRepository.save(Person.builder()
+                .username("other")
+                .password("password")
+                .build()).getId();
+
+        personRepository.deletePersonRolesByIds(List.of(id, other));
+        int deleted = personRepository.deleteByIds(List.of(id, other, Integer.MAX_VALUE));
+
+        assertThat(deleted).isEqualTo(2);
+        assertThat(personRepository.existsById(id)).isFalse();
+        assertThat(roleRepository.existsById(role.getId())).isTrue();
+    }
+}
@@ -5,8 +5,10 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import ru.job4j.chat.model.Person;
 import ru.job4j.chat.model.Room;
 
+import javax.persistence.EntityManager;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -31,6 +33,18 @@ class RoomRepositoryTest {
     @Autowired
     private RoomRepository roomRepository;
 
+    /**
+     * Объект для доступа к методам PersonRepository
+     */
+    @Autowired
+    private PersonRepository personRepository;
+
+    /**
+     * Объект для работы с контекстом постоянства
+     */
+    @Autowired
+    private EntityManager entityManager;
+
     /**
      * Комната
      */
@@ -98,4 +112,37 @@ class RoomRepositoryTest {
 
         assertThat(roomFromDB.get().getName()).isEqualTo(room.getName());
     }
-}
\ No newline at end of file
+
+    /**
+     * Выполняется проверка добавления пользователя в участники комнаты
+     * без повторов, постраничного получения участников и удаления
+     * пользователя из участников.
+     */
+    @Test
+    public void membersShouldBeAddedOnceAndRemoved() {
+        roomRepository.save(room);
+        var first = personRepository.save(Person.builder()
+                .username("first").password("password").build());
+        var second = personRepository.save(Person.builder()
+                .username("second").password("password").build());
+        entityManager.flush();
+
+        assertThat(roomRepository.insertMember(room.getId(), "first", 0)).isEqualTo(1);
+        assertThat(roomRepository.insertMember(room.getId(), "first", 0)).isZero();
+        assertThat(roomRepository.insertMember(room.getId(), "second", 0)).isEqualTo(1);
+        assertThat(roomRepository.insertMember(Integer.MAX_VALUE, "first", 0)).isZero();
+
+        assertThat(roomRepository.findMemberIds(room.getId(), 0, 1))
+                .containsExactly(Math.min(first.getId(), second.getId()));
+        assertThat(roomRepository.findMemberIds(room.getId(), 0, 10))
+                .containsExactlyInAnyOrder(first.getId(), second.getId());
+        assertThat(roomRepository.findJoined("first")).extracting(Room::getId)
+                .containsExactly(room.getId());
+
+        assertThat(roomRepository.deleteMember(room.getId(), "first")).isEqualTo(1);
+        assertThat(roomRepository.deleteMember(room.getId(), "first")).isZero();
+        assertThat(roomRepository.findMemberIds(room.getId(), 0, 10))
+                .containsExactly(second.getId());
+        assertThat(roomRepository.findJoined("first")).isEmpty();
+    }
+}
@@ -0,0 +1,64 @@
+package ru.job4j.chat.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Тест класс фильтра Блума
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.service.BloomFilter
+ */
+class BloomFilterTest {
+
+    /**
+     * Выполняется проверка отсутствия ложноотрицательных ответов
+     * для добавленных ключей.
+     */
+    @Test
+    public void mightContainShouldReturnTrueForAddedKeys() {
+        var filter = new BloomFilter(1_000, 0.01);
+        for (int i = 0; i < 1_000; i++) {
+            filter.put("key" + i);
+        }
+
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(filter.mightContain("key" + i)).isTrue();
+        }
+    }
+
+    /**
+     * Выполняется проверка доли ложноположительных ответов при заполнении
+     * фильтра ожидаемым количеством ключей.
+     */
+    @Test
+    public void mightContainShouldKeepFalsePositiveRateNearConfigured() {
+        var filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("revoked-" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("active-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        assertThat(falsePositives).isLessThan(2_000);
+    }
+
+    /**
+     * Выполняется проверка отказа в создании фильтра с неверными параметрами.
+     */
+    @Test
+    public void constructorShouldRejectInvalidArguments() {
+        assertThatThrownBy(() -> new BloomFilter(0, 0.01))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new BloomFilter(10, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
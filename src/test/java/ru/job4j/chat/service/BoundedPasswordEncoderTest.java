@@ -0,0 +1,74 @@
+package ru.job4j.chat.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Тест класс шифратора паролей с ограниченным пулом потоков
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.service.BoundedPasswordEncoder
+ */
+class BoundedPasswordEncoderTest {
+
+    /**
+     * Выполняется проверка вычисления хэша пароля и проверки пароля
+     * в пуле потоков с учетом времени вычисления в метриках.
+     */
+    @Test
+    public void encodeAndMatchesShouldDelegateToBCrypt() {
+        var registry = new SimpleMeterRegistry();
+        try (var encoder = new BoundedPasswordEncoder(
+                new BCryptPasswordEncoder(4), 1, 1, registry)) {
+            String hash = encoder.encode("password");
+
+            assertThat(encoder.matches("password", hash)).isTrue();
+            assertThat(encoder.matches("other", hash)).isFalse();
+            assertThat(registry.timer("chat.password.hash", "operation", "matches").count())
+                    .isEqualTo(2);
+        }
+    }
+
+    /**
+     * Выполняется проверка отказа в вычислении хэша пароля,
+     * если все потоки заняты и очередь задач заполнена.
+     */
+    @Test
+    public void encodeShouldRejectWhenQueueIsFull() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var delegate = mock(PasswordEncoder.class);
+        when(delegate.encode(any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return "hash";
+        });
+        var registry = new SimpleMeterRegistry();
+        try (var encoder = new BoundedPasswordEncoder(delegate, 1, 1, registry)) {
+            var running = CompletableFuture.supplyAsync(() -> encoder.encode("first"));
+            started.await();
+            var queued = CompletableFuture.supplyAsync(() -> encoder.encode("second"));
+            while (registry.get("chat.password.hash.queue").gauge().value() == 0) {
+                Thread.onSpinWait();
+            }
+
+            assertThatThrownBy(() -> encoder.encode("third"))
+                    .isInstanceOf(PasswordHashingRejectedException.class);
+            release.countDown();
+            assertThat(running.get()).isEqualTo("hash");
+            assertThat(queued.get()).isEqualTo("hash");
+        }
+    }
+}
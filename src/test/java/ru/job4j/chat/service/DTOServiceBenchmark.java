@@ -0,0 +1,143 @@
+package ru.job4j.chat.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.job4j.chat.model.Message;
+import ru.job4j.chat.model.Model;
+import ru.job4j.chat.model.Person;
+import ru.job4j.chat.model.Role;
+import ru.job4j.chat.model.Room;
+
+import java.lang.reflect.Method;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение копирования свойств при частичном обновлении моделей
+ * Message, Person, Room и Role: рефлексией с поиском методов при каждом
+ * обновлении, как было раньше, и через {@link DTOService} с вычисленными
+ * один раз функциями чтения и записи свойств. Профилировщик gc показывает
+ * объем памяти, выделяемой на одно обновление. Запускается методом main
+ * после компиляции тестов: mvn test-compile.
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.service.DTOService
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DTOServiceBenchmark {
+
+    /**
+     * Класс модели
+     */
+    @Param({"Message", "Person", "Room", "Role"})
+    private String model;
+
+    /**
+     * Объект с новыми значениями
+     */
+    private Model patch;
+
+    /**
+     * Обновляемый объект
+     */
+    private Model current;
+
+    /**
+     * Создает объекты модели.
+     */
+    @Setup
+    public void setUp() {
+        switch (model) {
+            case "Message":
+                patch = Message.builder().id(1).content("patched").created(new Date()).build();
+                current = Message.builder().id(1).content("content").build();
+                break;
+            case "Person":
+                patch = Person.builder().id(1).username("patched").build();
+                current = Person.builder().id(1).username("user").password("secret").build();
+                break;
+            case "Room":
+                patch = Room.builder().id(1).name("patched").build();
+                current = Room.builder().id(1).name("room").build();
+                break;
+            default:
+                patch = Role.builder().id(1).name("patched").build();
+                current = Role.builder().id(1).name("role").build();
+        }
+    }
+
+    /**
+     * Копирование свойств рефлексией с поиском методов при каждом
+     * обновлении. Свойства без метода записи пропускаются.
+     *
+     * @return обновленный объект
+     * @throws Exception при ошибке вызова метода
+     */
+    @Benchmark
+    public Object reflection() throws Exception {
+        var namePerMethod = new HashMap<String, Method>();
+        for (var method : current.getClass().getDeclaredMethods()) {
+            var name = method.getName();
+            if (name.startsWith("get") || name.startsWith("set")) {
+                namePerMethod.put(name, method);
+            }
+        }
+        for (var name : namePerMethod.keySet()) {
+            if (name.startsWith("get")) {
+                var setMethod = namePerMethod.get(name.replace("get", "set"));
+                if (setMethod == null) {
+                    continue;
+                }
+                var newValue = namePerMethod.get(name).invoke(patch);
+                if (newValue != null) {
+                    setMethod.invoke(current, newValue);
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Копирование свойств через {@link DTOService}.
+     *
+     * @return обновленный объект
+     */
+    @Benchmark
+    public Object precompiled() {
+        DTOService.copyProperties(patch, current);
+        return current;
+    }
+
+    /**
+     * Запускает сравнение.
+     *
+     * @param args аргументы командной строки
+     * @throws RunnerException при ошибке выполнения
+     */
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DTOServiceBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,77 @@
+package ru.job4j.chat.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.repository.CrudRepository;
+import ru.job4j.chat.model.Person;
+import ru.job4j.chat.model.Role;
+import ru.job4j.chat.model.Room;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Тест класс утилитного класса для обновления моделей
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.service.DTOService
+ */
+class DTOServiceTest {
+
+    /**
+     * Выполняется проверка копирования только переданных значений и
+     * сохранения в репозитории обновляемого объекта из репозитория.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void patchModelShouldCopyNonNullValuesAndSaveCurrent()
+            throws InvocationTargetException, IllegalAccessException {
+        CrudRepository<Person, Integer> repository = mock(CrudRepository.class);
+        var current = Person.builder().id(1).username("current").password("secret").build();
+        doReturn(Optional.of(current)).when(repository).findById(1);
+        var patch = Person.builder().id(1).username("patched").build();
+
+        var result = DTOService.patchModel(repository, patch);
+
+        assertThat(result).containsSame(current);
+        assertThat(current.getUsername()).isEqualTo("patched");
+        assertThat(current.getPassword()).isEqualTo("secret");
+        verify(repository).save(current);
+    }
+
+    /**
+     * Выполняется проверка обновления модели со свойством без метода
+     * записи: свойство пропускается, остальные свойства копируются.
+     */
+    @Test
+    public void copyPropertiesShouldSkipPropertiesWithoutSetter() {
+        var current = Person.builder().username("current").build();
+        var patch = Person.builder().password("patched").build();
+        patch.getRoles().add(Role.builder().name("ADMIN").build());
+
+        DTOService.copyProperties(patch, current);
+
+        assertThat(current.getPassword()).isEqualTo("patched");
+        assertThat(current.getUsername()).isEqualTo("current");
+        assertThat(current.getRoles()).isEmpty();
+    }
+
+    /**
+     * Выполняется проверка возврата пустого Optional,
+     * если объекта нет в репозитории.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void patchModelShouldReturnEmptyWhenNotExists()
+            throws InvocationTargetException, IllegalAccessException {
+        CrudRepository<Room, Integer> repository = mock(CrudRepository.class);
+        doReturn(Optional.empty()).when(repository).findById(1);
+
+        assertThat(DTOService.patchModel(repository, Room.builder().id(1).build())).isEmpty();
+    }
+}
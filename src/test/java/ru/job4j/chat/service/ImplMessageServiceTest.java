@@ -1,20 +1,40 @@
 package ru.job4j.chat.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.job4j.chat.event.MessageCreatedEvent;
+import ru.job4j.chat.event.MessageTailEvent;
 import ru.job4j.chat.ChatApplication;
 import ru.job4j.chat.model.Message;
+import ru.job4j.chat.model.Room;
+import ru.job4j.chat.projection.MessageView;
 import ru.job4j.chat.repository.MessageRepository;
 
+import javax.persistence.EntityManager;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 /**
  * Тест класс реализации сервисного слоя
@@ -32,11 +52,43 @@ class ImplMessageServiceTest {
     @MockBean
     private MessageRepository messageRepository;
 
+    /**
+     * Объект заглушка для PatchEngine
+     */
+    @MockBean
+    private PatchEngine patchEngine;
+
+    /**
+     * Объект заглушка для UnreadCounters
+     */
+    @MockBean
+    private UnreadCounters unreadCounters;
+
     /**
      * Объект для доступа к методам MessageService
      */
     private MessageService messageService;
 
+    /**
+     * Объект заглушка для EntityManager
+     */
+    private EntityManager entityManager;
+
+    /**
+     * Объект заглушка для ApplicationEventPublisher
+     */
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Объект заглушка для JdbcTemplate
+     */
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Кэш последних сообщений комнат
+     */
+    private MessageTailCache messageTailCache;
+
     /**
      * Сообщение
      */
@@ -51,7 +103,12 @@ class ImplMessageServiceTest {
         message = Message.builder()
                 .content("text")
                 .build();
-        messageService = new ImplMessageService(messageRepository);
+        entityManager = mock(EntityManager.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        messageTailCache = new MessageTailCache(10, 100, new SimpleMeterRegistry());
+        jdbcTemplate = mock(JdbcTemplate.class);
+        messageService = new ImplMessageService(messageRepository, entityManager,
+                eventPublisher, messageTailCache, patchEngine, unreadCounters, jdbcTemplate);
     }
 
     /**
@@ -82,6 +139,21 @@ class ImplMessageServiceTest {
     }
 
 
+    /**
+     * Выполняется проверка передачи проекций сообщений из потока
+     * messageRepository в обработчик.
+     */
+    @Test
+    public void streamAllViewsShouldPassViewsToConsumer() {
+        var view = new MessageView(1, "text", new Date(), 2, "user", 3, "room", 0);
+        doReturn(Stream.of(view)).when(messageRepository).streamAllViews();
+        List<MessageView> consumed = new ArrayList<>();
+
+        messageService.streamAllViews(consumed::add);
+
+        assertThat(consumed).containsExactly(view);
+    }
+
     /**
      * Выполняется проверка возвращения сообщения при возврате
      * от messageRepository, если сообщение найдено по id.
@@ -108,6 +180,75 @@ class ImplMessageServiceTest {
         assertThat(messageFromDB).isEqualTo(Optional.empty());
     }
 
+    /**
+     * Выполняется проверка возвращения страницы истории комнаты,
+     * если курсор не передан и если курсор передан.
+     */
+    @Test
+    public void findByRoomShouldUseCursorWhenPassed() {
+        Message older = Message.builder().content("older").build();
+        doReturn(List.of(message)).when(messageRepository).findLatestByRoom(eq(1), any());
+        doReturn(List.of(older)).when(messageRepository).findByRoomBefore(eq(1), eq(5), any());
+
+        List<Message> latest = messageService.findByRoom(1, null, 10);
+        List<Message> previous = messageService.findByRoom(1, 5, 10);
+
+        assertThat(latest).containsExactly(message);
+        assertThat(previous).containsExactly(older);
+    }
+
+    /**
+     * Выполняется проверка передачи в репозиторий курсора первой страницы
+     * поиска, если курсор не передан, и переданного курсора.
+     */
+    @Test
+    public void searchShouldPassFirstPageCursorWhenNotPassed() {
+        messageService.search("hello", null, null, null, 10);
+        messageService.search("hello", 2, 0.5F, 7, 10);
+
+        verify(messageRepository).search("hello", 0, Float.MAX_VALUE, Integer.MAX_VALUE, 10);
+        verify(messageRepository).search("hello", 2, 0.5F, 7, 10);
+    }
+
+    /**
+     * Выполняется проверка возвращения последних сообщений комнаты из кэша
+     * без повторного обращения к messageRepository.
+     */
+    @Test
+    public void findByRoomShouldReturnLatestFromCacheWhenRoomIsHot() {
+        message.setId(1);
+        message.setRoom(Room.builder().id(1).build());
+        doReturn(List.of(message)).when(messageRepository).findLatestByRoom(eq(1), any());
+
+        messageService.findByRoom(1, null, 10);
+        List<Message> latest = messageService.findByRoom(1, null, 10);
+
+        assertThat(latest).containsExactly(message);
+        verify(messageRepository, times(1)).findLatestByRoom(eq(1), any());
+    }
+
+    /**
+     * Выполняется проверка, что сообщение, добавленное в кэш после фиксации
+     * во время чтения последних сообщений комнаты из messageRepository,
+     * не теряется при заполнении буфера комнаты.
+     */
+    @Test
+    public void findByRoomShouldKeepMessageCommittedDuringRead() {
+        var room = Room.builder().id(1).build();
+        message.setId(1);
+        message.setRoom(room);
+        var committed = Message.builder().id(2).content("new").room(room).build();
+        doAnswer(invocation -> {
+            messageTailCache.onMessageTail(new MessageTailEvent(List.of(committed)));
+            return List.of(message);
+        }).when(messageRepository).findLatestByRoom(eq(1), any());
+
+        messageService.findByRoom(1, null, 10);
+
+        assertThat(messageService.findByRoom(1, null, 10)).containsExactly(committed, message);
+        verify(messageRepository, times(1)).findLatestByRoom(eq(1), any());
+    }
+
     /**
      * Выполняется проверка возвращения сообщения при возврате
      * от messageRepository, если сообщение сохранено.
@@ -121,18 +262,139 @@ class ImplMessageServiceTest {
         assertThat(messageFromDB).isEqualTo(message);
     }
 
+    /**
+     * Выполняется проверка публикации события создания сообщения,
+     * если сохранено новое сообщение.
+     */
+    @Test
+    public void saveShouldPublishEventWhenMessageCreated() {
+        doReturn(message).when(messageRepository).save(message);
+
+        messageService.save(message);
+
+        ArgumentCaptor<MessageCreatedEvent> argument =
+                ArgumentCaptor.forClass(MessageCreatedEvent.class);
+        verify(eventPublisher).publishEvent(argument.capture());
+        assertThat(argument.getValue().getMessage()).isEqualTo(message);
+    }
+
+    /**
+     * Выполняется проверка, что новое сообщение горячей комнаты добавляется
+     * в кэш только при обработке события после фиксации транзакции.
+     */
+    @Test
+    public void saveShouldAppendToCacheOnlyAfterCommitEvent() {
+        var room = Room.builder().id(1).build();
+        doReturn(List.of()).when(messageRepository).findLatestByRoom(eq(1), any());
+        messageService.findByRoom(1, null, 10);
+        message.setRoom(room);
+        var saved = Message.builder().id(5).content("text").room(room).build();
+        doReturn(saved).when(messageRepository).save(message);
+        doReturn(List.of(saved)).when(messageRepository).findAllById(List.of(5));
+
+        messageService.save(message);
+
+        assertThat(messageTailCache.latest(1, 10)).contains(List.of());
+        ArgumentCaptor<Object> argument = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, times(2)).publishEvent(argument.capture());
+        assertThat(argument.getAllValues().get(0)).isInstanceOf(MessageTailEvent.class);
+        messageTailCache.onMessageTail((MessageTailEvent) argument.getAllValues().get(0));
+        assertThat(messageTailCache.latest(1, 10)).contains(List.of(saved));
+    }
+
+    /**
+     * Выполняется проверка, что после изменения сообщения горячей комнаты
+     * и фиксации транзакции последняя страница комнаты перечитывается из
+     * messageRepository и содержит измененное сообщение.
+     */
+    @Test
+    public void saveShouldReloadLatestPageAfterMessageEdited() {
+        var room = Room.builder().id(1).build();
+        var original = Message.builder().id(5).content("text").room(room).build();
+        var edited = Message.builder().id(5).content("edited").room(room).build();
+        doReturn(List.of(original)).doReturn(List.of(edited))
+                .when(messageRepository).findLatestByRoom(eq(1), any());
+        doReturn(edited).when(messageRepository).save(edited);
+        messageService.findByRoom(1, null, 10);
+
+        messageService.save(edited);
+
+        ArgumentCaptor<MessageTailEvent> argument =
+                ArgumentCaptor.forClass(MessageTailEvent.class);
+        verify(eventPublisher).publishEvent(argument.capture());
+        assertThat(messageService.findByRoom(1, null, 10)).containsExactly(original);
+        messageTailCache.onMessageTail(argument.getValue());
+        assertThat(messageService.findByRoom(1, null, 10)).containsExactly(edited);
+        verify(messageRepository, times(2)).findLatestByRoom(eq(1), any());
+    }
+
+    /**
+     * Выполняется проверка сохранения пакета сообщений и публикации
+     * события создания для каждого сохраненного сообщения.
+     */
+    @Test
+    public void saveAllShouldPublishEventForEachMessage() {
+        Message second = Message.builder().content("second").build();
+        List<Message> messages = List.of(message, second);
+        doReturn(messages).when(messageRepository).saveAll(messages);
+
+        List<Message> saved = messageService.saveAll(messages);
+
+        assertThat(saved).containsExactly(message, second);
+        verify(eventPublisher, times(2)).publishEvent(any(MessageCreatedEvent.class));
+    }
+
+    /**
+     * Выполняется проверка вставки сообщений с выделенными идентификаторами
+     * одним пакетом JDBC и публикации события создания для каждого сообщения.
+     */
+    @Test
+    public void saveAllReservedShouldInsertBatchAndPublishEvents() {
+        var created = new Date();
+        var first = Message.builder().id(51).content("first").created(created)
+                .room(Room.builder().id(1).build()).build();
+        var second = Message.builder().id(52).content("second").created(created).build();
+
+        messageService.saveAllReserved(List.of(first, second));
+
+        ArgumentCaptor<List<Object[]>> argument = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(any(String.class), argument.capture());
+        assertThat(argument.getValue()).containsExactly(
+                new Object[]{51, "first", created, null, 1},
+                new Object[]{52, "second", created, null, null});
+        verify(eventPublisher, times(2)).publishEvent(any(MessageCreatedEvent.class));
+    }
+
     /**
      * Выполняется проверка возвращения пустого Optional при возврате
-     * от messageRepository, если сообщение не существует.
+     * от patchEngine, если сообщение не существует.
      */
     @Test
     public void patchModelShouldReturnOptionalEmptyWhenNotExists()
             throws InvocationTargetException, IllegalAccessException {
-        doReturn(Optional.empty()).when(messageRepository).findById(anyInt());
+        doReturn(Optional.empty()).when(patchEngine).patch(Message.class, message, null);
 
-        Optional<Message> messageFromDB = messageService.patchModel(message);
+        Optional<Message> messageFromDB = messageService.patchModel(message, null);
 
         assertThat(messageFromDB).isEqualTo(Optional.empty());
     }
 
-}
\ No newline at end of file
+    /**
+     * Выполняется проверка удаления сообщений частями размера
+     * {@link Chunks#SIZE} без повторов идентификаторов и подсчета
+     * количества удаленных сообщений.
+     */
+    @Test
+    public void deleteAllShouldDeleteByChunks() {
+        doAnswer(invocation -> ((Collection<?>) invocation.getArgument(0)).size())
+                .when(messageRepository).deleteByIds(any());
+        var ids = new ArrayList<Integer>();
+        IntStream.range(0, Chunks.SIZE * 2 + 1).forEach(ids::add);
+        ids.add(0);
+
+        int deleted = messageService.deleteAll(ids);
+
+        assertThat(deleted).isEqualTo(Chunks.SIZE * 2 + 1);
+        verify(messageRepository, times(3)).deleteByIds(any());
+    }
+}
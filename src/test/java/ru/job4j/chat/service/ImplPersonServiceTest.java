@@ -1,20 +1,27 @@
 package ru.job4j.chat.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import ru.job4j.chat.ChatApplication;
 import ru.job4j.chat.model.Person;
+import ru.job4j.chat.model.Role;
 import ru.job4j.chat.repository.PersonRepository;
+import ru.job4j.chat.repository.RoleRepository;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 /**
  * Тест класс реализации сервисного слоя
@@ -32,11 +39,39 @@ class ImplPersonServiceTest {
     @MockBean
     private PersonRepository personRepository;
 
+    /**
+     * Объект заглушка для RoleRepository
+     */
+    @MockBean
+    private RoleRepository roleRepository;
+
+    /**
+     * Объект заглушка для PatchEngine
+     */
+    @MockBean
+    private PatchEngine patchEngine;
+
+    /**
+     * Объект заглушка для UnreadCounters
+     */
+    @MockBean
+    private UnreadCounters unreadCounters;
+
     /**
      * Объект для доступа к методам PersonService
      */
     private PersonService personService;
 
+    /**
+     * Кэш данных пользователей
+     */
+    private UserDetailsCache userDetailsCache;
+
+    /**
+     * Фильтр Блума имен пользователей
+     */
+    private UsernameBloomFilter usernameBloomFilter;
+
     /**
      * Пользователь
      */
@@ -53,7 +88,11 @@ class ImplPersonServiceTest {
                 .password("password")
                 .build();
 //        person.addRole(Role.builder().name("role").build());
-        personService = new ImplPersonService(personRepository);
+        userDetailsCache = new UserDetailsCache(300, 100, new SimpleMeterRegistry());
+        usernameBloomFilter = new UsernameBloomFilter(personRepository, 100, 0.01);
+        personService = new ImplPersonService(
+                personRepository, roleRepository, userDetailsCache, usernameBloomFilter,
+                patchEngine, unreadCounters);
     }
 
     /**
@@ -123,17 +162,106 @@ class ImplPersonServiceTest {
         assertThat(personFromDB).isEqualTo(person);
     }
 
+    /**
+     * Выполняется проверка сохранения ролей существующего пользователя из
+     * personRepository вместо ролей, переданных в объекте пользователя.
+     */
+    @Test
+    public void saveShouldKeepStoredRoles() {
+        var stored = Person.builder().id(1).username("person").build();
+        stored.getRoles().add(Role.builder().id(1).name("USER").build());
+        person.setId(1);
+        person.getRoles().add(Role.builder().id(2).name("ADMIN").build());
+        doReturn(Optional.of(stored)).when(personRepository).findById(1);
+        doReturn(person).when(personRepository).save(person);
+
+        personService.save(person);
+
+        assertThat(person.getRoles()).extracting(Role::getName).containsExactly("USER");
+    }
+
+    /**
+     * Выполняется проверка замены ролей пользователя и исключения
+     * IllegalArgumentException, если роль не найдена в roleRepository.
+     */
+    @Test
+    public void updateRolesShouldReplaceRolesWhenAllFound() {
+        var admin = Role.builder().id(2).name("ADMIN").build();
+        person.setId(1);
+        person.getRoles().add(Role.builder().id(1).name("USER").build());
+        doReturn(Optional.of(person)).when(personRepository).findById(1);
+        doReturn(List.of(admin)).when(roleRepository).findAllById(List.of(2));
+        doReturn(List.of(admin)).when(roleRepository).findAllById(List.of(2, 3));
+
+        assertThat(personService.updateRoles(1, List.of(2)).orElseThrow().getRoles())
+                .containsExactly(admin);
+        assertThatThrownBy(() -> personService.updateRoles(1, List.of(2, 3)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Выполняется проверка удаления записи пользователя из кэша данных
+     * пользователей при сохранении пользователя.
+     */
+    @Test
+    public void saveShouldInvalidateCachedUserDetails() {
+        person.setId(1);
+        userDetailsCache.put(userDetailsCache.version(), person);
+        doReturn(person).when(personRepository).save(person);
+
+        personService.save(person);
+
+        assertThat(userDetailsCache.get(person.getUsername())).isEmpty();
+    }
+
     /**
      * Выполняется проверка возвращения пустого Optional при возврате
-     * от personRepository, если персоны не существует.
+     * от patchEngine, если персоны не существует.
      */
     @Test
     public void patchModelShouldReturnOptionalEmptyWhenNotExists()
             throws InvocationTargetException, IllegalAccessException {
-        doReturn(Optional.empty()).when(personRepository).findById(anyInt());
+        doReturn(Optional.empty()).when(patchEngine).patch(Person.class, person, null);
 
-        Optional<Person> personFromDB = personService.patchModel(person);
+        Optional<Person> personFromDB = personService.patchModel(person, null);
 
         assertThat(personFromDB).isEqualTo(Optional.empty());
     }
+
+    /**
+     * Выполняется проверка ответа о доступности имени без обращения к
+     * personRepository, если фильтр Блума исключает, что имя занято, и
+     * точной проверки в personRepository для имени из фильтра.
+     */
+    @Test
+    public void isAvailableShouldSkipRepositoryWhenFilterExcludesName() {
+        doReturn(1L).when(personRepository).count();
+        doReturn(Stream.of("person")).when(personRepository).streamUsernames();
+        doReturn(true).when(personRepository).existsByUsername("person");
+        usernameBloomFilter.rebuild();
+
+        assertThat(personService.isAvailable("free-name")).isTrue();
+        assertThat(personService.isAvailable("person")).isFalse();
+        verify(personRepository, never()).existsByUsername("free-name");
+        verify(personRepository).existsByUsername("person");
+    }
+
+    /**
+     * Выполняется проверка добавления имени сохраненного пользователя
+     * в фильтр Блума и точной проверки до построения фильтра.
+     */
+    @Test
+    public void isAvailableShouldCheckRepositoryForSavedNameAndBeforeRebuild() {
+        assertThat(personService.isAvailable("person")).isTrue();
+        verify(personRepository).existsByUsername("person");
+
+        doReturn(0L).when(personRepository).count();
+        doReturn(Stream.empty()).when(personRepository).streamUsernames();
+        usernameBloomFilter.rebuild();
+        doReturn(person).when(personRepository).save(person);
+        doReturn(true).when(personRepository).existsByUsername("person");
+        personService.save(person);
+
+        assertThat(personService.isAvailable("person")).isFalse();
+    }
 }
\ No newline at end of file
@@ -32,6 +32,12 @@ class ImplRoleServiceTest {
     @MockBean
     private RoleRepository roleRepository;
 
+    /**
+     * Объект заглушка для PatchEngine
+     */
+    @MockBean
+    private PatchEngine patchEngine;
+
     /**
      * Объект для доступа к методам RoleService
      */
@@ -51,7 +57,7 @@ class ImplRoleServiceTest {
         role = Role.builder()
                 .name("role")
                 .build();
-        roleService = new ImplRoleService(roleRepository);
+        roleService = new ImplRoleService(roleRepository, patchEngine);
     }
 
     /**
@@ -123,28 +129,28 @@ class ImplRoleServiceTest {
 
     /**
      * Выполняется проверка возвращения роли при возврате
-     * от roleRepository, если роль обновлена.
+     * от patchEngine, если роль обновлена.
      */
     @Test
     public void patchModelShouldReturnOptionalRoleWhenSuccess()
             throws InvocationTargetException, IllegalAccessException {
-        doReturn(Optional.of(role)).when(roleRepository).findById(anyInt());
+        doReturn(Optional.of(role)).when(patchEngine).patch(Role.class, role, null);
 
-        Optional<Role> roleFromDB = roleService.patchModel(role);
+        Optional<Role> roleFromDB = roleService.patchModel(role, null);
 
         assertThat(roleFromDB.get()).isEqualTo(role);
     }
 
     /**
      * Выполняется проверка возвращения пустого Optional при возврате
-     * от roleRepository, если роль не существует.
+     * от patchEngine, если роль не существует.
      */
     @Test
     public void patchModelShouldReturnOptionalEmptyWhenNotExists()
             throws InvocationTargetException, IllegalAccessException {
-        doReturn(Optional.empty()).when(roleRepository).findById(anyInt());
+        doReturn(Optional.empty()).when(patchEngine).patch(Role.class, role, null);
 
-        Optional<Role> roleFromDB = roleService.patchModel(role);
+        Optional<Role> roleFromDB = roleService.patchModel(role, null);
 
         assertThat(roleFromDB).isEqualTo(Optional.empty());
     }
@@ -14,6 +14,7 @@ import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
 
 /**
@@ -32,6 +33,18 @@ class ImplRoomServiceTest {
     @MockBean
     private RoomRepository roomRepository;
 
+    /**
+     * Объект заглушка для PatchEngine
+     */
+    @MockBean
+    private PatchEngine patchEngine;
+
+    /**
+     * Объект заглушка для UnreadCounters
+     */
+    @MockBean
+    private UnreadCounters unreadCounters;
+
     /**
      * Объект для доступа к методам RoomService
      */
@@ -51,7 +64,7 @@ class ImplRoomServiceTest {
         room = Room.builder()
                 .name("room")
                 .build();
-        roomService = new ImplRoomService(roomRepository);
+        roomService = new ImplRoomService(roomRepository, patchEngine, unreadCounters);
     }
 
     /**
@@ -123,29 +136,44 @@ class ImplRoomServiceTest {
 
     /**
      * Выполняется проверка возвращения комнаты при возврате
-     * от roomRepository, если комната обновлена.
+     * от patchEngine, если комната обновлена.
      */
     @Test
     public void patchModelShouldReturnOptionalRoomWhenSuccess()
             throws InvocationTargetException, IllegalAccessException {
-        doReturn(Optional.of(room)).when(roomRepository).findById(anyInt());
+        doReturn(Optional.of(room)).when(patchEngine).patch(Room.class, room, null);
 
-        Optional<Room> roomFromDB = roomService.patchModel(room);
+        Optional<Room> roomFromDB = roomService.patchModel(room, null);
 
         assertThat(roomFromDB.get()).isEqualTo(room);
     }
 
     /**
      * Выполняется проверка возвращения пустого Optional при возврате
-     * от roomRepository, если комната не существует.
+     * от patchEngine, если комната не существует.
      */
     @Test
     public void patchModelShouldReturnOptionalEmptyWhenNotExists()
             throws InvocationTargetException, IllegalAccessException {
-        doReturn(Optional.empty()).when(roomRepository).findById(anyInt());
+        doReturn(Optional.empty()).when(patchEngine).patch(Room.class, room, null);
 
-        Optional<Room> roomFromDB = roomService.patchModel(room);
+        Optional<Room> roomFromDB = roomService.patchModel(room, null);
 
         assertThat(roomFromDB).isEqualTo(Optional.empty());
     }
-}
\ No newline at end of file
+
+    /**
+     * Выполняется проверка возвращения комнат в порядке переданных
+     * идентификаторов без повторов и без отсутствующих комнат.
+     */
+    @Test
+    public void findAllByIdShouldKeepRequestedOrder() {
+        var first = Room.builder().id(1).name("first").build();
+        var third = Room.builder().id(3).name("third").build();
+        doReturn(List.of(first, third)).when(roomRepository).findAllById(eq(List.of(3, 2, 1)));
+
+        List<Room> rooms = roomService.findAllById(List.of(3, 2, 1, 3));
+
+        assertThat(rooms).containsExactly(third, first);
+    }
+}
@@ -0,0 +1,170 @@
+package ru.job4j.chat.service;
+
+import com.auth0.jwt.JWT;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import ru.job4j.chat.model.Person;
+import ru.job4j.chat.model.RefreshToken;
+import ru.job4j.chat.model.Role;
+import ru.job4j.chat.repository.PersonRepository;
+import ru.job4j.chat.repository.RefreshTokenRepository;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static ru.job4j.chat.filter.JWTAuthenticationFilter.EXPIRATION_TIME;
+import static ru.job4j.chat.filter.JWTAuthenticationFilter.ROLES_CLAIM;
+
+/**
+ * Тест класс реализации сервиса токенов
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.service.ImplTokenService
+ */
+class ImplTokenServiceTest {
+
+    /**
+     * Объект заглушка для RefreshTokenRepository
+     */
+    private RefreshTokenRepository refreshTokenRepository;
+
+    /**
+     * Объект заглушка для RevokedTokenRegistry
+     */
+    private RevokedTokenRegistry revokedTokenRegistry;
+
+    /**
+     * Объект для доступа к методам TokenService
+     */
+    private TokenService tokenService;
+
+    /**
+     * Пользователь
+     */
+    private Person person;
+
+    /**
+     * Создает необходимые для выполнения тестов общие объекты.
+     * Создание выполняется перед каждым тестом.
+     */
+    @BeforeEach
+    void setUp() {
+        person = Person.builder().id(1).username("user").build();
+        refreshTokenRepository = mock(RefreshTokenRepository.class);
+        revokedTokenRegistry = mock(RevokedTokenRegistry.class);
+        PersonRepository personRepository = mock(PersonRepository.class);
+        doReturn(person).when(personRepository).findByUsername("user");
+        tokenService = new ImplTokenService(
+                refreshTokenRepository, personRepository, revokedTokenRegistry);
+    }
+
+    /**
+     * Выполняется проверка выдачи короткоживущего токена доступа с
+     * идентификатором и сохранения только хэша токена обновления.
+     */
+    @Test
+    public void issueShouldCreateShortLivedAccessTokenAndStoreRefreshTokenHash() {
+        var tokens = tokenService.issue("user", List.of("USER", "ADMIN"));
+
+        var decoded = JWT.decode(tokens.getAccessToken());
+        assertThat(decoded.getSubject()).isEqualTo("user");
+        assertThat(decoded.getClaim(ROLES_CLAIM).asList(String.class))
+                .containsExactly("USER", "ADMIN");
+        assertThat(decoded.getId()).isNotBlank();
+        assertThat(decoded.getExpiresAt())
+                .isBeforeOrEqualTo(new Date(System.currentTimeMillis() + EXPIRATION_TIME));
+        ArgumentCaptor<RefreshToken> argument = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(argument.capture());
+        assertThat(argument.getValue().getTokenHash())
+                .isEqualTo(ImplTokenService.hash(tokens.getRefreshToken()))
+                .isNotEqualTo(tokens.getRefreshToken());
+        assertThat(argument.getValue().getPerson()).isEqualTo(person);
+    }
+
+    /**
+     * Выполняется проверка обмена токена обновления на новую пару токенов
+     * с ролями пользователя и отзывом переданного токена обновления.
+     */
+    @Test
+    public void refreshShouldRotateRefreshToken() {
+        person.getRoles().add(Role.builder().name("USER").build());
+        var stored = RefreshToken.builder()
+                .person(person)
+                .expires(new Date(System.currentTimeMillis() + 60_000))
+                .build();
+        doReturn(Optional.of(stored)).when(refreshTokenRepository)
+                .findByTokenHash(ImplTokenService.hash("refresh"));
+        doReturn(1).when(refreshTokenRepository)
+                .revokeByTokenHash(ImplTokenService.hash("refresh"));
+
+        var tokens = tokenService.refresh("refresh");
+
+        assertThat(tokens).isPresent();
+        assertThat(tokens.get().getRefreshToken()).isNotEqualTo("refresh");
+        assertThat(JWT.decode(tokens.get().getAccessToken())
+                .getClaim(ROLES_CLAIM).asList(String.class)).containsExactly("USER");
+        verify(refreshTokenRepository, never()).revokeAllByPerson(1);
+    }
+
+    /**
+     * Выполняется проверка отзыва всех токенов обновления пользователя,
+     * если повторно передан уже отозванный токен обновления, в том числе
+     * отозванный одновременным обменом: условный отзыв не изменяет строк.
+     */
+    @Test
+    public void refreshShouldRevokeAllTokensWhenRevokedTokenReused() {
+        var stored = RefreshToken.builder()
+                .person(person)
+                .expires(new Date(System.currentTimeMillis() + 60_000))
+                .revoked(true)
+                .build();
+        doReturn(Optional.of(stored)).when(refreshTokenRepository).findByTokenHash(anyString());
+
+        doReturn(0).when(refreshTokenRepository).revokeByTokenHash(anyString());
+
+        var tokens = tokenService.refresh("refresh");
+
+        assertThat(tokens).isEmpty();
+        verify(refreshTokenRepository).revokeAllByPerson(1);
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    /**
+     * Выполняется проверка отказа в обмене токена обновления,
+     * срок действия которого истек.
+     */
+    @Test
+    public void refreshShouldReturnEmptyWhenTokenExpired() {
+        var stored = RefreshToken.builder()
+                .person(person)
+                .expires(new Date(System.currentTimeMillis() - 1))
+                .build();
+        doReturn(Optional.of(stored)).when(refreshTokenRepository).findByTokenHash(anyString());
+
+        assertThat(tokenService.refresh("refresh")).isEmpty();
+    }
+
+    /**
+     * Выполняется проверка отзыва токена доступа через реестр
+     * отозванных токенов и отзыва токена обновления.
+     */
+    @Test
+    public void revokeShouldRevokeAccessAndRefreshTokens() {
+        var expiresAt = new Date();
+
+        tokenService.revoke("jti", expiresAt, "refresh");
+
+        verify(revokedTokenRegistry).revoke("jti", expiresAt);
+        verify(refreshTokenRepository).revokeByTokenHash(ImplTokenService.hash("refresh"));
+    }
+}
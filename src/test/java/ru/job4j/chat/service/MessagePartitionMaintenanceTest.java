@@ -0,0 +1,107 @@
+package ru.job4j.chat.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Тест класс обслуживания секций таблицы сообщений
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.service.MessagePartitionMaintenance
+ */
+class MessagePartitionMaintenanceTest {
+
+    /**
+     * Команда отсоединения секции
+     */
+    private static final String DETACH = "ALTER TABLE message DETACH PARTITION ";
+
+    /**
+     * Команда создания секции
+     */
+    private static final String CREATE = "CREATE TABLE IF NOT EXISTS ";
+
+    /**
+     * Часы, установленные на 15 октября 2026 года
+     */
+    private final Clock clock = Clock.fixed(Instant.parse("2026-10-15T00:00:00Z"), ZoneOffset.UTC);
+
+    /**
+     * Выполняется проверка создания секций текущего и следующих месяцев
+     * и отсоединения секций старше срока хранения после вычитания их
+     * сообщений из счетчиков непрочитанных сообщений.
+     */
+    @Test
+    public void maintainShouldCreateFuturePartitionsAndDetachExpired() {
+        var jdbcTemplate = mock(JdbcTemplate.class);
+        doReturn(List.of("message_y2025m09", "message_y2025m10", "message_legacy"))
+                .when(jdbcTemplate).queryForList(anyString(), eq(String.class));
+
+        var unreadCounters = mock(UnreadCounters.class);
+        new MessagePartitionMaintenance(jdbcTemplate, unreadCounters,
+                TransactionOperations.withoutTransaction(), 1, 12, false, clock).maintain();
+
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS message_y2026m10"
+                + " PARTITION OF message FOR VALUES FROM ('2026-10-01') TO ('2026-11-01')");
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS message_y2026m11"
+                + " PARTITION OF message FOR VALUES FROM ('2026-11-01') TO ('2026-12-01')");
+        verify(unreadCounters).subtractPartition("message_y2025m09");
+        verify(jdbcTemplate).execute(DETACH + "message_y2025m09");
+        verify(unreadCounters, never()).subtractPartition("message_y2025m10");
+        verify(jdbcTemplate, never()).execute(DETACH + "message_y2025m10");
+        verify(jdbcTemplate, never()).execute(DETACH + "message_legacy");
+    }
+
+    /**
+     * Выполняется проверка удаления секций старше срока хранения,
+     * если включено удаление секций.
+     */
+    @Test
+    public void maintainShouldDropExpiredPartitionsWhenDropEnabled() {
+        var jdbcTemplate = mock(JdbcTemplate.class);
+        doReturn(List.of("message_y2026m01"))
+                .when(jdbcTemplate).queryForList(anyString(), eq(String.class));
+
+        new MessagePartitionMaintenance(jdbcTemplate, mock(UnreadCounters.class),
+                TransactionOperations.withoutTransaction(), 0, 6, true, clock).maintain();
+
+        verify(jdbcTemplate).execute("DROP TABLE message_y2026m01");
+    }
+
+    /**
+     * Выполняется проверка, что ошибка создания секции месяца не прерывает
+     * создание следующих секций и применение срока хранения.
+     */
+    @Test
+    public void maintainShouldContinueWhenPartitionIsNotCreated() {
+        var jdbcTemplate = mock(JdbcTemplate.class);
+        doThrow(new DataIntegrityViolationException("default partition has rows"))
+                .when(jdbcTemplate).execute(startsWith(CREATE + "message_y2026m10"));
+        doReturn(List.of("message_y2025m09", "message_default"))
+                .when(jdbcTemplate).queryForList(anyString(), eq(String.class));
+
+        new MessagePartitionMaintenance(jdbcTemplate, mock(UnreadCounters.class),
+                TransactionOperations.withoutTransaction(), 1, 12, false, clock).maintain();
+
+        verify(jdbcTemplate).execute(startsWith(CREATE + "message_y2026m11"));
+        verify(jdbcTemplate).execute(DETACH + "message_y2025m09");
+        verify(jdbcTemplate, never()).execute(DETACH + "message_default");
+    }
+}
@@ -0,0 +1,222 @@
+package ru.job4j.chat.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.job4j.chat.event.MessageTailEvent;
+import ru.job4j.chat.model.Message;
+import ru.job4j.chat.model.Room;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Тест класс кэша последних сообщений комнат
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.service.MessageTailCache
+ */
+class MessageTailCacheTest {
+
+    /**
+     * Реестр метрик
+     */
+    private SimpleMeterRegistry registry;
+
+    /**
+     * Кэш последних сообщений комнат
+     */
+    private MessageTailCache cache;
+
+    /**
+     * Создает необходимые для выполнения тестов общие объекты.
+     * Создание выполняется перед каждым тестом.
+     */
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        cache = new MessageTailCache(3, 5, registry);
+    }
+
+    /**
+     * Выполняется проверка вытеснения самых старых сообщений комнаты
+     * при добавлении новых сообщений в заполненный буфер.
+     */
+    @Test
+    public void appendShouldEvictOldestMessageWhenRoomIsFull() {
+        fill(1, List.of(message(2, 1), message(1, 1)), true);
+        cache.append(message(3, 1));
+        cache.append(message(4, 1));
+
+        assertThat(ids(cache.latest(1, 3))).containsExactly(4, 3, 2);
+        assertThat(cache.latest(1, 4)).isEmpty();
+        assertThat(cache.get(1)).isEmpty();
+    }
+
+    /**
+     * Выполняется проверка возврата всех сообщений комнаты, если в комнате
+     * нет сообщений старше сообщений буфера.
+     */
+    @Test
+    public void latestShouldReturnAllMessagesWhenRoomIsComplete() {
+        fill(1, List.of(message(1, 1)), true);
+
+        assertThat(ids(cache.latest(1, 10))).containsExactly(1);
+    }
+
+    /**
+     * Выполняется проверка удаления сообщения из буфера комнаты.
+     */
+    @Test
+    public void removeShouldDeleteMessageFromRoom() {
+        fill(1, List.of(message(3, 1), message(2, 1), message(1, 1)), true);
+
+        cache.remove(2);
+
+        assertThat(ids(cache.latest(1, 3))).containsExactly(3, 1);
+        assertThat(cache.get(2)).isEmpty();
+    }
+
+    /**
+     * Выполняется проверка удаления буфера комнаты из кэша по событию
+     * изменения сообщения.
+     */
+    @Test
+    public void onMessageTailShouldInvalidateStaleRooms() {
+        fill(1, List.of(message(2, 1), message(1, 1)), true);
+
+        cache.onMessageTail(new MessageTailEvent(List.of(), Set.of(1)));
+
+        assertThat(cache.contains(1)).isFalse();
+        assertThat(cache.get(2)).isEmpty();
+        assertThat(cache.latest(1, 1)).isEmpty();
+    }
+
+    /**
+     * Выполняется проверка удаления из кэша комнаты, к которой дольше всего
+     * не было обращений, при превышении общего ограничения кэша.
+     */
+    @Test
+    public void fillShouldEvictColdRoomWhenCacheIsFull() {
+        fill(1, List.of(message(2, 1), message(1, 1)), true);
+        fill(2, List.of(message(4, 2), message(3, 2)), true);
+        cache.latest(1, 1);
+
+        fill(3, List.of(message(6, 3), message(5, 3)), true);
+
+        assertThat(cache.contains(1)).isTrue();
+        assertThat(cache.contains(2)).isFalse();
+        assertThat(cache.contains(3)).isTrue();
+        assertThat(cache.get(3)).isEmpty();
+    }
+
+    /**
+     * Выполняется проверка учета попаданий и промахов кэша в метриках.
+     */
+    @Test
+    public void latestShouldCountHitsAndMisses() {
+        fill(1, List.of(message(1, 1)), false);
+
+        cache.latest(1, 1);
+        cache.latest(1, 2);
+        cache.latest(2, 1);
+
+        assertThat(registry.counter("chat.message.tail.cache.hits").count()).isEqualTo(1);
+        assertThat(registry.counter("chat.message.tail.cache.misses").count()).isEqualTo(2);
+    }
+
+    /**
+     * Выполняется проверка, что сообщение, добавленное в буфер во время
+     * чтения истории комнаты, сохраняется при заполнении буфера.
+     */
+    @Test
+    public void fillShouldKeepMessageAppendedDuringLoad() {
+        long generation = cache.load(1);
+        cache.append(message(3, 1));
+        assertThat(cache.latest(1, 1)).isEmpty();
+
+        cache.fill(1, generation, List.of(message(2, 1), message(1, 1)), true);
+
+        assertThat(ids(cache.latest(1, 10))).containsExactly(3, 2, 1);
+    }
+
+    /**
+     * Выполняется проверка, что результат чтения истории не сохраняется,
+     * если буфер комнаты был удален во время чтения.
+     */
+    @Test
+    public void fillShouldBeDroppedWhenRoomInvalidatedDuringLoad() {
+        long stale = cache.load(1);
+        cache.invalidate(1);
+        long generation = cache.load(1);
+
+        cache.fill(1, stale, List.of(message(1, 1)), true);
+        assertThat(cache.latest(1, 1)).isEmpty();
+        cache.fill(1, generation, List.of(message(2, 1)), true);
+
+        assertThat(ids(cache.latest(1, 10))).containsExactly(2);
+    }
+
+    /**
+     * Выполняется проверка вставки сообщения с более ранним временем
+     * создания на его место в порядке истории комнаты.
+     */
+    @Test
+    public void appendShouldOrderMessagesByCreatedAndId() {
+        var second = message(2, 1);
+        second.setCreated(new Date(2000));
+        var first = message(1, 1);
+        first.setCreated(new Date(1000));
+        fill(1, List.of(second, first), true);
+        var past = message(3, 1);
+        past.setCreated(new Date(500));
+
+        cache.append(past);
+        cache.append(past);
+
+        assertThat(ids(cache.latest(1, 10))).containsExactly(2, 1, 3);
+    }
+
+    /**
+     * Регистрирует и заполняет буфер комнаты.
+     *
+     * @param roomId   идентификатор комнаты
+     * @param latest   последние сообщения комнаты от новых к старым
+     * @param complete true, если в комнате нет сообщений старше переданных
+     */
+    private void fill(int roomId, List<Message> latest, boolean complete) {
+        cache.fill(roomId, cache.load(roomId), latest, complete);
+    }
+
+    /**
+     * Создает сообщение комнаты.
+     *
+     * @param id     идентификатор сообщения
+     * @param roomId идентификатор комнаты
+     * @return сообщение
+     */
+    private static Message message(int id, int roomId) {
+        return Message.builder()
+                .id(id)
+                .content("message" + id)
+                .room(Room.builder().id(roomId).build())
+                .build();
+    }
+
+    /**
+     * Возвращает идентификаторы сообщений.
+     *
+     * @param messages Optional от списка сообщений
+     * @return идентификаторы сообщений
+     */
+    private static List<Integer> ids(Optional<List<Message>> messages) {
+        assertThat(messages).isPresent();
+        return messages.get().stream().map(Message::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,173 @@
+package ru.job4j.chat.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.job4j.chat.model.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Тест класс отложенной записи сообщений
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.service.MessageWriteBehind
+ */
+@ExtendWith(MockitoExtension.class)
+class MessageWriteBehindTest {
+
+    /**
+     * Перехватчик пакетов сообщений, переданных на запись
+     */
+    @Captor
+    private ArgumentCaptor<List<Message>> batches;
+
+    /**
+     * Выполняется проверка записи всех принятых сообщений пакетами
+     * не больше заданного размера при остановке записи.
+     */
+    @Test
+    public void stopShouldWriteAllAcceptedMessagesInBatches() throws Exception {
+        var messageService = mock(MessageService.class);
+        when(messageService.reserveIds()).thenReturn(1, 51);
+        var writeBehind = new MessageWriteBehind(messageService, true, 100, 3, 1000);
+        writeBehind.start();
+        for (int i = 0; i < 7; i++) {
+            assertThat(writeBehind.offer(message(i))).isPresent();
+        }
+        writeBehind.stop();
+
+        verify(messageService, atLeastOnce()).saveAllReserved(batches.capture());
+        assertThat(batches.getAllValues()).allMatch(batch -> batch.size() <= 3);
+        assertThat(batches.getAllValues().stream().mapToInt(List::size).sum()).isEqualTo(7);
+        assertThat(writeBehind.getQueueSize()).isZero();
+    }
+
+    /**
+     * Выполняется проверка назначения принятым сообщениям идентификаторов
+     * из выделенных блоков и выделения нового блока после исчерпания
+     * предыдущего.
+     */
+    @Test
+    public void offerShouldAssignIdsFromReservedBlocks() throws Exception {
+        var messageService = mock(MessageService.class);
+        when(messageService.reserveIds()).thenReturn(1, 101);
+        var writeBehind = new MessageWriteBehind(messageService, true, 100, 100, 1000);
+        writeBehind.start();
+        var ids = new ArrayList<Integer>();
+        for (int i = 0; i <= Message.ID_ALLOCATION_SIZE; i++) {
+            ids.add(writeBehind.offer(message(i)).getAsInt());
+        }
+        writeBehind.stop();
+
+        assertThat(ids.subList(0, Message.ID_ALLOCATION_SIZE))
+                .isEqualTo(IntStream.rangeClosed(1, Message.ID_ALLOCATION_SIZE)
+                        .boxed().collect(Collectors.toList()));
+        assertThat(ids.get(Message.ID_ALLOCATION_SIZE)).isEqualTo(101);
+        verify(messageService, times(2)).reserveIds();
+        verify(messageService, atLeastOnce()).saveAllReserved(batches.capture());
+        assertThat(batches.getAllValues().stream().flatMap(List::stream).map(Message::getId))
+                .containsExactlyElementsOf(ids);
+    }
+
+    /**
+     * Выполняется проверка записи всех сообщений, принятых одновременно
+     * с остановкой записи, и отказа в приеме после остановки.
+     */
+    @Test
+    public void stopShouldWriteEveryMessageAcceptedConcurrently() throws Exception {
+        var messageService = mock(MessageService.class);
+        var writeBehind = new MessageWriteBehind(messageService, true, 100_000, 50, 1);
+        writeBehind.start();
+        var accepted = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            pool.execute(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    if (writeBehind.offer(message(i)).isPresent()) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            });
+        }
+        writeBehind.stop();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(writeBehind.offer(message(0))).isEmpty();
+        assertThat(writeBehind.getQueueSize()).isZero();
+        if (accepted.get() > 0) {
+            verify(messageService, atLeastOnce()).saveAllReserved(batches.capture());
+        }
+        assertThat(batches.getAllValues().stream().mapToInt(List::size).sum())
+                .isEqualTo(accepted.get());
+    }
+
+    /**
+     * Выполняется проверка отказа в приеме сообщения, если очередь заполнена.
+     */
+    @Test
+    public void offerShouldRejectMessageWhenQueueIsFull() throws Exception {
+        var messageService = mock(MessageService.class);
+        var writeBehind = new MessageWriteBehind(messageService, true, 1, 1, 1000);
+        writeBehind.start();
+        var release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(messageService).saveAllReserved(any());
+        assertThat(writeBehind.offer(message(1))).isPresent();
+        while (writeBehind.getQueueSize() > 0) {
+            Thread.onSpinWait();
+        }
+        assertThat(writeBehind.offer(message(2))).isPresent();
+        assertThat(writeBehind.offer(message(3))).isEmpty();
+        release.countDown();
+        writeBehind.stop();
+    }
+
+    /**
+     * Выполняется проверка отказа в приеме сообщения, если отложенная
+     * запись отключена.
+     */
+    @Test
+    public void offerShouldRejectMessageWhenDisabled() {
+        var writeBehind = new MessageWriteBehind(mock(MessageService.class), false, 10, 1, 10);
+        writeBehind.start();
+
+        assertThat(writeBehind.isEnabled()).isFalse();
+        assertThat(writeBehind.offer(message(1))).isEmpty();
+    }
+
+    /**
+     * Создает сообщение с переданным содержимым.
+     *
+     * @param content номер сообщения
+     * @return сообщение
+     */
+    private Message message(int content) {
+        var message = new Message();
+        message.setContent("message " + content);
+        return message;
+    }
+}
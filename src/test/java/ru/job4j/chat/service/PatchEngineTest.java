@@ -0,0 +1,220 @@
+package ru.job4j.chat.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import ru.job4j.chat.model.Message;
+import ru.job4j.chat.model.Person;
+import ru.job4j.chat.model.Room;
+import ru.job4j.chat.repository.MessageRepository;
+import ru.job4j.chat.repository.PersonRepository;
+import ru.job4j.chat.repository.RoomRepository;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Тест класс частичного обновления моделей
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.service.PatchEngine
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class PatchEngineTest {
+
+    /**
+     * Объект для работы с контекстом постоянства
+     */
+    @Autowired
+    private EntityManager entityManager;
+
+    /**
+     * Источник соединений с базой данных
+     */
+    @Autowired
+    private DataSource dataSource;
+
+    /**
+     * Объект для доступа к методам PersonRepository
+     */
+    @Autowired
+    private PersonRepository personRepository;
+
+    /**
+     * Объект для доступа к методам RoomRepository
+     */
+    @Autowired
+    private RoomRepository roomRepository;
+
+    /**
+     * Объект для доступа к методам MessageRepository
+     */
+    @Autowired
+    private MessageRepository messageRepository;
+
+    /**
+     * Объект для частичного обновления моделей
+     */
+    private PatchEngine patchEngine;
+
+    /**
+     * Создает необходимые для выполнения тестов общие объекты.
+     * Создание выполняется перед каждым тестом.
+     *
+     * @throws SQLException при ошибке получения сведений о базе данных
+     */
+    @BeforeEach
+    void setUp() throws SQLException {
+        patchEngine = new PatchEngine(entityManager, dataSource);
+    }
+
+    /**
+     * Выполняется проверка обновления только переданных столбцов,
+     * остальные столбцы пользователя сохраняют прежние значения.
+     */
+    @Test
+    public void patchShouldUpdateOnlyNonNullColumns() {
+        int id = personRepository.save(Person.builder()
+                .username("person")
+                .password("password")
+                .build()).getId();
+        entityManager.flush();
+        entityManager.clear();
+
+        var result = patchEngine.patch(Person.class, Person.builder()
+                .id(id)
+                .username("renamed")
+                .build(), null);
+
+        assertThat(result).isPresent();
+        assertThat(result.get().getUsername()).isEqualTo("renamed");
+        assertThat(result.get().getPassword()).isEqualTo("password");
+    }
+
+    /**
+     * Выполняется проверка записи идентификатора связанной модели для
+     * связи многие к одному без изменения остальных столбцов сообщения.
+     */
+    @Test
+    public void patchShouldUpdateAssociationColumn() {
+        var person = personRepository.save(Person.builder()
+                .username("person")
+                .password("password")
+                .build());
+        var first = roomRepository.save(Room.builder().name("first").build());
+        var second = roomRepository.save(Room.builder().name("second").build());
+        int id = messageRepository.save(Message.builder()
+                .content("text")
+                .person(person)
+                .room(first)
+                .build()).getId();
+        entityManager.flush();
+        entityManager.clear();
+
+        var result = patchEngine.patch(Message.class, Message.builder()
+                .id(id)
+                .room(Room.builder().id(second.getId()).build())
+                .build(), null);
+
+        assertThat(result).isPresent();
+        assertThat(result.get().getRoom().getId()).isEqualTo(second.getId());
+        assertThat(result.get().getPerson().getId()).isEqualTo(person.getId());
+        assertThat(result.get().getContent()).isEqualTo("text");
+    }
+
+    /**
+     * Выполняется проверка, что необновляемый столбец даты создания
+     * сообщения не изменяется частичным обновлением.
+     */
+    @Test
+    public void patchShouldSkipNonUpdatableColumn() {
+        var person = personRepository.save(Person.builder()
+                .username("person")
+                .password("password")
+                .build());
+        var room = roomRepository.save(Room.builder().name("room").build());
+        var created = new Date(System.currentTimeMillis() - 60_000);
+        int id = messageRepository.save(Message.builder()
+                .content("text")
+                .created(created)
+                .person(person)
+                .room(room)
+                .build()).getId();
+        entityManager.flush();
+        entityManager.clear();
+
+        var result = patchEngine.patch(Message.class, Message.builder()
+                .id(id)
+                .content("edited")
+                .created(new Date())
+                .build(), null);
+
+        assertThat(result).isPresent();
+        assertThat(result.get().getContent()).isEqualTo("edited");
+        assertThat(result.get().getCreated().getTime()).isEqualTo(created.getTime());
+    }
+
+    /**
+     * Выполняется проверка возвращения пустого Optional, если модели
+     * с таким идентификатором нет.
+     */
+    @Test
+    public void patchShouldReturnEmptyWhenNotExists() {
+        var result = patchEngine.patch(Room.class, Room.builder()
+                .id(Integer.MAX_VALUE)
+                .name("room")
+                .build(), null);
+
+        assertThat(result).isEmpty();
+    }
+
+    /**
+     * Выполняется проверка увеличения версии комнаты при обновлении
+     * с совпадающей ожидаемой версией.
+     */
+    @Test
+    public void patchShouldIncrementVersionWhenVersionMatches() {
+        int id = roomRepository.save(Room.builder().name("room").build()).getId();
+        entityManager.flush();
+        entityManager.clear();
+
+        var result = patchEngine.patch(Room.class, Room.builder()
+                .id(id)
+                .name("renamed")
+                .build(), 0);
+
+        assertThat(result).isPresent();
+        assertThat(result.get().getName()).isEqualTo("renamed");
+        assertThat(result.get().getVersion()).isEqualTo(1);
+    }
+
+    /**
+     * Выполняется проверка выброса исключения OptimisticLockingFailureException
+     * без изменения комнаты, если ожидаемая версия не совпадает с версией
+     * комнаты в базе данных.
+     */
+    @Test
+    public void patchShouldThrowWhenVersionChanged() {
+        int id = roomRepository.save(Room.builder().name("room").build()).getId();
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThatThrownBy(() -> patchEngine.patch(Room.class, Room.builder()
+                .id(id)
+                .name("renamed")
+                .build(), 5))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        entityManager.clear();
+        assertThat(roomRepository.findById(id).get().getName()).isEqualTo("room");
+    }
+}
@@ -0,0 +1,177 @@
+package ru.job4j.chat.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.job4j.chat.model.RevokedToken;
+import ru.job4j.chat.repository.RevokedTokenRepository;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Тест класс реестра отозванных токенов доступа
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.service.RevokedTokenRegistry
+ */
+class RevokedTokenRegistryTest {
+
+    /**
+     * Объект заглушка для RevokedTokenRepository
+     */
+    private RevokedTokenRepository repository;
+
+    /**
+     * Текущее время в миллисекундах
+     */
+    private long now = 1_000_000;
+
+    /**
+     * Реестр отозванных токенов
+     */
+    private RevokedTokenRegistry registry;
+
+    /**
+     * Создает необходимые для выполнения тестов общие объекты.
+     * Создание выполняется перед каждым тестом.
+     */
+    @BeforeEach
+    void setUp() {
+        repository = mock(RevokedTokenRepository.class);
+        Clock clock = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return Instant.ofEpochMilli(now);
+            }
+        };
+        registry = new RevokedTokenRegistry(repository,
+                TransactionOperations.withoutTransaction(), 2, 0.01, clock);
+    }
+
+    /**
+     * Выполняется проверка отзыва токена с сохранением в репозитории.
+     */
+    @Test
+    public void revokeShouldSaveTokenAndMarkItRevoked() {
+        registry.revoke("jti", new Date(now + 1_000));
+
+        assertThat(registry.isRevoked("jti")).isTrue();
+        assertThat(registry.isRevoked("other")).isFalse();
+        assertThat(registry.isRevoked(null)).isFalse();
+        verify(repository).save(any(RevokedToken.class));
+    }
+
+    /**
+     * Выполняется проверка отзыва токена, уже сохраненного другим
+     * экземпляром приложения: нарушение уникальности не передается
+     * вызывающему методу, токен считается отозванным.
+     */
+    @Test
+    public void revokeShouldIgnoreTokenAlreadySaved() {
+        doThrow(new DataIntegrityViolationException("revoked_token_jti_key"))
+                .when(repository).save(any(RevokedToken.class));
+
+        registry.revoke("jti", new Date(now + 1_000));
+
+        assertThat(registry.isRevoked("jti")).isTrue();
+    }
+
+    /**
+     * Выполняется проверка дочитывания токенов, отозванных другими
+     * экземплярами приложения, после записей, прочитанных более
+     * {@link RevokedTokenRegistry#SYNC_LOOKBACK} миллисекунд назад.
+     */
+    @Test
+    public void syncShouldLoadTokensAddedAfterLastRead() {
+        doReturn(List.of(token(1, "first"), token(2, "second")))
+                .when(repository).findByIdGreaterThanOrderByIdAsc(0);
+        doReturn(List.of(token(3, "third")))
+                .when(repository).findByIdGreaterThanOrderByIdAsc(2);
+
+        registry.sync();
+        now += RevokedTokenRegistry.SYNC_LOOKBACK;
+        registry.sync();
+
+        assertThat(registry.isRevoked("first")).isTrue();
+        assertThat(registry.isRevoked("second")).isTrue();
+        assertThat(registry.isRevoked("third")).isTrue();
+        assertThat(registry.size()).isEqualTo(3);
+        verify(repository, never()).deleteExpired(any());
+    }
+
+    /**
+     * Выполняется проверка чтения записи, зафиксированной позже записи
+     * с большим идентификатором: недавно прочитанные записи перечитываются.
+     */
+    @Test
+    public void syncShouldRereadRecentRecordsCommittedOutOfOrder() {
+        doReturn(List.of(token(1, "first"), token(3, "third")))
+                .when(repository).findByIdGreaterThanOrderByIdAsc(0);
+        registry.sync();
+        assertThat(registry.isRevoked("second")).isFalse();
+
+        doReturn(List.of(token(1, "first"), token(2, "second"), token(3, "third")))
+                .when(repository).findByIdGreaterThanOrderByIdAsc(0);
+        now += 1_000;
+        registry.sync();
+        assertThat(registry.isRevoked("second")).isTrue();
+        assertThat(registry.size()).isEqualTo(3);
+
+        now += RevokedTokenRegistry.SYNC_LOOKBACK;
+        registry.sync();
+        verify(repository).findByIdGreaterThanOrderByIdAsc(3);
+    }
+
+    /**
+     * Выполняется проверка удаления из реестра и репозитория токенов,
+     * срок действия которых истек.
+     */
+    @Test
+    public void syncShouldPurgeExpiredTokens() {
+        registry.revoke("expiring", new Date(now + 1_000));
+        registry.revoke("alive", new Date(now + 5_000));
+        now += 1_000;
+
+        registry.sync();
+
+        assertThat(registry.isRevoked("expiring")).isFalse();
+        assertThat(registry.isRevoked("alive")).isTrue();
+        verify(repository).deleteExpired(new Date(now));
+    }
+
+    /**
+     * Создает запись отозванного токена, действующего еще десять минут.
+     *
+     * @param id  идентификатор записи
+     * @param jti идентификатор токена
+     * @return запись отозванного токена
+     */
+    private RevokedToken token(int id, String jti) {
+        return RevokedToken.builder().id(id).jti(jti).expires(new Date(now + 600_000)).build();
+    }
+}
@@ -0,0 +1,111 @@
+package ru.job4j.chat.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Тест класс реестра подписчиков комнат
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.service.RoomSubscribers
+ */
+class RoomSubscribersTest {
+
+    /**
+     * Выполняется проверка обхода подписчиков только своей комнаты
+     * без повторов и удаления комнаты после отписки всех подписчиков.
+     */
+    @Test
+    public void forEachShouldVisitSubscribersOfRoom() {
+        var subscribers = new RoomSubscribers<String>(10);
+        assertThat(subscribers.add(1, "first")).isTrue();
+        assertThat(subscribers.add(1, "second")).isTrue();
+        assertThat(subscribers.add(1, "first")).isFalse();
+        subscribers.add(2, "other");
+
+        var visited = new ArrayList<String>();
+        subscribers.forEach(1, visited::add);
+
+        assertThat(visited).containsExactlyInAnyOrder("first", "second");
+        assertThat(subscribers.remove(1, "first")).isTrue();
+        assertThat(subscribers.remove(1, "second")).isTrue();
+        assertThat(subscribers.remove(1, "second")).isFalse();
+        assertThat(subscribers.size(1)).isZero();
+        assertThat(subscribers.size(2)).isEqualTo(1);
+    }
+
+    /**
+     * Выполняется проверка отказа в подписке при достижении ограничения
+     * количества подписчиков комнаты.
+     */
+    @Test
+    public void addShouldRejectWhenRoomIsFull() {
+        var subscribers = new RoomSubscribers<Integer>(2);
+        subscribers.add(1, 1);
+        subscribers.add(1, 2);
+
+        assertThat(subscribers.add(1, 3)).isFalse();
+        subscribers.remove(1, 1);
+        assertThat(subscribers.add(1, 3)).isTrue();
+        assertThat(subscribers.size(1)).isEqualTo(2);
+    }
+
+    /**
+     * Выполняется проверка обхода всех подписчиков, если подписчики
+     * удаляются из комнаты во время обхода.
+     */
+    @Test
+    public void forEachShouldAllowRemoveFromAction() {
+        var subscribers = new RoomSubscribers<Integer>(1_000);
+        for (int i = 0; i < 100; i++) {
+            subscribers.add(1, i);
+        }
+
+        var visited = new ArrayList<Integer>();
+        subscribers.forEach(1, subscriber -> {
+            visited.add(subscriber);
+            subscribers.remove(1, subscriber);
+        });
+
+        assertThat(visited).hasSize(100);
+        assertThat(subscribers.size(1)).isZero();
+    }
+
+    /**
+     * Выполняется проверка количества подписчиков после одновременных
+     * подписок и отписок из нескольких потоков.
+     */
+    @Test
+    public void concurrentAddAndRemoveShouldKeepSize() throws InterruptedException {
+        var subscribers = new RoomSubscribers<Integer>(100_000);
+        int threads = 8;
+        int perThread = 5_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            int from = t * perThread;
+            pool.execute(() -> {
+                for (int i = from; i < from + perThread; i++) {
+                    subscribers.add(1, i);
+                }
+                for (int i = from; i < from + perThread; i += 2) {
+                    subscribers.remove(1, i);
+                }
+            });
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        List<Integer> visited = new ArrayList<>();
+        subscribers.forEach(1, visited::add);
+        assertThat(subscribers.size(1)).isEqualTo(threads * perThread / 2);
+        assertThat(visited).hasSize(threads * perThread / 2).allMatch(i -> i % 2 == 1);
+    }
+}
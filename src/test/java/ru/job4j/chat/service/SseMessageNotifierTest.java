@@ -0,0 +1,57 @@
+package ru.job4j.chat.service;
+
+import org.junit.jupiter.api.Test;
+import ru.job4j.chat.model.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Тест класс рассыльщика новых сообщений по протоколу Server-Sent Events
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.service.SseMessageNotifier
+ */
+class SseMessageNotifierTest {
+
+    /**
+     * Выполняется проверка, что при подключении отправляется не больше одной
+     * страницы пропущенных сообщений, даже если страница заполнена.
+     */
+    @Test
+    public void subscribeShouldReplayOnePage() {
+        var messageService = mock(MessageService.class);
+        var page = new ArrayList<Message>();
+        for (int i = 1; i <= SseMessageNotifier.REPLAY_PAGE_SIZE; i++) {
+            page.add(Message.builder().id(i).content("message " + i).build());
+        }
+        doReturn(page).when(messageService)
+                .findByRoomAfter(1, 0, SseMessageNotifier.REPLAY_PAGE_SIZE);
+
+        new SseMessageNotifier(messageService).subscribe(1, 0);
+
+        verify(messageService, times(1)).findByRoomAfter(anyInt(), anyInt(), anyInt());
+    }
+
+    /**
+     * Выполняется проверка, что без заголовка Last-Event-ID пропущенные
+     * сообщения не выбираются.
+     */
+    @Test
+    public void subscribeShouldNotReplayWithoutLastEventId() {
+        var messageService = mock(MessageService.class);
+        doReturn(List.of()).when(messageService).findByRoomAfter(anyInt(), anyInt(), anyInt());
+
+        new SseMessageNotifier(messageService).subscribe(1, null);
+
+        verify(messageService, never()).findByRoomAfter(anyInt(), anyInt(), anyInt());
+    }
+}
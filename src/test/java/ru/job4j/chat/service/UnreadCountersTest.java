@@ -0,0 +1,234 @@
+package ru.job4j.chat.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.job4j.chat.event.MessageCreatedEvent;
+import ru.job4j.chat.model.Message;
+import ru.job4j.chat.model.Person;
+import ru.job4j.chat.model.Room;
+import ru.job4j.chat.projection.RoomUnread;
+import ru.job4j.chat.repository.MessageRepository;
+import ru.job4j.chat.repository.PersonRepository;
+import ru.job4j.chat.repository.RoomRepository;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Тест класс счетчиков непрочитанных сообщений
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.service.UnreadCounters
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class UnreadCountersTest {
+
+    /**
+     * Объект для выполнения запросов к базе данных
+     */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Объект для работы с контекстом постоянства
+     */
+    @Autowired
+    private EntityManager entityManager;
+
+    /**
+     * Объект для доступа к методам PersonRepository
+     */
+    @Autowired
+    private PersonRepository personRepository;
+
+    /**
+     * Объект для доступа к методам RoomRepository
+     */
+    @Autowired
+    private RoomRepository roomRepository;
+
+    /**
+     * Объект для доступа к методам MessageRepository
+     */
+    @Autowired
+    private MessageRepository messageRepository;
+
+    /**
+     * Счетчики непрочитанных сообщений
+     */
+    private UnreadCounters unreadCounters;
+
+    /**
+     * Пользователь
+     */
+    private Person person;
+
+    /**
+     * Комната
+     */
+    private Room room;
+
+    /**
+     * Создает необходимые для выполнения тестов общие объекты.
+     * Создание выполняется перед каждым тестом.
+     */
+    @BeforeEach
+    void setUp() {
+        unreadCounters = new UnreadCounters(jdbcTemplate);
+        person = personRepository.save(Person.builder()
+                .username("reader")
+                .password("password")
+                .build());
+        room = roomRepository.save(Room.builder().name("room").build());
+    }
+
+    /**
+     * Выполняется проверка подсчета непрочитанных сообщений после вступления
+     * в комнату, записи счетчиков в таблицу и отметки прочтения.
+     */
+    @Test
+    public void unreadShouldFollowSavedAndReadMessages() {
+        post(2);
+        roomRepository.insertMember(room.getId(), person.getUsername(),
+                unreadCounters.pending(room.getId()));
+        assertThat(unreadCounters.findByPerson(person.getId()))
+                .containsExactly(new RoomUnread(room.getId(), 0, 0));
+
+        var posted = post(3);
+        assertThat(unreadCounters.findByPerson(person.getId()).get(0).getUnread()).isEqualTo(3);
+
+        unreadCounters.flush();
+        assertThat(unreadCounters.pending(room.getId())).isZero();
+        assertThat(unreadCounters.findByPerson(person.getId()).get(0).getUnread()).isEqualTo(3);
+
+        assertThat(unreadCounters.markRead(room.getId(), person.getUsername(),
+                posted.get(1).getId())).isTrue();
+        assertThat(unreadCounters.findByPerson(person.getId()))
+                .containsExactly(new RoomUnread(room.getId(), posted.get(1).getId(), 1));
+        assertThat(unreadCounters.markRead(room.getId(), person.getUsername(),
+                posted.get(0).getId())).isFalse();
+    }
+
+    /**
+     * Выполняется проверка пустого списка счетчиков пользователя, который
+     * не является участником комнат, и отказа в отметке прочтения.
+     */
+    @Test
+    public void unreadShouldBeEmptyWhenNotMember() {
+        var posted = post(1);
+
+        assertThat(unreadCounters.findByPerson(person.getId())).isEmpty();
+        assertThat(unreadCounters.markRead(room.getId(), person.getUsername(),
+                posted.get(0).getId())).isFalse();
+    }
+
+    /**
+     * Выполняется проверка, что отметка прочтения не сдвигается назад по
+     * дате создания, если более раннее сообщение имеет больший идентификатор.
+     */
+    @Test
+    public void markReadShouldFollowCreatedOrder() {
+        roomRepository.insertMember(room.getId(), person.getUsername(), 0);
+        var later = save(new Date(System.currentTimeMillis() - 60_000));
+        var earlier = save(new Date(System.currentTimeMillis() - 120_000));
+        entityManager.flush();
+
+        assertThat(unreadCounters.markRead(room.getId(), person.getUsername(),
+                later.getId())).isTrue();
+        assertThat(unreadCounters.markRead(room.getId(), person.getUsername(),
+                earlier.getId())).isFalse();
+        assertThat(unreadCounters.findByPerson(person.getId()))
+                .containsExactly(new RoomUnread(room.getId(), later.getId(), 0));
+    }
+
+    /**
+     * Выполняется проверка вычитания удаленных прочитанного и непрочитанного
+     * сообщений из счетчиков комнаты и участника.
+     */
+    @Test
+    public void subtractMessagesShouldKeepUnreadOfRemainingMessages() {
+        roomRepository.insertMember(room.getId(), person.getUsername(), 0);
+        var posted = post(3);
+        unreadCounters.flush();
+        unreadCounters.markRead(room.getId(), person.getUsername(), posted.get(1).getId());
+
+        var deleted = List.of(posted.get(0).getId(), posted.get(2).getId());
+        unreadCounters.subtractMessages(deleted);
+        messageRepository.deleteByIds(deleted);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT message_count FROM room WHERE id = ?",
+                Long.class, room.getId())).isEqualTo(1);
+        assertThat(unreadCounters.findByPerson(person.getId()))
+                .containsExactly(new RoomUnread(room.getId(), posted.get(1).getId(), 0));
+        post(1);
+        assertThat(unreadCounters.findByPerson(person.getId()).get(0).getUnread()).isEqualTo(1);
+    }
+
+    /**
+     * Выполняется проверка отказа в отметке прочтения сообщения другой
+     * комнаты без изменения счетчика.
+     */
+    @Test
+    public void markReadShouldRejectMessageOfAnotherRoom() {
+        roomRepository.insertMember(room.getId(), person.getUsername(), 0);
+        post(1);
+        var other = roomRepository.save(Room.builder().name("other").build());
+        var foreign = messageRepository.save(Message.builder()
+                .content("foreign")
+                .created(new Date())
+                .person(person)
+                .room(other)
+                .build());
+        entityManager.flush();
+
+        assertThat(roomRepository.existsMessage(other.getId(), foreign.getId())).isTrue();
+        assertThat(roomRepository.existsMessage(room.getId(), foreign.getId())).isFalse();
+        assertThat(unreadCounters.markRead(room.getId(), person.getUsername(),
+                foreign.getId())).isFalse();
+        assertThat(unreadCounters.findByPerson(person.getId()))
+                .containsExactly(new RoomUnread(room.getId(), 0, 1));
+    }
+
+    /**
+     * Сохраняет сообщения комнаты и передает счетчикам события создания.
+     *
+     * @param count количество сообщений
+     * @return сохраненные сообщения
+     */
+    private List<Message> post(int count) {
+        var result = new ArrayList<Message>();
+        for (int i = 0; i < count; i++) {
+            result.add(save(new Date()));
+        }
+        entityManager.flush();
+        return result;
+    }
+
+    /**
+     * Сохраняет сообщение комнаты с датой создания и передает счетчикам
+     * событие создания.
+     *
+     * @param created дата создания
+     * @return сохраненное сообщение
+     */
+    private Message save(Date created) {
+        var message = messageRepository.save(Message.builder()
+                .content("message")
+                .created(created)
+                .person(person)
+                .room(room)
+                .build());
+        unreadCounters.onMessageCreated(new MessageCreatedEvent(message));
+        return message;
+    }
+}
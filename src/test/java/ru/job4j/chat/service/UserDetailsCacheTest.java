@@ -0,0 +1,148 @@
+package ru.job4j.chat.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import ru.job4j.chat.model.Person;
+import ru.job4j.chat.model.Role;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Тест класс кэша данных пользователей
+ *
+ * @author Alexander Emelyanov
+ * @version 1.0
+ * @see ru.job4j.chat.service.UserDetailsCache
+ */
+class UserDetailsCacheTest {
+
+    /**
+     * Начальное время
+     */
+    private static final Instant START = Instant.parse("2026-10-15T00:00:00Z");
+
+    /**
+     * Реестр метрик
+     */
+    private SimpleMeterRegistry registry;
+
+    /**
+     * Пользователь
+     */
+    private Person person;
+
+    /**
+     * Создает необходимые для выполнения тестов общие объекты.
+     * Создание выполняется перед каждым тестом.
+     */
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        person = Person.builder().id(1).username("user").password("hash").build();
+        person.getRoles().add(Role.builder().name("USER").build());
+    }
+
+    /**
+     * Выполняется проверка возврата нового объекта пользователя при каждом
+     * попадании в кэш и учета попаданий и промахов в метриках.
+     */
+    @Test
+    public void getShouldReturnNewUserDetailsOnEachHit() {
+        var cache = cache(START);
+        cache.put(cache.version(), person);
+
+        UserDetails first = cache.get("user").get();
+        UserDetails second = cache.get("user").get();
+
+        assertThat(first).isNotSameAs(second);
+        assertThat(second.getPassword()).isEqualTo("hash");
+        assertThat(second.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+                .containsExactly("ROLE_USER");
+        assertThat(cache.get("other")).isEmpty();
+        assertThat(registry.counter("chat.user.details.cache.hits").count()).isEqualTo(2);
+        assertThat(registry.counter("chat.user.details.cache.misses").count()).isEqualTo(1);
+    }
+
+    /**
+     * Выполняется проверка окончания срока хранения записи.
+     */
+    @Test
+    public void getShouldReturnEmptyWhenEntryExpired() {
+        var now = new AtomicReference<>(START);
+        var cache = new UserDetailsCache(60, 10, registry, new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return now.get();
+            }
+        });
+        cache.put(cache.version(), person);
+        now.set(START.plus(Duration.ofSeconds(59)));
+        assertThat(cache.get("user")).isPresent();
+
+        now.set(START.plus(Duration.ofSeconds(60)));
+
+        assertThat(cache.get("user")).isEmpty();
+        assertThat(cache.size()).isZero();
+    }
+
+    /**
+     * Выполняется проверка удаления записи по идентификатору пользователя
+     * после смены имени пользователя.
+     */
+    @Test
+    public void invalidateByIdShouldRemoveEntryWithPreviousUsername() {
+        var cache = cache(START);
+        cache.put(cache.version(), person);
+
+        cache.invalidate(1);
+
+        assertThat(cache.get("user")).isEmpty();
+        assertThat(cache.size()).isZero();
+    }
+
+    /**
+     * Выполняется проверка отказа в добавлении записи, загруженной
+     * до удаления записей пользователя.
+     */
+    @Test
+    public void putShouldSkipEntryLoadedBeforeInvalidation() {
+        var cache = cache(START);
+        long version = cache.version();
+        cache.invalidate("user");
+
+        cache.put(version, person);
+
+        assertThat(cache.get("user")).isEmpty();
+    }
+
+    /**
+     * Создает кэш со временем хранения записи 60 секунд и часами,
+     * установленными на переданное время.
+     *
+     * @param now текущее время
+     * @return кэш данных пользователей
+     */
+    private UserDetailsCache cache(Instant now) {
+        return new UserDetailsCache(60, 10, registry, Clock.fixed(now, ZoneOffset.UTC));
+    }
+}